@@ -0,0 +1,32 @@
+package de.rwth.idsg.bikeman.app.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@ToString(includeFieldNames = true)
+public class ViewNearbyStationDTO {
+
+    private Long stationId;
+    private String name;
+    private BigDecimal locationLatitude;
+    private BigDecimal locationLongitude;
+    private Long numAvailablePedelecs;
+    @Setter private Long distanceInMeters;
+
+    public ViewNearbyStationDTO(Long stationId, String name,
+                                BigDecimal locationLatitude, BigDecimal locationLongitude,
+                                Long numAvailablePedelecs) {
+        this.stationId = stationId;
+        this.name = name;
+        this.locationLatitude = locationLatitude;
+        this.locationLongitude = locationLongitude;
+        this.numAvailablePedelecs = numAvailablePedelecs;
+    }
+}
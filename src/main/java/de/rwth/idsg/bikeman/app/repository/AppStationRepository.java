@@ -1,6 +1,7 @@
 package de.rwth.idsg.bikeman.app.repository;
 
 import de.rwth.idsg.bikeman.app.dto.StationSlotsDTO;
+import de.rwth.idsg.bikeman.app.dto.ViewNearbyStationDTO;
 import de.rwth.idsg.bikeman.app.dto.ViewStationDTO;
 import de.rwth.idsg.bikeman.app.exception.AppException;
 
@@ -11,6 +12,7 @@ public interface AppStationRepository {
     List<ViewStationDTO> findAll() throws AppException;
     ViewStationDTO findOne(long stationId) throws AppException;
     List<StationSlotsDTO> findOneWithSlots(long stationId) throws AppException;
+    List<ViewNearbyStationDTO> findWithAvailablePedelecs(List<Long> stationIds) throws AppException;
 
 //    @Query("SELECT bs FROM Station bs ORDER BY ((6371 * 2 * ASIN(SQRT(POWER(SIN((bs.locationLatitude - abs(:latitude)) * pi()/180 / 2),2) +" +
 //            "COS(bs.locationLatitude * pi()/180 ) * COS(abs(:latitude) * pi()/180) *" +
@@ -1,6 +1,7 @@
 package de.rwth.idsg.bikeman.app.repository;
 
 import de.rwth.idsg.bikeman.app.dto.StationSlotsDTO;
+import de.rwth.idsg.bikeman.app.dto.ViewNearbyStationDTO;
 import de.rwth.idsg.bikeman.app.dto.ViewStationDTO;
 import de.rwth.idsg.bikeman.app.exception.AppErrorCode;
 import de.rwth.idsg.bikeman.app.exception.AppException;
@@ -14,6 +15,7 @@ import de.rwth.idsg.bikeman.domain.StationSlot_;
 import de.rwth.idsg.bikeman.domain.Station_;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import lombok.extern.slf4j.Slf4j;
+import org.joda.time.LocalDateTime;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,6 +28,7 @@ import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
+import java.util.Collections;
 import java.util.List;
 
 @Repository
@@ -109,6 +112,41 @@ public class AppStationRepositoryImpl implements AppStationRepository {
         }
     }
 
+    /**
+     * Stations without available pedelecs are not returned. Same conditions as in
+     * {@link de.rwth.idsg.bikeman.fleet.FleetSnapshot#findAvailablePedelecs(long, int)}.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ViewNearbyStationDTO> findWithAvailablePedelecs(List<Long> stationIds) throws AppException {
+        if (stationIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final String q = "select new de.rwth.idsg.bikeman.app.dto.ViewNearbyStationDTO(" +
+            "s.stationId, s.name, s.locationLatitude, s.locationLongitude, count(p)) " +
+            "from Pedelec p " +
+            "join p.stationSlot sl " +
+            "join sl.station s " +
+            "where s.stationId in :stationIds " +
+            "and s.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
+            "and sl.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
+            "and p.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
+            "and p not in (select r.pedelec from Reservation r " +
+            "where r.state = de.rwth.idsg.bikeman.domain.ReservationState.CREATED " +
+            "and (:now between r.startDateTime and r.endDateTime)) " +
+            "group by s.stationId, s.name, s.locationLatitude, s.locationLongitude";
+
+        try {
+            return em.createQuery(q, ViewNearbyStationDTO.class)
+                     .setParameter("stationIds", stationIds)
+                     .setParameter("now", new LocalDateTime())
+                     .getResultList();
+        } catch (Exception e) {
+            throw new AppException("Failed during database operation", e, AppErrorCode.DATABASE_OPERATION_FAILED);
+        }
+    }
+
 
     private CriteriaQuery<ViewStationDTO> getStationQuery(CriteriaBuilder builder, Long stationId) {
         CriteriaQuery<ViewStationDTO> criteria = builder.createQuery(ViewStationDTO.class);
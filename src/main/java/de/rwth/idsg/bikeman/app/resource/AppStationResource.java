@@ -2,9 +2,11 @@ package de.rwth.idsg.bikeman.app.resource;
 
 import com.codahale.metrics.annotation.Timed;
 import de.rwth.idsg.bikeman.app.dto.RentPedelecDTO;
+import de.rwth.idsg.bikeman.app.dto.ViewNearbyStationDTO;
 import de.rwth.idsg.bikeman.app.dto.ViewPedelecSlotDTO;
 import de.rwth.idsg.bikeman.app.dto.ViewStationDTO;
 import de.rwth.idsg.bikeman.app.dto.ViewStationSlotsDTO;
+import de.rwth.idsg.bikeman.app.exception.AppErrorCode;
 import de.rwth.idsg.bikeman.app.exception.AppException;
 import de.rwth.idsg.bikeman.app.service.AppBookingService;
 import de.rwth.idsg.bikeman.app.service.AppCurrentCustomerService;
@@ -40,11 +42,14 @@ public class AppStationResource {
     private AppCurrentCustomerService appCurrentCustomerService;
 
     private static final String BASE_PATH = "/stations";
+    private static final String NEAREST_PATH = "/stations/nearest";
     private static final String ID_PATH = "/stations/{id}";
     private static final String SLOT_PATH = "/stations/{id}/slots";
     private static final String RECOMMEND_PATH = "/stations/{id}/recommended-pedelec";
     private static final String RENTAL_PATH = "/stations/{stationId}/rent";
 
+    private static final int MAX_NEAREST_COUNT = 50;
+
     @Timed
     @RequestMapping(value = BASE_PATH, method = RequestMethod.GET)
     public List<ViewStationDTO> getAll() throws AppException {
@@ -52,6 +57,19 @@ public class AppStationResource {
         return appStationService.getAll();
     }
 
+    @Timed
+    @RequestMapping(value = NEAREST_PATH, method = RequestMethod.GET)
+    public List<ViewNearbyStationDTO> getNearest(@RequestParam Double lat,
+                                                 @RequestParam Double lon,
+                                                 @RequestParam(defaultValue = "5") Integer count) throws AppException {
+        log.debug("REST request to get the nearest Stations with available Pedelecs : lat={}, lon={}", lat, lon);
+
+        if (count < 1 || count > MAX_NEAREST_COUNT) {
+            throw new AppException("Count must be between 1 and " + MAX_NEAREST_COUNT, AppErrorCode.VALIDATION_FAILED);
+        }
+        return appStationService.getNearestWithAvailablePedelecs(lat, lon, count);
+    }
+
     @Timed
     @RequestMapping(value = ID_PATH, method = RequestMethod.GET)
     public ViewStationDTO get(@PathVariable Long id) throws AppException {
@@ -6,12 +6,10 @@ import de.rwth.idsg.bikeman.app.exception.AppErrorCode;
 import de.rwth.idsg.bikeman.app.exception.AppException;
 import de.rwth.idsg.bikeman.domain.Booking;
 import de.rwth.idsg.bikeman.domain.Customer;
-import de.rwth.idsg.bikeman.domain.Pedelec;
 import de.rwth.idsg.bikeman.domain.Reservation;
+import de.rwth.idsg.bikeman.fleet.AvailablePedelec;
 import de.rwth.idsg.bikeman.ixsi.IxsiCodeException;
 import de.rwth.idsg.bikeman.ixsi.IxsiProcessingException;
-import de.rwth.idsg.bikeman.ixsi.service.AvailabilityPushService;
-import de.rwth.idsg.bikeman.ixsi.service.BookingCheckService;
 import de.rwth.idsg.bikeman.ixsi.service.BookingService;
 import de.rwth.idsg.bikeman.psinterface.dto.request.CancelReservationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.ReserveNowDTO;
@@ -47,10 +45,6 @@ public class AppBookingService {
 
     @Autowired private StationClient stationClient;
 
-    @Autowired private AvailabilityPushService availabilityPushService;
-
-    @Autowired private BookingCheckService bookingCheckService;
-
     @Transactional
     public Optional<ViewBookingDTO> createBooking(Long stationId, Customer customer) {
 
@@ -59,16 +53,16 @@ public class AppBookingService {
                 .withBegin(new DateTime())
                 .withEnd(new DateTime().plusMinutes(15));
 
-            Optional<Pedelec> optionalPedelec = appPedelecService.getRecommendedPedelecForBooking(stationId);
+            Optional<AvailablePedelec> optionalPedelec = appPedelecService.getRecommendedPedelecForBooking(stationId);
 
             if (!optionalPedelec.isPresent()) {
                 return Optional.empty();
             }
 
-            Pedelec pedelec = optionalPedelec.get();
+            AvailablePedelec pedelec = optionalPedelec.get();
 
             Booking createdBooking = bookingService.createBookingForUser(
-                pedelec.getManufacturerId(),
+                pedelec.getPedelecManufacturerId(),
                 customer.getCardAccount().getCardId(),
                 timePeriodProposal
             );
@@ -77,18 +71,9 @@ public class AppBookingService {
                 .withBegin(createdBooking.getReservation().getStartDateTime().toDateTime())
                 .withEnd(createdBooking.getReservation().getEndDateTime().toDateTime());
 
-            String placeId = createdBooking.getReservation()
-                .getPedelec()
-                .getStationSlot()
-                .getStation()
-                .getManufacturerId();
-
-            availabilityPushService.placedBooking(pedelec.getManufacturerId(), placeId, timePeriod);
-            bookingCheckService.placedBooking(createdBooking);
-
             ViewBookingDTO viewBookingDTO = ViewBookingDTO.builder()
                 .expiryDateTime(new LocalDateTime(timePeriod.getEnd()))
-                .stationSlotPosition(pedelec.getStationSlot().getStationSlotPosition())
+                .stationSlotPosition(pedelec.getSlotPosition())
                 .stationId(stationId)
                 .build();
 
@@ -158,24 +143,7 @@ public class AppBookingService {
 
         Reservation reservation = optional.get();
 
-        Booking booking = bookingService.cancel(reservation.getBooking().getIxsiBookingId(), customer.getCardAccount().getCardId());
-
-        TimePeriodType timePeriod = new TimePeriodType()
-            .withBegin(booking.getReservation().getStartDateTime().toDateTime())
-            .withEnd(booking.getReservation().getEndDateTime().toDateTime());
-
-        String pedelecId = booking.getReservation()
-            .getPedelec()
-            .getManufacturerId();
-
-        String placeId = booking.getReservation()
-            .getPedelec()
-            .getStationSlot()
-            .getStation()
-            .getManufacturerId();
-
-        availabilityPushService.cancelledBooking(pedelecId, placeId, timePeriod);
-        bookingCheckService.cancelledBooking(booking);
+        bookingService.cancel(reservation.getBooking().getIxsiBookingId(), customer.getCardAccount().getCardId());
     }
 
     @Transactional(readOnly = true)
@@ -1,16 +1,12 @@
 package de.rwth.idsg.bikeman.app.service;
 
 import de.rwth.idsg.bikeman.app.dto.ViewPedelecSlotDTO;
-import de.rwth.idsg.bikeman.app.exception.AppErrorCode;
-import de.rwth.idsg.bikeman.app.exception.AppException;
-import de.rwth.idsg.bikeman.app.repository.AppPedelecRepository;
-import de.rwth.idsg.bikeman.domain.Pedelec;
-import de.rwth.idsg.bikeman.repository.StationRepository;
+import de.rwth.idsg.bikeman.fleet.AvailablePedelec;
+import de.rwth.idsg.bikeman.fleet.FleetState;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.persistence.NoResultException;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,68 +15,32 @@ import java.util.Optional;
 public class AppPedelecService {
 
     @Autowired
-    private AppPedelecRepository appPedelecRepository;
+    private FleetState fleetState;
 
-    @Autowired
-    private StationRepository stationRepository;
-
-
-    // TODO: but why (copy&paste)?
     public Optional<ViewPedelecSlotDTO> getRecommendedPedelec(Long stationId) {
-        try {
-            stationRepository.findOne(stationId);
-        } catch (NoResultException e) {
-            throw new AppException("Station not found!", AppErrorCode.CONSTRAINT_FAILED);
-        }
-
-        List<Pedelec> pedelecs = appPedelecRepository.findAvailablePedelecs(stationId);
+        Optional<AvailablePedelec> pedelec = getRecommendedPedelecForBooking(stationId);
 
-        if (pedelecs.isEmpty()) {
+        if (!pedelec.isPresent()) {
             return Optional.empty();
         }
 
-        // get Pedelec with max. SOC
-        // TODO: what if no pedelec is available?
-        Pedelec pedelec = pedelecs.get(0);
-
         return Optional.of(
                 ViewPedelecSlotDTO.builder()
-                                  .stationSlotId(pedelec.getStationSlot().getStationSlotId())
-                                  .stationSlotPosition(pedelec.getStationSlot().getStationSlotPosition())
+                                  .stationSlotId(pedelec.get().getStationSlotId())
+                                  .stationSlotPosition(pedelec.get().getSlotPosition())
                                   .build()
         );
-
     }
 
-    // TODO: but why (copy&paste)?
     public Optional<Long> getRecommendedPedelecSlotId(Long stationId) {
-        try {
-            stationRepository.findOne(stationId);
-        } catch (NoResultException e) {
-            throw new AppException("Station not found!", AppErrorCode.CONSTRAINT_FAILED);
-        }
-
-        List<Pedelec> pedelecs = appPedelecRepository.findAvailablePedelecs(stationId);
-
-        if (pedelecs.isEmpty()) {
-            return Optional.empty();
-        }
-
-        // get Pedelec with max. SOC
-        // TODO: what if no pedelec is available?
-        Pedelec pedelec = pedelecs.get(0);
-
-        return Optional.of(pedelec.getStationSlot().getStationSlotId());
+        return getRecommendedPedelecForBooking(stationId).map(AvailablePedelec::getStationSlotId);
     }
 
-    public Optional<Pedelec> getRecommendedPedelecForBooking(Long stationId) {
-        try {
-            stationRepository.findOne(stationId);
-        } catch (NoResultException e) {
-            throw new AppException("Station not found!", AppErrorCode.CONSTRAINT_FAILED);
-        }
-
-        List<Pedelec> pedelecs = appPedelecRepository.findAvailablePedelecs(stationId);
+    /**
+     * The pedelec with max. SOC
+     */
+    public Optional<AvailablePedelec> getRecommendedPedelecForBooking(Long stationId) {
+        List<AvailablePedelec> pedelecs = fleetState.getSnapshot().findAvailablePedelecs(stationId, 1);
 
         if (pedelecs.isEmpty()) {
             return Optional.empty();
@@ -1,6 +1,7 @@
 package de.rwth.idsg.bikeman.app.service;
 
 
+import de.rwth.idsg.bikeman.app.dto.ViewNearbyStationDTO;
 import de.rwth.idsg.bikeman.app.dto.ViewPedelecSlotDTO;
 import de.rwth.idsg.bikeman.app.dto.ViewStationDTO;
 import de.rwth.idsg.bikeman.app.dto.ViewStationSlotsDTO;
@@ -15,14 +16,20 @@ import de.rwth.idsg.bikeman.psinterface.dto.request.RemoteAuthorizeDTO;
 import de.rwth.idsg.bikeman.psinterface.rest.client.StationClient;
 import de.rwth.idsg.bikeman.repository.StationRepository;
 import de.rwth.idsg.bikeman.repository.StationSlotRepository;
+import de.rwth.idsg.bikeman.service.StationSpatialIndex;
+import de.rwth.idsg.bikeman.web.rest.dto.view.StationLocationDTO;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -49,6 +56,9 @@ public class AppStationService {
     @Autowired
     private StationClient stationClient;
 
+    @Autowired
+    private StationSpatialIndex stationSpatialIndex;
+
     public List<ViewStationDTO> getAll() throws DatabaseException {
         return appStationRepositoryApp.findAll();
     }
@@ -57,6 +67,56 @@ public class AppStationService {
         return appStationRepositoryApp.findOne(id);
     }
 
+    /**
+     * Takes the nearest stations from the spatial index in growing rounds, until enough of them have available
+     * pedelecs or there are no stations left. Every station is checked in the DB only once.
+     *
+     * @return at most count stations with available pedelecs, nearest first
+     */
+    public List<ViewNearbyStationDTO> getNearestWithAvailablePedelecs(double lat, double lon, int count)
+            throws AppException {
+
+        List<ViewNearbyStationDTO> result = new ArrayList<>(count);
+        int checked = 0;
+        int candidateCount = count * 2;
+
+        while (true) {
+            List<StationLocationDTO> candidates = stationSpatialIndex.nearest(lat, lon, candidateCount);
+            List<StationLocationDTO> batch = candidates.subList(Math.min(checked, candidates.size()), candidates.size());
+
+            Map<Long, ViewNearbyStationDTO> available =
+                    appStationRepositoryApp.findWithAvailablePedelecs(batch.stream()
+                                                                           .map(StationLocationDTO::getStationId)
+                                                                           .collect(Collectors.toList()))
+                                           .stream()
+                                           .collect(Collectors.toMap(ViewNearbyStationDTO::getStationId,
+                                                                     Function.identity()));
+
+            for (StationLocationDTO candidate : batch) {
+                ViewNearbyStationDTO dto = available.get(candidate.getStationId());
+                if (dto == null) {
+                    continue;
+                }
+
+                double distance = StationSpatialIndex.distanceInMeters(
+                        lat, lon, candidate.getLatitude(), candidate.getLongitude());
+                dto.setDistanceInMeters(Math.round(distance));
+
+                result.add(dto);
+                if (result.size() == count) {
+                    return result;
+                }
+            }
+
+            if (candidates.size() < candidateCount) {
+                return result;
+            }
+
+            checked = candidates.size();
+            candidateCount *= 4;
+        }
+    }
+
     public ViewStationSlotsDTO getSlots(Long id) throws DatabaseException {
         return ViewStationSlotsDTO.builder()
                                   .stationSlots(appStationRepositoryApp.findOneWithSlots(id))
@@ -1,8 +1,10 @@
 package de.rwth.idsg.bikeman.config;
 
+import de.rwth.idsg.bikeman.journal.TrafficJournal;
 import de.rwth.idsg.bikeman.psinterface.log.ClientLogInterceptor;
 import de.rwth.idsg.bikeman.psinterface.log.ResourceLogFilter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.embedded.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,11 +24,13 @@ import java.util.List;
 @Configuration
 public class PsInterfaceConfiguration {
 
+    @Autowired private TrafficJournal trafficJournal;
+
     @Bean
     public FilterRegistrationBean resourceLogFilter() {
         log.debug("Initializing resource log filter");
         FilterRegistrationBean registration = new FilterRegistrationBean();
-        registration.setFilter(new ResourceLogFilter());
+        registration.setFilter(new ResourceLogFilter(trafficJournal));
         registration.addUrlPatterns("/psi/*");
         registration.setOrder(2);
         return registration;
@@ -1,5 +1,6 @@
 package de.rwth.idsg.bikeman.domain;
 
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationListener;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -16,6 +17,7 @@ import java.util.Set;
  */
 
 @Entity
+@EntityListeners(CardAuthorizationListener.class)
 @Table(name = "T_BOOKED_TARIFF")
 @TableGenerator(name = "booked_tariff_gen", initialValue = 0, allocationSize = 1)
 @EqualsAndHashCode(of = {"bookedTariffId"})
@@ -1,5 +1,6 @@
 package de.rwth.idsg.bikeman.domain;
 
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationListener;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -19,6 +20,7 @@ import java.util.Set;
  */
 
 @Entity
+@EntityListeners(CardAuthorizationListener.class)
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name = "T_CARD_ACCOUNT",
@@ -0,0 +1,36 @@
+package de.rwth.idsg.bikeman.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Type;
+import org.joda.time.LocalDateTime;
+
+import javax.persistence.*;
+
+/**
+ * Lease of a periodic job that must run on only one node, if several BikeMan instances share the database.
+ * The rows are created by Liquibase.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+@EqualsAndHashCode(of = {"lockName"})
+@ToString(includeFieldNames = true)
+@Entity
+@Table(name = "T_SCHEDULER_LOCK")
+public class SchedulerLock {
+
+    @Id
+    @Column(name = "lock_name", nullable = false)
+    private String lockName;
+
+    @Column(name = "locked_by")
+    private String lockedBy;
+
+    @Column(name = "locked_until", nullable = false)
+    @Type(type = "org.jadira.usertype.dateandtime.joda.PersistentLocalDateTime")
+    private LocalDateTime lockedUntil;
+}
@@ -1,5 +1,6 @@
 package de.rwth.idsg.bikeman.domain;
 
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationListener;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -14,6 +15,7 @@ import java.math.BigDecimal;
  */
 
 @Entity
+@EntityListeners(CardAuthorizationListener.class)
 @Table(name = "T_TARIFF")
 @TableGenerator(name = "tariff_gen", initialValue = 0, allocationSize = 1)
 @EqualsAndHashCode(of = {"tariffId"})
@@ -1,5 +1,6 @@
 package de.rwth.idsg.bikeman.domain;
 
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationListener;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -15,6 +16,7 @@ import java.math.BigDecimal;
 
 
 @Entity
+@EntityListeners(CardAuthorizationListener.class)
 @Table(name = "T_TRANSACTION",
         indexes = {
                 @Index(columnList="pedelec_id", unique = false),
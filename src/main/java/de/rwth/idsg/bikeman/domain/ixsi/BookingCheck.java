@@ -0,0 +1,42 @@
+package de.rwth.idsg.bikeman.domain.ixsi;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Type;
+import org.joda.time.LocalDateTime;
+
+import javax.persistence.*;
+
+/**
+ * Persistent schedule of the not-used checks of bookings (see BookingCheckService).
+ * Written within the transaction of the booking, so that the check survives a restart.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@EqualsAndHashCode(of = {"ixsiBookingId"})
+@ToString(includeFieldNames = true)
+@Entity
+@Table(name = "IXSI_BOOKING_CHECK",
+    indexes = {
+        @Index(columnList = "check_at") })
+public class BookingCheck {
+
+    @Id
+    @Column(name = "ixsi_booking_id", nullable = false)
+    private String ixsiBookingId;
+
+    @Column(name = "check_at", nullable = false)
+    @Type(type = "org.jadira.usertype.dateandtime.joda.PersistentLocalDateTime")
+    private LocalDateTime checkAt;
+
+    public BookingCheck(String ixsiBookingId, LocalDateTime checkAt) {
+        this.ixsiBookingId = ixsiBookingId;
+        this.checkAt = checkAt;
+    }
+}
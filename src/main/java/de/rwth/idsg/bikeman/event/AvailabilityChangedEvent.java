@@ -0,0 +1,29 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+import java.util.List;
+
+/**
+ * Pedelecs at a station became available or unavailable due to operation state changes.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class AvailabilityChangedEvent extends DomainEvent {
+    private final String stationManufacturerId;
+    private final List<String> pedelecManufacturerIds;
+    private final boolean available;
+    private final DateTime begin;
+    private final DateTime end;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onAvailabilityChanged(this);
+    }
+}
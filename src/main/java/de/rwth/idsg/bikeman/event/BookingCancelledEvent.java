@@ -0,0 +1,27 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+/**
+ * A booking is cancelled.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BookingCancelledEvent extends DomainEvent {
+    private final String ixsiBookingId;
+    private final String pedelecManufacturerId;
+    private final String placeId;
+    private final DateTime begin;
+    private final DateTime end;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onBookingCancelled(this);
+    }
+}
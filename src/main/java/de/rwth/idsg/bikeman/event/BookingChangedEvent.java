@@ -0,0 +1,29 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+/**
+ * The time period of a booking is changed.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BookingChangedEvent extends DomainEvent {
+    private final String ixsiBookingId;
+    private final String pedelecManufacturerId;
+    private final String placeId;
+    private final DateTime oldBegin;
+    private final DateTime oldEnd;
+    private final DateTime newBegin;
+    private final DateTime newEnd;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onBookingChanged(this);
+    }
+}
@@ -0,0 +1,28 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+/**
+ * A pedelec is booked (reserved).
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BookingPlacedEvent extends DomainEvent {
+    private final String ixsiBookingId;
+    private final String pedelecManufacturerId;
+    private final String cardId;
+    private final String placeId;
+    private final DateTime begin;
+    private final DateTime end;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onBookingPlaced(this);
+    }
+}
@@ -0,0 +1,25 @@
+package de.rwth.idsg.bikeman.event;
+
+import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * A charging status notification is processed.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ChargingStatusReceivedEvent extends DomainEvent {
+    private final List<ChargingStatusDTO> chargingStatus;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onChargingStatusReceived(this);
+    }
+}
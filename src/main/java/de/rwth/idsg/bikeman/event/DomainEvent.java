@@ -0,0 +1,22 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+
+/**
+ * Base class of the events that are published by the services after a state change in the domain.
+ *
+ * Every event knows how to dispatch itself to a {@link DomainEventListener} (double dispatch), so that a listener
+ * only has to override the callbacks of the events it is interested in.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+public abstract class DomainEvent {
+
+    /**
+     * Creation time in milliseconds. Used to measure the latency of the pipeline.
+     */
+    private final long createdAt = System.currentTimeMillis();
+
+    public abstract void dispatchTo(DomainEventListener listener);
+}
@@ -0,0 +1,191 @@
+package de.rwth.idsg.bikeman.event;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.bikeman.utils.QueueProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples the side effects of domain changes (IXSI pushes, error history etc.) from the request processing.
+ *
+ * If an event is published within a transaction, it is enqueued only after the transaction commits (and discarded
+ * on rollback). Otherwise it is enqueued immediately. The events are consumed by a single background thread in
+ * publishing order and dispatched to all {@link DomainEventListener}s.
+ *
+ * If the queue is full, the publishing thread waits for free space up to a timeout. If the queue is still full,
+ * the event is dropped and the listeners are notified with {@link DomainEventListener#onEventsDropped()}, so that
+ * they reconcile their state with the DB.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class DomainEventBus implements EnvironmentAware {
+
+    private static final String ENV_EVENT = "event.";
+    private static final String PROP_QUEUE_CAPACITY = "queueCapacity";
+    private static final String PROP_OFFER_TIMEOUT = "offerTimeoutInMillis";
+
+    @Autowired private ListableBeanFactory beanFactory;
+
+    /**
+     * Looked up lazily on first dispatch and not injected, since most listeners depend
+     * (transitively) on the publishers, which depend on this bus.
+     */
+    private volatile List<DomainEventListener> listeners;
+
+    private RelaxedPropertyResolver propertyResolver;
+    private ExecutorService executorService;
+    private QueueProcessor<DomainEvent> queueProcessor;
+
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final AtomicLong totalLatencyInMillis = new AtomicLong(0);
+    private final AtomicLong maxLatencyInMillis = new AtomicLong(0);
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_EVENT);
+    }
+
+    @PostConstruct
+    public void init() {
+        int capacity = propertyResolver.getProperty(PROP_QUEUE_CAPACITY, Integer.class, 10000);
+        long offerTimeout = propertyResolver.getProperty(PROP_OFFER_TIMEOUT, Long.class, 1000L);
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("bikeman-Domain-Event-%d")
+                                                                .build();
+
+        executorService = Executors.newSingleThreadExecutor(threadFactory);
+        queueProcessor = new QueueProcessor<>(executorService, this::dispatch, "domain-events", capacity,
+                offerTimeout, this::onDropped);
+        queueProcessor.start();
+
+        log.info("Initialized domain event bus with capacity {} and offer timeout {} ms", capacity, offerTimeout);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        // Interrupts the consumer, which processes the remaining events before stopping
+        queueProcessor.stop();
+
+        try {
+            executorService.shutdown();
+            executorService.awaitTermination(30, TimeUnit.SECONDS);
+
+        } catch (InterruptedException e) {
+            log.error("Termination interrupted", e);
+
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    public void publish(DomainEvent event) {
+        log.debug("Publishing {}", event);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    queueProcessor.add(event);
+                }
+            });
+        } else {
+            queueProcessor.add(event);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    public int getQueueSize() {
+        return queueProcessor.getQueueSize();
+    }
+
+    public long getProcessedCount() {
+        return queueProcessor.getProcessedCount();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return queueProcessor.getDroppedCount();
+    }
+
+    public long getMaxLatencyInMillis() {
+        return maxLatencyInMillis.get();
+    }
+
+    public double getAverageLatencyInMillis() {
+        long count = getProcessedCount();
+        if (count == 0) {
+            return 0;
+        }
+        return (double) totalLatencyInMillis.get() / count;
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * A failing listener should not prevent the others from receiving the event
+     */
+    private void dispatch(DomainEvent event) {
+        EventOrigin.runWith(event.getCreatedAt(), () -> {
+            for (DomainEventListener listener : getListeners()) {
+                try {
+                    event.dispatchTo(listener);
+                } catch (Exception e) {
+                    failedCount.incrementAndGet();
+                    log.error("Listener {} failed to process {}", listener.getClass().getSimpleName(), event, e);
+                }
+            }
+        });
+
+        long latency = System.currentTimeMillis() - event.getCreatedAt();
+        totalLatencyInMillis.addAndGet(latency);
+        maxLatencyInMillis.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * The listeners missed the event, therefore the state they derive from the events might be stale
+     */
+    private void onDropped(DomainEvent event) {
+        for (DomainEventListener listener : getListeners()) {
+            try {
+                listener.onEventsDropped();
+            } catch (Exception e) {
+                log.error("Listener {} failed to handle a dropped event", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private List<DomainEventListener> getListeners() {
+        if (listeners == null) {
+            listeners = new ArrayList<>(beanFactory.getBeansOfType(DomainEventListener.class).values());
+            log.info("Registered {} domain event listener(s)", listeners.size());
+        }
+        return listeners;
+    }
+}
@@ -0,0 +1,49 @@
+package de.rwth.idsg.bikeman.event;
+
+/**
+ * Callbacks for the domain events. All Spring beans implementing this interface are registered
+ * at the {@link DomainEventBus} automatically.
+ *
+ * The callbacks are invoked in the consumer thread of the bus after the publishing transaction has committed.
+ * Therefore, they must not rely on any entity state of the publisher and should open their own
+ * transactions if they need the database.
+ *
+ * @since 18.10.2016
+ */
+public interface DomainEventListener {
+
+    default void onTransactionStarted(TransactionStartedEvent event) { }
+
+    default void onTransactionStopped(TransactionStoppedEvent event) { }
+
+    default void onExternalBookingStarted(ExternalBookingStartedEvent event) { }
+
+    default void onStationSaved(StationSavedEvent event) { }
+
+    default void onStationBooted(StationBootedEvent event) { }
+
+    default void onStationStatusReceived(StationStatusReceivedEvent event) { }
+
+    default void onPedelecStatusReceived(PedelecStatusReceivedEvent event) { }
+
+    default void onChargingStatusReceived(ChargingStatusReceivedEvent event) { }
+
+    default void onStationStateChanged(StationStateChangedEvent event) { }
+
+    default void onSlotStateChanged(SlotStateChangedEvent event) { }
+
+    default void onAvailabilityChanged(AvailabilityChangedEvent event) { }
+
+    default void onBookingPlaced(BookingPlacedEvent event) { }
+
+    default void onBookingChanged(BookingChangedEvent event) { }
+
+    default void onBookingCancelled(BookingCancelledEvent event) { }
+
+    /**
+     * Invoked in the publishing thread, if an event was dropped because the queue of the bus stayed full.
+     * The listeners that keep state derived from the events should reconcile it with the DB soon.
+     * Must not block.
+     */
+    default void onEventsDropped() { }
+}
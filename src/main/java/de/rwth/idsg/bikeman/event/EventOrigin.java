@@ -0,0 +1,40 @@
+package de.rwth.idsg.bikeman.event;
+
+/**
+ * Creation time of the domain event that the current thread is handling. Lets the components further down the
+ * pipeline (e.g. the push telemetry) measure the latency from the event, without passing the event around.
+ *
+ * @since 18.10.2016
+ */
+public final class EventOrigin {
+
+    private static final ThreadLocal<Long> CREATED_AT = new ThreadLocal<>();
+
+    private EventOrigin() { }
+
+    /**
+     * Runs the task with the given origin. The previous origin of the thread is restored afterwards, since the
+     * task might be run by the thread handling another event (e.g. a push without coalescing window).
+     */
+    public static void runWith(long createdAt, Runnable task) {
+        Long previous = CREATED_AT.get();
+        CREATED_AT.set(createdAt);
+        try {
+            task.run();
+        } finally {
+            if (previous == null) {
+                CREATED_AT.remove();
+            } else {
+                CREATED_AT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the creation time in milliseconds, or now, if the thread does not handle an event
+     */
+    public static long get() {
+        Long createdAt = CREATED_AT.get();
+        return createdAt == null ? System.currentTimeMillis() : createdAt;
+    }
+}
@@ -0,0 +1,26 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+/**
+ * A transaction is started without a reservation, i.e. it was not booked via IXSI beforehand.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ExternalBookingStartedEvent extends DomainEvent {
+    private final String ixsiBookingId;
+    private final String cardId;
+    private final String pedelecManufacturerId;
+    private final DateTime startDateTime;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onExternalBookingStarted(this);
+    }
+}
@@ -0,0 +1,23 @@
+package de.rwth.idsg.bikeman.event;
+
+import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A pedelec status notification is processed.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class PedelecStatusReceivedEvent extends DomainEvent {
+    private final PedelecStatusDTO pedelecStatus;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onPedelecStatusReceived(this);
+    }
+}
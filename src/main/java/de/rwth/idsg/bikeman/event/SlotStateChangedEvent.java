@@ -0,0 +1,25 @@
+package de.rwth.idsg.bikeman.event;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The operation state of a station slot is changed by an administrator.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class SlotStateChangedEvent extends DomainEvent {
+    private final String stationManufacturerId;
+    private final String slotManufacturerId;
+    private final OperationState state;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onSlotStateChanged(this);
+    }
+}
@@ -0,0 +1,22 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A station sent a boot notification, after which its slots might have changed arbitrarily.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class StationBootedEvent extends DomainEvent {
+    private final String stationManufacturerId;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onStationBooted(this);
+    }
+}
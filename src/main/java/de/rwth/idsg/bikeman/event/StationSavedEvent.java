@@ -0,0 +1,22 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A station is created or edited by an administrator, which might have changed its location.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class StationSavedEvent extends DomainEvent {
+    private final String stationManufacturerId;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onStationSaved(this);
+    }
+}
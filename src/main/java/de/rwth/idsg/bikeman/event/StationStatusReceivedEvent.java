@@ -0,0 +1,23 @@
+package de.rwth.idsg.bikeman.event;
+
+import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A station status notification is processed.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class StationStatusReceivedEvent extends DomainEvent {
+    private final StationStatusDTO stationStatus;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onStationStatusReceived(this);
+    }
+}
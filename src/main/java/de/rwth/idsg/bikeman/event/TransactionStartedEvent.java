@@ -0,0 +1,26 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+/**
+ * A pedelec is taken from a station.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class TransactionStartedEvent extends DomainEvent {
+    private final String stationManufacturerId;
+    private final String slotManufacturerId;
+    private final String pedelecManufacturerId;
+    private final DateTime departure;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onTransactionStarted(this);
+    }
+}
@@ -0,0 +1,28 @@
+package de.rwth.idsg.bikeman.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+/**
+ * A pedelec is returned to a station.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class TransactionStoppedEvent extends DomainEvent {
+    private final String stationManufacturerId;
+    private final String slotManufacturerId;
+    private final String pedelecManufacturerId;
+    private final String ixsiBookingId;
+    private final DateTime startDateTime;
+    private final DateTime endDateTime;
+
+    @Override
+    public void dispatchTo(DomainEventListener listener) {
+        listener.onTransactionStopped(this);
+    }
+}
@@ -0,0 +1,27 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A pedelec that can be taken from a slot.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class AvailablePedelec {
+    private final long pedelecId;
+    private final String pedelecManufacturerId;
+    private final Double soc;
+    private final long stationSlotId;
+    private final String slotManufacturerId;
+    private final Integer slotPosition;
+
+    AvailablePedelec(FleetPedelec pedelec, FleetSlot slot) {
+        this(pedelec.getPedelecId(), pedelec.getManufacturerId(), pedelec.getSoc(),
+                slot.getStationSlotId(), slot.getManufacturerId(), slot.getPosition());
+    }
+}
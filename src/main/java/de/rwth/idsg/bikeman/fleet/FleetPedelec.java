@@ -0,0 +1,43 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The state and the state of charge of a pedelec. Where it is, is known by the slots.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class FleetPedelec {
+    private final long pedelecId;
+    private final String manufacturerId;
+    private final boolean operative;
+    private final Double soc;
+
+    /**
+     * For the JPQL constructor expression
+     */
+    public FleetPedelec(long pedelecId, String manufacturerId, OperationState state, Double soc) {
+        this(pedelecId, manufacturerId, state == OperationState.OPERATIVE, soc);
+    }
+
+    private FleetPedelec(long pedelecId, String manufacturerId, boolean operative, Double soc) {
+        this.pedelecId = pedelecId;
+        this.manufacturerId = manufacturerId;
+        this.operative = operative;
+        this.soc = soc;
+    }
+
+    public FleetPedelec withOperative(boolean operative) {
+        return new FleetPedelec(pedelecId, manufacturerId, operative, soc);
+    }
+
+    public FleetPedelec withSoc(Double soc) {
+        return new FleetPedelec(pedelecId, manufacturerId, operative, soc);
+    }
+}
@@ -0,0 +1,25 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
+
+import java.util.List;
+
+/**
+ * @since 18.10.2016
+ */
+public interface FleetRepository {
+
+    List<FleetSlot> findSlots() throws DatabaseException;
+    List<FleetSlot> findSlots(String stationManufacturerId) throws DatabaseException;
+
+    /**
+     * Only the pedelecs with a charging status, since the others cannot be recommended
+     */
+    List<FleetPedelec> findPedelecs() throws DatabaseException;
+    List<FleetPedelec> findPedelecs(String stationManufacturerId) throws DatabaseException;
+
+    /**
+     * The reservations that are not used and not over yet
+     */
+    List<FleetReservation> findReservations() throws DatabaseException;
+}
@@ -0,0 +1,105 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
+import org.joda.time.LocalDateTime;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+/**
+ * @since 18.10.2016
+ */
+@Repository
+public class FleetRepositoryImpl implements FleetRepository {
+
+    @PersistenceContext private EntityManager em;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FleetSlot> findSlots() throws DatabaseException {
+        try {
+            return em.createQuery(SLOT_QUERY, FleetSlot.class)
+                     .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Failed to find the slots", e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FleetSlot> findSlots(String stationManufacturerId) throws DatabaseException {
+        try {
+            return em.createQuery(SLOT_QUERY + " WHERE s.manufacturerId = :stationManufacturerId", FleetSlot.class)
+                     .setParameter("stationManufacturerId", stationManufacturerId)
+                     .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Failed to find the slots of station " + stationManufacturerId, e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FleetPedelec> findPedelecs() throws DatabaseException {
+        try {
+            return em.createQuery(PEDELEC_QUERY, FleetPedelec.class)
+                     .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Failed to find the pedelecs", e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FleetPedelec> findPedelecs(String stationManufacturerId) throws DatabaseException {
+        final String q = PEDELEC_QUERY + " " +
+                         "JOIN p.stationSlot sl " +
+                         "JOIN sl.station s " +
+                         "WHERE s.manufacturerId = :stationManufacturerId";
+        try {
+            return em.createQuery(q, FleetPedelec.class)
+                     .setParameter("stationManufacturerId", stationManufacturerId)
+                     .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Failed to find the pedelecs in station " + stationManufacturerId, e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FleetReservation> findReservations() throws DatabaseException {
+        try {
+            return em.createQuery(RESERVATION_QUERY, FleetReservation.class)
+                     .setParameter("now", new LocalDateTime())
+                     .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Failed to find the reservations", e);
+        }
+    }
+
+    private static final String SLOT_QUERY =
+            "SELECT new de.rwth.idsg.bikeman.fleet.FleetSlot" +
+            "(s.stationId, s.manufacturerId, sl.stationSlotId, sl.manufacturerId, sl.stationSlotPosition, " +
+            "sl.state, p.manufacturerId) " +
+            "FROM StationSlot sl " +
+            "JOIN sl.station s " +
+            "LEFT JOIN sl.pedelec p";
+
+    private static final String PEDELEC_QUERY =
+            "SELECT new de.rwth.idsg.bikeman.fleet.FleetPedelec" +
+            "(p.pedelecId, p.manufacturerId, p.state, cs.batteryStateOfCharge) " +
+            "FROM Pedelec p " +
+            "JOIN p.chargingStatus cs";
+
+    private static final String RESERVATION_QUERY =
+            "SELECT new de.rwth.idsg.bikeman.fleet.FleetReservation" +
+            "(r.reservationId, b.ixsiBookingId, ca.cardId, p.manufacturerId, r.startDateTime, r.endDateTime) " +
+            "FROM Reservation r " +
+            "LEFT JOIN r.booking b " +
+            "JOIN r.cardAccount ca " +
+            "JOIN r.pedelec p " +
+            "WHERE r.state = de.rwth.idsg.bikeman.domain.ReservationState.CREATED " +
+            "AND r.endDateTime >= :now";
+}
@@ -0,0 +1,50 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDateTime;
+
+/**
+ * A reservation of a pedelec, that is not used yet. The key is the IXSI booking id, since the booking events
+ * refer to it.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class FleetReservation {
+    private final String key;
+    private final String cardId;
+    private final String pedelecManufacturerId;
+    private final long begin; // epoch millis
+    private final long end;   // epoch millis
+
+    /**
+     * For the JPQL constructor expression. A reservation without booking is keyed by its id.
+     */
+    public FleetReservation(long reservationId, String ixsiBookingId, String cardId, String pedelecManufacturerId,
+                            LocalDateTime begin, LocalDateTime end) {
+        this(ixsiBookingId == null ? "reservation-" + reservationId : ixsiBookingId,
+                cardId, pedelecManufacturerId, begin.toDateTime(), end.toDateTime());
+    }
+
+    public FleetReservation(String ixsiBookingId, String cardId, String pedelecManufacturerId,
+                            DateTime begin, DateTime end) {
+        this.key = ixsiBookingId;
+        this.cardId = cardId;
+        this.pedelecManufacturerId = pedelecManufacturerId;
+        this.begin = begin.getMillis();
+        this.end = end.getMillis();
+    }
+
+    public FleetReservation withPeriod(DateTime begin, DateTime end) {
+        return new FleetReservation(key, cardId, pedelecManufacturerId, begin, end);
+    }
+
+    public boolean isActive(long now) {
+        return begin <= now && now <= end;
+    }
+}
@@ -0,0 +1,54 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A slot of a station and the pedelec in it, if any.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class FleetSlot {
+    private final long stationId;
+    private final String stationManufacturerId;
+    private final long stationSlotId;
+    private final String manufacturerId;
+    private final Integer position;
+    private final boolean operative;
+    private final String pedelecManufacturerId;
+
+    /**
+     * For the JPQL constructor expression
+     */
+    public FleetSlot(long stationId, String stationManufacturerId, long stationSlotId, String manufacturerId,
+                     Integer position, OperationState state, String pedelecManufacturerId) {
+        this(stationId, stationManufacturerId, stationSlotId, manufacturerId, position,
+                state == OperationState.OPERATIVE, pedelecManufacturerId);
+    }
+
+    private FleetSlot(long stationId, String stationManufacturerId, long stationSlotId, String manufacturerId,
+                      Integer position, boolean operative, String pedelecManufacturerId) {
+        this.stationId = stationId;
+        this.stationManufacturerId = stationManufacturerId;
+        this.stationSlotId = stationSlotId;
+        this.manufacturerId = manufacturerId;
+        this.position = position;
+        this.operative = operative;
+        this.pedelecManufacturerId = pedelecManufacturerId;
+    }
+
+    public FleetSlot withOperative(boolean operative) {
+        return new FleetSlot(stationId, stationManufacturerId, stationSlotId, manufacturerId, position,
+                operative, pedelecManufacturerId);
+    }
+
+    public FleetSlot withPedelec(String pedelecManufacturerId) {
+        return new FleetSlot(stationId, stationManufacturerId, stationSlotId, manufacturerId, position,
+                operative, pedelecManufacturerId);
+    }
+}
@@ -0,0 +1,368 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable state of the fleet: the slots of the stations with the pedelecs in them, the pedelecs and the
+ * reservations that are not used yet. All queries of one snapshot see the same state.
+ *
+ * An update copies the snapshot. This is fine, since the number of stations, pedelecs and reservations is limited,
+ * and the updates are applied by one thread.
+ *
+ * @since 18.10.2016
+ */
+public final class FleetSnapshot {
+
+    static final FleetSnapshot EMPTY = new FleetSnapshot(
+            Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+    private static final Comparator<AvailablePedelec> BY_SOC_DESC =
+            Comparator.<AvailablePedelec, Double>comparing(AvailablePedelec::getSoc,
+                                                           Comparator.nullsFirst(Comparator.naturalOrder()))
+                      .reversed()
+                      .thenComparing(AvailablePedelec::getPedelecManufacturerId);
+
+    /**
+     * Key   (String)                 = Manufacturer id of the station
+     * Value (Map<String, FleetSlot>) = Slots of the station by their manufacturer id
+     */
+    private final Map<String, Map<String, FleetSlot>> stations = new HashMap<>();
+
+    /**
+     * Key   (Long)   = Id of the station
+     * Value (String) = Manufacturer id of the station
+     */
+    private final Map<Long, String> stationIds = new HashMap<>();
+
+    /**
+     * Key   (String)    = Manufacturer id of the pedelec
+     * Value (FleetSlot) = Slot, the pedelec is in
+     */
+    private final Map<String, FleetSlot> slotOfPedelec = new HashMap<>();
+
+    private final Map<String, FleetPedelec> pedelecs = new HashMap<>();
+    private final Map<String, FleetReservation> reservations = new HashMap<>();
+
+    FleetSnapshot(Collection<FleetSlot> slots, Collection<FleetPedelec> pedelecs,
+                  Collection<FleetReservation> reservations) {
+        for (FleetSlot slot : slots) {
+            stations.computeIfAbsent(slot.getStationManufacturerId(), k -> new HashMap<>())
+                    .put(slot.getManufacturerId(), slot);
+            stationIds.put(slot.getStationId(), slot.getStationManufacturerId());
+            if (slot.getPedelecManufacturerId() != null) {
+                slotOfPedelec.put(slot.getPedelecManufacturerId(), slot);
+            }
+        }
+        for (FleetPedelec pedelec : pedelecs) {
+            this.pedelecs.put(pedelec.getManufacturerId(), pedelec);
+        }
+        for (FleetReservation reservation : reservations) {
+            this.reservations.put(reservation.getKey(), reservation);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Queries
+    // -------------------------------------------------------------------------
+
+    /**
+     * The operative pedelecs in the operative slots of the station, which are not reserved now. The fullest first.
+     */
+    public List<AvailablePedelec> findAvailablePedelecs(String stationManufacturerId, int limit) {
+        Map<String, FleetSlot> slots = stations.get(stationManufacturerId);
+        if (slots == null) {
+            return Collections.emptyList();
+        }
+
+        long now = DateTime.now().getMillis();
+        Set<String> reserved = reservedPedelecs(now);
+
+        List<AvailablePedelec> available = new ArrayList<>();
+        for (FleetSlot slot : slots.values()) {
+            FleetPedelec pedelec = takeable(slot);
+            if (pedelec != null && !reserved.contains(pedelec.getManufacturerId())) {
+                available.add(new AvailablePedelec(pedelec, slot));
+            }
+        }
+
+        available.sort(BY_SOC_DESC);
+        return available.size() > limit ? new ArrayList<>(available.subList(0, limit)) : available;
+    }
+
+    public List<AvailablePedelec> findAvailablePedelecs(long stationId, int limit) {
+        String stationManufacturerId = stationIds.get(stationId);
+        if (stationManufacturerId == null) {
+            return Collections.emptyList();
+        }
+        return findAvailablePedelecs(stationManufacturerId, limit);
+    }
+
+    /**
+     * The operative pedelecs in the operative slots of the station, which are reserved for the card now
+     */
+    public List<AvailablePedelec> findReservedPedelecs(String stationManufacturerId, String cardId, int limit) {
+        long now = DateTime.now().getMillis();
+
+        List<AvailablePedelec> reserved = new ArrayList<>();
+        for (FleetReservation reservation : reservations.values()) {
+            if (reserved.size() >= limit) {
+                break;
+            }
+            if (!reservation.getCardId().equals(cardId) || !reservation.isActive(now)) {
+                continue;
+            }
+
+            FleetSlot slot = slotOfPedelec.get(reservation.getPedelecManufacturerId());
+            if (slot == null || !slot.getStationManufacturerId().equals(stationManufacturerId)) {
+                continue;
+            }
+
+            FleetPedelec pedelec = takeable(slot);
+            if (pedelec != null) {
+                reserved.add(new AvailablePedelec(pedelec, slot));
+            }
+        }
+        return reserved;
+    }
+
+    public FleetSlot getSlot(String stationManufacturerId, String slotManufacturerId) {
+        Map<String, FleetSlot> slots = stations.get(stationManufacturerId);
+        return slots == null ? null : slots.get(slotManufacturerId);
+    }
+
+    public FleetPedelec getPedelec(String pedelecManufacturerId) {
+        return pedelecs.get(pedelecManufacturerId);
+    }
+
+    public FleetReservation getReservation(String key) {
+        return reservations.get(key);
+    }
+
+    public int getStationCount() {
+        return stations.size();
+    }
+
+    public int getPedelecCount() {
+        return pedelecs.size();
+    }
+
+    public int getReservationCount() {
+        return reservations.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Updates
+    // -------------------------------------------------------------------------
+
+    /**
+     * Replaces the slots of the station. The pedelecs in them are removed from the slots of other stations.
+     */
+    FleetSnapshot withStation(String stationManufacturerId, Collection<FleetSlot> slots,
+                              Collection<FleetPedelec> pedelecsOfStation) {
+        Set<String> placed = new HashSet<>();
+        for (FleetSlot slot : slots) {
+            if (slot.getPedelecManufacturerId() != null) {
+                placed.add(slot.getPedelecManufacturerId());
+            }
+        }
+
+        List<FleetSlot> newSlots = new ArrayList<>(slots);
+        for (FleetSlot slot : allSlots()) {
+            if (slot.getStationManufacturerId().equals(stationManufacturerId)) {
+                continue;
+            }
+            newSlots.add(placed.contains(slot.getPedelecManufacturerId()) ? slot.withPedelec(null) : slot);
+        }
+
+        Map<String, FleetPedelec> newPedelecs = new HashMap<>(pedelecs);
+        for (FleetPedelec pedelec : pedelecsOfStation) {
+            newPedelecs.put(pedelec.getManufacturerId(), pedelec);
+        }
+
+        return new FleetSnapshot(newSlots, newPedelecs.values(), reservations.values());
+    }
+
+    FleetSnapshot withSlotState(String stationManufacturerId, String slotManufacturerId, boolean operative) {
+        FleetSlot slot = getSlot(stationManufacturerId, slotManufacturerId);
+        if (slot == null || slot.isOperative() == operative) {
+            return this;
+        }
+        return withSlots(Collections.singletonList(slot.withOperative(operative)));
+    }
+
+    /**
+     * @param pedelecManufacturerId null, if the pedelec is taken from the slot
+     */
+    FleetSnapshot withPedelecInSlot(String stationManufacturerId, String slotManufacturerId,
+                                    String pedelecManufacturerId) {
+        FleetSlot slot = getSlot(stationManufacturerId, slotManufacturerId);
+        if (slot == null) {
+            return this;
+        }
+
+        List<FleetSlot> changed = new ArrayList<>(2);
+        changed.add(slot.withPedelec(pedelecManufacturerId));
+
+        FleetSlot previous = pedelecManufacturerId == null ? null : slotOfPedelec.get(pedelecManufacturerId);
+        if (previous != null && previous != slot) {
+            changed.add(previous.withPedelec(null));
+        }
+        return withSlots(changed);
+    }
+
+    FleetSnapshot withPedelecState(String pedelecManufacturerId, boolean operative) {
+        FleetPedelec pedelec = pedelecs.get(pedelecManufacturerId);
+        if (pedelec == null || pedelec.isOperative() == operative) {
+            return this;
+        }
+        return withPedelecs(Collections.singletonList(pedelec.withOperative(operative)));
+    }
+
+    /**
+     * @param socs Key = Manufacturer id of the pedelec, Value = State of charge
+     */
+    FleetSnapshot withSocs(Map<String, Double> socs) {
+        List<FleetPedelec> changed = new ArrayList<>(socs.size());
+        for (Map.Entry<String, Double> e : socs.entrySet()) {
+            FleetPedelec pedelec = pedelecs.get(e.getKey());
+            if (pedelec != null) {
+                changed.add(pedelec.withSoc(e.getValue()));
+            }
+        }
+        return changed.isEmpty() ? this : withPedelecs(changed);
+    }
+
+    FleetSnapshot withReservation(FleetReservation reservation) {
+        Map<String, FleetReservation> newReservations = new HashMap<>(reservations);
+        newReservations.put(reservation.getKey(), reservation);
+        return new FleetSnapshot(allSlots(), pedelecs.values(), newReservations.values());
+    }
+
+    FleetSnapshot withoutReservation(String key) {
+        if (!reservations.containsKey(key)) {
+            return this;
+        }
+
+        Map<String, FleetReservation> newReservations = new HashMap<>(reservations);
+        newReservations.remove(key);
+        return new FleetSnapshot(allSlots(), pedelecs.values(), newReservations.values());
+    }
+
+    /**
+     * The reservation is used, when the pedelec is taken
+     */
+    FleetSnapshot withoutActiveReservationsOf(String pedelecManufacturerId, long time) {
+        List<FleetReservation> newReservations = new ArrayList<>(reservations.size());
+        for (FleetReservation reservation : reservations.values()) {
+            if (!reservation.getPedelecManufacturerId().equals(pedelecManufacturerId) || !reservation.isActive(time)) {
+                newReservations.add(reservation);
+            }
+        }
+
+        if (newReservations.size() == reservations.size()) {
+            return this;
+        }
+        return new FleetSnapshot(allSlots(), pedelecs.values(), newReservations);
+    }
+
+    FleetSnapshot withReservations(Collection<FleetReservation> newReservations) {
+        return new FleetSnapshot(allSlots(), pedelecs.values(), newReservations);
+    }
+
+    /**
+     * @return the number of slots, pedelecs and reservations that differ
+     */
+    int countDifferences(FleetSnapshot other) {
+        Set<String> stationKeys = new HashSet<>(stations.keySet());
+        stationKeys.addAll(other.stations.keySet());
+
+        int count = 0;
+        for (String key : stationKeys) {
+            count += differences(stations.getOrDefault(key, Collections.emptyMap()),
+                    other.stations.getOrDefault(key, Collections.emptyMap()));
+        }
+        return count + differences(pedelecs, other.pedelecs) + differences(reservations, other.reservations);
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return the pedelec in the slot, if both are operative
+     */
+    private FleetPedelec takeable(FleetSlot slot) {
+        if (!slot.isOperative() || slot.getPedelecManufacturerId() == null) {
+            return null;
+        }
+
+        FleetPedelec pedelec = pedelecs.get(slot.getPedelecManufacturerId());
+        return pedelec != null && pedelec.isOperative() ? pedelec : null;
+    }
+
+    private Set<String> reservedPedelecs(long now) {
+        Set<String> reserved = new HashSet<>();
+        for (FleetReservation reservation : reservations.values()) {
+            if (reservation.isActive(now)) {
+                reserved.add(reservation.getPedelecManufacturerId());
+            }
+        }
+        return reserved;
+    }
+
+    private List<FleetSlot> allSlots() {
+        List<FleetSlot> slots = new ArrayList<>();
+        for (Map<String, FleetSlot> slotsOfStation : stations.values()) {
+            slots.addAll(slotsOfStation.values());
+        }
+        return slots;
+    }
+
+    private FleetSnapshot withSlots(Collection<FleetSlot> changed) {
+        Map<String, Map<String, FleetSlot>> newStations = new HashMap<>(stations);
+        for (FleetSlot slot : changed) {
+            Map<String, FleetSlot> slots = new HashMap<>(newStations.get(slot.getStationManufacturerId()));
+            slots.put(slot.getManufacturerId(), slot);
+            newStations.put(slot.getStationManufacturerId(), slots);
+        }
+
+        List<FleetSlot> newSlots = new ArrayList<>();
+        for (Map<String, FleetSlot> slots : newStations.values()) {
+            newSlots.addAll(slots.values());
+        }
+        return new FleetSnapshot(newSlots, pedelecs.values(), reservations.values());
+    }
+
+    private FleetSnapshot withPedelecs(Collection<FleetPedelec> changed) {
+        Map<String, FleetPedelec> newPedelecs = new HashMap<>(pedelecs);
+        for (FleetPedelec pedelec : changed) {
+            newPedelecs.put(pedelec.getManufacturerId(), pedelec);
+        }
+        return new FleetSnapshot(allSlots(), newPedelecs.values(), reservations.values());
+    }
+
+    private static <K, V> int differences(Map<K, V> a, Map<K, V> b) {
+        int count = 0;
+        for (Map.Entry<K, V> e : a.entrySet()) {
+            if (!e.getValue().equals(b.get(e.getKey()))) {
+                count++;
+            }
+        }
+        for (K key : b.keySet()) {
+            if (!a.containsKey(key)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,503 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.event.BookingCancelledEvent;
+import de.rwth.idsg.bikeman.event.BookingChangedEvent;
+import de.rwth.idsg.bikeman.event.BookingPlacedEvent;
+import de.rwth.idsg.bikeman.event.ChargingStatusReceivedEvent;
+import de.rwth.idsg.bikeman.event.DomainEvent;
+import de.rwth.idsg.bikeman.event.DomainEventListener;
+import de.rwth.idsg.bikeman.event.PedelecStatusReceivedEvent;
+import de.rwth.idsg.bikeman.event.SlotStateChangedEvent;
+import de.rwth.idsg.bikeman.event.StationBootedEvent;
+import de.rwth.idsg.bikeman.event.StationSavedEvent;
+import de.rwth.idsg.bikeman.event.StationStateChangedEvent;
+import de.rwth.idsg.bikeman.event.StationStatusReceivedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStartedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStoppedEvent;
+import de.rwth.idsg.bikeman.psinterface.Utils;
+import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import de.rwth.idsg.bikeman.psinterface.writebehind.StatusWriteBehind;
+import de.rwth.idsg.bikeman.telemetry.BatterySample;
+import de.rwth.idsg.bikeman.telemetry.BatteryTelemetryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory model of the fleet (stations, slots, pedelecs and reservations), so that the available and reserved
+ * pedelecs of a station are found without SQL. The queries are answered by an immutable {@link FleetSnapshot}.
+ *
+ * The model is built on first use (or right after startup, whichever comes first) and updated with the domain
+ * events. The reservations and rentals decide which pedelecs a station may hand out, therefore they are not taken
+ * from the asynchronous domain event bus, which may drop events. The services apply them right after their commit
+ * with {@link #applyAfterCommit(DomainEvent)}. The queries of a reload run on the executor, and not on the thread
+ * of the event. It is reconciled with the DB periodically, which also covers changes that we do not get events for
+ * (e.g. admin edits of the pedelecs). Since the charging status is written to the DB delayed (see
+ * {@link BatteryTelemetryStore}), and the states only after the commit of the notification (see
+ * {@link StatusWriteBehind}), their latest values are laid over the DB state.
+ *
+ * The changes that are applied while the DB is read for a reconciliation or a reload are recorded, and applied
+ * to the result again. Therefore neither reverts newer changes. If the domain event bus drops events, or a
+ * reservation or rental cannot be applied, a reconciliation is started right away.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class FleetState implements DomainEventListener, EnvironmentAware {
+
+    private static final String ENV_FLEET = "fleet.";
+    private static final String PROP_RECONCILE_INTERVAL = "reconcileIntervalInSeconds";
+
+    @Autowired private ScheduledExecutorService executorService;
+    @Autowired private FleetRepository fleetRepository;
+    @Autowired private StatusWriteBehind statusWriteBehind;
+    @Autowired private BatteryTelemetryStore batteryTelemetryStore;
+
+    private volatile FleetSnapshot snapshot;
+
+    /**
+     * One list of changes per reconciliation or reload, that reads the DB at the moment. Compared by identity, and
+     * guarded by this.
+     */
+    private final Set<List<UnaryOperator<FleetSnapshot>>> recordings =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final DomainEventListener rentalListener = new RentalListener();
+
+    /**
+     * Serializes the periodic and the requested reconciliations
+     */
+    private final Object reconcileLock = new Object();
+    private final AtomicBoolean reconcileRequested = new AtomicBoolean(false);
+
+    private final AtomicLong correctionCount = new AtomicLong(0);
+
+    private RelaxedPropertyResolver propertyResolver;
+    private ScheduledFuture<?> reconcileFuture;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_FLEET);
+    }
+
+    /**
+     * The first reconciliation builds the model
+     */
+    @PostConstruct
+    public void init() {
+        long interval = propertyResolver.getProperty(PROP_RECONCILE_INTERVAL, Long.class, 300L);
+        reconcileFuture = executorService.scheduleWithFixedDelay(this::reconcile, 0, interval, TimeUnit.SECONDS);
+        log.info("Reconciling the fleet state every {} seconds", interval);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (reconcileFuture != null) {
+            reconcileFuture.cancel(false);
+        }
+    }
+
+    /**
+     * The queries of one snapshot are consistent with each other. The snapshot is not updated, so it should not be
+     * kept.
+     */
+    public FleetSnapshot getSnapshot() {
+        FleetSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                    log.info("Built the fleet state with {} station(s) and {} pedelec(s)",
+                            current.getStationCount(), current.getPedelecCount());
+                }
+            }
+        }
+        return current;
+    }
+
+    // -------------------------------------------------------------------------
+    // Reservations and rentals
+    // -------------------------------------------------------------------------
+
+    /**
+     * Applies the booking or transaction event right after the commit of the caller, on its thread. Outside of a
+     * transaction, it is applied right away. The event should be published to the domain event bus as well, for the
+     * other listeners.
+     */
+    public void applyAfterCommit(DomainEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyNow(event);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                applyNow(event);
+            }
+        });
+    }
+
+    // -------------------------------------------------------------------------
+    // Domain events
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void onStationStatusReceived(StationStatusReceivedEvent event) {
+        String stationManufacturerId = event.getStationStatus().getStationManufacturerId();
+        List<SlotDTO.StationStatus> slots = event.getStationStatus().getSlots();
+
+        if (Utils.isEmpty(slots)) {
+            return;
+        }
+
+        apply(s -> {
+            for (SlotDTO.StationStatus slot : slots) {
+                if (slot.getSlotState() != null) {
+                    s = s.withSlotState(stationManufacturerId, slot.getSlotManufacturerId(), isOperative(slot));
+                }
+            }
+            return s;
+        });
+    }
+
+    @Override
+    public void onSlotStateChanged(SlotStateChangedEvent event) {
+        apply(s -> s.withSlotState(event.getStationManufacturerId(), event.getSlotManufacturerId(),
+                event.getState() == OperationState.OPERATIVE));
+    }
+
+    @Override
+    public void onPedelecStatusReceived(PedelecStatusReceivedEvent event) {
+        PedelecStatusDTO dto = event.getPedelecStatus();
+        if (dto.getPedelecState() != null) {
+            apply(s -> s.withPedelecState(dto.getPedelecManufacturerId(), isOperative(dto)));
+        }
+    }
+
+    @Override
+    public void onChargingStatusReceived(ChargingStatusReceivedEvent event) {
+        Map<String, Double> socs = new HashMap<>();
+        for (ChargingStatusDTO dto : event.getChargingStatus()) {
+            if (dto.getBattery() != null && dto.getBattery().getSoc() != null) {
+                socs.put(dto.getPedelecManufacturerId(), dto.getBattery().getSoc());
+            }
+        }
+
+        if (!socs.isEmpty()) {
+            apply(s -> s.withSocs(socs));
+        }
+    }
+
+    /**
+     * Admin edits might also change the slots
+     */
+    @Override
+    public void onStationSaved(StationSavedEvent event) {
+        scheduleReloadStation(event.getStationManufacturerId());
+    }
+
+    @Override
+    public void onStationStateChanged(StationStateChangedEvent event) {
+        scheduleReloadStation(event.getStationManufacturerId());
+    }
+
+    @Override
+    public void onStationBooted(StationBootedEvent event) {
+        scheduleReloadStation(event.getStationManufacturerId());
+    }
+
+    /**
+     * Some events were missed, so the next reconciliation should not wait for the interval
+     */
+    @Override
+    public void onEventsDropped() {
+        if (reconcileRequested.compareAndSet(false, true)) {
+            executorService.execute(() -> {
+                reconcileRequested.set(false);
+                reconcile();
+            });
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    public int getStationCount() {
+        FleetSnapshot current = snapshot;
+        return current == null ? 0 : current.getStationCount();
+    }
+
+    public int getPedelecCount() {
+        FleetSnapshot current = snapshot;
+        return current == null ? 0 : current.getPedelecCount();
+    }
+
+    public int getReservationCount() {
+        FleetSnapshot current = snapshot;
+        return current == null ? 0 : current.getReservationCount();
+    }
+
+    /**
+     * Number of slots, pedelecs and reservations, that differed from the DB during the reconciliations
+     */
+    public long getCorrectionCount() {
+        return correctionCount.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * If the model is not built yet, it will contain the change anyway
+     */
+    private synchronized void apply(UnaryOperator<FleetSnapshot> change) {
+        if (snapshot != null) {
+            snapshot = change.apply(snapshot);
+        }
+        for (List<UnaryOperator<FleetSnapshot>> recorded : recordings) {
+            recorded.add(change);
+        }
+    }
+
+    /**
+     * The change must not get lost, since nothing but the reconciliation would correct the model
+     */
+    private void applyNow(DomainEvent event) {
+        try {
+            event.dispatchTo(rentalListener);
+        } catch (Exception e) {
+            log.error("Failed to apply {} to the fleet state", event, e);
+            onEventsDropped();
+        }
+    }
+
+    private void scheduleReloadStation(String stationManufacturerId) {
+        executorService.execute(() -> reload(() -> {
+            List<FleetSlot> slots = overlaySlots(fleetRepository.findSlots(stationManufacturerId));
+            List<FleetPedelec> pedelecs = overlayPedelecs(fleetRepository.findPedelecs(stationManufacturerId));
+            return s -> s.withStation(stationManufacturerId, slots, pedelecs);
+        }));
+    }
+
+    private void scheduleReloadReservations() {
+        executorService.execute(() -> reload(() -> {
+            List<FleetReservation> reservations = fleetRepository.findReservations();
+            return s -> s.withReservations(reservations);
+        }));
+    }
+
+    /**
+     * Reads the DB, and applies the result with the changes that were applied in the meantime
+     */
+    private void reload(Supplier<UnaryOperator<FleetSnapshot>> reader) {
+        List<UnaryOperator<FleetSnapshot>> recorded = new ArrayList<>();
+        synchronized (this) {
+            recordings.add(recorded);
+        }
+
+        UnaryOperator<FleetSnapshot> reloaded;
+        try {
+            reloaded = reader.get();
+        } catch (Exception e) {
+            synchronized (this) {
+                recordings.remove(recorded);
+            }
+            log.error("Failed to reload the fleet state", e);
+            onEventsDropped();
+            return;
+        }
+
+        // The lock is held, so that no change is applied between the removal and the application
+        synchronized (this) {
+            recordings.remove(recorded);
+            apply(s -> {
+                s = reloaded.apply(s);
+                for (UnaryOperator<FleetSnapshot> change : recorded) {
+                    s = change.apply(s);
+                }
+                return s;
+            });
+        }
+    }
+
+    private void reconcile() {
+        synchronized (reconcileLock) {
+            reconcileInternal();
+        }
+    }
+
+    private void reconcileInternal() {
+        try {
+            List<UnaryOperator<FleetSnapshot>> recorded = new ArrayList<>();
+            synchronized (this) {
+                if (snapshot == null) {
+                    getSnapshot();
+                    return;
+                }
+                recordings.add(recorded);
+            }
+
+            FleetSnapshot fresh;
+            try {
+                fresh = load();
+            } catch (Exception e) {
+                synchronized (this) {
+                    recordings.remove(recorded);
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                recordings.remove(recorded);
+                for (UnaryOperator<FleetSnapshot> change : recorded) {
+                    fresh = change.apply(fresh);
+                }
+
+                int differences = snapshot.countDifferences(fresh);
+                if (differences > 0) {
+                    correctionCount.addAndGet(differences);
+                    log.debug("Fleet state corrected in {} slot(s), pedelec(s) or reservation(s)", differences);
+                }
+                snapshot = fresh;
+            }
+        } catch (Exception e) {
+            // Do not let the exception cancel the periodic reconciliation
+            log.error("Failed to reconcile the fleet state", e);
+        }
+    }
+
+    private FleetSnapshot load() {
+        return new FleetSnapshot(
+                overlaySlots(fleetRepository.findSlots()),
+                overlayPedelecs(fleetRepository.findPedelecs()),
+                fleetRepository.findReservations());
+    }
+
+    /**
+     * The status notifications that are not written to the DB yet are newer
+     */
+    private List<FleetSlot> overlaySlots(List<FleetSlot> slots) {
+        List<FleetSlot> result = new ArrayList<>(slots.size());
+        for (FleetSlot slot : slots) {
+            SlotDTO.StationStatus latest =
+                    statusWriteBehind.getSlotStatus(slot.getStationManufacturerId(), slot.getManufacturerId());
+
+            if (latest != null && latest.getSlotState() != null) {
+                slot = slot.withOperative(isOperative(latest));
+            }
+            result.add(slot);
+        }
+        return result;
+    }
+
+    private List<FleetPedelec> overlayPedelecs(List<FleetPedelec> pedelecs) {
+        List<FleetPedelec> result = new ArrayList<>(pedelecs.size());
+        for (FleetPedelec pedelec : pedelecs) {
+            PedelecStatusDTO status = statusWriteBehind.getPedelecStatus(pedelec.getManufacturerId());
+            if (status != null && status.getPedelecState() != null) {
+                pedelec = pedelec.withOperative(isOperative(status));
+            }
+
+            BatterySample charging = batteryTelemetryStore.getLatest(pedelec.getManufacturerId());
+            if (charging != null && charging.getSoc() != null) {
+                pedelec = pedelec.withSoc(charging.getSoc());
+            }
+            result.add(pedelec);
+        }
+        return result;
+    }
+
+    private static boolean isOperative(SlotDTO.StationStatus slot) {
+        return slot.getSlotState() == de.rwth.idsg.bikeman.psinterface.dto.OperationState.OPERATIVE;
+    }
+
+    private static boolean isOperative(PedelecStatusDTO pedelec) {
+        return pedelec.getPedelecState() == de.rwth.idsg.bikeman.psinterface.dto.OperationState.OPERATIVE;
+    }
+
+    /**
+     * The reservations and rentals, see {@link #applyAfterCommit(DomainEvent)}
+     */
+    private class RentalListener implements DomainEventListener {
+
+        @Override
+        public void onTransactionStarted(TransactionStartedEvent event) {
+            long departure = event.getDeparture().getMillis();
+            apply(s -> s.withPedelecInSlot(event.getStationManufacturerId(), event.getSlotManufacturerId(), null)
+                        .withoutActiveReservationsOf(event.getPedelecManufacturerId(), departure));
+        }
+
+        @Override
+        public void onTransactionStopped(TransactionStoppedEvent event) {
+            FleetSnapshot current = snapshot;
+            if (current != null && current.getPedelec(event.getPedelecManufacturerId()) == null) {
+                scheduleReloadStation(event.getStationManufacturerId());
+                return;
+            }
+
+            apply(s -> s.withPedelecInSlot(event.getStationManufacturerId(), event.getSlotManufacturerId(),
+                    event.getPedelecManufacturerId()));
+        }
+
+        @Override
+        public void onBookingPlaced(BookingPlacedEvent event) {
+            FleetReservation reservation = new FleetReservation(event.getIxsiBookingId(), event.getCardId(),
+                    event.getPedelecManufacturerId(), event.getBegin(), event.getEnd());
+
+            apply(s -> s.withReservation(reservation));
+        }
+
+        @Override
+        public void onBookingChanged(BookingChangedEvent event) {
+            FleetSnapshot current = snapshot;
+            if (current != null && current.getReservation(event.getIxsiBookingId()) == null) {
+                scheduleReloadReservations();
+                return;
+            }
+
+            apply(s -> {
+                FleetReservation reservation = s.getReservation(event.getIxsiBookingId());
+                if (reservation == null) {
+                    return s;
+                }
+                return s.withReservation(reservation.withPeriod(event.getNewBegin(), event.getNewEnd()));
+            });
+        }
+
+        @Override
+        public void onBookingCancelled(BookingCancelledEvent event) {
+            apply(s -> s.withoutReservation(event.getIxsiBookingId()));
+        }
+    }
+}
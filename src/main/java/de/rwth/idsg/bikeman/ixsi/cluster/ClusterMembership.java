@@ -0,0 +1,164 @@
+package de.rwth.idsg.bikeman.ixsi.cluster;
+
+import de.rwth.idsg.bikeman.ixsi.repository.ClusterRepository;
+import de.rwth.idsg.bikeman.ixsi.store.WebSocketSessionStore;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several BikeMan instances can share the IXSI state via the database (ixsi.cluster.enabled). Every node
+ * announces itself with a periodic heartbeat and registers the client systems that have a session with it,
+ * so that pushes for these systems can be routed to it (see {@link ClusterPushRouter}).
+ *
+ * A node without heartbeat within the node timeout is considered dead. Its sessions and pending messages are
+ * removed by the next heartbeat of any other node, and so are the subscriptions of the systems which are not
+ * connected to any node anymore.
+ *
+ * The shared state is accessed with native queries in PostgreSQL syntax, therefore the cluster mode refuses to
+ * start on any other database (e.g. the H2 of the tests).
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class ClusterMembership implements EnvironmentAware {
+
+    private static final String ENV_CLUSTER = "ixsi.cluster.";
+    private static final String PROP_ENABLED = "enabled";
+    private static final String PROP_NODE_ID = "nodeId";
+    private static final String PROP_HEARTBEAT_INTERVAL = "heartbeatIntervalInSeconds";
+    private static final String PROP_NODE_TIMEOUT = "nodeTimeoutInSeconds";
+
+    @Autowired private ScheduledExecutorService executorService;
+    @Autowired private ClusterRepository clusterRepository;
+    @Autowired private WebSocketSessionStore webSocketSessionStore;
+    @Autowired private DataSource dataSource;
+
+    private RelaxedPropertyResolver propertyResolver;
+    private ScheduledFuture<?> heartbeatFuture;
+
+    @Getter private boolean enabled;
+    @Getter private String nodeId;
+    @Getter private int nodeTimeoutInSeconds;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_CLUSTER);
+    }
+
+    @PostConstruct
+    public void init() {
+        enabled = propertyResolver.getProperty(PROP_ENABLED, Boolean.class, false);
+        if (!enabled) {
+            log.info("Cluster mode is disabled. The IXSI state is kept in memory");
+            return;
+        }
+
+        checkDatabase();
+
+        nodeId = propertyResolver.getProperty(PROP_NODE_ID, ManagementFactory.getRuntimeMXBean().getName());
+        nodeTimeoutInSeconds = propertyResolver.getProperty(PROP_NODE_TIMEOUT, Integer.class, 30);
+        int interval = propertyResolver.getProperty(PROP_HEARTBEAT_INTERVAL, Integer.class, 5);
+
+        // Before accepting any session
+        clusterRepository.heartbeat(nodeId);
+
+        heartbeatFuture = executorService.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.SECONDS);
+        log.info("Joined the cluster as node '{}' with a heartbeat every {} seconds", nodeId, interval);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (!enabled) {
+            return;
+        }
+
+        if (heartbeatFuture != null) {
+            heartbeatFuture.cancel(false);
+        }
+
+        try {
+            clusterRepository.removeNode(nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to leave the cluster. The other nodes will remove '{}' after the timeout", nodeId, e);
+        }
+    }
+
+    public void sessionOpened(String systemId) {
+        if (enabled) {
+            clusterRepository.addSession(systemId, nodeId);
+        }
+    }
+
+    public void sessionClosed(String systemId) {
+        if (enabled) {
+            clusterRepository.removeSession(systemId, nodeId);
+        }
+    }
+
+    /**
+     * @return true, if the system is connected to another live node as well
+     */
+    public boolean isConnectedElsewhere(String systemId) {
+        return enabled && clusterRepository.hasSessionOnOtherNode(systemId, nodeId, nodeTimeoutInSeconds);
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void checkDatabase() {
+        String product;
+        try (Connection connection = dataSource.getConnection()) {
+            product = connection.getMetaData().getDatabaseProductName();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to determine the database of the cluster mode", e);
+        }
+
+        if (!"PostgreSQL".equalsIgnoreCase(product)) {
+            throw new IllegalStateException("The cluster mode requires PostgreSQL, but the database is " + product
+                    + ". Disable it with ixsi.cluster.enabled: false");
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            if (!clusterRepository.heartbeat(nodeId)) {
+                // We were considered dead (e.g. after a long GC pause) and our sessions were removed
+                log.warn("Node '{}' rejoined the cluster. Registering its sessions again. "
+                        + "Subscriptions made in the meantime might have been removed", nodeId);
+                for (String systemId : webSocketSessionStore.getLookupTable().keySet()) {
+                    clusterRepository.addSession(systemId, nodeId);
+                }
+            }
+
+            int deadNodes = clusterRepository.removeDeadNodes(nodeTimeoutInSeconds);
+            if (deadNodes > 0) {
+                log.warn("Removed {} dead node(s) from the cluster", deadNodes);
+            }
+
+            int subscriptions = clusterRepository.removeStaleSubscriptions();
+            if (subscriptions > 0) {
+                log.debug("Removed {} expired or orphaned subscription(s)", subscriptions);
+            }
+        } catch (Exception e) {
+            // Do not let the exception cancel the periodic heartbeat
+            log.error("Failed to send the heartbeat of node '{}'", nodeId, e);
+        }
+    }
+}
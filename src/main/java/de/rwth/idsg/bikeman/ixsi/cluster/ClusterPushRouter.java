@@ -0,0 +1,125 @@
+package de.rwth.idsg.bikeman.ixsi.cluster;
+
+import de.rwth.idsg.bikeman.ixsi.dto.OutboxMessageDTO;
+import de.rwth.idsg.bikeman.ixsi.endpoint.Producer;
+import de.rwth.idsg.bikeman.ixsi.repository.ClusterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes the push messages for systems that are not connected to this node to a node they are connected to.
+ *
+ * The channel between the nodes is an outbox table in the database: The sending node inserts the marshalled
+ * message for the receiving node, which polls its outbox and sends the messages over its local sessions.
+ * A routed message is therefore delayed by up to one poll interval.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class ClusterPushRouter implements EnvironmentAware {
+
+    private static final String ENV_CLUSTER = "ixsi.cluster.";
+    private static final String PROP_POLL_INTERVAL = "pollIntervalInMillis";
+
+    private static final int POLL_BATCH_SIZE = 500;
+
+    @Autowired private ScheduledExecutorService executorService;
+    @Autowired private ClusterMembership clusterMembership;
+    @Autowired private ClusterRepository clusterRepository;
+    @Autowired private Producer producer;
+
+    private final AtomicLong routedCount = new AtomicLong(0);
+    private final AtomicLong unroutableCount = new AtomicLong(0);
+    private final AtomicLong receivedCount = new AtomicLong(0);
+
+    private RelaxedPropertyResolver propertyResolver;
+    private ScheduledFuture<?> pollFuture;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_CLUSTER);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!clusterMembership.isEnabled()) {
+            return;
+        }
+
+        long interval = propertyResolver.getProperty(PROP_POLL_INTERVAL, Long.class, 200L);
+        pollFuture = executorService.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Polling the push outbox every {} ms", interval);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (pollFuture != null) {
+            pollFuture.cancel(false);
+        }
+    }
+
+    public boolean isEnabled() {
+        return clusterMembership.isEnabled();
+    }
+
+    /**
+     * @return false, if the system is not connected to any other node
+     */
+    public boolean route(String systemId, String payload, String coalescingKey) {
+        boolean routed = clusterRepository.route(systemId, clusterMembership.getNodeId(),
+                clusterMembership.getNodeTimeoutInSeconds(), payload, coalescingKey);
+
+        if (routed) {
+            routedCount.incrementAndGet();
+        } else {
+            unroutableCount.incrementAndGet();
+        }
+        return routed;
+    }
+
+    public long getRoutedCount() {
+        return routedCount.get();
+    }
+
+    public long getUnroutableCount() {
+        return unroutableCount.get();
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void poll() {
+        try {
+            List<OutboxMessageDTO> messages;
+            do {
+                messages = clusterRepository.takeFromOutbox(clusterMembership.getNodeId(), POLL_BATCH_SIZE);
+                for (OutboxMessageDTO message : messages) {
+                    producer.deliver(message.getSystemId(), message.getPayload(), message.getCoalescingKey());
+                }
+                receivedCount.addAndGet(messages.size());
+            } while (messages.size() == POLL_BATCH_SIZE);
+
+        } catch (Exception e) {
+            // Do not let the exception cancel the periodic poll
+            log.error("Failed to poll the push outbox", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package de.rwth.idsg.bikeman.ixsi.cluster;
+
+import de.rwth.idsg.bikeman.ixsi.repository.ClusterRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Subscriptions of all nodes in the database. In cluster mode, the subscription stores delegate to this
+ * registry instead of keeping the subscriptions in memory, so that a push triggered on one node reaches
+ * the systems that subscribed via another node.
+ *
+ * The items are identified by the (string) keys of the stores.
+ *
+ * @since 18.10.2016
+ */
+@Component
+public class ClusterSubscriptionRegistry {
+
+    @Autowired private ClusterMembership clusterMembership;
+    @Autowired private ClusterRepository clusterRepository;
+
+    public boolean isEnabled() {
+        return clusterMembership.isEnabled();
+    }
+
+    /**
+     * @param expireIntervalInMinutes null, if the subscription does not expire
+     */
+    public void subscribe(String storeName, String systemId, List<String> itemKeys, Integer expireIntervalInMinutes) {
+        clusterRepository.subscribe(storeName, systemId, itemKeys, expireIntervalInMinutes);
+    }
+
+    public void unsubscribe(String storeName, String systemId, List<String> itemKeys) {
+        clusterRepository.unsubscribe(storeName, systemId, itemKeys);
+    }
+
+    public void unsubscribeAll(String storeName, String systemId) {
+        clusterRepository.unsubscribeAll(storeName, systemId);
+    }
+
+    public Set<String> getSubscribedSystems(String storeName, String itemKey) {
+        return new HashSet<>(clusterRepository.findSubscribedSystems(storeName, itemKey));
+    }
+
+    public List<String> getSubscriptions(String storeName, String systemId) {
+        return clusterRepository.findSubscriptions(storeName, systemId);
+    }
+}
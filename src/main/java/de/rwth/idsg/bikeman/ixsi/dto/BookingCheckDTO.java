@@ -0,0 +1,23 @@
+package de.rwth.idsg.bikeman.ixsi.dto;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.joda.time.DateTime;
+import org.joda.time.LocalDateTime;
+
+/**
+ * @since 18.10.2016
+ */
+@ToString
+@EqualsAndHashCode
+@Getter
+public class BookingCheckDTO {
+    private String ixsiBookingId;
+    private DateTime reservationEnd;
+
+    public BookingCheckDTO(String ixsiBookingId, LocalDateTime reservationEnd) {
+        this.ixsiBookingId = ixsiBookingId;
+        this.reservationEnd = reservationEnd.toDateTime();
+    }
+}
@@ -0,0 +1,22 @@
+package de.rwth.idsg.bikeman.ixsi.dto;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Push message, which was marshalled on another node of the cluster
+ *
+ * @since 18.10.2016
+ */
+@ToString
+@EqualsAndHashCode
+@Getter
+@RequiredArgsConstructor
+public class OutboxMessageDTO {
+    private final long id;
+    private final String systemId;
+    private final String payload;
+    private final String coalescingKey;
+}
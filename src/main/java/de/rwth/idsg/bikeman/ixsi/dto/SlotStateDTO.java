@@ -0,0 +1,27 @@
+package de.rwth.idsg.bikeman.ixsi.dto;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The slot fields are null for a station without slots.
+ *
+ * @since 18.10.2016
+ */
+@ToString
+@Getter
+public class SlotStateDTO {
+    private final String stationManufacturerId;
+    private final String slotManufacturerId;
+    private final boolean operative;
+    private final boolean occupied;
+
+    public SlotStateDTO(String stationManufacturerId, String slotManufacturerId,
+                        OperationState state, Boolean occupied) {
+        this.stationManufacturerId = stationManufacturerId;
+        this.slotManufacturerId = slotManufacturerId;
+        this.operative = state == OperationState.OPERATIVE;
+        this.occupied = Boolean.TRUE.equals(occupied);
+    }
+}
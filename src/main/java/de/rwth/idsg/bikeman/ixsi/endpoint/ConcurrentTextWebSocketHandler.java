@@ -1,20 +1,16 @@
 package de.rwth.idsg.bikeman.ixsi.endpoint;
 
-import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Delegates all WebSocketHandler method calls, which use the thread unsafe WebSocketSession,
- * to methods which use ConcurrentWebSocketSessionDecorator instead.
+ * to methods which use OutboundQueueSession instead.
  *
  * To prevent exceptions like:
  *
@@ -28,10 +24,7 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class ConcurrentTextWebSocketHandler extends TextWebSocketHandler {
 
-    private static final int sendTimeLimit = (int) TimeUnit.SECONDS.toMillis(10);
-    private static final int bufferSizeLimit = 5 * IXSIConstants.MAX_TEXT_MSG_SIZE;
-
-    private final Map<String, ConcurrentWebSocketSessionDecorator> sessions = new ConcurrentHashMap<>();
+    @Autowired private OutboundQueueManager outboundQueueManager;
 
     // -------------------------------------------------------------------------
     // Delegate methods
@@ -39,16 +32,13 @@ public abstract class ConcurrentTextWebSocketHandler extends TextWebSocketHandle
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        ConcurrentWebSocketSessionDecorator decorator =
-                new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit);
-
-        sessions.put(session.getId(), decorator);
+        OutboundQueueSession decorator = outboundQueueManager.register(session);
         this.onOpen(decorator);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
-        ConcurrentWebSocketSessionDecorator decorator = sessions.remove(session.getId());
+        OutboundQueueSession decorator = outboundQueueManager.unregister(session);
         this.onClose(decorator, closeStatus);
     }
 
@@ -62,8 +52,8 @@ public abstract class ConcurrentTextWebSocketHandler extends TextWebSocketHandle
         this.onError(internalGet(session), throwable);
     }
 
-    private ConcurrentWebSocketSessionDecorator internalGet(WebSocketSession session) {
-        ConcurrentWebSocketSessionDecorator decorator = sessions.get(session.getId());
+    private OutboundQueueSession internalGet(WebSocketSession session) {
+        OutboundQueueSession decorator = outboundQueueManager.get(session);
         if (decorator == null) {
             throw new NoSuchElementException();
         }
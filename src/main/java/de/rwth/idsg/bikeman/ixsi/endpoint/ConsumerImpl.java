@@ -1,5 +1,6 @@
 package de.rwth.idsg.bikeman.ixsi.endpoint;
 
+import de.rwth.idsg.bikeman.config.IxsiConfiguration;
 import de.rwth.idsg.bikeman.ixsi.CommunicationContext;
 import de.rwth.idsg.bikeman.ixsi.endpoint.Consumer;
 import de.rwth.idsg.bikeman.ixsi.endpoint.Parser;
@@ -18,12 +19,16 @@ public class ConsumerImpl implements Consumer {
 
     @Autowired private Parser parser;
     @Autowired private IncomingIxsiDispatcher dispatcher;
+    @Autowired private SchemaValidationPolicy validationPolicy;
 
     @Override
     public void consume(CommunicationContext context) {
         log.trace("Entered consume...");
 
-        IxsiMessageType i = parser.unmarshal(context.getIncomingString());
+        String systemId = (String) context.getSession().getAttributes().get(IxsiConfiguration.SYSTEM_ID_KEY);
+        boolean validate = validationPolicy.validateIncoming(systemId);
+
+        IxsiMessageType i = parser.unmarshal(context.getIncomingString(), validate);
         context.setIncomingIxsi(i);
         dispatcher.handle(context);
     }
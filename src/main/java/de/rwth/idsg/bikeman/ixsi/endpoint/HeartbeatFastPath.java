@@ -0,0 +1,260 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import xjc.schema.ixsi.HeartBeatResponseType;
+import xjc.schema.ixsi.IxsiMessageType;
+import xjc.schema.ixsi.SubscriptionResponseType;
+import xjc.schema.ixsi.TransactionType;
+
+import javax.annotation.PostConstruct;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers heartbeats without the JAXB pipeline. The response to a heartbeat is constant apart from the echoed
+ * transaction, so it is marshalled once at startup into a template, in which only the time stamp and the
+ * message id of the request are substituted.
+ *
+ * A message is only recognized as a heartbeat if it has exactly the expected structure (IXSI > SubscriptionRequest >
+ * Transaction, optional SystemID, empty HeartBeat). Everything else, including heartbeats with an invalid time
+ * stamp, goes through the full pipeline, which also reports the errors. Can be disabled with
+ * ixsi.heartbeat.fastPath: false
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class HeartbeatFastPath implements EnvironmentAware {
+
+    private static final String ENV_HEARTBEAT = "ixsi.heartbeat.";
+    private static final String PROP_FAST_PATH = "fastPath";
+
+    // Larger messages cannot be plain heartbeats, and are not worth peeking into
+    private static final int MAX_HEARTBEAT_LENGTH = 2048;
+
+    private static final String TIME_STAMP_PLACEHOLDER = "__TIME_STAMP__";
+    private static final String MESSAGE_ID_PLACEHOLDER = "__MESSAGE_ID__";
+
+    private static final Pattern TIME_STAMP_ELEMENT =
+            Pattern.compile("(<(?:\\w+:)?TimeStamp>)[^<]*(</(?:\\w+:)?TimeStamp>)");
+
+    @Autowired private Parser parser;
+
+    private RelaxedPropertyResolver propertyResolver;
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    private boolean enabled;
+    private String namespace;
+
+    // The template around the substituted values
+    private String prefix;
+    private String middle;
+    private String suffix;
+    private boolean timeStampFirst;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_HEARTBEAT);
+    }
+
+    @PostConstruct
+    public void init() {
+        enabled = propertyResolver.getProperty(PROP_FAST_PATH, Boolean.class, true);
+
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        if (enabled) {
+            buildTemplate();
+        }
+        log.info("Heartbeat fast path is {}", enabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * @return the response, if the message is a plain heartbeat. Otherwise null, and the message has to go
+     *         through the full pipeline.
+     */
+    public String answer(String payload) {
+        if (!enabled || payload.length() > MAX_HEARTBEAT_LENGTH || !payload.contains("HeartBeat")) {
+            return null;
+        }
+
+        Transaction transaction = peek(payload);
+        if (transaction == null) {
+            return null;
+        }
+
+        String messageId = escape(transaction.messageId);
+        StringBuilder sb = new StringBuilder(prefix.length() + middle.length() + suffix.length() + 64)
+                .append(prefix)
+                .append(timeStampFirst ? transaction.timeStamp : messageId)
+                .append(middle)
+                .append(timeStampFirst ? messageId : transaction.timeStamp)
+                .append(suffix);
+        return sb.toString();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Marshals the heartbeat response, as SubscriptionRequestTypeDispatcher builds it, with placeholders
+     */
+    private void buildTemplate() {
+        SubscriptionResponseType response = new SubscriptionResponseType()
+                .withHeartBeat(new HeartBeatResponseType())
+                .withCalcTime(Period.ZERO)
+                .withTransaction(new TransactionType().withTimeStamp(new DateTime(0))
+                                                      .withMessageID(MESSAGE_ID_PLACEHOLDER));
+
+        String xml = parser.marshal(new IxsiMessageType().withSubscriptionResponse(response), true);
+
+        Matcher matcher = TIME_STAMP_ELEMENT.matcher(xml);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Time stamp not found in the heartbeat response: " + xml);
+        }
+        xml = matcher.replaceFirst("$1" + TIME_STAMP_PLACEHOLDER + "$2");
+
+        int timeStampIndex = xml.indexOf(TIME_STAMP_PLACEHOLDER);
+        int messageIdIndex = xml.indexOf(MESSAGE_ID_PLACEHOLDER);
+        timeStampFirst = timeStampIndex < messageIdIndex;
+
+        String first = timeStampFirst ? TIME_STAMP_PLACEHOLDER : MESSAGE_ID_PLACEHOLDER;
+        String second = timeStampFirst ? MESSAGE_ID_PLACEHOLDER : TIME_STAMP_PLACEHOLDER;
+        int firstIndex = Math.min(timeStampIndex, messageIdIndex);
+        int secondIndex = Math.max(timeStampIndex, messageIdIndex);
+
+        prefix = xml.substring(0, firstIndex);
+        middle = xml.substring(firstIndex + first.length(), secondIndex);
+        suffix = xml.substring(secondIndex + second.length());
+
+        namespace = readRootNamespace(xml);
+    }
+
+    private String readRootNamespace(String xml) {
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(xml));
+            try {
+                reader.nextTag();
+                return reader.getNamespaceURI();
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Could not read the heartbeat response template", e);
+        }
+    }
+
+    /**
+     * @return the transaction of the heartbeat, or null if the message is something else
+     */
+    private Transaction peek(String payload) {
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(payload));
+            try {
+                return peek(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | IllegalArgumentException e) {
+            // Let the full pipeline deal with it
+            return null;
+        }
+    }
+
+    private Transaction peek(XMLStreamReader reader) throws XMLStreamException {
+        if (!isStart(reader, "IXSI") || !isStart(reader, "SubscriptionRequest") || !isStart(reader, "Transaction")) {
+            return null;
+        }
+
+        Transaction transaction = new Transaction();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (!namespace.equals(reader.getNamespaceURI())) {
+                return null;
+            }
+            switch (reader.getLocalName()) {
+                case "TimeStamp":
+                    transaction.timeStamp = reader.getElementText().trim();
+                    break;
+                case "MessageID":
+                    transaction.messageId = reader.getElementText();
+                    break;
+                default:
+                    return null;
+            }
+        }
+
+        if (transaction.timeStamp == null || transaction.messageId == null || transaction.messageId.isEmpty()) {
+            return null;
+        }
+        // Throws IllegalArgumentException, as the schema validation would fail
+        DatatypeConverter.parseDateTime(transaction.timeStamp);
+
+        reader.nextTag();
+        if (isElement(reader, "SystemID")) {
+            reader.getElementText();
+            reader.nextTag();
+        }
+
+        if (!isElement(reader, "HeartBeat")
+                || reader.nextTag() != XMLStreamConstants.END_ELEMENT
+                || reader.nextTag() != XMLStreamConstants.END_ELEMENT   // SubscriptionRequest
+                || reader.nextTag() != XMLStreamConstants.END_ELEMENT) { // IXSI
+            return null;
+        }
+
+        // Nothing but whitespace and comments may follow
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT
+                    || (event == XMLStreamConstants.CHARACTERS && !reader.isWhiteSpace())) {
+                return null;
+            }
+        }
+        return transaction;
+    }
+
+    private boolean isStart(XMLStreamReader reader, String localName) throws XMLStreamException {
+        return reader.nextTag() == XMLStreamConstants.START_ELEMENT && isElement(reader, localName);
+    }
+
+    private boolean isElement(XMLStreamReader reader, String localName) {
+        return reader.isStartElement()
+                && localName.equals(reader.getLocalName())
+                && namespace.equals(reader.getNamespaceURI());
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&': sb.append("&amp;"); break;
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Transaction {
+        private String timeStamp;
+        private String messageId;
+    }
+}
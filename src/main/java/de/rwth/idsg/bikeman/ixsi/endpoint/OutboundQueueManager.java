@@ -0,0 +1,169 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.bikeman.config.IxsiConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps the WebSocket sessions of the client systems in {@link OutboundQueueSession}s and keeps track of them.
+ *
+ * The defaults can be overridden per client system, e.g.
+ *
+ * <pre>
+ * ixsi.outbound.capacity: 1000
+ * ixsi.outbound.policy: DISCONNECT
+ * ixsi.outbound.systems.some-system-id.capacity: 5000
+ * ixsi.outbound.systems.some-system-id.policy: COALESCE_BY_KEY
+ * </pre>
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class OutboundQueueManager implements EnvironmentAware {
+
+    private static final String ENV_OUTBOUND = "ixsi.outbound.";
+    private static final String PROP_POOL_SIZE = "poolSize";
+    private static final String PROP_CAPACITY = "capacity";
+    private static final String PROP_POLICY = "policy";
+    private static final String PROP_BLOCK_TIMEOUT = "blockTimeoutInMillis";
+    private static final String PROP_SEND_TIME_LIMIT = "sendTimeLimitInMillis";
+    private static final String PROP_SYSTEMS = "systems.";
+
+    private final ConcurrentHashMap<String, OutboundQueueSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> systemCapacities = new HashMap<>();
+    private final Map<String, OverflowPolicy> systemPolicies = new HashMap<>();
+
+    private RelaxedPropertyResolver propertyResolver;
+    private ExecutorService executorService;
+    private ScheduledExecutorService watchdog;
+
+    private int defaultCapacity;
+    private OverflowPolicy defaultPolicy;
+    private long blockTimeoutInMillis;
+    private long sendTimeLimitInMillis;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_OUTBOUND);
+    }
+
+    @PostConstruct
+    public void init() {
+        int poolSize = propertyResolver.getProperty(PROP_POOL_SIZE, Integer.class, 4);
+        defaultCapacity = propertyResolver.getProperty(PROP_CAPACITY, Integer.class, 1000);
+        defaultPolicy = OverflowPolicy.valueOf(propertyResolver.getProperty(PROP_POLICY, OverflowPolicy.DISCONNECT.name()));
+        blockTimeoutInMillis = propertyResolver.getProperty(PROP_BLOCK_TIMEOUT, Long.class, 10000L);
+        sendTimeLimitInMillis = propertyResolver.getProperty(PROP_SEND_TIME_LIMIT, Long.class, 10000L);
+
+        // Keys are in the form "<systemId>.<property>"
+        for (Map.Entry<String, Object> entry : propertyResolver.getSubProperties(PROP_SYSTEMS).entrySet()) {
+            String key = entry.getKey();
+            int index = key.lastIndexOf('.');
+            if (index < 0) {
+                continue;
+            }
+
+            String systemId = key.substring(0, index);
+            String value = String.valueOf(entry.getValue());
+
+            switch (key.substring(index + 1)) {
+                case PROP_CAPACITY:
+                    systemCapacities.put(systemId, Integer.valueOf(value));
+                    break;
+
+                case PROP_POLICY:
+                    systemPolicies.put(systemId, OverflowPolicy.valueOf(value));
+                    break;
+
+                default:
+                    log.warn("Unknown outbound queue property '{}'", key);
+                    break;
+            }
+        }
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("bikeman-IXSI-Outbound-%d")
+                                                                .build();
+
+        executorService = Executors.newFixedThreadPool(poolSize, threadFactory);
+
+        // Stalled writes are detected even if nothing else is sent to the session
+        watchdog = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("bikeman-IXSI-Outbound-Watchdog").setDaemon(true).build());
+        watchdog.scheduleWithFixedDelay(this::checkSendTimeouts, 1, 1, TimeUnit.SECONDS);
+
+        log.info("Initialized outbound queues with {} threads, capacity {} and policy {}",
+                poolSize, defaultCapacity, defaultPolicy);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        watchdog.shutdownNow();
+        try {
+            executorService.shutdown();
+            executorService.awaitTermination(30, TimeUnit.SECONDS);
+
+        } catch (InterruptedException e) {
+            log.error("Termination interrupted", e);
+
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    public OutboundQueueSession register(WebSocketSession session) {
+        String systemId = (String) session.getAttributes().get(IxsiConfiguration.SYSTEM_ID_KEY);
+
+        OutboundQueueSession queueSession = new OutboundQueueSession(
+                session,
+                systemId,
+                systemCapacities.getOrDefault(systemId, defaultCapacity),
+                systemPolicies.getOrDefault(systemId, defaultPolicy),
+                blockTimeoutInMillis,
+                sendTimeLimitInMillis,
+                executorService
+        );
+
+        sessions.put(session.getId(), queueSession);
+        return queueSession;
+    }
+
+    public OutboundQueueSession unregister(WebSocketSession session) {
+        return sessions.remove(session.getId());
+    }
+
+    public OutboundQueueSession get(WebSocketSession session) {
+        return sessions.get(session.getId());
+    }
+
+    public Collection<OutboundQueueSession> getSessions() {
+        return sessions.values();
+    }
+
+    private void checkSendTimeouts() {
+        for (OutboundQueueSession session : sessions.values()) {
+            try {
+                session.checkSendTimeout();
+            } catch (RuntimeException e) {
+                log.error("Failed to check the send time of session {}", session.getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples the threads producing the messages for a client system from the actual (possibly slow) network write.
+ *
+ * Messages are appended to a bounded queue and written by a writer task on a shared executor. At most one writer
+ * task per session is active at a time (guarded by the scheduled flag), which also makes the session safe for
+ * concurrent use by request/response and push messages. When the queue is full, the {@link OverflowPolicy} of the
+ * client system decides.
+ *
+ * A close request waits until the queued messages (e.g. an error message right before) are written.
+ *
+ * A write that takes longer than the send time limit closes the session (see {@link #checkSendTimeout()}), so
+ * that a stalled client system does not hold a writer thread of the shared executor.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+public class OutboundQueueSession extends WebSocketSessionDecorator implements Runnable {
+
+    private static final int MAX_MESSAGES_PER_RUN = 32;
+
+    @Getter private final String systemId;
+    @Getter private final int capacity;
+    @Getter private final OverflowPolicy policy;
+    private final long blockTimeoutInMillis;
+    private final long sendTimeLimitInMillis;
+    private final Executor executor;
+
+    private final Deque<Envelope> queue = new ArrayDeque<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private CloseStatus pendingCloseStatus;
+
+    /**
+     * Size of the queue, which can be read without the lock (e.g. for the session selection of every push)
+     */
+    private volatile int depth;
+
+    /**
+     * Start of the current write in nanos. Only valid while sending is set.
+     */
+    private volatile long sendStartedAt;
+    private volatile boolean sending;
+    private final AtomicBoolean sendTimedOut = new AtomicBoolean(false);
+
+    // Statistics
+    private final AtomicLong sentCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong totalLatencyNanos = new AtomicLong(0);
+    private final AtomicLong maxLatencyNanos = new AtomicLong(0);
+
+    public OutboundQueueSession(WebSocketSession session, String systemId, int capacity, OverflowPolicy policy,
+                                long blockTimeoutInMillis, long sendTimeLimitInMillis, Executor executor) {
+        super(session);
+        this.systemId = systemId;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.blockTimeoutInMillis = blockTimeoutInMillis;
+        this.sendTimeLimitInMillis = sendTimeLimitInMillis;
+        this.executor = executor;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        sendMessage(message, null);
+    }
+
+    /**
+     * @param coalescingKey Messages with the same key supersede each other. Only relevant for
+     *                      {@link OverflowPolicy#COALESCE_BY_KEY}, can be null.
+     */
+    public void sendMessage(WebSocketMessage<?> message, String coalescingKey) throws IOException {
+        sendMessage(message, coalescingKey, null);
+    }
+
+    /**
+     * @param delivery Is notified about the outcome, can be null
+     */
+    public void sendMessage(WebSocketMessage<?> message, String coalescingKey, PushDelivery delivery)
+            throws IOException {
+        if (checkSendTimeout()) {
+            throw new SessionLimitExceededException("Send time limit of system '" + systemId + "' exceeded",
+                    CloseStatus.SESSION_NOT_RELIABLE);
+        }
+
+        try {
+            synchronized (queue) {
+                if (queue.size() >= capacity && !makeRoom(message, coalescingKey, delivery)) {
+                    return;
+                }
+                queue.addLast(new Envelope(message, coalescingKey, delivery, System.nanoTime()));
+                depth = queue.size();
+            }
+        } catch (SessionLimitExceededException e) {
+            // Not with the lock held, since the close might block
+            closeDelegate(e.getStatus());
+            throw e;
+        }
+        trySchedule();
+    }
+
+    /**
+     * Closes the session, if the current write takes longer than the send time limit. Closing the underlying
+     * session aborts the blocked write, which releases the writer thread. Is called periodically by the
+     * {@link OutboundQueueManager} and before every send.
+     *
+     * @return true, if the session was closed by this call
+     */
+    public boolean checkSendTimeout() {
+        if (!sending || sendTimeLimitInMillis <= 0) {
+            return false;
+        }
+
+        long elapsed = System.nanoTime() - sendStartedAt;
+        if (elapsed < TimeUnit.MILLISECONDS.toNanos(sendTimeLimitInMillis)) {
+            return false;
+        }
+
+        if (!sendTimedOut.compareAndSet(false, true)) {
+            return false;
+        }
+
+        synchronized (queue) {
+            dropAll();
+        }
+
+        log.error("[id={}] Sending to system '{}' takes longer than {} ms. Closing the session",
+                getId(), systemId, sendTimeLimitInMillis);
+        closeDelegate(CloseStatus.SESSION_NOT_RELIABLE);
+        return true;
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        synchronized (queue) {
+            if (!queue.isEmpty() || scheduled.get()) {
+                pendingCloseStatus = status;
+                return;
+            }
+        }
+        super.close(status);
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < MAX_MESSAGES_PER_RUN; i++) {
+                Envelope envelope;
+                synchronized (queue) {
+                    envelope = queue.pollFirst();
+                    if (envelope == null) {
+                        break;
+                    }
+                    depth = queue.size();
+                    // Wake up the producers waiting because of BLOCK
+                    queue.notifyAll();
+                }
+                write(envelope);
+            }
+        } finally {
+            scheduled.set(false);
+
+            boolean hasMore;
+            CloseStatus closeStatus = null;
+            synchronized (queue) {
+                hasMore = !queue.isEmpty();
+                if (!hasMore) {
+                    closeStatus = pendingCloseStatus;
+                    pendingCloseStatus = null;
+                }
+            }
+
+            if (hasMore) {
+                trySchedule();
+            } else if (closeStatus != null) {
+                closeDelegate(closeStatus);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getMaxLatencyInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    public double getAverageLatencyInMillis() {
+        long count = sentCount.get() + failedCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return (double) totalLatencyNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Is called with the lock held and the queue full.
+     *
+     * @return true, if the message should be appended to the queue. false, if it was already handled
+     */
+    private boolean makeRoom(WebSocketMessage<?> message, String coalescingKey, PushDelivery delivery)
+            throws IOException {
+        switch (policy) {
+            case BLOCK:
+                awaitRoom();
+                return true;
+
+            case COALESCE_BY_KEY:
+                if (replace(message, coalescingKey, delivery)) {
+                    coalescedCount.incrementAndGet();
+                    return false;
+                }
+                dropOldest();
+                return true;
+
+            case DROP_OLDEST:
+                dropOldest();
+                return true;
+
+            case DISCONNECT:
+            default:
+                throw disconnect();
+        }
+    }
+
+    private void awaitRoom() throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutInMillis);
+        try {
+            while (queue.size() >= capacity) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw disconnect();
+                }
+                queue.wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the outbound queue", e);
+        }
+    }
+
+    private boolean replace(WebSocketMessage<?> message, String coalescingKey, PushDelivery delivery) {
+        if (coalescingKey == null) {
+            return false;
+        }
+
+        for (Envelope envelope : queue) {
+            if (coalescingKey.equals(envelope.coalescingKey)) {
+                // Keep the position and enqueue time, so that the message is not delayed any further
+                envelope.message = message;
+                envelope.failed(PushFailureReason.SUPERSEDED);
+                envelope.delivery = delivery;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dropOldest() {
+        Iterator<Envelope> iterator = queue.iterator();
+        if (iterator.hasNext()) {
+            iterator.next().failed(PushFailureReason.DROPPED);
+            iterator.remove();
+            depth = queue.size();
+            droppedCount.incrementAndGet();
+            log.warn("[id={}] Outbound queue of system '{}' is full. Dropped the oldest message", getId(), systemId);
+        }
+    }
+
+    /**
+     * Is called with the lock held. The caller closes the session after releasing the lock.
+     */
+    private SessionLimitExceededException disconnect() {
+        dropAll();
+
+        String reason = "Outbound queue of system '" + systemId + "' exceeded the capacity of " + capacity;
+        log.error("[id={}] {}. Closing the session", getId(), reason);
+
+        return new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /**
+     * Is called with the lock held
+     */
+    private void dropAll() {
+        droppedCount.addAndGet(queue.size());
+        for (Envelope envelope : queue) {
+            envelope.failed(PushFailureReason.DROPPED);
+        }
+        queue.clear();
+        depth = 0;
+
+        // Wake up the producers waiting because of BLOCK
+        queue.notifyAll();
+    }
+
+    private void write(Envelope envelope) {
+        sendStartedAt = System.nanoTime();
+        sending = true;
+        try {
+            getDelegate().sendMessage(envelope.message);
+            sentCount.incrementAndGet();
+            if (envelope.delivery != null) {
+                envelope.delivery.succeeded();
+            }
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            envelope.failed(PushFailureReason.SEND_ERROR);
+            log.error("[id={}] Failed to send message to system '{}'", getId(), systemId, e);
+        } finally {
+            sending = false;
+            long latency = System.nanoTime() - envelope.enqueuedAt;
+            totalLatencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    private void trySchedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void closeDelegate(CloseStatus status) {
+        try {
+            getDelegate().close(status);
+        } catch (IOException e) {
+            log.error("[id={}] Failed to close the session", getId(), e);
+        }
+    }
+
+    private static class Envelope {
+        private WebSocketMessage<?> message;
+        private final String coalescingKey;
+        private PushDelivery delivery;
+        private final long enqueuedAt;
+
+        private Envelope(WebSocketMessage<?> message, String coalescingKey, PushDelivery delivery, long enqueuedAt) {
+            this.message = message;
+            this.coalescingKey = coalescingKey;
+            this.delivery = delivery;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        private void failed(PushFailureReason reason) {
+            if (delivery != null) {
+                delivery.failed(reason);
+            }
+        }
+    }
+}
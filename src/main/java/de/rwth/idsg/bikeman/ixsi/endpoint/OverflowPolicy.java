@@ -0,0 +1,13 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+/**
+ * What to do, when a message should be sent to a client system, but the outbound queue of the session is full.
+ *
+ * @since 18.10.2016
+ */
+public enum OverflowPolicy {
+    BLOCK,              // wait for free space (bounded by a timeout, then disconnect)
+    DROP_OLDEST,        // discard the oldest queued message
+    COALESCE_BY_KEY,    // replace a queued message with the same key, otherwise discard the oldest
+    DISCONNECT          // close the session, the client system has to reconnect and resubscribe
+}
@@ -6,6 +6,6 @@ import xjc.schema.ixsi.IxsiMessageType;
  * Created by max on 08/09/14.
  */
 public interface Parser {
-    IxsiMessageType unmarshal(String str);
-    String marshal(IxsiMessageType ixsi);
+    IxsiMessageType unmarshal(String str, boolean validate);
+    String marshal(IxsiMessageType ixsi, boolean validate);
 }
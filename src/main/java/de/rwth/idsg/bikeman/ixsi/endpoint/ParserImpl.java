@@ -2,8 +2,8 @@ package de.rwth.idsg.bikeman.ixsi.endpoint;
 
 import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
 import de.rwth.idsg.bikeman.ixsi.IxsiProcessingException;
-import de.rwth.idsg.bikeman.ixsi.endpoint.Parser;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.StringBuilderWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.xml.sax.SAXException;
@@ -22,10 +22,12 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import java.io.IOException;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.net.URL;
 
 /**
+ * Marshallers and unmarshallers are not thread-safe, but expensive to create. Therefore, every thread gets its own
+ * set of them (with and without schema validation) together with a reusable output buffer.
+ *
  * Created by max on 08/09/14.
  */
 @Slf4j
@@ -35,8 +37,24 @@ public class ParserImpl implements Parser {
     @Autowired private JAXBContext jaxbContext;
 
     private static final ObjectFactory OBJECT_FACTORY = new ObjectFactory();
+
+    // A thread should not hold on to the buffer of an exceptionally large message
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+
     private Schema schema;
 
+    private final ThreadLocal<Codec> codecs = new ThreadLocal<Codec>() {
+        @Override
+        protected Codec initialValue() {
+            try {
+                return new Codec();
+            } catch (JAXBException e) {
+                throw new IxsiProcessingException("Could not create the marshallers", e);
+            }
+        }
+    };
+
     @PostConstruct
     public void init() throws SAXException, IOException {
         SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
@@ -49,42 +67,81 @@ public class ParserImpl implements Parser {
     }
 
     @Override
-    public IxsiMessageType unmarshal(String str) {
+    public IxsiMessageType unmarshal(String str, boolean validate) {
         log.trace("Entered unmarshal...");
 
+        Codec codec = codecs.get();
         try {
-            Unmarshaller um = jaxbContext.createUnmarshaller();
-            // Validate against the schema
-            um.setSchema(schema);
-            StringReader reader = new StringReader(str);
-            StreamSource source = new StreamSource(reader);
+            Unmarshaller um = validate ? codec.validatingUnmarshaller : codec.unmarshaller;
+            StreamSource source = new StreamSource(new StringReader(str));
             return um.unmarshal(source, IxsiMessageType.class).getValue();
 
         } catch (JAXBException e) {
+            codecs.remove();
             throw new IxsiProcessingException("Could not unmarshal incoming message: " + str, e);
         }
     }
 
     @Override
-    public String marshal(IxsiMessageType ixsi) {
+    public String marshal(IxsiMessageType ixsi, boolean validate) {
         log.trace("Entered marshal...");
 
+        Codec codec = codecs.get();
         try {
             JAXBElement<IxsiMessageType> outgoing = OBJECT_FACTORY.createIxsi(ixsi);
+            Marshaller m = validate ? codec.validatingMarshaller : codec.marshaller;
+            m.marshal(outgoing, codec.writer);
+            return codec.drainBuffer();
+
+        } catch (JAXBException e) {
+            codecs.remove();
+            throw new IxsiProcessingException("Could not marshal outgoing message: " + ixsi.toString(),  e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private class Codec {
+        private final Unmarshaller unmarshaller;
+        private final Unmarshaller validatingUnmarshaller;
+        private final Marshaller marshaller;
+        private final Marshaller validatingMarshaller;
+
+        private StringBuilderWriter writer = new StringBuilderWriter(INITIAL_BUFFER_SIZE);
+
+        private Codec() throws JAXBException {
+            unmarshaller = jaxbContext.createUnmarshaller();
+
+            validatingUnmarshaller = jaxbContext.createUnmarshaller();
+            validatingUnmarshaller.setSchema(schema);
+
+            marshaller = createMarshaller();
+
+            validatingMarshaller = createMarshaller();
+            validatingMarshaller.setSchema(schema);
+        }
+
+        private Marshaller createMarshaller() throws JAXBException {
             Marshaller m = jaxbContext.createMarshaller();
-            // Validate against the schema
-            m.setSchema(schema);
             // Pretty print?
             m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
             // Drop the XML declaration?
             m.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+            return m;
+        }
 
-            StringWriter stringWriter = new StringWriter();
-            m.marshal(outgoing, stringWriter);
-            return stringWriter.toString();
+        private String drainBuffer() {
+            StringBuilder builder = writer.getBuilder();
+            String str = builder.toString();
 
-        } catch (JAXBException e) {
-            throw new IxsiProcessingException("Could not marshal outgoing message: " + ixsi.toString(),  e);
+            if (builder.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                writer = new StringBuilderWriter(INITIAL_BUFFER_SIZE);
+            } else {
+                builder.setLength(0);
+            }
+            return str;
         }
     }
 }
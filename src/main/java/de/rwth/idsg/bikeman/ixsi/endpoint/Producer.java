@@ -19,4 +19,16 @@ public interface Producer {
      * To be used for push messages
      */
     void send(IxsiMessageType ixsi, Set<String> systemIdSet);
+
+    /**
+     * To be used for push messages, which supersede earlier ones with the same key
+     * (see {@link OverflowPolicy#COALESCE_BY_KEY})
+     */
+    void send(IxsiMessageType ixsi, Set<String> systemIdSet, String coalescingKey);
+
+    /**
+     * To be used for push messages, which were marshalled and routed to this node by another node of the cluster.
+     * The message is only sent over the local sessions of the system.
+     */
+    void deliver(String systemId, String payload, String coalescingKey);
 }
@@ -1,16 +1,22 @@
 package de.rwth.idsg.bikeman.ixsi.endpoint;
 
+import de.rwth.idsg.bikeman.config.IxsiConfiguration;
 import de.rwth.idsg.bikeman.ixsi.CommunicationContext;
+import de.rwth.idsg.bikeman.ixsi.cluster.ClusterPushRouter;
 import de.rwth.idsg.bikeman.ixsi.endpoint.Parser;
 import de.rwth.idsg.bikeman.ixsi.endpoint.Producer;
 import de.rwth.idsg.bikeman.ixsi.store.WebSocketSessionStore;
+import de.rwth.idsg.bikeman.journal.Direction;
+import de.rwth.idsg.bikeman.journal.TrafficJournal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 import xjc.schema.ixsi.IxsiMessageType;
 
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -22,16 +28,23 @@ public class ProducerImpl implements Producer {
 
     @Autowired private Parser parser;
     @Autowired private WebSocketSessionStore webSocketSessionStore;
+    @Autowired private SchemaValidationPolicy validationPolicy;
+    @Autowired private ClusterPushRouter clusterPushRouter;
+    @Autowired private PushTelemetry pushTelemetry;
+    @Autowired private TrafficJournal trafficJournal;
 
     @Override
     public void send(CommunicationContext context) {
         try {
-            String str = parser.marshal(context.getOutgoingIxsi());
+            WebSocketSession session = context.getSession();
+            String systemId = (String) session.getAttributes().get(IxsiConfiguration.SYSTEM_ID_KEY);
+
+            String str = parser.marshal(context.getOutgoingIxsi(), validationPolicy.validateOutgoing(systemId));
             TextMessage out = new TextMessage(str);
 
-            WebSocketSession session = context.getSession();
             log.info("[id: {}] Sending message: {}", session.getId(), str);
             session.sendMessage(out);
+            trafficJournal.record(Direction.IXSI_OUT, systemId, session.getId(), str);
 
         } catch (Exception e) {
             log.error("Exception happened", e);
@@ -40,27 +53,72 @@ public class ProducerImpl implements Producer {
 
     @Override
     public void send(IxsiMessageType ixsi, Set<String> systemIdSet) {
-        String str = parser.marshal(ixsi);
+        send(ixsi, systemIdSet, null);
+    }
+
+    @Override
+    public void send(IxsiMessageType ixsi, Set<String> systemIdSet, String coalescingKey) {
+        String str = parser.marshal(ixsi, validationPolicy.validateOutgoing(systemIdSet));
         TextMessage out = new TextMessage(str);
 
+        String pushType = PushTelemetry.getPushType(ixsi);
+        pushTelemetry.recordSize(pushType, out.getPayloadLength());
+
         for (String systemId : systemIdSet) {
-            push(systemId, out);
+            push(systemId, out, coalescingKey, pushTelemetry.start(systemId, pushType));
         }
     }
 
+    @Override
+    public void deliver(String systemId, String payload, String coalescingKey) {
+        if (webSocketSessionStore.size(systemId) == 0) {
+            log.warn("Dropping the message routed to this node, since system '{}' is not connected (anymore)", systemId);
+            return;
+        }
+        push(systemId, new TextMessage(payload), coalescingKey,
+                pushTelemetry.start(systemId, PushTelemetry.ROUTED_TYPE));
+    }
+
     /**
      * Push message exceptions should be handled silently, that is they should not take the ongoing process/thread or
      * system down. With this, we just log the exception and allow the application to continue with the next system in
      * line when the current push fails.
      */
-    private void push(String systemId, TextMessage out) {
+    private void push(String systemId, TextMessage out, String coalescingKey, PushDelivery delivery) {
         try {
+            // In cluster mode, the system might be connected to another node only
+            if (clusterPushRouter.isEnabled() && webSocketSessionStore.size(systemId) == 0) {
+                if (clusterPushRouter.route(systemId, out.getPayload(), coalescingKey)) {
+                    delivery.routed();
+                } else {
+                    log.warn("Cannot push. System '{}' is not connected to any node", systemId);
+                    delivery.failed(PushFailureReason.NOT_CONNECTED);
+                }
+                return;
+            }
+
             WebSocketSession session = webSocketSessionStore.getNext(systemId);
             log.info("[id: {}] Sending message: {}", session.getId(), out.getPayload());
-            session.sendMessage(out);
+            trafficJournal.record(Direction.IXSI_OUT, systemId, session.getId(), out.getPayload());
+
+            if (session instanceof OutboundQueueSession) {
+                ((OutboundQueueSession) session).sendMessage(out, coalescingKey, delivery);
+            } else {
+                session.sendMessage(out);
+                delivery.succeeded();
+            }
+
+        } catch (NoSuchElementException e) {
+            log.warn("Cannot push. System '{}' is not connected", systemId);
+            delivery.failed(PushFailureReason.NOT_CONNECTED);
+
+        } catch (SessionLimitExceededException e) {
+            log.error("Exception happened", e);
+            delivery.failed(PushFailureReason.QUEUE_OVERFLOW);
 
         } catch (Exception e) {
             log.error("Exception happened", e);
+            delivery.failed(PushFailureReason.SEND_ERROR);
         }
     }
 }
@@ -0,0 +1,48 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks one push message to one client system until it is written to the session (or fails), and reports the
+ * outcome to the {@link PushTelemetry}. Only the first outcome counts.
+ *
+ * @since 18.10.2016
+ */
+public class PushDelivery {
+
+    private final PushTelemetry.PushMetrics metrics;
+    private final long originAt;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+
+    PushDelivery(PushTelemetry.PushMetrics metrics, long originAt) {
+        this.metrics = metrics;
+        this.originAt = originAt;
+    }
+
+    /**
+     * The message was written to the session. The latency is measured from the domain event, which caused it.
+     */
+    public void succeeded() {
+        if (done.compareAndSet(false, true)) {
+            metrics.getSent().mark();
+            metrics.getLatency().update(Math.max(0, System.currentTimeMillis() - originAt), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The message was handed over to another node of the cluster, which reports its own outcome
+     */
+    public void routed() {
+        if (done.compareAndSet(false, true)) {
+            metrics.getRouted().mark();
+        }
+    }
+
+    public void failed(PushFailureReason reason) {
+        if (done.compareAndSet(false, true)) {
+            metrics.getFailed().mark();
+            metrics.getFailure(reason).mark();
+        }
+    }
+}
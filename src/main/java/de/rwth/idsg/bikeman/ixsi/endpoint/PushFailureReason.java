@@ -0,0 +1,14 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+/**
+ * Why a push message did not reach the client system
+ *
+ * @since 18.10.2016
+ */
+public enum PushFailureReason {
+    NOT_CONNECTED,      // no session of the system (on any node)
+    QUEUE_OVERFLOW,     // the outbound queue was full and the session was closed (DISCONNECT, BLOCK)
+    DROPPED,            // discarded from the outbound queue (DROP_OLDEST, COALESCE_BY_KEY or closed session)
+    SUPERSEDED,         // replaced in the outbound queue by a newer message with the same key
+    SEND_ERROR          // the network write failed
+}
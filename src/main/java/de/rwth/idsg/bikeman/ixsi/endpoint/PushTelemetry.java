@@ -0,0 +1,162 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import de.rwth.idsg.bikeman.event.EventOrigin;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import xjc.schema.ixsi.IxsiMessageType;
+import xjc.schema.ixsi.SubscriptionMessageType;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivery metrics of the push messages per client system and push type, registered in the Dropwizard
+ * MetricRegistry (and therefore reported like the other metrics, e.g. via JMX or Graphite):
+ *
+ * <pre>
+ * ixsi.push.[systemId].[pushType].sent              Meter
+ * ixsi.push.[systemId].[pushType].routed            Meter (handed over to another node)
+ * ixsi.push.[systemId].[pushType].failed            Meter
+ * ixsi.push.[systemId].[pushType].failed.[reason]   Meter, see {@link PushFailureReason}
+ * ixsi.push.[systemId].[pushType].latency           Timer (domain event until written to the session)
+ * ixsi.push.[pushType].size                         Histogram (marshalled size in bytes)
+ * </pre>
+ *
+ * @since 18.10.2016
+ */
+@Component
+public class PushTelemetry {
+
+    private static final String PREFIX = "ixsi.push";
+    private static final String PUSH_MESSAGE_TYPE_SUFFIX = "PushMessageType";
+    private static final String UNKNOWN_TYPE = "Unknown";
+
+    /**
+     * Messages routed to this node by another node are not parsed again, so their type is not known
+     */
+    public static final String ROUTED_TYPE = "Routed";
+
+    // Not available with the fast profile
+    @Autowired(required = false) private MetricRegistry metricRegistry;
+
+    /**
+     * Key   (String)                   = ID of the system
+     * Value (Map<String, PushMetrics>) = Push type -> metrics
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, PushMetrics>> systemMetrics =
+            new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Histogram> sizeHistograms = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (metricRegistry == null) {
+            metricRegistry = new MetricRegistry();
+        }
+    }
+
+    public void recordSize(String pushType, int sizeInBytes) {
+        getSizeHistogram(pushType).update(sizeInBytes);
+    }
+
+    /**
+     * Starts tracking the delivery of a message to the system. The latency is measured from the domain event
+     * handled by the current thread (see {@link EventOrigin}).
+     */
+    public PushDelivery start(String systemId, String pushType) {
+        return new PushDelivery(getMetrics(systemId, pushType), EventOrigin.get());
+    }
+
+    /**
+     * @return e.g. "Availability" for an AvailabilityPushMessageType
+     */
+    public static String getPushType(IxsiMessageType ixsi) {
+        SubscriptionMessageType sub = ixsi.getSubscriptionMessage();
+        if (sub == null || sub.getPushMessageGroup() == null) {
+            return UNKNOWN_TYPE;
+        }
+
+        String name = sub.getPushMessageGroup().getClass().getSimpleName();
+        if (name.endsWith(PUSH_MESSAGE_TYPE_SUFFIX)) {
+            return name.substring(0, name.length() - PUSH_MESSAGE_TYPE_SUFFIX.length());
+        }
+        return name;
+    }
+
+    // -------------------------------------------------------------------------
+    // Views for monitoring
+    // -------------------------------------------------------------------------
+
+    /**
+     * @param systemId null for all systems
+     */
+    public List<PushMetrics> getMetrics(String systemId) {
+        List<PushMetrics> list = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentHashMap<String, PushMetrics>> entry : systemMetrics.entrySet()) {
+            if (systemId == null || systemId.equals(entry.getKey())) {
+                list.addAll(entry.getValue().values());
+            }
+        }
+        return list;
+    }
+
+    public Map<String, Histogram> getSizeHistograms() {
+        return sizeHistograms;
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private PushMetrics getMetrics(String systemId, String pushType) {
+        return systemMetrics.computeIfAbsent(systemId, id -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(pushType, type -> createMetrics(systemId, type));
+    }
+
+    private PushMetrics createMetrics(String systemId, String pushType) {
+        String prefix = MetricRegistry.name(PREFIX, systemId, pushType);
+
+        Map<PushFailureReason, Meter> failures = new EnumMap<>(PushFailureReason.class);
+        for (PushFailureReason reason : PushFailureReason.values()) {
+            failures.put(reason, metricRegistry.meter(MetricRegistry.name(prefix, "failed", reason.name())));
+        }
+
+        return new PushMetrics(systemId, pushType,
+                metricRegistry.meter(MetricRegistry.name(prefix, "sent")),
+                metricRegistry.meter(MetricRegistry.name(prefix, "routed")),
+                metricRegistry.meter(MetricRegistry.name(prefix, "failed")),
+                failures,
+                metricRegistry.timer(MetricRegistry.name(prefix, "latency")));
+    }
+
+    private Histogram getSizeHistogram(String pushType) {
+        return sizeHistograms.computeIfAbsent(pushType,
+                type -> metricRegistry.histogram(MetricRegistry.name(PREFIX, type, "size")));
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class PushMetrics {
+        private final String systemId;
+        private final String pushType;
+        private final Meter sent;
+        private final Meter routed;
+        private final Meter failed;
+        private final Map<PushFailureReason, Meter> failures;
+        private final Timer latency;
+
+        public Meter getFailure(PushFailureReason reason) {
+            return failures.get(reason);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides per client system whether a message should be validated against the XML schema.
+ *
+ * The default mode applies to all systems, and can be overridden for single systems, e.g.
+ *
+ * <pre>
+ * ixsi.validation.mode: STRICT
+ * ixsi.validation.sampleRate: 100
+ * ixsi.validation.systems.some-system-id: OFF
+ * </pre>
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class SchemaValidationPolicy implements EnvironmentAware {
+
+    private static final String ENV_VALIDATION = "ixsi.validation.";
+    private static final String PROP_MODE = "mode";
+    private static final String PROP_SAMPLE_RATE = "sampleRate";
+    private static final String PROP_SYSTEMS = "systems.";
+
+    private final Map<String, ValidationMode> systemModes = new HashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> sampleCounters = new ConcurrentHashMap<>();
+
+    private RelaxedPropertyResolver propertyResolver;
+    private ValidationMode defaultMode;
+    private int sampleRate;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_VALIDATION);
+    }
+
+    @PostConstruct
+    public void init() {
+        defaultMode = ValidationMode.valueOf(propertyResolver.getProperty(PROP_MODE, ValidationMode.STRICT.name()));
+        sampleRate = Math.max(1, propertyResolver.getProperty(PROP_SAMPLE_RATE, Integer.class, 100));
+
+        for (Map.Entry<String, Object> entry : propertyResolver.getSubProperties(PROP_SYSTEMS).entrySet()) {
+            systemModes.put(entry.getKey(), ValidationMode.valueOf(String.valueOf(entry.getValue())));
+        }
+
+        log.info("Schema validation mode is {} (sample rate 1/{}), overridden for systems {}",
+                defaultMode, sampleRate, systemModes);
+    }
+
+    public ValidationMode getMode(String systemId) {
+        if (systemId == null) {
+            return defaultMode;
+        }
+        return systemModes.getOrDefault(systemId, defaultMode);
+    }
+
+    public boolean validateIncoming(String systemId) {
+        switch (getMode(systemId)) {
+            case STRICT:
+            case INBOUND:
+                return true;
+
+            case SAMPLED:
+                return isSampled(systemId);
+
+            default:
+                return false;
+        }
+    }
+
+    public boolean validateOutgoing(String systemId) {
+        switch (getMode(systemId)) {
+            case STRICT:
+                return true;
+
+            case SAMPLED:
+                return isSampled(systemId);
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A push message is marshalled once for all subscribed systems,
+     * so it is validated if at least one of them requires it.
+     */
+    public boolean validateOutgoing(Collection<String> systemIds) {
+        boolean validate = false;
+        for (String systemId : systemIds) {
+            // No short-circuit, since every system should advance its sample counter
+            validate |= validateOutgoing(systemId);
+        }
+        return validate;
+    }
+
+    private boolean isSampled(String systemId) {
+        String key = systemId == null ? "" : systemId;
+        long count = sampleCounters.computeIfAbsent(key, k -> new AtomicLong(0)).getAndIncrement();
+        return count % sampleRate == 0;
+    }
+}
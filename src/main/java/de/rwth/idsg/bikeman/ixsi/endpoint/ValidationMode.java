@@ -0,0 +1,13 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+/**
+ * Determines which IXSI messages of a client system are validated against the XML schema.
+ *
+ * @since 18.10.2016
+ */
+public enum ValidationMode {
+    STRICT,     // incoming and outgoing messages
+    INBOUND,    // only incoming messages
+    SAMPLED,    // every N-th message, in both directions
+    OFF         // no validation at all
+}
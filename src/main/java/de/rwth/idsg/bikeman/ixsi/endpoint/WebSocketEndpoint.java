@@ -3,12 +3,15 @@ package de.rwth.idsg.bikeman.ixsi.endpoint;
 import de.rwth.idsg.bikeman.config.IxsiConfiguration;
 import de.rwth.idsg.bikeman.ixsi.CommunicationContext;
 import de.rwth.idsg.bikeman.ixsi.IxsiProcessingException;
+import de.rwth.idsg.bikeman.ixsi.cluster.ClusterMembership;
 import de.rwth.idsg.bikeman.ixsi.store.WebSocketSessionStore;
 import de.rwth.idsg.bikeman.ixsi.store.AvailabilityStore;
 import de.rwth.idsg.bikeman.ixsi.store.BookingAlertStore;
 import de.rwth.idsg.bikeman.ixsi.store.ConsumptionStore;
 import de.rwth.idsg.bikeman.ixsi.store.ExternalBookingStore;
 import de.rwth.idsg.bikeman.ixsi.store.PlaceAvailabilityStore;
+import de.rwth.idsg.bikeman.journal.Direction;
+import de.rwth.idsg.bikeman.journal.TrafficJournal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -18,7 +21,7 @@ import org.springframework.web.socket.WebSocketSession;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,6 +35,9 @@ public class WebSocketEndpoint extends ConcurrentTextWebSocketHandler {
 
     @Autowired private WebSocketSessionStore webSocketSessionStore;
     @Autowired private Consumer consumer;
+    @Autowired private HeartbeatFastPath heartbeatFastPath;
+    @Autowired private TrafficJournal trafficJournal;
+    @Autowired private ClusterMembership clusterMembership;
 
     @Autowired private AvailabilityStore availabilityStore;
     @Autowired private ConsumptionStore consumptionStore;
@@ -44,9 +50,9 @@ public class WebSocketEndpoint extends ConcurrentTextWebSocketHandler {
      */
     @PreDestroy
     public void destroy() {
-        Map<String, Deque<WebSocketSession>> sessionMap = webSocketSessionStore.getLookupTable();
+        Map<String, List<WebSocketSession>> sessionMap = webSocketSessionStore.getLookupTable();
 
-        for (Deque<WebSocketSession> sessionsForOneSystem : sessionMap.values()) {
+        for (List<WebSocketSession> sessionsForOneSystem : sessionMap.values()) {
             for (WebSocketSession session : sessionsForOneSystem) {
                 closeSession(session);
             }
@@ -55,9 +61,21 @@ public class WebSocketEndpoint extends ConcurrentTextWebSocketHandler {
 
     @Override
     public void onMessage(WebSocketSession session, TextMessage webSocketMessage) throws Exception {
-        log.info("[id={}] Received message: {}", session.getId(), webSocketMessage.getPayload());
-
         String payload = webSocketMessage.getPayload();
+        String systemId = (String) session.getAttributes().get(IxsiConfiguration.SYSTEM_ID_KEY);
+        trafficJournal.record(Direction.IXSI_IN, systemId, session.getId(), payload);
+
+        // Heartbeats are frequent and trivial: answer them directly, and do not flood the log
+        String heartbeatResponse = heartbeatFastPath.answer(payload);
+        if (heartbeatResponse != null) {
+            log.debug("[id={}] Received heartbeat: {}", session.getId(), payload);
+            session.sendMessage(new TextMessage(heartbeatResponse));
+            trafficJournal.record(Direction.IXSI_OUT, systemId, session.getId(), heartbeatResponse);
+            return;
+        }
+
+        log.info("[id={}] Received message: {}", session.getId(), payload);
+
         CommunicationContext context = new CommunicationContext(session, payload);
         try {
             consumer.consume(context);
@@ -70,7 +88,10 @@ public class WebSocketEndpoint extends ConcurrentTextWebSocketHandler {
     public void onOpen(WebSocketSession session) throws Exception {
         log.info("New connection established: {}", session);
         String systemId = (String) session.getAttributes().get(IxsiConfiguration.SYSTEM_ID_KEY);
-        webSocketSessionStore.add(systemId, session);
+        synchronized (LOCK) {
+            webSocketSessionStore.add(systemId, session);
+            clusterMembership.sessionOpened(systemId);
+        }
     }
 
     @Override
@@ -81,7 +102,12 @@ public class WebSocketEndpoint extends ConcurrentTextWebSocketHandler {
             webSocketSessionStore.remove(systemId, session);
 
             if (webSocketSessionStore.size(systemId) == 0) {
-                unSubscribeStores(systemId);
+                clusterMembership.sessionClosed(systemId);
+
+                // The subscriptions are shared between the nodes in cluster mode
+                if (!clusterMembership.isConnectedElsewhere(systemId)) {
+                    unSubscribeStores(systemId);
+                }
             }
         }
     }
@@ -6,6 +6,7 @@ import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
 import de.rwth.idsg.bikeman.ixsi.dto.AvailabilityResponseDTO;
 import de.rwth.idsg.bikeman.ixsi.processor.api.UserRequestProcessor;
 import de.rwth.idsg.bikeman.ixsi.repository.QueryIXSIRepository;
+import de.rwth.idsg.bikeman.service.StationSpatialIndex;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -24,6 +25,7 @@ public class AvailabilityRequestProcessor implements
         UserRequestProcessor<AvailabilityRequestType, AvailabilityResponseType> {
 
     @Autowired private QueryIXSIRepository queryIXSIRepository;
+    @Autowired private StationSpatialIndex stationSpatialIndex;
 
     @Override
     public Class<AvailabilityRequestType> getProcessingClass() {
@@ -41,10 +43,10 @@ public class AvailabilityRequestProcessor implements
         List<AvailabilityResponseDTO> dtos = new ArrayList<>();
         if (request.isSetGeoRectangle()) {
             // handle the request based on a rectangular region
-            dtos = queryIXSIRepository.availability(request.getGeoRectangle());
+            dtos = queryIXSIRepository.availabilityAtPlaces(stationSpatialIndex.placeIds(request.getGeoRectangle()));
         } else if (request.isSetCircle()) {
             // handle the request based on a circular region
-            dtos = queryIXSIRepository.availability(request.getCircle());
+            dtos = queryIXSIRepository.availabilityAtPlaces(stationSpatialIndex.placeIds(request.getCircle()));
         }
 
         List<BookingTargetAvailabilityType> availabilityList = getBookingTargetAvailabilities(dtos);
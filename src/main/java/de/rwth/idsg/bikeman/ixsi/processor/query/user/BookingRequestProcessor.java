@@ -6,8 +6,6 @@ import de.rwth.idsg.bikeman.ixsi.ErrorFactory;
 import de.rwth.idsg.bikeman.ixsi.IxsiCodeException;
 import de.rwth.idsg.bikeman.ixsi.IxsiProcessingException;
 import de.rwth.idsg.bikeman.ixsi.processor.api.UserRequestProcessor;
-import de.rwth.idsg.bikeman.ixsi.service.AvailabilityPushService;
-import de.rwth.idsg.bikeman.ixsi.service.BookingCheckService;
 import de.rwth.idsg.bikeman.ixsi.service.BookingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -28,8 +26,6 @@ public class BookingRequestProcessor implements
         UserRequestProcessor<BookingRequestType, BookingResponseType> {
 
     @Autowired private BookingService bookingService;
-    @Autowired private AvailabilityPushService availabilityPushService;
-    @Autowired private BookingCheckService bookingCheckService;
 
     @Override
     public Class<BookingRequestType> getProcessingClass() {
@@ -55,15 +51,6 @@ public class BookingRequestProcessor implements
                 .withBegin(createdBooking.getReservation().getStartDateTime().toDateTime())
                 .withEnd(createdBooking.getReservation().getEndDateTime().toDateTime());
 
-            String placeId = createdBooking.getReservation()
-                                           .getPedelec()
-                                           .getStationSlot()
-                                           .getStation()
-                                           .getManufacturerId();
-
-            availabilityPushService.placedBooking(request.getBookingTargetID().getBookeeID(), placeId, timePeriod);
-            bookingCheckService.placedBooking(createdBooking);
-
             BookingType booking = new BookingType()
                 .withID(String.valueOf(createdBooking.getIxsiBookingId()))
                 .withTimePeriod(timePeriod);
@@ -5,8 +5,6 @@ import de.rwth.idsg.bikeman.domain.Booking;
 import de.rwth.idsg.bikeman.ixsi.ErrorFactory;
 import de.rwth.idsg.bikeman.ixsi.IxsiProcessingException;
 import de.rwth.idsg.bikeman.ixsi.processor.api.UserRequestProcessor;
-import de.rwth.idsg.bikeman.ixsi.service.AvailabilityPushService;
-import de.rwth.idsg.bikeman.ixsi.service.BookingCheckService;
 import de.rwth.idsg.bikeman.ixsi.service.BookingService;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,8 +26,6 @@ public class ChangeBookingRequestProcessor implements
         UserRequestProcessor<ChangeBookingRequestType, ChangeBookingResponseType> {
 
     @Autowired private BookingService bookingService;
-    @Autowired private AvailabilityPushService availabilityPushService;
-    @Autowired private BookingCheckService bookingCheckService;
 
     @Override
     public Class<ChangeBookingRequestType> getProcessingClass() {
@@ -61,7 +57,6 @@ public class ChangeBookingRequestProcessor implements
 
     private ChangeBookingResponseType proceedChange(ChangeBookingRequestType request, UserInfoType userInfo) {
         Booking oldBooking = bookingService.get(request.getBookingID(), userInfo.getUserID());
-        TimePeriodType oldTimePeriod = buildTimePeriod(oldBooking);
 
         Booking newBooking = bookingService.update(oldBooking, request.getNewTimePeriodProposal());
         TimePeriodType newTimePeriod = buildTimePeriod(newBooking);
@@ -70,39 +65,11 @@ public class ChangeBookingRequestProcessor implements
             .withID(newBooking.getIxsiBookingId())
             .withTimePeriod(newTimePeriod);
 
-        String pedelecId = newBooking.getReservation()
-                                     .getPedelec()
-                                     .getManufacturerId();
-
-        String placeId = newBooking.getReservation()
-                                   .getPedelec()
-                                   .getStationSlot()
-                                   .getStation()
-                                   .getManufacturerId();
-
-        availabilityPushService.changedBooking(pedelecId, placeId, oldTimePeriod, newTimePeriod);
-        bookingCheckService.changedBooking(oldBooking, newBooking);
-
         return new ChangeBookingResponseType().withBooking(responseBooking);
     }
 
     private ChangeBookingResponseType proceedCancel(ChangeBookingRequestType request, UserInfoType userInfo) {
-        Booking booking = bookingService.cancel(request.getBookingID(), userInfo.getUserID());
-        TimePeriodType timePeriod = buildTimePeriod(booking);
-
-        String pedelecId = booking.getReservation()
-                                  .getPedelec()
-                                  .getManufacturerId();
-
-        String placeId = booking.getReservation()
-                                .getPedelec()
-                                .getStationSlot()
-                                .getStation()
-                                .getManufacturerId();
-
-        availabilityPushService.cancelledBooking(pedelecId, placeId, timePeriod);
-        bookingCheckService.cancelledBooking(booking);
-
+        bookingService.cancel(request.getBookingID(), userInfo.getUserID());
         return new ChangeBookingResponseType();
     }
 
@@ -5,7 +5,8 @@ import de.rwth.idsg.bikeman.ixsi.ErrorFactory;
 import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
 import de.rwth.idsg.bikeman.ixsi.dto.PlaceAvailabilityResponseDTO;
 import de.rwth.idsg.bikeman.ixsi.processor.api.UserRequestProcessor;
-import de.rwth.idsg.bikeman.ixsi.repository.QueryIXSIRepository;
+import de.rwth.idsg.bikeman.ixsi.service.FreeSlotCounter;
+import de.rwth.idsg.bikeman.service.StationSpatialIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import xjc.schema.ixsi.ErrorType;
@@ -27,7 +28,8 @@ import java.util.List;
 public class PlaceAvailabilityRequestProcessor implements
         UserRequestProcessor<PlaceAvailabilityRequestType, PlaceAvailabilityResponseType> {
 
-    @Autowired private QueryIXSIRepository queryIXSIRepository;
+    @Autowired private FreeSlotCounter freeSlotCounter;
+    @Autowired private StationSpatialIndex stationSpatialIndex;
 
     @Override
     public Class<PlaceAvailabilityRequestType> getProcessingClass() {
@@ -44,13 +46,13 @@ public class PlaceAvailabilityRequestProcessor implements
             for (ProviderPlaceIDType id : request.getPlaceID()) {
                 idList.add(id.getPlaceID());
             }
-            dtos = queryIXSIRepository.placeAvailability(idList);
+            dtos = freeSlotCounter.placeAvailability(idList);
 
         } else if (request.isSetGeoRectangle()) {
-            dtos = queryIXSIRepository.placeAvailability(request.getGeoRectangle());
+            dtos = freeSlotCounter.placeAvailability(stationSpatialIndex.placeIds(request.getGeoRectangle()));
 
         } else if (request.isSetCircle()) {
-            dtos = queryIXSIRepository.placeAvailability(request.getCircle());
+            dtos = freeSlotCounter.placeAvailability(stationSpatialIndex.placeIds(request.getCircle()));
         }
 
         return new PlaceAvailabilityResponseType().withPlace(getPlaceAvailabilities(dtos));
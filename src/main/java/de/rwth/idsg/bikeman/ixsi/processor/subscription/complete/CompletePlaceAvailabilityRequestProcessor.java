@@ -2,10 +2,10 @@ package de.rwth.idsg.bikeman.ixsi.processor.subscription.complete;
 
 import de.rwth.idsg.bikeman.ixsi.ErrorFactory;
 import de.rwth.idsg.bikeman.ixsi.dto.PlaceAvailabilityResponseDTO;
+import de.rwth.idsg.bikeman.ixsi.service.FreeSlotCounter;
 import de.rwth.idsg.bikeman.ixsi.store.PlaceAvailabilityStore;
 import de.rwth.idsg.bikeman.ixsi.processor.api.SubscriptionRequestMessageProcessor;
 import de.rwth.idsg.bikeman.ixsi.processor.query.user.PlaceAvailabilityRequestProcessor;
-import de.rwth.idsg.bikeman.ixsi.repository.QueryIXSIRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import xjc.schema.ixsi.CompletePlaceAvailabilityRequestType;
@@ -24,7 +24,7 @@ public class CompletePlaceAvailabilityRequestProcessor implements
         SubscriptionRequestMessageProcessor<CompletePlaceAvailabilityRequestType, CompletePlaceAvailabilityResponseType> {
 
     @Autowired private PlaceAvailabilityStore placeAvailabilityStore;
-    @Autowired private QueryIXSIRepository queryIXSIRepository;
+    @Autowired private FreeSlotCounter freeSlotCounter;
     @Autowired private PlaceAvailabilityRequestProcessor placeAvailabilityRequestProcessor;
 
     @Override
@@ -40,7 +40,7 @@ public class CompletePlaceAvailabilityRequestProcessor implements
                 return buildError(ErrorFactory.Sys.invalidRequest("No subscriptions", null));
             }
 
-            List<PlaceAvailabilityResponseDTO> dtos = queryIXSIRepository.placeAvailability(ids);
+            List<PlaceAvailabilityResponseDTO> dtos = freeSlotCounter.placeAvailability(ids);
             List<PlaceAvailabilityType> availabilities = placeAvailabilityRequestProcessor.getPlaceAvailabilities(dtos);
 
             // for now, assume that client system is always able to process the full message
@@ -0,0 +1,50 @@
+package de.rwth.idsg.bikeman.ixsi.repository;
+
+import de.rwth.idsg.bikeman.ixsi.dto.OutboxMessageDTO;
+
+import java.util.List;
+
+/**
+ * Shared IXSI state of the nodes in cluster mode. All timestamps are taken from the clock of the database,
+ * so that the clocks of the nodes do not have to be in sync.
+ *
+ * @since 18.10.2016
+ */
+public interface ClusterRepository {
+
+    // Nodes and sessions
+
+    /**
+     * @return false, if the node was not known (anymore), i.e. it is new or was considered dead in the meantime
+     */
+    boolean heartbeat(String nodeId);
+    void removeNode(String nodeId);
+    int removeDeadNodes(int nodeTimeoutInSeconds);
+
+    void addSession(String systemId, String nodeId);
+    void removeSession(String systemId, String nodeId);
+    boolean hasSessionOnOtherNode(String systemId, String nodeId, int nodeTimeoutInSeconds);
+
+    // Subscriptions
+
+    void subscribe(String storeName, String systemId, List<String> itemKeys, Integer expireIntervalInMinutes);
+    void unsubscribe(String storeName, String systemId, List<String> itemKeys);
+    void unsubscribeAll(String storeName, String systemId);
+    List<String> findSubscribedSystems(String storeName, String itemKey);
+    List<String> findSubscriptions(String storeName, String systemId);
+    int removeStaleSubscriptions();
+
+    // Push outbox
+
+    /**
+     * Puts the message into the outbox of a live node with a session of the system
+     *
+     * @return false, if there is no such node
+     */
+    boolean route(String systemId, String nodeId, int nodeTimeoutInSeconds, String payload, String coalescingKey);
+
+    /**
+     * Removes the oldest messages from the outbox of the node and returns them in the order of their insertion
+     */
+    List<OutboxMessageDTO> takeFromOutbox(String nodeId, int limit);
+}
@@ -0,0 +1,272 @@
+package de.rwth.idsg.bikeman.ixsi.repository;
+
+import com.google.common.collect.Lists;
+import de.rwth.idsg.bikeman.ixsi.dto.OutboxMessageDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Native queries, since the tables are not mapped to entities. Live nodes are the ones with a heartbeat
+ * within the node timeout.
+ *
+ * @since 18.10.2016
+ */
+@Repository
+@Slf4j
+public class ClusterRepositoryImpl implements ClusterRepository {
+
+    // To keep the statements (and the number of their parameters) within limits
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String LIVE_NODES = "SELECT n.node_id FROM ixsi_cluster_node n " +
+                                             "WHERE n.last_seen >= now() - :timeout * INTERVAL '1 second'";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    // -------------------------------------------------------------------------
+    // Nodes and sessions
+    // -------------------------------------------------------------------------
+
+    @Override
+    @Transactional
+    public boolean heartbeat(String nodeId) {
+        int count = em.createNativeQuery("UPDATE ixsi_cluster_node SET last_seen = now() WHERE node_id = :nodeId")
+                      .setParameter("nodeId", nodeId)
+                      .executeUpdate();
+
+        if (count == 0) {
+            em.createNativeQuery("INSERT INTO ixsi_cluster_node (node_id, last_seen) VALUES (:nodeId, now())")
+              .setParameter("nodeId", nodeId)
+              .executeUpdate();
+        }
+        return count == 1;
+    }
+
+    @Override
+    @Transactional
+    public void removeNode(String nodeId) {
+        for (String table : new String[] {"ixsi_cluster_session", "ixsi_push_outbox", "ixsi_cluster_node"}) {
+            em.createNativeQuery("DELETE FROM " + table + " WHERE node_id = :nodeId")
+              .setParameter("nodeId", nodeId)
+              .executeUpdate();
+        }
+    }
+
+    /**
+     * The sessions and outbox messages of nodes that are not live are removed as well, so that no
+     * message is routed to a dead node
+     */
+    @Override
+    @Transactional
+    public int removeDeadNodes(int nodeTimeoutInSeconds) {
+        for (String table : new String[] {"ixsi_cluster_session", "ixsi_push_outbox"}) {
+            em.createNativeQuery("DELETE FROM " + table + " WHERE node_id NOT IN (" + LIVE_NODES + ")")
+              .setParameter("timeout", nodeTimeoutInSeconds)
+              .executeUpdate();
+        }
+
+        return em.createNativeQuery("DELETE FROM ixsi_cluster_node " +
+                                    "WHERE last_seen < now() - :timeout * INTERVAL '1 second'")
+                 .setParameter("timeout", nodeTimeoutInSeconds)
+                 .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public void addSession(String systemId, String nodeId) {
+        em.createNativeQuery("INSERT INTO ixsi_cluster_session (system_id, node_id) " +
+                             "SELECT :systemId, :nodeId WHERE NOT EXISTS " +
+                             "(SELECT 1 FROM ixsi_cluster_session WHERE system_id = :systemId AND node_id = :nodeId)")
+          .setParameter("systemId", systemId)
+          .setParameter("nodeId", nodeId)
+          .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public void removeSession(String systemId, String nodeId) {
+        em.createNativeQuery("DELETE FROM ixsi_cluster_session WHERE system_id = :systemId AND node_id = :nodeId")
+          .setParameter("systemId", systemId)
+          .setParameter("nodeId", nodeId)
+          .executeUpdate();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean hasSessionOnOtherNode(String systemId, String nodeId, int nodeTimeoutInSeconds) {
+        List<?> result = em.createNativeQuery("SELECT 1 FROM ixsi_cluster_session s " +
+                                              "WHERE s.system_id = :systemId " +
+                                              "AND s.node_id <> :nodeId " +
+                                              "AND s.node_id IN (" + LIVE_NODES + ")")
+                           .setParameter("systemId", systemId)
+                           .setParameter("nodeId", nodeId)
+                           .setParameter("timeout", nodeTimeoutInSeconds)
+                           .setMaxResults(1)
+                           .getResultList();
+        return !result.isEmpty();
+    }
+
+    // -------------------------------------------------------------------------
+    // Subscriptions
+    // -------------------------------------------------------------------------
+
+    /**
+     * Renewals replace the existing rows. Without an expire interval the subscription does not expire.
+     */
+    @Override
+    @Transactional
+    public void subscribe(String storeName, String systemId, List<String> itemKeys, Integer expireIntervalInMinutes) {
+        unsubscribe(storeName, systemId, itemKeys);
+
+        String expiresAt = expireIntervalInMinutes == null ? "NULL" : "now() + :minutes * INTERVAL '1 minute'";
+
+        for (List<String> chunk : Lists.partition(itemKeys, CHUNK_SIZE)) {
+            StringBuilder sb = new StringBuilder("INSERT INTO ixsi_subscription " +
+                                                 "(store_name, system_id, item_key, expires_at) VALUES ");
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append("(:storeName, :systemId, :key").append(i).append(", ").append(expiresAt).append(")");
+            }
+
+            Query q = em.createNativeQuery(sb.toString())
+                        .setParameter("storeName", storeName)
+                        .setParameter("systemId", systemId);
+
+            for (int i = 0; i < chunk.size(); i++) {
+                q.setParameter("key" + i, chunk.get(i));
+            }
+            if (expireIntervalInMinutes != null) {
+                q.setParameter("minutes", expireIntervalInMinutes);
+            }
+            q.executeUpdate();
+        }
+    }
+
+    @Override
+    @Transactional
+    public void unsubscribe(String storeName, String systemId, List<String> itemKeys) {
+        for (List<String> chunk : Lists.partition(itemKeys, CHUNK_SIZE)) {
+            em.createNativeQuery("DELETE FROM ixsi_subscription " +
+                                 "WHERE store_name = :storeName AND system_id = :systemId AND item_key IN (:keys)")
+              .setParameter("storeName", storeName)
+              .setParameter("systemId", systemId)
+              .setParameter("keys", chunk)
+              .executeUpdate();
+        }
+    }
+
+    @Override
+    @Transactional
+    public void unsubscribeAll(String storeName, String systemId) {
+        em.createNativeQuery("DELETE FROM ixsi_subscription WHERE store_name = :storeName AND system_id = :systemId")
+          .setParameter("storeName", storeName)
+          .setParameter("systemId", systemId)
+          .executeUpdate();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<String> findSubscribedSystems(String storeName, String itemKey) {
+        return em.createNativeQuery("SELECT system_id FROM ixsi_subscription " +
+                                    "WHERE store_name = :storeName AND item_key = :itemKey " +
+                                    "AND (expires_at IS NULL OR expires_at > now())")
+                 .setParameter("storeName", storeName)
+                 .setParameter("itemKey", itemKey)
+                 .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<String> findSubscriptions(String storeName, String systemId) {
+        return em.createNativeQuery("SELECT item_key FROM ixsi_subscription " +
+                                    "WHERE store_name = :storeName AND system_id = :systemId " +
+                                    "AND (expires_at IS NULL OR expires_at > now())")
+                 .setParameter("storeName", storeName)
+                 .setParameter("systemId", systemId)
+                 .getResultList();
+    }
+
+    /**
+     * Expired subscriptions and the ones of systems, which are not connected to any node anymore
+     */
+    @Override
+    @Transactional
+    public int removeStaleSubscriptions() {
+        return em.createNativeQuery("DELETE FROM ixsi_subscription " +
+                                    "WHERE expires_at <= now() " +
+                                    "OR system_id NOT IN (SELECT system_id FROM ixsi_cluster_session)")
+                 .executeUpdate();
+    }
+
+    // -------------------------------------------------------------------------
+    // Push outbox
+    // -------------------------------------------------------------------------
+
+    /**
+     * If the system is connected to several nodes, one of them is picked randomly
+     */
+    @Override
+    @Transactional
+    public boolean route(String systemId, String nodeId, int nodeTimeoutInSeconds,
+                         String payload, String coalescingKey) {
+
+        // A null parameter cannot be bound without knowing its type
+        String key = coalescingKey == null ? "NULL" : ":coalescingKey";
+
+        Query q = em.createNativeQuery("INSERT INTO ixsi_push_outbox " +
+                                       "(node_id, system_id, payload, coalescing_key, created_at) " +
+                                       "SELECT s.node_id, s.system_id, :payload, " + key + ", now() " +
+                                       "FROM ixsi_cluster_session s " +
+                                       "WHERE s.system_id = :systemId " +
+                                       "AND s.node_id <> :nodeId " +
+                                       "AND s.node_id IN (" + LIVE_NODES + ") " +
+                                       "ORDER BY random() LIMIT 1")
+                    .setParameter("payload", payload)
+                    .setParameter("systemId", systemId)
+                    .setParameter("nodeId", nodeId)
+                    .setParameter("timeout", nodeTimeoutInSeconds);
+
+        if (coalescingKey != null) {
+            q.setParameter("coalescingKey", coalescingKey);
+        }
+        return q.executeUpdate() == 1;
+    }
+
+    /**
+     * Taking the messages with one statement delivers each message at most once, even if the node
+     * fails before sending them
+     */
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<OutboxMessageDTO> takeFromOutbox(String nodeId, int limit) {
+        List<Object[]> rows = em.createNativeQuery("DELETE FROM ixsi_push_outbox WHERE id IN " +
+                                                   "(SELECT id FROM ixsi_push_outbox WHERE node_id = :nodeId " +
+                                                   "ORDER BY id LIMIT :limit) " +
+                                                   "RETURNING id, system_id, payload, coalescing_key")
+                                .setParameter("nodeId", nodeId)
+                                .setParameter("limit", limit)
+                                .getResultList();
+
+        List<OutboxMessageDTO> messages = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            messages.add(new OutboxMessageDTO(((Number) row[0]).longValue(), (String) row[1],
+                                              (String) row[2], (String) row[3]));
+        }
+        messages.sort(Comparator.comparingLong(OutboxMessageDTO::getId));
+        return messages;
+    }
+}
@@ -4,9 +4,8 @@ import de.rwth.idsg.bikeman.ixsi.dto.AvailabilityResponseDTO;
 import de.rwth.idsg.bikeman.ixsi.dto.BookingTargetsInfoResponseDTO;
 import de.rwth.idsg.bikeman.ixsi.dto.ChangedProvidersResponseDTO;
 import de.rwth.idsg.bikeman.ixsi.dto.PlaceAvailabilityResponseDTO;
+import de.rwth.idsg.bikeman.ixsi.dto.SlotStateDTO;
 import xjc.schema.ixsi.BookingTargetIDType;
-import xjc.schema.ixsi.GeoCircleType;
-import xjc.schema.ixsi.GeoRectangleType;
 
 import java.util.List;
 
@@ -21,11 +20,12 @@ public interface QueryIXSIRepository {
 
     // User triggered data
     List<AvailabilityResponseDTO> availability(List<BookingTargetIDType> targets);
-    List<AvailabilityResponseDTO> availability(GeoCircleType circle);
-    List<AvailabilityResponseDTO> availability(GeoRectangleType rectangle);
+    List<AvailabilityResponseDTO> availabilityAtPlaces(List<String> placeIdList);
 
     List<PlaceAvailabilityResponseDTO> placeAvailability(List<String> placeIdList);
-    List<PlaceAvailabilityResponseDTO> placeAvailability(GeoCircleType circle);
-    List<PlaceAvailabilityResponseDTO> placeAvailability(GeoRectangleType geoRectangle);
+
+    // For the in-memory free slot counters
+    List<SlotStateDTO> slotStates();
+    List<SlotStateDTO> slotStates(List<String> placeIdList);
 
 }
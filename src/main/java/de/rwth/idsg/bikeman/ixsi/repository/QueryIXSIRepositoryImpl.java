@@ -7,21 +7,20 @@ import de.rwth.idsg.bikeman.ixsi.dto.ChangedProvidersResponseDTO;
 import de.rwth.idsg.bikeman.ixsi.dto.InavailabilityDTO;
 import de.rwth.idsg.bikeman.ixsi.dto.PedelecDTO;
 import de.rwth.idsg.bikeman.ixsi.dto.PlaceAvailabilityResponseDTO;
+import de.rwth.idsg.bikeman.ixsi.dto.SlotStateDTO;
 import de.rwth.idsg.bikeman.ixsi.dto.StationDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.LocalDateTime;
 import org.springframework.stereotype.Repository;
 import xjc.schema.ixsi.BookingTargetIDType;
 import xjc.schema.ixsi.BookingTargetPropertiesType;
-import xjc.schema.ixsi.GeoCircleType;
-import xjc.schema.ixsi.GeoRectangleType;
 import xjc.schema.ixsi.TimePeriodType;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -209,58 +208,30 @@ public class QueryIXSIRepositoryImpl implements QueryIXSIRepository {
         return m1;
     }
 
+    /**
+     * For the geo-location queries. The places are looked up in the spatial index beforehand.
+     *
+     * Returns the same pedelecs as the former PostGIS queries, i.e. every pedelec in a slot of the stations
+     * regardless of the operation states. A pedelec without a charging status is returned without a state of charge.
+     */
     @Override
-    @SuppressWarnings("unchecked")
-    public List<AvailabilityResponseDTO> availability(GeoCircleType circle) {
-        Query q = em.createNativeQuery(
-                "SELECT p.manufacturer_id as manufacturerId, s.station_Id as stationId, " +
-                "s.location_Latitude as locationLatitude, s.location_Longitude as locationLongitude, p.state_Of_Charge as stateOfCharge " +
-                "FROM t_Pedelec p JOIN t_Station_Slot slot ON p.pedelec_Id = slot.pedelec_Id " +
-                "JOIN t_Station s ON s.station_Id = slot.station_Id WHERE st_dwithin(" +
-                "st_geographyfromtext('POINT( ' || s.location_Latitude || ' ' || s.location_Longitude || ')')," +
-                "CAST(st_makepoint( :lat, :lon ) as geography), :radius)");
-
-        q.setParameter("lat", circle.getCenter().getLatitude());
-        q.setParameter("lon", circle.getCenter().getLongitude());
-        q.setParameter("radius", circle.getRadius());
-
-        return getAvailabilityResponseDTOs(q);
-    }
-
-    @Override
-    public List<AvailabilityResponseDTO> availability(GeoRectangleType rectangle) {
-        Query q = em.createNativeQuery(
-                "SELECT p.manufacturer_id as manufacturerId, s.station_Id as stationId, " +
-                "s.location_Latitude as locationLatitude, s.location_Longitude as locationLongitude, p.state_Of_Charge as stateOfCharge " +
-                "FROM t_Pedelec p JOIN t_Station_Slot slot ON p.pedelec_Id = slot.pedelec_Id " +
-                "JOIN t_Station s ON s.station_Id = slot.station_Id WHERE " +
-                "st_contains(st_makeenvelope(:lat1, :lon1, :lat2, :lon2, 4326)," +
-                "st_geometryfromtext('POINT( ' || s.location_Latitude || ' ' || s.location_Longitude || ')', 4326))");
-
-        q.setParameter("lat1", rectangle.getUpperLeft().getLatitude());
-        q.setParameter("lon1", rectangle.getUpperLeft().getLongitude());
-        q.setParameter("lat2", rectangle.getLowerRight().getLatitude());
-        q.setParameter("lon2", rectangle.getLowerRight().getLongitude());
-
-        return getAvailabilityResponseDTOs(q);
-    }
-
-    @SuppressWarnings("unchecked")
-    private List<AvailabilityResponseDTO> getAvailabilityResponseDTOs(Query q) {
-        List<AvailabilityResponseDTO> myList = new ArrayList<>();
-
-        List<Object[]> fooList = q.getResultList();
-        for (Object[] row : fooList) {
-            AvailabilityResponseDTO dto = new AvailabilityResponseDTO(
-                    (String) row[0],
-                    (String) row[1],
-                    (BigDecimal) row[2],
-                    (BigDecimal) row[3],
-                    (Double) row[4]);
-
-            myList.add(dto);
+    public List<AvailabilityResponseDTO> availabilityAtPlaces(List<String> placeIdList) {
+        if (placeIdList.isEmpty()) {
+            return Collections.emptyList();
         }
-        return myList;
+
+        final String q = "SELECT new de.rwth.idsg.bikeman.ixsi.dto." +
+                         "AvailabilityResponseDTO(p.manufacturerId, s.manufacturerId, " +
+                         "s.locationLatitude, s.locationLongitude, cs.batteryStateOfCharge) " +
+                         "FROM Pedelec p " +
+                         "LEFT JOIN p.chargingStatus cs " +
+                         "JOIN p.stationSlot sl " +
+                         "JOIN sl.station s " +
+                         "WHERE s.manufacturerId IN :placeIds";
+
+        return em.createQuery(q, AvailabilityResponseDTO.class)
+                 .setParameter("placeIds", placeIdList)
+                 .getResultList();
     }
 
     // -------------------------------------------------------------------------
@@ -270,8 +241,10 @@ public class QueryIXSIRepositoryImpl implements QueryIXSIRepository {
     @Override
     @SuppressWarnings("unchecked")
     public List<PlaceAvailabilityResponseDTO> placeAvailability(List<String> placeIdList) {
+        // count(slot) of the row alias is PostgreSQL-only. Counting the key column gives the same result (0 for a
+        // station without matching slots) and also runs on H2
         Query q = em.createNativeQuery(
-                "SELECT s.manufacturer_id, CAST(count(slot) as Integer) " +
+                "SELECT s.manufacturer_id, CAST(count(slot.station_slot_id) as Integer) " +
                 "FROM t_station s " +
                 "LEFT JOIN t_station_slot slot ON s.station_id = slot.station_id " +
                 "AND slot.state = 'OPERATIVE' " +
@@ -300,44 +273,24 @@ public class QueryIXSIRepositoryImpl implements QueryIXSIRepository {
     }
 
     @Override
-    public List<PlaceAvailabilityResponseDTO> placeAvailability(GeoCircleType circle) {
-        Query q = em.createNativeQuery(
-                "SELECT s.manufacturer_id, CAST(count(slot) as Integer) " +
-                "FROM t_Station s " +
-                "LEFT JOIN t_Station_slot slot " +
-                "ON slot.station_id = s.station_id " +
-                "WHERE NOT slot.is_occupied AND " +
-                "st_dwithin(st_geographyfromtext('POINT( ' || s.location_Latitude || ' ' || s.location_Longitude || ')'), " +
-                "CAST(st_makepoint( :lat, :lon ) as geography), :radius) " +
-                "GROUP BY s.manufacturer_id");
-
-        q.setParameter("lat", circle.getCenter().getLatitude());
-        q.setParameter("lon", circle.getCenter().getLongitude());
-        q.setParameter("radius", circle.getRadius());
-
-        return getPlaceAvailabilityResponseDTOs(q);
+    public List<SlotStateDTO> slotStates() {
+        return em.createQuery(SLOT_STATE_QUERY, SlotStateDTO.class)
+                 .getResultList();
     }
 
     @Override
-    public List<PlaceAvailabilityResponseDTO> placeAvailability(GeoRectangleType geoRectangle) {
-        Query q = em.createNativeQuery(
-                "SELECT s.manufacturer_id, CAST(count(slot) as Integer) " +
-                "FROM t_station s " +
-                "LEFT JOIN t_station_slot slot " +
-                "ON slot.station_id = s.station_id " +
-                "WHERE NOT slot.is_occupied AND " +
-                "st_contains(st_makeenvelope(:lat1, :lon1, :lat2, :lon2, 4326), " +
-                "st_geometryfromtext('POINT( ' || s.location_Latitude || ' ' || s.location_Longitude || ')', 4326)) " +
-                "GROUP BY s.manufacturer_id");
-
-        q.setParameter("lat1", geoRectangle.getUpperLeft().getLatitude());
-        q.setParameter("lon1", geoRectangle.getUpperLeft().getLongitude());
-        q.setParameter("lat2", geoRectangle.getLowerRight().getLatitude());
-        q.setParameter("lon2", geoRectangle.getLowerRight().getLongitude());
-
-        return getPlaceAvailabilityResponseDTOs(q);
+    public List<SlotStateDTO> slotStates(List<String> placeIdList) {
+        return em.createQuery(SLOT_STATE_QUERY + " WHERE s.manufacturerId IN :placeIds", SlotStateDTO.class)
+                 .setParameter("placeIds", placeIdList)
+                 .getResultList();
     }
 
+    private static final String SLOT_STATE_QUERY =
+            "SELECT new de.rwth.idsg.bikeman.ixsi.dto.SlotStateDTO" +
+            "(s.manufacturerId, sl.manufacturerId, sl.state, sl.isOccupied) " +
+            "FROM Station s " +
+            "LEFT JOIN s.stationSlots sl";
+
     @SuppressWarnings("unchecked")
     private List<PlaceAvailabilityResponseDTO> getPlaceAvailabilityResponseDTOs(Query q) {
         List<PlaceAvailabilityResponseDTO> myList = new ArrayList<>();
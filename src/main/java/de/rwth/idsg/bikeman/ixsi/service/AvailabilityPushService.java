@@ -1,18 +1,14 @@
 package de.rwth.idsg.bikeman.ixsi.service;
 
 import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
-import de.rwth.idsg.bikeman.ixsi.endpoint.Producer;
 import de.rwth.idsg.bikeman.ixsi.store.AvailabilityStore;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import xjc.schema.ixsi.AvailabilityPushMessageType;
 import xjc.schema.ixsi.BookingTargetChangeAvailabilityType;
 import xjc.schema.ixsi.BookingTargetIDType;
-import xjc.schema.ixsi.IxsiMessageType;
-import xjc.schema.ixsi.SubscriptionMessageType;
 import xjc.schema.ixsi.TimePeriodType;
 
 import java.util.Set;
@@ -25,7 +21,7 @@ import java.util.Set;
 @Service
 public class AvailabilityPushService {
 
-    @Autowired private Producer producer;
+    @Autowired private CoalescingPushScheduler pushScheduler;
     @Autowired private AvailabilityStore availabilityStore;
 
     // -------------------------------------------------------------------------
@@ -98,11 +94,7 @@ public class AvailabilityPushService {
             targetChange.setInavailability(period);
         }
 
-        AvailabilityPushMessageType avail = new AvailabilityPushMessageType().withAvailabilityChange(targetChange);
-        SubscriptionMessageType sub = new SubscriptionMessageType().withPushMessageGroup(avail);
-        IxsiMessageType ixsi = new IxsiMessageType().withSubscriptionMessage(sub);
-
-        producer.send(ixsi, systemIdSet);
+        pushScheduler.addAvailabilityChange(systemIdSet, targetChange);
     }
 
     private TimePeriodType buildTimePeriodForTransaction(DateTime departure) {
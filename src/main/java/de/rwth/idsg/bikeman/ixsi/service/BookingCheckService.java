@@ -1,15 +1,21 @@
 package de.rwth.idsg.bikeman.ixsi.service;
 
-import de.rwth.idsg.bikeman.domain.Booking;
-import de.rwth.idsg.bikeman.ixsi.BookingCheckTask;
-import de.rwth.idsg.bikeman.repository.BookingRepository;
+import de.rwth.idsg.bikeman.ixsi.dto.BookingCheckDTO;
+import de.rwth.idsg.bikeman.repository.BookingCheckRepository;
+import de.rwth.idsg.bikeman.repository.SchedulerLockRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.joda.time.DateTime;
 import org.joda.time.Duration;
+import org.joda.time.LocalDateTime;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -18,66 +24,110 @@ import java.util.concurrent.TimeUnit;
  * We should identify reservations, that have been not used (i.e. no transaction started within the reservation
  * time period), and send (1) booking alert notification and (2) empty consumption to the IXSI server.
  *
+ * The checks are persisted together with the booking (see {@link #schedule(String, LocalDateTime)}), and
+ * a periodic sweep processes all due checks with one query. Since the first sweep runs right after the startup,
+ * the checks that became due while BikeMan was down are not lost. If several nodes share the database,
+ * only the holder of the scheduler lock sweeps.
+ *
+ * Pushes are sent before the due checks are removed. After a crash in between, a check might be reported twice,
+ * but never not at all.
+ *
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
  * @since 18.11.2015
  */
 @Slf4j
 @Service
-public class BookingCheckService {
+public class BookingCheckService implements EnvironmentAware {
+
+    private static final String ENV_BOOKING_CHECK = "ixsi.bookingCheck.";
+    private static final String PROP_SWEEP_INTERVAL = "sweepIntervalInSeconds";
+
+    private static final String LOCK_NAME = "booking-check";
 
     @Autowired private ScheduledExecutorService executorService;
-    @Autowired private BookingRepository bookingRepository;
+    @Autowired private BookingCheckRepository bookingCheckRepository;
+    @Autowired private SchedulerLockRepository schedulerLockRepository;
     @Autowired private ConsumptionPushService consumptionPushService;
     @Autowired private BookingAlertPushService bookingAlertPushService;
 
-    // Key : ixsiBookingId
-    private final ConcurrentHashMap<String, ScheduledFuture> lookupTable = new ConcurrentHashMap<>();
-
     // Let's not check exactly at the end of the reservation, but some time later
     public static final int BUFFER_IN_MIN = 2;
 
-    public void placedBooking(Booking booking) {
-        log.debug("New booking is placed");
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
 
-        String ixsiBookingId = booking.getIxsiBookingId();
-        DateTime reservationEnd = booking.getReservation().getEndDateTime().toDateTime();
-        Duration duration = new Duration(DateTime.now(), reservationEnd.plusMinutes(BUFFER_IN_MIN));
+    private RelaxedPropertyResolver propertyResolver;
+    private ScheduledFuture<?> sweepFuture;
+    private Duration lockLease;
 
-        BookingCheckTask c = new BookingCheckTask(this, ixsiBookingId, reservationEnd);
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_BOOKING_CHECK);
+    }
+
+    @PostConstruct
+    public void init() {
+        long interval = propertyResolver.getProperty(PROP_SWEEP_INTERVAL, Long.class, 30L);
 
-        ScheduledFuture ff = executorService.schedule(c, duration.getMillis(), TimeUnit.MILLISECONDS);
-        lookupTable.put(booking.getIxsiBookingId(), ff);
+        // Long enough for the holder to renew it with the next sweep
+        lockLease = Duration.standardSeconds(interval * 2);
+
+        sweepFuture = executorService.scheduleWithFixedDelay(this::sweep, 0, interval, TimeUnit.SECONDS);
+        log.info("Sweeping the booking checks every {} seconds as node '{}'", interval, nodeId);
     }
 
-    public void changedBooking(Booking oldBooking, Booking newBooking) {
-        log.debug("Booking is changed");
+    @PreDestroy
+    public void shutDown() {
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+        }
+    }
+
+    /**
+     * Joins the transaction of the booking, so that the check is persisted only if the booking is
+     * (and it is rescheduled, if the booking is changed)
+     */
+    public void schedule(String ixsiBookingId, LocalDateTime reservationEnd) {
+        log.debug("Scheduling the booking check of '{}'", ixsiBookingId);
+        bookingCheckRepository.schedule(ixsiBookingId, reservationEnd.plusMinutes(BUFFER_IN_MIN));
+    }
 
-        cancelledBooking(oldBooking);
-        placedBooking(newBooking);
+    public void unschedule(String ixsiBookingId) {
+        log.debug("Removing the booking check of '{}'", ixsiBookingId);
+        bookingCheckRepository.remove(ixsiBookingId);
     }
 
-    public void cancelledBooking(Booking booking) {
-        log.debug("Booking is cancelled");
+    // -------------------------------------------------------------------------
+    // Sweep
+    // -------------------------------------------------------------------------
 
-        ScheduledFuture f = lookupTable.remove(booking.getIxsiBookingId());
-        if (f != null) {
-            f.cancel(true);
+    private void sweep() {
+        try {
+            if (schedulerLockRepository.tryAcquire(LOCK_NAME, nodeId, lockLease)) {
+                check(new LocalDateTime());
+            } else {
+                log.trace("Another node holds the lock '{}'. Will not sweep", LOCK_NAME);
+            }
+        } catch (Exception e) {
+            // Do not let the exception cancel the periodic sweep
+            log.error("Failed to sweep the booking checks", e);
         }
     }
 
-    public void check(String ixsiBookingId, DateTime reservationEnd) {
-        log.debug("Running the booking check");
+    private void check(LocalDateTime now) {
+        List<BookingCheckDTO> notUsed = bookingCheckRepository.findDueAndNotUsed(now);
 
-        try {
-            boolean notUsed = bookingRepository.isNotUsedAndExpired(ixsiBookingId);
-            if (notUsed) {
-                log.debug("Booking '{}' is not used, reporting to IXSI server", ixsiBookingId);
+        if (!notUsed.isEmpty()) {
+            log.debug("{} booking(s) not used, reporting to IXSI server", notUsed.size());
 
-                bookingAlertPushService.alertNotUsed(ixsiBookingId);
-                consumptionPushService.reportNotUsed(ixsiBookingId, reservationEnd);
+            for (BookingCheckDTO dto : notUsed) {
+                bookingAlertPushService.alertNotUsed(dto.getIxsiBookingId());
             }
-        } finally {
-            lookupTable.remove(ixsiBookingId);
+            consumptionPushService.reportNotUsed(notUsed);
+        }
+
+        int removed = bookingCheckRepository.removeDue(now);
+        if (removed > 0) {
+            log.debug("Processed {} due booking check(s)", removed);
         }
     }
 }
@@ -6,6 +6,11 @@ import de.rwth.idsg.bikeman.domain.OperationState;
 import de.rwth.idsg.bikeman.domain.Pedelec;
 import de.rwth.idsg.bikeman.domain.Reservation;
 import de.rwth.idsg.bikeman.domain.Transaction;
+import de.rwth.idsg.bikeman.event.BookingCancelledEvent;
+import de.rwth.idsg.bikeman.event.BookingChangedEvent;
+import de.rwth.idsg.bikeman.event.BookingPlacedEvent;
+import de.rwth.idsg.bikeman.event.DomainEventBus;
+import de.rwth.idsg.bikeman.fleet.FleetState;
 import de.rwth.idsg.bikeman.ixsi.IxsiCodeException;
 import de.rwth.idsg.bikeman.ixsi.IxsiProcessingException;
 import de.rwth.idsg.bikeman.psinterface.dto.request.CancelReservationDTO;
@@ -15,6 +20,8 @@ import de.rwth.idsg.bikeman.repository.CardAccountRepository;
 import de.rwth.idsg.bikeman.repository.PedelecRepository;
 import de.rwth.idsg.bikeman.repository.ReservationRepository;
 import de.rwth.idsg.bikeman.service.StationService;
+import de.rwth.idsg.bikeman.telemetry.BatterySample;
+import de.rwth.idsg.bikeman.telemetry.BatteryTelemetryStore;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.Duration;
@@ -42,6 +49,10 @@ public class BookingService {
     @Autowired private PedelecRepository pedelecRepository;
 
     @Autowired private StationService stationService;
+    @Autowired private BookingCheckService bookingCheckService;
+    @Autowired private DomainEventBus domainEventBus;
+    @Autowired private FleetState fleetState;
+    @Autowired private BatteryTelemetryStore batteryTelemetryStore;
 
     private static final int BOOKING_MIN_TIME_WINDOW_IN_MIN = 15;
     private static final int BOOKING_MAX_TIME_WINDOW_IN_MIN = 60;
@@ -88,11 +99,26 @@ public class BookingService {
 
         Booking booking = new Booking();
         booking.setReservation(savedReservation);
+        Booking savedBooking;
         try {
-            return bookingRepository.save(booking);
+            savedBooking = bookingRepository.save(booking);
         } catch (Throwable e) {
             throw new DatabaseException("Failed during database operation.", e);
         }
+
+        bookingCheckService.schedule(savedBooking.getIxsiBookingId(), end);
+
+        BookingPlacedEvent event = new BookingPlacedEvent(
+                savedBooking.getIxsiBookingId(),
+                pedelec.getManufacturerId(),
+                cardAccount.getCardId(),
+                getPlaceId(pedelec),
+                begin.toDateTime(),
+                end.toDateTime());
+        fleetState.applyAfterCommit(event);
+        domainEventBus.publish(event);
+
+        return savedBooking;
     }
 
     public Booking get(String bookingId, String userId) {
@@ -122,12 +148,22 @@ public class BookingService {
         }
 
         bookingRepository.cancel(booking);
+        bookingCheckService.unschedule(booking.getIxsiBookingId());
 
         // send 'cancelReservation' to station
         String endpointAddress = reservation.getPedelec().getStationSlot().getStation().getEndpointAddress();
         CancelReservationDTO cancelReservationDTO = new CancelReservationDTO(reservation.getPedelec().getManufacturerId());
         stationService.cancelReservation(endpointAddress, cancelReservationDTO);
 
+        BookingCancelledEvent event = new BookingCancelledEvent(
+                booking.getIxsiBookingId(),
+                reservation.getPedelec().getManufacturerId(),
+                getPlaceId(reservation.getPedelec()),
+                reservation.getStartDateTime().toDateTime(),
+                end.toDateTime());
+        fleetState.applyAfterCommit(event);
+        domainEventBus.publish(event);
+
         return booking;
     }
 
@@ -148,9 +184,13 @@ public class BookingService {
             throw new IxsiProcessingException("Proposed time period overlaps existing booking.");
         }
 
+        LocalDateTime oldBegin = reservation.getStartDateTime();
+        LocalDateTime oldEnd = reservation.getEndDateTime();
+
         reservation.setStartDateTime(begin);
         reservation.setEndDateTime(end);
         reservationRepository.save(reservation);
+        bookingCheckService.schedule(booking.getIxsiBookingId(), end);
 
         Pedelec pedelec = reservation.getPedelec();
         CardAccount cardAccount = reservation.getCardAccount();
@@ -160,6 +200,17 @@ public class BookingService {
         ReserveNowDTO reserveNowDTO = new ReserveNowDTO(pedelec.getManufacturerId(), cardAccount.getCardId(), end.toDateTime());
         stationService.reserveNow(endpointAddress, reserveNowDTO);
 
+        BookingChangedEvent event = new BookingChangedEvent(
+                booking.getIxsiBookingId(),
+                pedelec.getManufacturerId(),
+                getPlaceId(pedelec),
+                oldBegin.toDateTime(),
+                oldEnd.toDateTime(),
+                begin.toDateTime(),
+                end.toDateTime());
+        fleetState.applyAfterCommit(event);
+        domainEventBus.publish(event);
+
         return booking;
     }
 
@@ -195,6 +246,10 @@ public class BookingService {
         return duration;
     }
 
+    private static String getPlaceId(Pedelec pedelec) {
+        return pedelec.getStationSlot().getStation().getManufacturerId();
+    }
+
     /**
      * TODO: What is a reasonable value for lowerLimit? Is SoC check a good solution?
      */
@@ -203,13 +258,24 @@ public class BookingService {
 
         boolean isAvailable =  OperationState.OPERATIVE.equals(pedelec.getState())
             && !pedelec.getInTransaction()
-            && pedelec.getChargingStatus().getBatteryStateOfCharge() > lowerLimit;
+            && getStateOfCharge(pedelec) > lowerLimit;
 
         if (!isAvailable) {
             throw new IxsiProcessingException("The booking target is not available.");
         }
     }
 
+    /**
+     * The charging status in the DB lags behind by up to the flush interval of the battery telemetry
+     */
+    private double getStateOfCharge(Pedelec pedelec) {
+        BatterySample latest = batteryTelemetryStore.getLatest(pedelec.getManufacturerId());
+        if (latest != null && latest.getSoc() != null) {
+            return latest.getSoc();
+        }
+        return pedelec.getChargingStatus().getBatteryStateOfCharge();
+    }
+
     private void check(CardAccount ca) {
         checkState(ca);
 
@@ -0,0 +1,313 @@
+package de.rwth.idsg.bikeman.ixsi.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.bikeman.event.EventOrigin;
+import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
+import de.rwth.idsg.bikeman.ixsi.dto.PlaceAvailabilityResponseDTO;
+import de.rwth.idsg.bikeman.ixsi.endpoint.Producer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import xjc.schema.ixsi.AvailabilityPushMessageType;
+import xjc.schema.ixsi.BookingTargetChangeAvailabilityType;
+import xjc.schema.ixsi.IxsiMessageType;
+import xjc.schema.ixsi.PlaceAvailabilityPushMessageType;
+import xjc.schema.ixsi.PlaceAvailabilityType;
+import xjc.schema.ixsi.ProviderPlaceIDType;
+import xjc.schema.ixsi.SubscriptionMessageType;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the availability and place availability changes for the client systems during a short time window and
+ * pushes them together, instead of sending one message per change.
+ *
+ * Place availabilities are collected as place ids only. Their values are read when the window closes, so that
+ * superseded values of a place are never sent and all places are read with one query.
+ *
+ * All systems are flushed together when the window closes. Systems with the same pending changes (e.g. because
+ * they subscribed to the same booking targets) get the same message, which is built and marshalled only once.
+ * The flushes run in their own thread, so that they are not delayed by other scheduled jobs.
+ *
+ * A window of 0 disables the coalescing, i.e. every change is pushed immediately.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class CoalescingPushScheduler implements EnvironmentAware {
+
+    private static final String ENV_PUSH = "ixsi.push.";
+    private static final String PROP_WINDOW = "coalescingWindowInMillis";
+    private static final String PLACE_AVAILABILITY_KEY_PREFIX = "place-availability:";
+
+    @Autowired private Producer producer;
+    @Autowired private FreeSlotCounter freeSlotCounter;
+
+    private final ConcurrentHashMap<String, PendingPushes> pendingMap = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // Number of (system, change) pairs, i.e. the number of messages that would be sent without coalescing
+    private final AtomicLong changeCount = new AtomicLong(0);
+    private final AtomicLong sentMessageCount = new AtomicLong(0);
+
+    private RelaxedPropertyResolver propertyResolver;
+    private long windowInMillis;
+    private ScheduledExecutorService flushExecutor;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_PUSH);
+    }
+
+    @PostConstruct
+    public void init() {
+        windowInMillis = propertyResolver.getProperty(PROP_WINDOW, Long.class, 100L);
+        log.info("Coalescing window for IXSI pushes is {} ms", windowInMillis);
+
+        if (windowInMillis > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("bikeman-Push-Flush-%d").build());
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+    }
+
+    public void addAvailabilityChange(Set<String> systemIdSet, BookingTargetChangeAvailabilityType change) {
+        for (String systemId : systemIdSet) {
+            changeCount.incrementAndGet();
+            getPending(systemId).addAvailabilityChange(change);
+        }
+        scheduleFlush();
+    }
+
+    public void addPlaceChange(Set<String> systemIdSet, String placeID) {
+        for (String systemId : systemIdSet) {
+            changeCount.incrementAndGet();
+            getPending(systemId).addPlaceChange(placeID);
+        }
+        scheduleFlush();
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    public long getWindowInMillis() {
+        return windowInMillis;
+    }
+
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    public long getSentMessageCount() {
+        return sentMessageCount.get();
+    }
+
+    public long getSavedMessageCount() {
+        return Math.max(0, changeCount.get() - sentMessageCount.get());
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private PendingPushes getPending(String systemId) {
+        return pendingMap.computeIfAbsent(systemId, id -> new PendingPushes());
+    }
+
+    private void scheduleFlush() {
+        if (windowInMillis <= 0) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            flushExecutor.schedule(this::flush, windowInMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        // Changes that arrive from now on schedule the next flush
+        flushScheduled.set(false);
+
+        Map<PendingContent, Set<String>> groups = new LinkedHashMap<>();
+        Map<PendingContent, Long> origins = new HashMap<>();
+
+        for (Map.Entry<String, PendingPushes> entry : pendingMap.entrySet()) {
+            PendingContent content = entry.getValue().drain();
+            if (content != null) {
+                groups.computeIfAbsent(content, c -> new HashSet<>()).add(entry.getKey());
+                origins.merge(content, content.originAt, Math::min);
+            }
+        }
+
+        for (Map.Entry<PendingContent, Set<String>> group : groups.entrySet()) {
+            PendingContent content = group.getKey();
+
+            // The latency of the push is measured from the earliest change of the window
+            EventOrigin.runWith(origins.get(content), () -> flush(group.getValue(), content));
+        }
+    }
+
+    private void flush(Set<String> systemIds, PendingContent content) {
+        try {
+            if (!content.availabilityChanges.isEmpty()) {
+                AvailabilityPushMessageType push = new AvailabilityPushMessageType()
+                        .withAvailabilityChange(content.availabilityChanges);
+                send(systemIds, new SubscriptionMessageType().withPushMessageGroup(push), null);
+            }
+
+            if (!content.placeIds.isEmpty()) {
+                PlaceAvailabilityPushMessageType push = new PlaceAvailabilityPushMessageType()
+                        .withPlaceAvailability(buildPlaceAvailabilities(content.placeIds));
+
+                // A newer push for the same places makes this one obsolete
+                String key = PLACE_AVAILABILITY_KEY_PREFIX + String.join(",", content.placeIds);
+
+                send(systemIds, new SubscriptionMessageType().withPushMessageGroup(push), key);
+            }
+        } catch (Exception e) {
+            log.error("Failed to push the coalesced changes to the systems {}", systemIds, e);
+        }
+    }
+
+    /**
+     * The message is marshalled once for all systems
+     */
+    private void send(Set<String> systemIds, SubscriptionMessageType sub, String coalescingKey) {
+        IxsiMessageType ixsi = new IxsiMessageType().withSubscriptionMessage(sub);
+
+        producer.send(ixsi, systemIds, coalescingKey);
+        sentMessageCount.addAndGet(systemIds.size());
+    }
+
+    private List<PlaceAvailabilityType> buildPlaceAvailabilities(List<String> placeIds) {
+        List<PlaceAvailabilityType> list = new ArrayList<>(placeIds.size());
+
+        for (PlaceAvailabilityResponseDTO dto : freeSlotCounter.placeAvailability(placeIds)) {
+            ProviderPlaceIDType placeIDType = new ProviderPlaceIDType()
+                    .withPlaceID(dto.getManufacturerId())
+                    .withProviderID(IXSIConstants.Provider.id);
+
+            list.add(new PlaceAvailabilityType()
+                    .withAvailability(dto.getAvailableSlots())
+                    .withID(placeIDType));
+        }
+        return list;
+    }
+
+    /**
+     * The changes of one system, which are not pushed yet
+     */
+    private static class PendingPushes {
+        private List<BookingTargetChangeAvailabilityType> availabilityChanges = new ArrayList<>();
+        private Set<String> placeIds = new TreeSet<>();
+        private long originAt;
+
+        private synchronized void addAvailabilityChange(BookingTargetChangeAvailabilityType change) {
+            start();
+            availabilityChanges.add(change);
+        }
+
+        private synchronized void addPlaceChange(String placeID) {
+            start();
+            placeIds.add(placeID);
+        }
+
+        /**
+         * @return null, if there are no changes
+         */
+        private synchronized PendingContent drain() {
+            if (isEmpty()) {
+                return null;
+            }
+
+            PendingContent content = new PendingContent(availabilityChanges, new ArrayList<>(placeIds), originAt);
+            availabilityChanges = new ArrayList<>();
+            placeIds = new TreeSet<>();
+            return content;
+        }
+
+        private void start() {
+            if (isEmpty()) {
+                originAt = EventOrigin.get();
+            }
+        }
+
+        private boolean isEmpty() {
+            return availabilityChanges.isEmpty() && placeIds.isEmpty();
+        }
+    }
+
+    /**
+     * The drained changes of a system. Two contents are equal, if they contain the same change instances (each
+     * change is added to all subscribed systems as the same instance) and the same place ids. The origin is not
+     * compared.
+     */
+    private static class PendingContent {
+        private final List<BookingTargetChangeAvailabilityType> availabilityChanges;
+        private final List<String> placeIds;
+        private final long originAt;
+
+        private PendingContent(List<BookingTargetChangeAvailabilityType> availabilityChanges, List<String> placeIds,
+                               long originAt) {
+            this.availabilityChanges = availabilityChanges;
+            this.placeIds = placeIds;
+            this.originAt = originAt;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PendingContent)) {
+                return false;
+            }
+
+            PendingContent other = (PendingContent) o;
+            if (availabilityChanges.size() != other.availabilityChanges.size()
+                    || !placeIds.equals(other.placeIds)) {
+                return false;
+            }
+
+            for (int i = 0; i < availabilityChanges.size(); i++) {
+                if (availabilityChanges.get(i) != other.availabilityChanges.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = placeIds.hashCode();
+            for (BookingTargetChangeAvailabilityType change : availabilityChanges) {
+                hash = 31 * hash + System.identityHashCode(change);
+            }
+            return hash;
+        }
+    }
+}
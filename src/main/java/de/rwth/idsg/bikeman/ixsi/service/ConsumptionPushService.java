@@ -3,11 +3,11 @@ package de.rwth.idsg.bikeman.ixsi.service;
 import de.rwth.idsg.bikeman.domain.Booking;
 import de.rwth.idsg.bikeman.domain.Transaction;
 import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
+import de.rwth.idsg.bikeman.ixsi.dto.BookingCheckDTO;
 import de.rwth.idsg.bikeman.ixsi.endpoint.Producer;
 import de.rwth.idsg.bikeman.ixsi.store.ConsumptionStore;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
-import org.joda.time.LocalDateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import xjc.schema.ixsi.ConsumptionPushMessageType;
@@ -17,6 +17,11 @@ import xjc.schema.ixsi.SubscriptionMessageType;
 import xjc.schema.ixsi.TextType;
 import xjc.schema.ixsi.TimePeriodType;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -40,28 +45,32 @@ public class ConsumptionPushService {
     // USED
     // -------------------------------------------------------------------------
 
-    public void report(Booking booking) {
-        Set<String> systemIdSet = consumptionStore.getSubscribedSystems(booking.getIxsiBookingId());
+    public void report(String ixsiBookingId, DateTime start, DateTime end) {
+        Set<String> systemIdSet = consumptionStore.getSubscribedSystems(ixsiBookingId);
         if (systemIdSet.isEmpty()) {
-            log.debug("Will not push. There is no subscribed system for bookingId '{}'", booking.getBookingId());
+            log.debug("Will not push. There is no subscribed system for ixsiBookingId '{}'", ixsiBookingId);
             return;
         }
 
-        proceed(createConsumption(booking), systemIdSet);
+        proceed(createConsumption(ixsiBookingId, start, end), systemIdSet);
     }
 
     public ConsumptionType createConsumption(Booking booking) {
         Transaction t = booking.getTransaction();
 
-        LocalDateTime start = t.getStartDateTime();
-        LocalDateTime end = t.getEndDateTime();
+        return createConsumption(
+                booking.getIxsiBookingId(),
+                t.getStartDateTime().toDateTime(),
+                t.getEndDateTime().toDateTime());
+    }
 
+    public ConsumptionType createConsumption(String ixsiBookingId, DateTime start, DateTime end) {
         TimePeriodType timePeriod = new TimePeriodType()
-                .withBegin(start.toDateTime())
-                .withEnd(end.toDateTime());
+                .withBegin(start)
+                .withEnd(end);
 
         return new ConsumptionType()
-                .withBookingID(booking.getIxsiBookingId())
+                .withBookingID(ixsiBookingId)
                 .withType(IXSIConstants.consumptionClass)
                 .withDescription(USED)
                 .withFinal(true)
@@ -82,6 +91,29 @@ public class ConsumptionPushService {
         proceed(createEmptyConsumption(ixsiBookingId, reservationEnd), systemIdSet);
     }
 
+    /**
+     * Sends one message per system with all empty consumptions the system subscribed to
+     */
+    public void reportNotUsed(List<BookingCheckDTO> bookings) {
+        Map<String, List<ConsumptionType>> consumptionsBySystem = new HashMap<>();
+
+        for (BookingCheckDTO dto : bookings) {
+            Set<String> systemIdSet = consumptionStore.getSubscribedSystems(dto.getIxsiBookingId());
+            if (systemIdSet.isEmpty()) {
+                continue;
+            }
+
+            ConsumptionType consumption = createEmptyConsumption(dto.getIxsiBookingId(), dto.getReservationEnd());
+            for (String systemId : systemIdSet) {
+                consumptionsBySystem.computeIfAbsent(systemId, id -> new ArrayList<>()).add(consumption);
+            }
+        }
+
+        for (Map.Entry<String, List<ConsumptionType>> entry : consumptionsBySystem.entrySet()) {
+            proceed(entry.getValue(), Collections.singleton(entry.getKey()));
+        }
+    }
+
     public ConsumptionType createEmptyConsumption(String ixsiBookingId, DateTime reservationEnd) {
 
         // Important! Both are set to the same value
@@ -102,7 +134,11 @@ public class ConsumptionPushService {
     // -------------------------------------------------------------------------
 
     private void proceed(ConsumptionType consumption, Set<String> systemIdSet) {
-        ConsumptionPushMessageType c = new ConsumptionPushMessageType().withConsumption(consumption);
+        proceed(Collections.singletonList(consumption), systemIdSet);
+    }
+
+    private void proceed(List<ConsumptionType> consumptionList, Set<String> systemIdSet) {
+        ConsumptionPushMessageType c = new ConsumptionPushMessageType().withConsumption(consumptionList);
         SubscriptionMessageType sub = new SubscriptionMessageType().withPushMessageGroup(c);
         IxsiMessageType ixsi = new IxsiMessageType().withSubscriptionMessage(sub);
 
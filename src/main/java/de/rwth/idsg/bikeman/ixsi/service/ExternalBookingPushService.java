@@ -1,8 +1,6 @@
 package de.rwth.idsg.bikeman.ixsi.service;
 
 import com.google.common.base.Optional;
-import de.rwth.idsg.bikeman.domain.Booking;
-import de.rwth.idsg.bikeman.domain.Transaction;
 import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
 import de.rwth.idsg.bikeman.ixsi.endpoint.Producer;
 import de.rwth.idsg.bikeman.ixsi.repository.IxsiUserRepository;
@@ -33,8 +31,7 @@ public class ExternalBookingPushService {
     @Autowired private ExternalBookingStore externalBookingStore;
     @Autowired private IxsiUserRepository ixsiUserRepository;
 
-    public void report(Booking booking, Transaction transaction) {
-        String cardId = transaction.getCardAccount().getCardId();
+    public void report(String ixsiBookingId, String cardId, String pedelecManufacturerId, DateTime startDateTime) {
         Optional<String> optionalMJ = ixsiUserRepository.getMajorCustomerName(cardId);
 
         if (optionalMJ.isPresent()) {
@@ -48,17 +45,16 @@ public class ExternalBookingPushService {
                 return;
             }
 
-            DateTime dt = transaction.getStartDateTime().toDateTime();
             TimePeriodType time = new TimePeriodType()
-                .withBegin(dt)
-                .withEnd(IXSIConstants.constructReturnDateTime(dt));
+                .withBegin(startDateTime)
+                .withEnd(IXSIConstants.constructReturnDateTime(startDateTime));
 
             BookingTargetIDType bookingTarget = new BookingTargetIDType()
-                .withBookeeID(String.valueOf(transaction.getPedelec().getManufacturerId()))
+                .withBookeeID(pedelecManufacturerId)
                 .withProviderID(IXSIConstants.Provider.id);
 
             ExternalBookingType extBooking = new ExternalBookingType()
-                .withBookingID(booking.getIxsiBookingId())
+                .withBookingID(ixsiBookingId)
                 .withBookingTargetID(bookingTarget)
                 .withUserInfo(userInfo)
                 .withTimePeriod(time);
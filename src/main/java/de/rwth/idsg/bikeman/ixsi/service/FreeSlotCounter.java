@@ -0,0 +1,421 @@
+package de.rwth.idsg.bikeman.ixsi.service;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.event.DomainEventListener;
+import de.rwth.idsg.bikeman.event.SlotStateChangedEvent;
+import de.rwth.idsg.bikeman.event.StationBootedEvent;
+import de.rwth.idsg.bikeman.event.StationStateChangedEvent;
+import de.rwth.idsg.bikeman.event.StationStatusReceivedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStartedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStoppedEvent;
+import de.rwth.idsg.bikeman.ixsi.dto.PlaceAvailabilityResponseDTO;
+import de.rwth.idsg.bikeman.ixsi.dto.SlotStateDTO;
+import de.rwth.idsg.bikeman.ixsi.repository.QueryIXSIRepository;
+import de.rwth.idsg.bikeman.psinterface.Utils;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory number of free (i.e. operative and unoccupied) slots per station, so that the place availability
+ * queries and pushes do not need SQL.
+ *
+ * The state of every slot is kept, and the counter of the station is adjusted by the difference of the old and
+ * new state of a slot. Therefore the updates are idempotent, and applying the same change twice does not skew
+ * the counter. The counters are built at startup and updated with the domain events. They are reconciled with
+ * the DB periodically, which also covers changes that we do not get events for. The slot updates that arrive
+ * while a reconciliation reads the DB are recorded and applied to the result again, so that they are not lost.
+ * If the domain event bus drops events, a reconciliation is started right away.
+ *
+ * Since the counters know when the number of free slots of a station really changes, they are the source of
+ * the place availability pushes.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class FreeSlotCounter implements DomainEventListener, EnvironmentAware {
+
+    private static final String ENV_PLACE_AVAILABILITY = "ixsi.placeAvailability.";
+    private static final String PROP_RECONCILE_INTERVAL = "reconcileIntervalInSeconds";
+
+    @Autowired private ScheduledExecutorService executorService;
+    @Autowired private QueryIXSIRepository queryIXSIRepository;
+    @Autowired private PlaceAvailabilityPushService placeAvailabilityPushService;
+
+    /**
+     * Key   (String)       = Manufacturer id of the station
+     * Value (StationSlots) = States of the slots and the free slot counter
+     */
+    private final ConcurrentHashMap<String, StationSlots> stations = new ConcurrentHashMap<>();
+
+    /**
+     * Not null, while a reconciliation reads the DB. Guarded by this.
+     */
+    private List<SlotUpdate> recorded;
+
+    /**
+     * Serializes the periodic and the requested reconciliations
+     */
+    private final Object reconcileLock = new Object();
+    private final AtomicBoolean reconcileRequested = new AtomicBoolean(false);
+
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong correctionCount = new AtomicLong(0);
+
+    private RelaxedPropertyResolver propertyResolver;
+    private ScheduledFuture<?> reconcileFuture;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_PLACE_AVAILABILITY);
+    }
+
+    /**
+     * The first reconciliation builds the counters. Until then, the queries fall back to the DB.
+     */
+    @PostConstruct
+    public void init() {
+        long interval = propertyResolver.getProperty(PROP_RECONCILE_INTERVAL, Long.class, 300L);
+        reconcileFuture = executorService.scheduleWithFixedDelay(this::reconcile, 0, interval, TimeUnit.SECONDS);
+        log.info("Reconciling the free slot counters every {} seconds", interval);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (reconcileFuture != null) {
+            reconcileFuture.cancel(false);
+        }
+    }
+
+    /**
+     * Only the stations that are not known yet are loaded from the DB
+     */
+    public List<PlaceAvailabilityResponseDTO> placeAvailability(List<String> placeIdList) {
+        List<PlaceAvailabilityResponseDTO> dtos = new ArrayList<>(placeIdList.size());
+        List<String> unknown = new ArrayList<>();
+
+        for (String placeId : placeIdList) {
+            StationSlots slots = stations.get(placeId);
+            if (slots == null) {
+                unknown.add(placeId);
+            } else {
+                dtos.add(new PlaceAvailabilityResponseDTO(placeId, slots.getFreeCount()));
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            missCount.addAndGet(unknown.size());
+            for (StationSlots slots : load(queryIXSIRepository.slotStates(unknown)).values()) {
+                stations.putIfAbsent(slots.stationManufacturerId, slots);
+                dtos.add(new PlaceAvailabilityResponseDTO(slots.stationManufacturerId, slots.getFreeCount()));
+            }
+        }
+
+        return dtos;
+    }
+
+    // -------------------------------------------------------------------------
+    // Domain events
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void onTransactionStarted(TransactionStartedEvent event) {
+        setOccupied(event.getStationManufacturerId(), event.getSlotManufacturerId(), false);
+    }
+
+    @Override
+    public void onTransactionStopped(TransactionStoppedEvent event) {
+        setOccupied(event.getStationManufacturerId(), event.getSlotManufacturerId(), true);
+    }
+
+    @Override
+    public void onStationStatusReceived(StationStatusReceivedEvent event) {
+        String stationManufacturerId = event.getStationStatus().getStationManufacturerId();
+        List<SlotDTO.StationStatus> slots = event.getStationStatus().getSlots();
+
+        if (Utils.isEmpty(slots)) {
+            return;
+        }
+
+        for (SlotDTO.StationStatus slot : slots) {
+            if (slot.getSlotState() != null) {
+                setOperative(stationManufacturerId, slot.getSlotManufacturerId(),
+                        slot.getSlotState() == de.rwth.idsg.bikeman.psinterface.dto.OperationState.OPERATIVE);
+            }
+        }
+    }
+
+    @Override
+    public void onSlotStateChanged(SlotStateChangedEvent event) {
+        setOperative(event.getStationManufacturerId(), event.getSlotManufacturerId(),
+                event.getState() == OperationState.OPERATIVE);
+    }
+
+    /**
+     * Admin edits might also change the slots
+     */
+    @Override
+    public void onStationStateChanged(StationStateChangedEvent event) {
+        reload(event.getStationManufacturerId());
+    }
+
+    @Override
+    public void onStationBooted(StationBootedEvent event) {
+        reload(event.getStationManufacturerId());
+    }
+
+    /**
+     * Some events were missed, so the next reconciliation should not wait for the interval
+     */
+    @Override
+    public void onEventsDropped() {
+        if (reconcileRequested.compareAndSet(false, true)) {
+            executorService.execute(() -> {
+                reconcileRequested.set(false);
+                reconcile();
+            });
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    public int getStationCount() {
+        return stations.size();
+    }
+
+    /**
+     * Number of stations, that were not in memory when queried
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Number of stations, the counter of which differed from the DB during the reconciliation
+     */
+    public long getCorrectionCount() {
+        return correctionCount.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void setOccupied(String stationManufacturerId, String slotManufacturerId, boolean occupied) {
+        update(stationManufacturerId, slotManufacturerId, null, occupied);
+    }
+
+    private void setOperative(String stationManufacturerId, String slotManufacturerId, boolean operative) {
+        update(stationManufacturerId, slotManufacturerId, operative, null);
+    }
+
+    private void update(String stationManufacturerId, String slotManufacturerId, Boolean operative, Boolean occupied) {
+        StationSlots slots;
+        boolean applied;
+
+        // The reconciliation must not swap the station between recording and applying
+        synchronized (this) {
+            if (recorded != null) {
+                recorded.add(new SlotUpdate(stationManufacturerId, slotManufacturerId, operative, occupied));
+            }
+            slots = stations.get(stationManufacturerId);
+            applied = slots != null && slots.update(slotManufacturerId, operative, occupied);
+        }
+
+        if (applied) {
+            reportIfChanged(slots);
+        } else if (!reload(stationManufacturerId)) {
+            // The station was unknown, so we cannot tell whether the value changed
+            placeAvailabilityPushService.reportChange(stationManufacturerId);
+        }
+    }
+
+    /**
+     * @return true, if the station was known before
+     */
+    private boolean reload(String stationManufacturerId) {
+        StationSlots fresh = load(queryIXSIRepository.slotStates(Collections.singletonList(stationManufacturerId)))
+                .get(stationManufacturerId);
+
+        if (fresh == null) {
+            return stations.remove(stationManufacturerId) != null;
+        } else {
+            return replace(fresh);
+        }
+    }
+
+    private void reconcile() {
+        synchronized (reconcileLock) {
+            reconcileInternal();
+        }
+    }
+
+    private void reconcileInternal() {
+        try {
+            synchronized (this) {
+                recorded = new ArrayList<>();
+            }
+
+            Map<String, StationSlots> fresh;
+            try {
+                fresh = load(queryIXSIRepository.slotStates());
+            } catch (Exception e) {
+                synchronized (this) {
+                    recorded = null;
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                for (SlotUpdate update : recorded) {
+                    StationSlots slots = fresh.get(update.stationManufacturerId);
+                    if (slots != null) {
+                        slots.update(update.slotManufacturerId, update.operative, update.occupied);
+                    }
+                }
+                recorded = null;
+
+                stations.keySet().retainAll(fresh.keySet());
+                for (StationSlots slots : fresh.values()) {
+                    replace(slots);
+                }
+            }
+        } catch (Exception e) {
+            // Do not let the exception cancel the periodic reconciliation
+            log.error("Failed to reconcile the free slot counters", e);
+        }
+    }
+
+    /**
+     * If the station was known, a difference to the last reported value is pushed
+     */
+    private boolean replace(StationSlots fresh) {
+        StationSlots old = stations.put(fresh.stationManufacturerId, fresh);
+        if (old == null) {
+            return false;
+        }
+
+        if (old.getFreeCount() != fresh.getFreeCount()) {
+            correctionCount.incrementAndGet();
+            log.debug("Free slot counter of station '{}' corrected from {} to {}",
+                    fresh.stationManufacturerId, old.getFreeCount(), fresh.getFreeCount());
+        }
+
+        fresh.reportedFreeCount = old.reportedFreeCount;
+        reportIfChanged(fresh);
+        return true;
+    }
+
+    private void reportIfChanged(StationSlots slots) {
+        if (slots.markReported()) {
+            placeAvailabilityPushService.reportChange(slots.stationManufacturerId);
+        }
+    }
+
+    private static Map<String, StationSlots> load(List<SlotStateDTO> dtos) {
+        Map<String, StationSlots> map = new HashMap<>();
+        for (SlotStateDTO dto : dtos) {
+            StationSlots slots = map.computeIfAbsent(dto.getStationManufacturerId(), StationSlots::new);
+            if (dto.getSlotManufacturerId() != null) {
+                slots.update(dto.getSlotManufacturerId(), dto.isOperative(), dto.isOccupied());
+            }
+        }
+
+        for (StationSlots slots : map.values()) {
+            slots.reportedFreeCount = slots.getFreeCount();
+        }
+        return map;
+    }
+
+    @RequiredArgsConstructor
+    private static class StationSlots {
+        private final String stationManufacturerId;
+        private final ConcurrentHashMap<String, SlotState> slots = new ConcurrentHashMap<>();
+        private final AtomicInteger freeCount = new AtomicInteger(0);
+        private volatile int reportedFreeCount;
+
+        int getFreeCount() {
+            return freeCount.get();
+        }
+
+        /**
+         * Null values are left unchanged. An unknown slot can only be added with both values.
+         *
+         * @return false, if the slot is unknown
+         */
+        boolean update(String slotManufacturerId, Boolean operative, Boolean occupied) {
+            boolean complete = operative != null && occupied != null;
+
+            SlotState result = slots.compute(slotManufacturerId, (id, old) -> {
+                if (old == null && !complete) {
+                    return null;
+                }
+
+                SlotState updated = new SlotState(
+                        operative == null ? old.operative : operative,
+                        occupied == null ? old.occupied : occupied);
+
+                int delta = updated.isFree() - (old == null ? 0 : old.isFree());
+                if (delta != 0) {
+                    freeCount.addAndGet(delta);
+                }
+                return updated;
+            });
+
+            return result != null;
+        }
+
+        /**
+         * @return true, if the counter changed since the last call
+         */
+        synchronized boolean markReported() {
+            int current = freeCount.get();
+            if (reportedFreeCount == current) {
+                return false;
+            }
+            reportedFreeCount = current;
+            return true;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class SlotUpdate {
+        private final String stationManufacturerId;
+        private final String slotManufacturerId;
+        private final Boolean operative;
+        private final Boolean occupied;
+    }
+
+    @RequiredArgsConstructor
+    private static class SlotState {
+        private final boolean operative;
+        private final boolean occupied;
+
+        int isFree() {
+            return operative && !occupied ? 1 : 0;
+        }
+    }
+}
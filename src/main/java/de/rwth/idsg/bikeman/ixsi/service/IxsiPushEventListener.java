@@ -0,0 +1,125 @@
+package de.rwth.idsg.bikeman.ixsi.service;
+
+import de.rwth.idsg.bikeman.event.AvailabilityChangedEvent;
+import de.rwth.idsg.bikeman.event.BookingCancelledEvent;
+import de.rwth.idsg.bikeman.event.BookingChangedEvent;
+import de.rwth.idsg.bikeman.event.BookingPlacedEvent;
+import de.rwth.idsg.bikeman.event.DomainEventListener;
+import de.rwth.idsg.bikeman.event.ExternalBookingStartedEvent;
+import de.rwth.idsg.bikeman.event.SlotStateChangedEvent;
+import de.rwth.idsg.bikeman.event.StationStateChangedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStartedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStoppedEvent;
+import de.rwth.idsg.bikeman.service.OperationStateService;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import xjc.schema.ixsi.TimePeriodType;
+
+/**
+ * Translates the domain events into IXSI push messages.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class IxsiPushEventListener implements DomainEventListener {
+
+    @Autowired private AvailabilityPushService availabilityPushService;
+    @Autowired private ConsumptionPushService consumptionPushService;
+    @Autowired private ExternalBookingPushService externalBookingPushService;
+    @Autowired private OperationStateService operationStateService;
+
+    // -------------------------------------------------------------------------
+    // Transaction-related
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void onTransactionStarted(TransactionStartedEvent event) {
+        availabilityPushService.takenFromPlace(event.getPedelecManufacturerId(), event.getDeparture());
+    }
+
+    @Override
+    public void onTransactionStopped(TransactionStoppedEvent event) {
+        consumptionPushService.report(event.getIxsiBookingId(), event.getStartDateTime(), event.getEndDateTime());
+
+        availabilityPushService.arrivedAtPlace(
+                event.getPedelecManufacturerId(),
+                event.getStationManufacturerId(),
+                event.getStartDateTime());
+    }
+
+    @Override
+    public void onExternalBookingStarted(ExternalBookingStartedEvent event) {
+        externalBookingPushService.report(
+                event.getIxsiBookingId(),
+                event.getCardId(),
+                event.getPedelecManufacturerId(),
+                event.getStartDateTime());
+    }
+
+    // -------------------------------------------------------------------------
+    // Operation state-related
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void onStationStateChanged(StationStateChangedEvent event) {
+        operationStateService.pushStationChange(event.getStationManufacturerId(), event.getState());
+    }
+
+    @Override
+    public void onSlotStateChanged(SlotStateChangedEvent event) {
+        operationStateService.pushSlotChange(
+                event.getStationManufacturerId(),
+                event.getSlotManufacturerId(),
+                event.getState());
+    }
+
+    @Override
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        TimePeriodType timePeriod = buildTimePeriod(event.getBegin(), event.getEnd());
+        String placeId = event.getStationManufacturerId();
+
+        for (String pedelecId : event.getPedelecManufacturerIds()) {
+            if (event.isAvailable()) {
+                availabilityPushService.cancelledBooking(pedelecId, placeId, timePeriod);
+            } else {
+                availabilityPushService.placedBooking(pedelecId, placeId, timePeriod);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Booking-related
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void onBookingPlaced(BookingPlacedEvent event) {
+        availabilityPushService.placedBooking(
+                event.getPedelecManufacturerId(),
+                event.getPlaceId(),
+                buildTimePeriod(event.getBegin(), event.getEnd()));
+    }
+
+    @Override
+    public void onBookingChanged(BookingChangedEvent event) {
+        availabilityPushService.changedBooking(
+                event.getPedelecManufacturerId(),
+                event.getPlaceId(),
+                buildTimePeriod(event.getOldBegin(), event.getOldEnd()),
+                buildTimePeriod(event.getNewBegin(), event.getNewEnd()));
+    }
+
+    @Override
+    public void onBookingCancelled(BookingCancelledEvent event) {
+        availabilityPushService.cancelledBooking(
+                event.getPedelecManufacturerId(),
+                event.getPlaceId(),
+                buildTimePeriod(event.getBegin(), event.getEnd()));
+    }
+
+    private static TimePeriodType buildTimePeriod(DateTime begin, DateTime end) {
+        return new TimePeriodType().withBegin(begin).withEnd(end);
+    }
+}
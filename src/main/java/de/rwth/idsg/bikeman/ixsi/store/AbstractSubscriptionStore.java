@@ -1,138 +1,501 @@
 package de.rwth.idsg.bikeman.ixsi.store;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import de.rwth.idsg.bikeman.ixsi.cluster.ClusterSubscriptionRegistry;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * The subscriptions are indexed in both directions (item -> systems and system -> items), so that the lookups
+ * for a system and unsubscribeAll do not have to scan all subscriptions.
+ *
+ * Items are not stored as they are, but as keys (see {@link #toKey(Object)}). Extending classes can map the items
+ * to more compact keys, e.g. the JAXB objects to their ids. Keys are interned, so that the same item subscribed by
+ * several systems is only stored once.
+ *
+ * All modifications for a system happen within compute() of its entry in the system index and therefore
+ * atomically. Empty sets/maps are removed.
+ *
+ * Expiry: The system index keeps the deadline of every (system, item) pair. A renewal just overwrites the
+ * deadline. Instead of one scheduled job per subscribe call, the deadlines are put into buckets of
+ * {@link #EXPIRY_TICK_IN_MILLIS} and one periodic sweep per store expires the due buckets in one go.
+ * Bucket entries are not removed on renewal/unsubscribe. When swept, an entry only expires the subscription
+ * if its deadline is still the current one.
+ *
+ * Cluster mode: The subscriptions are not kept in memory, but in the {@link ClusterSubscriptionRegistry}
+ * (which handles the expiry itself), so that all nodes see the same subscriptions. The keys of the items
+ * are stored as strings there, i.e. String.valueOf(toKey(item)) must be unique and fromKey must accept it.
+ * The lookup table and the expiration count for monitoring only reflect the in-memory state.
+ *
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
  * @since 04.11.2014
  */
 public abstract class AbstractSubscriptionStore<T> implements SubscriptionStore<T> {
 
+    static final long EXPIRY_TICK_IN_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+
     @Autowired private ScheduledExecutorService executorService;
 
+    // Not set, if the store is used without Spring (e.g. in tests)
+    @Autowired(required = false) private ClusterSubscriptionRegistry clusterRegistry;
+
     // Want to get the logger of the extending class and not of this abstract one
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     /**
-     * Key   (T)           = ID of the item
+     * Key   (Object)      = Key of the item
      * Value (Set<String>) = IDs of the subscribed systems
      */
-    @Getter
-    private final ConcurrentHashMap<T, Set<String>> lookupTable = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Object, Set<String>> itemIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Key   (String)            = ID of the system
+     * Value (Map<Object, Long>) = Keys of the subscribed items -> expiry deadlines (epoch millis)
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Object, Long>> systemIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Key   (Long)   = Tick at which the bucket is due
+     * Value (Bucket) = Subscriptions that (might) expire within the tick
+     */
+    private final ConcurrentSkipListMap<Long, Bucket> expiryBuckets = new ConcurrentSkipListMap<>();
+
+    private final Interner<Object> keyInterner = Interners.newWeakInterner();
+    private final AtomicLong pendingExpirations = new AtomicLong(0);
+
+    private ScheduledFuture<?> sweepFuture;
+
+    @PostConstruct
+    public void startExpirySweep() {
+        sweepFuture = executorService.scheduleAtFixedRate(this::sweep,
+                EXPIRY_TICK_IN_MILLIS, EXPIRY_TICK_IN_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopExpirySweep() {
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+        }
+    }
 
     @Override
     public void subscribe(String systemID, List<T> itemIDs, Integer expireIntervalinMinutes) {
-        subscribeInternal(systemID, itemIDs);
-        scheduleRemove(systemID, itemIDs, expireIntervalinMinutes);
+        if (isClustered()) {
+            clusterRegistry.subscribe(getStoreName(), systemID, toStoredKeys(itemIDs), expireIntervalinMinutes);
+            return;
+        }
+
+        long deadline = toTick(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(expireIntervalinMinutes))
+                * EXPIRY_TICK_IN_MILLIS;
+        subscribeInternal(systemID, itemIDs, deadline);
         log.debug("System '{}' subscribed to '{}'. This subscription is scheduled to expire in {} minutes",
                 systemID, itemIDs, expireIntervalinMinutes);
     }
 
     @Override
     public void subscribe(String systemID, List<T> itemIDs) {
-        subscribeInternal(systemID, itemIDs);
+        if (isClustered()) {
+            clusterRegistry.subscribe(getStoreName(), systemID, toStoredKeys(itemIDs), null);
+            return;
+        }
+
+        subscribeInternal(systemID, itemIDs, NO_EXPIRY);
         log.debug("System '{}' subscribed to '{}'", systemID, itemIDs);
     }
 
-    private void subscribeInternal(String systemID, List<T> itemIDs) {
-        Set<String> systemIDSet;
-        for (T itemID : itemIDs) {
-            systemIDSet = lookupTable.get(itemID);
+    private void subscribeInternal(String systemID, List<T> itemIDs, long deadline) {
+        List<Expiry> expiries = new ArrayList<>();
 
-            if (systemIDSet == null) {
-                systemIDSet = new HashSet<>();
-                systemIDSet.add(systemID);
-                lookupTable.put(itemID, systemIDSet);
+        systemIndex.compute(systemID, (id, deadlines) -> {
+            if (deadlines == null) {
+                deadlines = new ConcurrentHashMap<>();
+            }
 
-            } else {
-                systemIDSet.add(systemID);
+            for (T itemID : itemIDs) {
+                Object key = keyInterner.intern(toKey(itemID));
+                Long oldDeadline = deadlines.put(key, deadline);
+
+                if (oldDeadline == null) {
+                    add(itemIndex, key, id);
+                } else if (oldDeadline != NO_EXPIRY) {
+                    pendingExpirations.decrementAndGet();
+                }
+
+                if (deadline != NO_EXPIRY) {
+                    pendingExpirations.incrementAndGet();
+                    // Deadlines are aligned to ticks. A renewal within the same tick can reuse
+                    // the bucket entry of the previous subscribe
+                    if (oldDeadline == null || oldDeadline != deadline) {
+                        expiries.add(new Expiry(id, key, deadline));
+                    }
+                }
             }
+            return deadlines;
+        });
+
+        for (Expiry expiry : expiries) {
+            addToBucket(expiry);
         }
     }
 
     @Override
     public void unsubscribe(String systemID, List<T> itemIDs) {
-        Set<String> systemIDSet;
-        for (T itemID : itemIDs) {
-            systemIDSet = lookupTable.get(itemID);
+        if (isClustered()) {
+            clusterRegistry.unsubscribe(getStoreName(), systemID, toStoredKeys(itemIDs));
+            return;
+        }
 
-            if (systemIDSet != null) {
-                systemIDSet.remove(systemID);
+        systemIndex.computeIfPresent(systemID, (id, deadlines) -> {
+            for (T itemID : itemIDs) {
+                Object key = toKey(itemID);
+                Long deadline = deadlines.remove(key);
+                if (deadline != null) {
+                    removeFromItemIndex(id, key, deadline);
+                }
             }
-        }
+            return deadlines.isEmpty() ? null : deadlines;
+        });
         log.debug("System '{}' unsubscribed from '{}'", systemID, itemIDs);
     }
 
     @Override
     public void unsubscribeAll(String systemID) {
-        for (Set<String> systemList : lookupTable.values()) {
-            systemList.remove(systemID);
+        if (isClustered()) {
+            clusterRegistry.unsubscribeAll(getStoreName(), systemID);
+            return;
         }
+
+        systemIndex.computeIfPresent(systemID, (id, deadlines) -> {
+            for (Map.Entry<Object, Long> entry : deadlines.entrySet()) {
+                removeFromItemIndex(id, entry.getKey(), entry.getValue());
+            }
+            return null;
+        });
     }
 
     @Override
     public Set<String> getSubscribedSystems(T itemID) {
-        Set<String> set = lookupTable.get(itemID);
+        if (isClustered()) {
+            return clusterRegistry.getSubscribedSystems(getStoreName(), String.valueOf(toKey(itemID)));
+        }
+
+        Set<String> set = itemIndex.get(toKey(itemID));
         if (set == null) {
             return Collections.emptySet();
         } else {
-            return set;
+            return Collections.unmodifiableSet(set);
         }
     }
 
     @Override
     public List<T> getSubscriptions(String systemID) {
-        List<T> subscriptions = new ArrayList<>();
-        for (Map.Entry<T, Set<String>> entry : lookupTable.entrySet()) {
-            if (entry.getValue().contains(systemID)) {
-                subscriptions.add(entry.getKey());
+        if (isClustered()) {
+            List<T> subscriptions = new ArrayList<>();
+            for (String key : clusterRegistry.getSubscriptions(getStoreName(), systemID)) {
+                subscriptions.add(fromKey(key));
             }
+            return subscriptions;
+        }
+
+        Map<Object, Long> deadlines = systemIndex.get(systemID);
+        if (deadlines == null) {
+            return Collections.emptyList();
+        }
+
+        List<T> subscriptions = new ArrayList<>(deadlines.size());
+        for (Object key : deadlines.keySet()) {
+            subscriptions.add(fromKey(key));
         }
         return subscriptions;
     }
 
+    /**
+     * Snapshot of the subscriptions in the form item -> systems
+     */
+    public Map<T, Set<String>> getLookupTable() {
+        Map<T, Set<String>> map = new HashMap<>(itemIndex.size());
+        for (Map.Entry<Object, Set<String>> entry : itemIndex.entrySet()) {
+            map.put(fromKey(entry.getKey()), Collections.unmodifiableSet(entry.getValue()));
+        }
+        return map;
+    }
+
+    /**
+     * Page of the (system, item) pairs ordered by system and item key. The pairs are neither copied nor sorted as
+     * a whole: the matches of every system are counted, and only in the systems that overlap the page, the first
+     * keys up to the end of the page are selected with a bounded heap. Only the items of the page are mapped back
+     * from their keys.
+     *
+     * @param systemID   Exact match, null for all systems
+     * @param itemFilter Substring of the item key, null for all items
+     */
+    public SubscriptionPage<T> getPage(String systemID, String itemFilter, int offset, int limit) {
+        int pageStart = Math.max(0, offset);
+        int pageEnd = pageStart + Math.max(0, limit);
+
+        List<String> systemIDs = new ArrayList<>(systemID == null
+                ? systemIndex.keySet()
+                : Collections.singleton(systemID));
+        Collections.sort(systemIDs);
+
+        List<SubscriptionPage.Entry<T>> entries = new ArrayList<>();
+        int totalCount = 0;
+
+        for (String id : systemIDs) {
+            Map<Object, Long> items = systemIndex.get(id);
+            if (items == null) {
+                continue;
+            }
+
+            int count = 0;
+            for (Object key : items.keySet()) {
+                if (matches(key, itemFilter)) {
+                    count++;
+                }
+            }
+
+            // The part of the page within the matches of this system
+            int from = Math.max(0, pageStart - totalCount);
+            int to = Math.min(count, pageEnd - totalCount);
+            if (from < to) {
+                List<String> first = selectFirst(items.keySet(), itemFilter, to);
+                for (int i = from; i < first.size(); i++) {
+                    entries.add(new SubscriptionPage.Entry<>(id, fromKey(first.get(i))));
+                }
+            }
+            totalCount += count;
+        }
+        return new SubscriptionPage<>(totalCount, entries);
+    }
+
+    /**
+     * Number of subscriptions with a deadline that have not expired yet
+     */
+    public long getPendingExpirationCount() {
+        return pendingExpirations.get();
+    }
+
     @Override
     public void clear() {
-        lookupTable.clear();
+        systemIndex.clear();
+        itemIndex.clear();
+        expiryBuckets.clear();
+        pendingExpirations.set(0);
         log.debug("Cleared the subscription store");
     }
 
     @Override
     public String toString() {
-        return lookupTable.toString();
+        return itemIndex.toString();
     }
 
     // -------------------------------------------------------------------------
-    // Schedule to remove subscriptions
+    // Key mapping. Both must be overridden together, and fromKey(toKey(item)) must equal item
     // -------------------------------------------------------------------------
 
-    private void scheduleRemove(String systemID, List<T> itemIDs, long expireIntervalinMinutes) {
-        executorService.schedule(new RemoveJob(systemID, itemIDs), expireIntervalinMinutes, TimeUnit.MINUTES);
+    protected Object toKey(T itemID) {
+        return itemID;
     }
 
-    @RequiredArgsConstructor
-    private class RemoveJob implements Runnable {
+    @SuppressWarnings("unchecked")
+    protected T fromKey(Object key) {
+        return (T) key;
+    }
+
+    // -------------------------------------------------------------------------
+    // Page helpers
+    // -------------------------------------------------------------------------
+
+    private static boolean matches(Object key, String itemFilter) {
+        return itemFilter == null || String.valueOf(key).contains(itemFilter);
+    }
 
+    /**
+     * @return the n smallest matching keys in ascending order
+     */
+    private static List<String> selectFirst(Set<Object> keys, String itemFilter, int n) {
+        PriorityQueue<String> largestFirst = new PriorityQueue<>(n, Comparator.reverseOrder());
+        for (Object key : keys) {
+            String str = String.valueOf(key);
+            if (itemFilter != null && !str.contains(itemFilter)) {
+                continue;
+            }
+
+            if (largestFirst.size() < n) {
+                largestFirst.add(str);
+            } else if (str.compareTo(largestFirst.peek()) < 0) {
+                largestFirst.poll();
+                largestFirst.add(str);
+            }
+        }
+
+        List<String> result = new ArrayList<>(largestFirst);
+        Collections.sort(result);
+        return result;
+    }
+
+    // -------------------------------------------------------------------------
+    // Cluster helpers
+    // -------------------------------------------------------------------------
+
+    private boolean isClustered() {
+        return clusterRegistry != null && clusterRegistry.isEnabled();
+    }
+
+    private String getStoreName() {
+        return getClass().getSimpleName();
+    }
+
+    private List<String> toStoredKeys(List<T> itemIDs) {
+        List<String> keys = new ArrayList<>(itemIDs.size());
+        for (T itemID : itemIDs) {
+            keys.add(String.valueOf(toKey(itemID)));
+        }
+        return keys;
+    }
+
+    // -------------------------------------------------------------------------
+    // Index helpers
+    // -------------------------------------------------------------------------
+
+    private void removeFromItemIndex(String systemID, Object key, long deadline) {
+        remove(itemIndex, key, systemID);
+        if (deadline != NO_EXPIRY) {
+            pendingExpirations.decrementAndGet();
+        }
+    }
+
+    private static <K, V> void add(ConcurrentHashMap<K, Set<V>> index, K key, V value) {
+        index.compute(key, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(value);
+            return set;
+        });
+    }
+
+    private static <K, V> void remove(ConcurrentHashMap<K, Set<V>> index, K key, V value) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(value);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // -------------------------------------------------------------------------
+    // Expiry
+    // -------------------------------------------------------------------------
+
+    private void sweep() {
+        try {
+            expire(System.currentTimeMillis());
+        } catch (Exception e) {
+            // Do not let the exception cancel the periodic sweep
+            log.error("Failed to expire the subscriptions", e);
+        }
+    }
+
+    /**
+     * Expires all subscriptions with a deadline up to the given time. The due subscriptions are
+     * grouped per system, so that the system index is updated once per system and sweep.
+     */
+    void expire(long now) {
+        long nowTick = now / EXPIRY_TICK_IN_MILLIS;
+
+        Map<String, List<Expiry>> dueBySystem = new HashMap<>();
+        Map.Entry<Long, Bucket> first;
+
+        while ((first = expiryBuckets.firstEntry()) != null && first.getKey() <= nowTick) {
+            if (expiryBuckets.remove(first.getKey(), first.getValue())) {
+                for (Expiry expiry : first.getValue().drain()) {
+                    dueBySystem.computeIfAbsent(expiry.getSystemID(), id -> new ArrayList<>()).add(expiry);
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Expiry>> entry : dueBySystem.entrySet()) {
+            expire(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void expire(String systemID, List<Expiry> expiries) {
+        systemIndex.computeIfPresent(systemID, (id, deadlines) -> {
+            int count = 0;
+            for (Expiry expiry : expiries) {
+                // Only if the subscription was not renewed or removed in the meantime
+                if (deadlines.remove(expiry.getKey(), expiry.getDeadline())) {
+                    removeFromItemIndex(id, expiry.getKey(), expiry.getDeadline());
+                    count++;
+                }
+            }
+            log.debug("Expired {} subscription(s) of system '{}'", count, id);
+            return deadlines.isEmpty() ? null : deadlines;
+        });
+    }
+
+    /**
+     * The sweep might drain the bucket between our lookup and add. In this case
+     * we retry with a new bucket, which will be picked up by the next sweep.
+     */
+    private void addToBucket(Expiry expiry) {
+        long tick = toTick(expiry.getDeadline());
+        while (!expiryBuckets.computeIfAbsent(tick, t -> new Bucket()).add(expiry)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Rounded up, so that a bucket is never due before the deadlines in it
+     */
+    private static long toTick(long deadline) {
+        return (deadline + EXPIRY_TICK_IN_MILLIS - 1) / EXPIRY_TICK_IN_MILLIS;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Expiry {
         private final String systemID;
-        private final List<T> itemIDs;
+        private final Object key;
+        private final Long deadline;
+    }
+
+    private static class Bucket {
+        private final List<Expiry> expiries = new ArrayList<>();
+        private boolean drained = false;
+
+        synchronized boolean add(Expiry expiry) {
+            if (drained) {
+                return false;
+            }
+            expiries.add(expiry);
+            return true;
+        }
 
-        @Override
-        public void run() {
-            unsubscribe(systemID, itemIDs);
+        synchronized List<Expiry> drain() {
+            drained = true;
+            return expiries;
         }
     }
 }
@@ -1,5 +1,6 @@
 package de.rwth.idsg.bikeman.ixsi.store;
 
+import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
 import org.springframework.stereotype.Service;
 import xjc.schema.ixsi.BookingTargetIDType;
 
@@ -8,14 +9,46 @@ import javax.annotation.PostConstruct;
 /**
  * Key : Pedelec ID / BookingTargetID
  *
+ * The JAXB objects are not stored, but only the bookee ids. The provider id is only kept (as prefix),
+ * if it is not our own, which should not happen in practice.
+ *
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
  * @since 04.11.2014
  */
 @Service
 public class AvailabilityStore extends AbstractSubscriptionStore<BookingTargetIDType> {
 
+    // Unit separator. Not NUL, since PostgreSQL does not accept it in text columns (cluster mode)
+    private static final char PROVIDER_DELIMITER = '\u001F';
+
     @PostConstruct
     public void init() {
         log.trace("Ready");
     }
+
+    @Override
+    protected Object toKey(BookingTargetIDType itemID) {
+        String providerId = itemID.getProviderID();
+        if (providerId == null || IXSIConstants.Provider.id.equals(providerId)) {
+            return itemID.getBookeeID();
+        } else {
+            return providerId + PROVIDER_DELIMITER + itemID.getBookeeID();
+        }
+    }
+
+    @Override
+    protected BookingTargetIDType fromKey(Object key) {
+        String str = (String) key;
+        int index = str.indexOf(PROVIDER_DELIMITER);
+
+        if (index < 0) {
+            return new BookingTargetIDType()
+                    .withBookeeID(str)
+                    .withProviderID(IXSIConstants.Provider.id);
+        } else {
+            return new BookingTargetIDType()
+                    .withBookeeID(str.substring(index + 1))
+                    .withProviderID(str.substring(0, index));
+        }
+    }
 }
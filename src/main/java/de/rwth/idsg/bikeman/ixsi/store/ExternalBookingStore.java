@@ -6,14 +6,38 @@ import xjc.schema.ixsi.UserInfoType;
 import javax.annotation.PostConstruct;
 
 /**
+ * Key : Provider ID and User ID
+ *
+ * The JAXB objects are not stored, so that the credentials of the users are not kept
+ * and the keys can be stored in the database in cluster mode.
+ *
  * Created by max on 25/02/15.
  */
 @Component
 public class ExternalBookingStore extends AbstractSubscriptionStore<UserInfoType> {
 
+    // Same as in AvailabilityStore
+    private static final char PROVIDER_DELIMITER = '\u001F';
+
     @PostConstruct
     public void init() {
         log.trace("Ready");
     }
 
+    @Override
+    protected Object toKey(UserInfoType itemID) {
+        String providerId = itemID.getProviderID() == null ? "" : itemID.getProviderID();
+        return providerId + PROVIDER_DELIMITER + itemID.getUserID();
+    }
+
+    @Override
+    protected UserInfoType fromKey(Object key) {
+        String str = (String) key;
+        int index = str.indexOf(PROVIDER_DELIMITER);
+        String providerId = str.substring(0, index);
+
+        return new UserInfoType()
+                .withUserID(str.substring(index + 1))
+                .withProviderID(providerId.isEmpty() ? null : providerId);
+    }
 }
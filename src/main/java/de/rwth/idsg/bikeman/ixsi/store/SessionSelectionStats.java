@@ -0,0 +1,36 @@
+package de.rwth.idsg.bikeman.ixsi.store;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Snapshot of the session selection counters of one client system.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@RequiredArgsConstructor
+public class SessionSelectionStats {
+    private final String systemId;
+    private final int sessionCount;
+
+    /**
+     * Number of sessions selected for pushes
+     */
+    private final long selectedCount;
+
+    /**
+     * Number of selections, in which the round-robin candidate was skipped for a less loaded session
+     */
+    private final long rebalancedCount;
+
+    /**
+     * Number of pushes without any session to select
+     */
+    private final long missCount;
+
+    /**
+     * Number of add/remove attempts, that had to be retried because of a concurrent modification
+     */
+    private final long retryCount;
+}
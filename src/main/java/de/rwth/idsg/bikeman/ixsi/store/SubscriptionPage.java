@@ -0,0 +1,29 @@
+package de.rwth.idsg.bikeman.ixsi.store;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Part of the (system, item) pairs of a subscription store, for monitoring.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@RequiredArgsConstructor
+public class SubscriptionPage<T> {
+
+    /**
+     * Number of pairs matching the filter, over all pages
+     */
+    private final int totalCount;
+    private final List<Entry<T>> entries;
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry<T> {
+        private final String systemId;
+        private final T item;
+    }
+}
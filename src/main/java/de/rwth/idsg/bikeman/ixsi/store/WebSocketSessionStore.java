@@ -3,8 +3,8 @@ package de.rwth.idsg.bikeman.ixsi.store;
 import com.google.common.base.Optional;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.Deque;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
@@ -18,5 +18,10 @@ public interface WebSocketSessionStore {
     int size(String systemID);
     void clear();
 
-    ConcurrentHashMap<String, Deque<WebSocketSession>> getLookupTable();
+    /**
+     * Snapshot of the sessions per system
+     */
+    Map<String, List<WebSocketSession>> getLookupTable();
+
+    List<SessionSelectionStats> getSelectionStats();
 }
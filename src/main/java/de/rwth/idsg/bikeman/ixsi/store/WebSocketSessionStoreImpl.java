@@ -1,16 +1,22 @@
 package de.rwth.idsg.bikeman.ixsi.store;
 
 import com.google.common.base.Optional;
-import de.rwth.idsg.bikeman.ixsi.store.WebSocketSessionStore;
-import lombok.Getter;
+import de.rwth.idsg.bikeman.ixsi.endpoint.OutboundQueueSession;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * We want to support multiple connections from a client system.
@@ -20,7 +26,11 @@ import java.util.concurrent.ConcurrentHashMap;
  * the Producer sends the response using the referenced WebSocketSession.
  *
  * 2) For the push messages we need a mechanism to select one WebSocketSession from the set.
- * This is done in a round robin fashion. See getNext().
+ * This is done in a round robin fashion, preferring the session with the fewest queued outbound messages.
+ * See getNext().
+ *
+ * The sessions of a system are kept in a copy-on-write array, which is replaced atomically when a session
+ * connects or disconnects (rare). Therefore the selection for a push (frequent, from many threads) takes no lock.
  *
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
  * @since 05.11.2014
@@ -29,51 +39,33 @@ import java.util.concurrent.ConcurrentHashMap;
 @Service
 public class WebSocketSessionStoreImpl implements WebSocketSessionStore {
 
-
     /**
-     * Key   (String)                  = ID of the client system
-     * Value (Deque<WebSocketSession>) = WebSocket connections of the client system
+     * Key   (String)       = ID of the client system
+     * Value (SessionGroup) = WebSocket connections of the client system
+     *
+     * The number of client systems is limited, therefore the groups are never removed.
      */
-    @Getter
-    private final ConcurrentHashMap<String, Deque<WebSocketSession>> lookupTable = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SessionGroup> lookupTable = new ConcurrentHashMap<>();
 
     @Override
-    public synchronized void add(String systemID, WebSocketSession session) {
-        Deque<WebSocketSession> sessionSet = lookupTable.get(systemID);
-        if (sessionSet == null) {
-            sessionSet = new ArrayDeque<>();
-            sessionSet.add(session);
-            lookupTable.put(systemID, sessionSet);
+    public void add(String systemID, WebSocketSession session) {
+        SessionGroup group = lookupTable.computeIfAbsent(systemID, SessionGroup::new);
+        int size = group.add(session);
 
-        } else {
-            sessionSet.addLast(session); // Adding at the end
-        }
         log.debug("A new WebSocketSession with id '{}' is stored for system '{}' (size: {})",
-            session.getId(), systemID, sessionSet.size());
+                session.getId(), systemID, size);
     }
 
     @Override
-    public synchronized void remove(String systemID, WebSocketSession session) {
-        Deque<WebSocketSession> sessionSet = lookupTable.get(systemID);
-        if (sessionSet == null) {
+    public void remove(String systemID, WebSocketSession session) {
+        SessionGroup group = lookupTable.get(systemID);
+        if (group == null) {
             return;
         }
 
-        // Prevent java.util.ConcurrentModificationException: null
-        // Reason: Cannot modify the set (remove the item) we are iterating
-        // Solution: Iterate the set, find the item, remove the item after the for-loop
-        //
-        WebSocketSession toRemove = null;
-        for (WebSocketSession wss : sessionSet) {
-            if (wss.getId().equals(session.getId())) {
-                toRemove = wss;
-                break;
-            }
-        }
-
-        if (toRemove != null && sessionSet.remove(toRemove)) {
+        if (group.remove(session.getId())) {
             log.debug("The WebSocketSession with id '{}' is removed for system '{}' (size: {})",
-                    session.getId(), systemID, sessionSet.size());
+                    session.getId(), systemID, group.size());
         } else {
             log.error("Failed to remove the WebSocketSession with id '{}' for system '{}'",
                     session.getId(), systemID);
@@ -81,11 +73,11 @@ public class WebSocketSessionStoreImpl implements WebSocketSessionStore {
     }
 
     @Override
-    public synchronized Optional<WebSocketSession> get(String systemID, String sessionID) {
-        Deque<WebSocketSession> sessionSet = lookupTable.get(systemID);
+    public Optional<WebSocketSession> get(String systemID, String sessionID) {
+        SessionGroup group = lookupTable.get(systemID);
 
-        if (sessionSet != null) {
-            for (WebSocketSession wss : sessionSet) {
+        if (group != null) {
+            for (WebSocketSession wss : group.sessions.get()) {
                 if (wss.getId().equals(sessionID)) {
                     return Optional.of(wss);
                 }
@@ -96,31 +88,25 @@ public class WebSocketSessionStoreImpl implements WebSocketSessionStore {
     }
 
     /**
-     * sessionSet.removeFirst() will throw NoSuchElementException, if the sessionSet is empty.
-     *
-     * But the sessionSet itself might be null, if there is no connection established and therefore,
-     * the sessionSet is not initialized, yet. In this case we throw the same exception,
-     * since the ProducerImpl decides on the context based on the exception type.
+     * The ProducerImpl decides on the context based on the exception type. Therefore we throw
+     * NoSuchElementException, if there is no connection of the system.
      */
     @Override
-    public synchronized WebSocketSession getNext(String systemID) {
-        Deque<WebSocketSession> sessionSet = lookupTable.get(systemID);
-        if (sessionSet == null) {
+    public WebSocketSession getNext(String systemID) {
+        SessionGroup group = lookupTable.get(systemID);
+        if (group == null) {
             throw new NoSuchElementException();
         }
-        // Get the first item, and add at the end
-        WebSocketSession s = sessionSet.removeFirst();
-        sessionSet.addLast(s);
-        return s;
+        return group.next();
     }
 
     @Override
     public int size(String systemID) {
-        Deque<WebSocketSession> sessionSet = lookupTable.get(systemID);
-        if (sessionSet == null) {
+        SessionGroup group = lookupTable.get(systemID);
+        if (group == null) {
             return 0;
         } else {
-            return sessionSet.size();
+            return group.size();
         }
     }
 
@@ -130,8 +116,157 @@ public class WebSocketSessionStoreImpl implements WebSocketSessionStore {
         log.debug("Cleared the WebSocketSession store");
     }
 
+    @Override
+    public Map<String, List<WebSocketSession>> getLookupTable() {
+        Map<String, List<WebSocketSession>> map = new HashMap<>();
+        for (SessionGroup group : lookupTable.values()) {
+            WebSocketSession[] sessions = group.sessions.get();
+            if (sessions.length > 0) {
+                map.put(group.systemId, Collections.unmodifiableList(Arrays.asList(sessions)));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public List<SessionSelectionStats> getSelectionStats() {
+        List<SessionSelectionStats> stats = new ArrayList<>(lookupTable.size());
+        for (SessionGroup group : lookupTable.values()) {
+            stats.add(new SessionSelectionStats(
+                    group.systemId,
+                    group.size(),
+                    group.selectedCount.get(),
+                    group.rebalancedCount.get(),
+                    group.missCount.get(),
+                    group.retryCount.get()));
+        }
+        return stats;
+    }
+
     @Override
     public String toString() {
-        return lookupTable.toString();
+        return getLookupTable().toString();
+    }
+
+    private static class SessionGroup {
+        private static final WebSocketSession[] EMPTY = new WebSocketSession[0];
+
+        private final String systemId;
+        private final AtomicReference<WebSocketSession[]> sessions = new AtomicReference<>(EMPTY);
+        private final AtomicInteger cursor = new AtomicInteger(0);
+
+        // Statistics
+        private final AtomicLong selectedCount = new AtomicLong(0);
+        private final AtomicLong rebalancedCount = new AtomicLong(0);
+        private final AtomicLong missCount = new AtomicLong(0);
+        private final AtomicLong retryCount = new AtomicLong(0);
+
+        private SessionGroup(String systemId) {
+            this.systemId = systemId;
+        }
+
+        int size() {
+            return sessions.get().length;
+        }
+
+        /**
+         * @return the new size
+         */
+        int add(WebSocketSession session) {
+            while (true) {
+                WebSocketSession[] current = sessions.get();
+                WebSocketSession[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = session;
+
+                if (sessions.compareAndSet(current, updated)) {
+                    return updated.length;
+                }
+                retryCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return false, if there is no session with the id
+         */
+        boolean remove(String sessionId) {
+            while (true) {
+                WebSocketSession[] current = sessions.get();
+
+                int index = indexOf(current, sessionId);
+                if (index == -1) {
+                    return false;
+                }
+
+                WebSocketSession[] updated = new WebSocketSession[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+
+                if (sessions.compareAndSet(current, updated)) {
+                    return true;
+                }
+                retryCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Starting at the round-robin position, the first session with the fewest queued outbound messages is
+         * selected. So, the sessions take turns as long as they are equally loaded, and a session falling behind
+         * (e.g. slow network) is skipped until it caught up. Closed sessions are only selected, if there is
+         * no open one.
+         */
+        WebSocketSession next() {
+            WebSocketSession[] current = sessions.get();
+            int length = current.length;
+
+            if (length == 0) {
+                missCount.incrementAndGet();
+                throw new NoSuchElementException();
+            }
+
+            selectedCount.incrementAndGet();
+            int start = Math.floorMod(cursor.getAndIncrement(), length);
+            if (length == 1) {
+                return current[0];
+            }
+
+            WebSocketSession selected = null;
+            long minLoad = Long.MAX_VALUE;
+
+            for (int i = 0; i < length; i++) {
+                WebSocketSession candidate = current[(start + i) % length];
+                long load = load(candidate);
+                if (load < minLoad) {
+                    minLoad = load;
+                    selected = candidate;
+                    if (load == 0) {
+                        break;
+                    }
+                }
+            }
+
+            if (selected != current[start]) {
+                rebalancedCount.incrementAndGet();
+            }
+            return selected;
+        }
+
+        private static long load(WebSocketSession session) {
+            if (!session.isOpen()) {
+                return Long.MAX_VALUE - 1;
+            } else if (session instanceof OutboundQueueSession) {
+                return ((OutboundQueueSession) session).getDepth();
+            } else {
+                return 0;
+            }
+        }
+
+        private static int indexOf(WebSocketSession[] sessions, String sessionId) {
+            for (int i = 0; i < sessions.length; i++) {
+                if (sessions[i].getId().equals(sessionId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
     }
 }
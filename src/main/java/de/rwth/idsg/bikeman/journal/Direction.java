@@ -0,0 +1,36 @@
+package de.rwth.idsg.bikeman.journal;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The kind of a journal record, stored as one byte
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@RequiredArgsConstructor
+public enum Direction {
+    IXSI_IN((byte) 1),
+    IXSI_OUT((byte) 2),
+    PSI_REQUEST((byte) 3),
+    PSI_RESPONSE((byte) 4);
+
+    private final byte code;
+
+    public static Direction fromCode(byte code) {
+        for (Direction d : values()) {
+            if (d.code == code) {
+                return d;
+            }
+        }
+        throw new IllegalArgumentException("Unknown journal record type " + code);
+    }
+
+    /**
+     * @return true for the messages which were sent to BikeMan, and which a replay re-drives
+     */
+    public boolean isInbound() {
+        return this == IXSI_IN || this == PSI_REQUEST;
+    }
+}
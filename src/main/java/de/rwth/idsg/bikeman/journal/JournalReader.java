@@ -0,0 +1,107 @@
+package de.rwth.idsg.bikeman.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static de.rwth.idsg.bikeman.journal.JournalSegmentWriter.FILE_PREFIX;
+import static de.rwth.idsg.bikeman.journal.JournalSegmentWriter.FILE_SUFFIX;
+import static de.rwth.idsg.bikeman.journal.JournalSegmentWriter.FILE_TIME_FORMAT;
+import static de.rwth.idsg.bikeman.journal.JournalSegmentWriter.MAGIC;
+
+/**
+ * Reads the records of the segment files written by {@link JournalSegmentWriter}, in the order of recording
+ *
+ * @since 18.10.2016
+ */
+public final class JournalReader {
+
+    private JournalReader() { }
+
+    /**
+     * @return the segment files, oldest first
+     */
+    public static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        // The names start with the UTC time of the first record
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Passes the records with from <= timestamp < to to the consumer
+     */
+    public static void read(Path directory, long from, long to, Consumer<JournalRecord> consumer) throws IOException {
+        for (Path segment : listSegments(directory)) {
+            if (startOf(segment) >= to) {
+                break;
+            }
+            readSegment(segment, record -> {
+                if (record.getTimestamp() >= from && record.getTimestamp() < to) {
+                    consumer.accept(record);
+                }
+            });
+        }
+    }
+
+    public static void readSegment(Path segment, Consumer<JournalRecord> consumer) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "r")) {
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a journal segment: " + segment);
+            }
+
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+
+                Direction direction = Direction.fromCode(buffer.get());
+                long timestamp = buffer.getLong();
+                String channelId = readString(buffer, buffer.getShort());
+                String target = readString(buffer, buffer.getShort());
+
+                byte[] payload = new byte[buffer.getInt()];
+                buffer.get(payload);
+
+                consumer.accept(new JournalRecord(direction, timestamp, channelId, target, payload));
+            }
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long startOf(Path segment) {
+        String name = segment.getFileName().toString();
+        String time = name.substring(FILE_PREFIX.length(), FILE_PREFIX.length() + 19);
+        try {
+            return FILE_TIME_FORMAT.parseMillis(time);
+        } catch (IllegalArgumentException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
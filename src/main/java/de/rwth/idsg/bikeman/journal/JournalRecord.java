@@ -0,0 +1,50 @@
+package de.rwth.idsg.bikeman.journal;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One message of the journal.
+ *
+ * channelId: The system id (IXSI) or station id (PSI)
+ * target: The WebSocket session id (IXSI), method and URI (PSI request) or status code (PSI response)
+ *
+ * The payload of the IXSI messages is only encoded by the writer thread, to keep the recording cheap.
+ *
+ * @since 18.10.2016
+ */
+public final class JournalRecord {
+
+    @Getter private final Direction direction;
+    @Getter private final long timestamp;
+    @Getter private final String channelId;
+    @Getter private final String target;
+
+    private final String text;
+    private byte[] payload;
+
+    public JournalRecord(Direction direction, long timestamp, String channelId, String target, String text) {
+        this.direction = direction;
+        this.timestamp = timestamp;
+        this.channelId = channelId == null ? "" : channelId;
+        this.target = target == null ? "" : target;
+        this.text = text;
+    }
+
+    public JournalRecord(Direction direction, long timestamp, String channelId, String target, byte[] payload) {
+        this(direction, timestamp, channelId, target, (String) null);
+        this.payload = payload;
+    }
+
+    public byte[] getPayload() {
+        if (payload == null) {
+            payload = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        }
+        return payload;
+    }
+
+    public String getPayloadAsString() {
+        return text == null ? new String(getPayload(), StandardCharsets.UTF_8) : text;
+    }
+}
@@ -0,0 +1,170 @@
+package de.rwth.idsg.bikeman.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Appends records to memory-mapped segment files of a fixed size, and starts a new segment when the current one
+ * is full. Old segments are deleted according to the retention. Not thread-safe, only the writer thread of
+ * {@link TrafficJournal} uses it.
+ *
+ * Segment format (all numbers big-endian, as written by {@link java.nio.ByteBuffer}): the segment starts with the
+ * int {@link #MAGIC}, followed by the records back to back. One record is
+ *
+ * <pre>
+ * offset  size  field
+ * 0       4     int    L, the number of bytes of the record after this field (17 + C + T + P)
+ * 4       1     byte   direction, see {@link Direction#getCode()}
+ * 5       8     long   timestamp of the recording, epoch millis
+ * 13      2     short  C, the length of the channel id
+ * 15      C     bytes  channel id, UTF-8 (system id for IXSI, station for PSI)
+ * 15+C    2     short  T, the length of the target
+ * 17+C    T     bytes  target, UTF-8 (session id for IXSI, method and URI or status code for PSI)
+ * 17+C+T  4     int    P, the length of the payload
+ * 21+C+T  P     bytes  payload, the message as UTF-8 (IXSI) or the body as received/sent (PSI)
+ * </pre>
+ *
+ * The channel id and the target are truncated to {@link Short#MAX_VALUE} bytes. A record that does not fit into a
+ * segment together with the magic number is skipped.
+ *
+ * The length field L is written last, after the rest of the record, and the unused part of a segment is zero.
+ * Therefore, a reader (see {@link JournalReader}, which the replay uses) stops at the first zero length, even if
+ * the application crashed during a write.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+class JournalSegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x424D4A31; // "BMJ1"
+    static final String FILE_PREFIX = "journal-";
+    static final String FILE_SUFFIX = ".seg";
+    static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormat.forPattern("yyyyMMdd-HHmmss-SSS").withZoneUTC();
+
+    private static final int FIXED_RECORD_SIZE = 1 + 8 + 2 + 2 + 4;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retentionInMillis;
+    private final int maxSegments;
+
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private Path current;
+    private long lastStart;
+
+    JournalSegmentWriter(Path directory, int segmentSize, long retentionInMillis, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retentionInMillis = retentionInMillis;
+        this.maxSegments = Math.max(1, maxSegments);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * @return false, if the record is larger than a segment and was skipped
+     */
+    boolean write(JournalRecord record) throws IOException {
+        byte[] channelId = truncate(record.getChannelId().getBytes(StandardCharsets.UTF_8));
+        byte[] target = truncate(record.getTarget().getBytes(StandardCharsets.UTF_8));
+        byte[] payload = record.getPayload();
+
+        int length = FIXED_RECORD_SIZE + channelId.length + target.length + payload.length;
+        if (4 + 4 + length > segmentSize) {
+            return false;
+        }
+
+        if (buffer == null || buffer.remaining() < 4 + length) {
+            rotate(record.getTimestamp());
+        }
+
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(record.getDirection().getCode())
+              .putLong(record.getTimestamp())
+              .putShort((short) channelId.length)
+              .put(channelId)
+              .putShort((short) target.length)
+              .put(target)
+              .putInt(payload.length)
+              .put(payload);
+
+        // Completes the record
+        buffer.putInt(start, length);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void rotate(long timestamp) throws IOException {
+        close();
+        deleteExpired();
+
+        // The names have to be unique and in the order of the segments
+        long start = Math.max(timestamp, lastStart + 1);
+        current = directory.resolve(FILE_PREFIX + FILE_TIME_FORMAT.print(start) + FILE_SUFFIX);
+        while (Files.exists(current)) {
+            current = directory.resolve(FILE_PREFIX + FILE_TIME_FORMAT.print(++start) + FILE_SUFFIX);
+        }
+        lastStart = start;
+
+        file = new RandomAccessFile(current.toFile(), "rw");
+        file.setLength(segmentSize);
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.putInt(MAGIC);
+
+        log.debug("Started journal segment {}", current);
+    }
+
+    /**
+     * Keeps maxSegments - 1 old segments (plus the new one), none of them older than the retention
+     */
+    private void deleteExpired() throws IOException {
+        List<Path> segments = JournalReader.listSegments(directory);
+        long expiry = System.currentTimeMillis() - retentionInMillis;
+
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            boolean tooMany = segments.size() - i >= maxSegments;
+
+            if (tooMany || Files.getLastModifiedTime(segment).toMillis() < expiry) {
+                Files.deleteIfExists(segment);
+                log.debug("Deleted journal segment {}", segment);
+            }
+        }
+    }
+
+    private static byte[] truncate(byte[] bytes) {
+        if (bytes.length <= Short.MAX_VALUE) {
+            return bytes;
+        }
+        byte[] truncated = new byte[Short.MAX_VALUE];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        return truncated;
+    }
+}
@@ -0,0 +1,188 @@
+package de.rwth.idsg.bikeman.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Binary recording of the IXSI and PSI traffic, e.g. to replay a busy hour against a test instance.
+ *
+ * The recording threads only put the records into a bounded ring buffer, which never blocks: if the buffer is
+ * full, the record is dropped and counted. A single writer thread drains the buffer into memory-mapped segment
+ * files (see {@link JournalSegmentWriter}).
+ *
+ * <pre>
+ * journal.enabled: true
+ * journal.directory: journal
+ * journal.segmentSizeInMB: 64
+ * journal.bufferCapacity: 65536
+ * journal.samplePercent: 100
+ * journal.retentionInHours: 24
+ * journal.maxSegments: 100
+ * </pre>
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class TrafficJournal implements EnvironmentAware {
+
+    private static final String ENV_JOURNAL = "journal.";
+
+    private static final int BATCH_SIZE = 1024;
+    private static final long DROP_REPORT_INTERVAL_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private RelaxedPropertyResolver propertyResolver;
+
+    private boolean enabled;
+    private int samplePercent;
+
+    private ArrayBlockingQueue<JournalRecord> buffer;
+    private JournalSegmentWriter writer;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_JOURNAL);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        enabled = propertyResolver.getProperty("enabled", Boolean.class, false);
+        if (!enabled) {
+            return;
+        }
+
+        Path directory = Paths.get(propertyResolver.getProperty("directory", "journal")).toAbsolutePath();
+        int segmentSize = propertyResolver.getProperty("segmentSizeInMB", Integer.class, 64) * 1024 * 1024;
+        int retentionInHours = propertyResolver.getProperty("retentionInHours", Integer.class, 24);
+        int maxSegments = propertyResolver.getProperty("maxSegments", Integer.class, 100);
+        samplePercent = propertyResolver.getProperty("samplePercent", Integer.class, 100);
+
+        buffer = new ArrayBlockingQueue<>(propertyResolver.getProperty("bufferCapacity", Integer.class, 65536));
+        writer = new JournalSegmentWriter(directory, segmentSize, TimeUnit.HOURS.toMillis(retentionInHours), maxSegments);
+
+        running = true;
+        writerThread = new Thread(this::drain, "traffic-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        log.info("Recording {}% of the traffic into {} (segments of {} MB, at most {} segments or {} hours)",
+                samplePercent, directory, segmentSize / 1024 / 1024, maxSegments, retentionInHours);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        writer.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Decides whether an exchange (e.g. a PSI request and its response) is recorded
+     */
+    public boolean sample() {
+        return enabled && (samplePercent >= 100 || ThreadLocalRandom.current().nextInt(100) < samplePercent);
+    }
+
+    /**
+     * Records a single message, subject to sampling
+     */
+    public void record(Direction direction, String channelId, String target, String payload) {
+        if (sample()) {
+            offer(new JournalRecord(direction, System.currentTimeMillis(), channelId, target, payload));
+        }
+    }
+
+    /**
+     * Records a message of an exchange, for which {@link #sample()} returned true
+     */
+    public void append(Direction direction, String channelId, String target, byte[] payload) {
+        if (enabled) {
+            offer(new JournalRecord(direction, System.currentTimeMillis(), channelId, target, payload));
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void offer(JournalRecord record) {
+        if (!buffer.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        List<JournalRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long lastDropReport = System.currentTimeMillis();
+        long reportedDrops = 0;
+
+        while (running || !buffer.isEmpty()) {
+            try {
+                JournalRecord first = buffer.poll(200, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch, BATCH_SIZE - 1);
+                    write(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastDropReport > DROP_REPORT_INTERVAL_IN_MILLIS) {
+                long drops = dropped.get();
+                if (drops > reportedDrops) {
+                    log.warn("The journal buffer was full, {} records were dropped in total", drops);
+                    reportedDrops = drops;
+                }
+                lastDropReport = now;
+            }
+        }
+    }
+
+    private void write(List<JournalRecord> batch) {
+        for (JournalRecord record : batch) {
+            try {
+                if (!writer.write(record)) {
+                    log.warn("Skipped a {} record of {} bytes, which is larger than a journal segment",
+                            record.getDirection(), record.getPayload().length);
+                }
+            } catch (IOException e) {
+                log.error("Failed to write to the journal", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.rwth.idsg.bikeman.psinterface.authorization;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Everything that is needed to authorize a card at a station. The PIN is only kept as a salted hash.
+ *
+ * The trial count is counted in memory as long as the authorization is cached, and written to the DB asynchronously.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+public class CardAuthorization {
+
+    private static final byte[] SALT = new byte[16];
+
+    static {
+        new SecureRandom().nextBytes(SALT);
+    }
+
+    private final String cardId;
+    private final OperationState operationState;
+    private final byte[] pinHash;
+    private final int maxPedelecs;
+    private final int openRentals;
+    private final AtomicInteger trialCount;
+
+    public CardAuthorization(String cardId, OperationState operationState, String cardPin,
+                             Integer trialCount, Integer maxPedelecs, int openRentals) {
+        this.cardId = cardId;
+        this.operationState = operationState;
+        this.pinHash = hash(cardPin);
+        this.maxPedelecs = maxPedelecs == null ? 0 : maxPedelecs;
+        this.openRentals = openRentals;
+        this.trialCount = new AtomicInteger(trialCount == null ? 0 : trialCount);
+    }
+
+    public boolean matchesPin(String cardPin) {
+        return pinHash != null && cardPin != null && MessageDigest.isEqual(pinHash, hash(cardPin));
+    }
+
+    private static byte[] hash(String cardPin) {
+        if (cardPin == null) {
+            return null;
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(SALT);
+            return digest.digest(cardPin.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package de.rwth.idsg.bikeman.psinterface.authorization;
+
+import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
+import de.rwth.idsg.bikeman.psinterface.exception.PsException;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiCustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the authorization data of the cards, so that a customer at a station is authorized without a DB access.
+ * Unknown card ids are cached as well, since foreign cards are held to the stations all the time.
+ *
+ * The entries are invalidated by the changes of the card accounts, tariffs and transactions (see
+ * {@link CardAuthorizationListener}) and expire after a while in any case, since not every change goes through
+ * the entities.
+ *
+ * The invalidations are not shared between several instances, therefore the cache is bypassed in cluster mode
+ * (ixsi.cluster.enabled). The failed PIN trials are counted in the DB synchronously, so that a card that is
+ * loaded again after an eviction does not get a lower count.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class CardAuthorizationCache implements EnvironmentAware {
+
+    private static final String ENV_AUTHORIZATION = "psi.authorization.";
+    private static final String ENV_CLUSTER = "ixsi.cluster.";
+
+    /**
+     * For the JPA entity listener, which is not created by Spring
+     */
+    private static volatile CardAuthorizationCache instance;
+
+    @Autowired private PsiCustomerRepository customerRepository;
+
+    private RelaxedPropertyResolver propertyResolver;
+    private RelaxedPropertyResolver clusterPropertyResolver;
+
+    private boolean enabled;
+    private long ttlInMillis;
+    private long unknownTtlInMillis;
+
+    private Map<String, Entry> cards;
+    private Map<String, Long> unknownCards;
+
+    /**
+     * Incremented with every invalidation. A loaded entry is only cached, if nothing was invalidated in the meantime,
+     * since it might be loaded before the change was committed.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong unknownHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_AUTHORIZATION);
+        this.clusterPropertyResolver = new RelaxedPropertyResolver(environment, ENV_CLUSTER);
+    }
+
+    @PostConstruct
+    public void init() {
+        enabled = propertyResolver.getProperty("enabled", Boolean.class, true);
+        boolean cluster = clusterPropertyResolver.getProperty("enabled", Boolean.class, false);
+        ttlInMillis = TimeUnit.SECONDS.toMillis(propertyResolver.getProperty("ttlInSeconds", Integer.class, 300));
+        unknownTtlInMillis = TimeUnit.SECONDS.toMillis(propertyResolver.getProperty("unknownTtlInSeconds", Integer.class, 60));
+
+        int maxSize = propertyResolver.getProperty("maxSize", Integer.class, 10000);
+        int unknownMaxSize = propertyResolver.getProperty("unknownMaxSize", Integer.class, 10000);
+
+        cards = new BoundedMap<>(maxSize);
+        unknownCards = new BoundedMap<>(unknownMaxSize);
+
+        instance = this;
+
+        if (enabled && cluster) {
+            enabled = false;
+            log.info("Card authorization cache is disabled, since the other nodes of the cluster would not see "
+                    + "its invalidations");
+        } else if (enabled) {
+            log.info("Card authorization cache holds {} cards and {} unknown card ids", maxSize, unknownMaxSize);
+        } else {
+            log.info("Card authorization cache is disabled");
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        instance = null;
+    }
+
+    static CardAuthorizationCache getInstance() {
+        return instance;
+    }
+
+    // -------------------------------------------------------------------------
+    // Lookup
+    // -------------------------------------------------------------------------
+
+    public CardAuthorization get(String cardId) {
+        if (!enabled) {
+            return load(cardId);
+        }
+
+        long now = System.currentTimeMillis();
+
+        Entry entry;
+        synchronized (cards) {
+            entry = cards.get(cardId);
+        }
+        if (entry != null && entry.expiresAt > now) {
+            hitCount.incrementAndGet();
+            return entry.authorization;
+        }
+
+        Long unknownUntil;
+        synchronized (unknownCards) {
+            unknownUntil = unknownCards.get(cardId);
+        }
+        if (unknownUntil != null && unknownUntil > now) {
+            unknownHitCount.incrementAndGet();
+            throw unknownCard();
+        }
+
+        missCount.incrementAndGet();
+        long loadedGeneration = generation.get();
+
+        CardAuthorization authorization = customerRepository.findAuthorization(cardId);
+
+        if (loadedGeneration == generation.get()) {
+            if (authorization == null) {
+                synchronized (unknownCards) {
+                    unknownCards.put(cardId, now + unknownTtlInMillis);
+                }
+            } else {
+                synchronized (cards) {
+                    cards.put(cardId, new Entry(authorization, now + ttlInMillis));
+                }
+            }
+        }
+
+        if (authorization == null) {
+            throw unknownCard();
+        }
+        return authorization;
+    }
+
+    // -------------------------------------------------------------------------
+    // PIN trials
+    // -------------------------------------------------------------------------
+
+    public void resetTrialCount(CardAuthorization authorization) {
+        if (authorization.getTrialCount().getAndSet(0) != 0) {
+            customerRepository.updateAuthenticationTrialCount(authorization.getCardId(), 0);
+        }
+    }
+
+    /**
+     * Not asynchronous, since the count must not be lost, if the card is evicted and loaded again
+     *
+     * @return the trial count including this one
+     */
+    public int countFailedTrial(CardAuthorization authorization) {
+        int count = customerRepository.incrementAuthenticationTrialCount(authorization.getCardId());
+        authorization.getTrialCount().set(count);
+        return count;
+    }
+
+    /**
+     * Not asynchronous, since the card must not be usable after the response
+     */
+    public void disable(CardAuthorization authorization) {
+        customerRepository.disableAfterFailedTrials(authorization.getCardId(), authorization.getTrialCount().get());
+        invalidate(authorization.getCardId());
+    }
+
+    // -------------------------------------------------------------------------
+    // Invalidation
+    // -------------------------------------------------------------------------
+
+    public void invalidate(String cardId) {
+        generation.incrementAndGet();
+        synchronized (cards) {
+            cards.remove(cardId);
+        }
+        synchronized (unknownCards) {
+            unknownCards.remove(cardId);
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (cards) {
+            cards.clear();
+        }
+        synchronized (unknownCards) {
+            unknownCards.clear();
+        }
+    }
+
+    /**
+     * Now, so that the change is not cached from the DB before the commit, and after the commit, so that the old
+     * state is not cached from the DB in between.
+     */
+    void invalidateWithCommit(String cardId) {
+        invalidate(cardId);
+        afterCommit(() -> invalidate(cardId));
+    }
+
+    void invalidateAllWithCommit() {
+        invalidateAll();
+        afterCommit(this::invalidateAll);
+    }
+
+    // -------------------------------------------------------------------------
+    // Monitoring
+    // -------------------------------------------------------------------------
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getSize() {
+        synchronized (cards) {
+            return cards.size();
+        }
+    }
+
+    public int getUnknownSize() {
+        synchronized (unknownCards) {
+            return unknownCards.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getUnknownHitCount() {
+        return unknownHitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private CardAuthorization load(String cardId) {
+        CardAuthorization authorization = customerRepository.findAuthorization(cardId);
+        if (authorization == null) {
+            throw unknownCard();
+        }
+        return authorization;
+    }
+
+    private static PsException unknownCard() {
+        return new PsException("Card account is unknown", PsErrorCode.NOT_REGISTERED);
+    }
+
+    private static void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+    private static class Entry {
+        private final CardAuthorization authorization;
+        private final long expiresAt;
+
+        private Entry(CardAuthorization authorization, long expiresAt) {
+            this.authorization = authorization;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Evicts the least recently used entry. Not thread-safe.
+     */
+    private static class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private BoundedMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package de.rwth.idsg.bikeman.psinterface.authorization;
+
+import de.rwth.idsg.bikeman.domain.BookedTariff;
+import de.rwth.idsg.bikeman.domain.CardAccount;
+import de.rwth.idsg.bikeman.domain.Tariff;
+import de.rwth.idsg.bikeman.domain.Transaction;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Invalidates the cached authorizations, when the entities they are made of change. Bulk updates with JPQL do not
+ * trigger this, and have to invalidate the cache themselves.
+ *
+ * @since 18.10.2016
+ */
+public class CardAuthorizationListener {
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        CardAuthorizationCache cache = CardAuthorizationCache.getInstance();
+        if (cache == null) {
+            return;
+        }
+
+        if (entity instanceof CardAccount) {
+            invalidate(cache, (CardAccount) entity);
+
+        } else if (entity instanceof Transaction) {
+            invalidate(cache, ((Transaction) entity).getCardAccount());
+
+        } else if (entity instanceof BookedTariff) {
+            BookedTariff bookedTariff = (BookedTariff) entity;
+            invalidate(cache, bookedTariff.getCardAccount());
+            invalidate(cache, bookedTariff.getUsedCardAccount());
+
+        } else if (entity instanceof Tariff) {
+            // Affects every card with this tariff
+            cache.invalidateAllWithCommit();
+        }
+    }
+
+    private static void invalidate(CardAuthorizationCache cache, CardAccount cardAccount) {
+        if (cardAccount != null && cardAccount.getCardId() != null) {
+            cache.invalidateWithCommit(cardAccount.getCardId());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package de.rwth.idsg.bikeman.psinterface.dto.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One event of a status batch. Depending on the type, exactly one of the payloads is set, with the same content
+ * as the body of the corresponding single status notification.
+ *
+ * @since 18.10.2016
+ */
+@Data
+public class StatusBatchItemDTO {
+
+    public enum Type { STATION, PEDELEC, CHARGING }
+
+    private Type type;
+
+    private StationStatusDTO station;
+    private PedelecStatusDTO pedelec;
+    private List<ChargingStatusDTO> charging;
+}
@@ -22,4 +22,7 @@ public class BootConfirmationDTO {
 
     private Integer heartbeatInterval;
     private List<CardReadKeyDTO> cardKeys;
+
+    // Max. number of events per request to /psi/status/batch. Not set, if the server does not support batches.
+    private Integer maxStatusBatchSize;
 }
@@ -0,0 +1,34 @@
+package de.rwth.idsg.bikeman.psinterface.dto.response;
+
+import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of one event of a status batch, in the order of the request.
+ *
+ * @since 18.10.2016
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatusBatchResultDTO {
+
+    public enum Status { ACCEPTED, REJECTED }
+
+    private int index;
+    private Status status;
+
+    // Only set, if rejected
+    private PsErrorCode errorCode;
+    private String errorMessage;
+
+    public static StatusBatchResultDTO accepted(int index) {
+        return new StatusBatchResultDTO(index, Status.ACCEPTED, null, null);
+    }
+
+    public static StatusBatchResultDTO rejected(int index, PsErrorCode errorCode, String errorMessage) {
+        return new StatusBatchResultDTO(index, Status.REJECTED, errorCode, errorMessage);
+    }
+}
@@ -1,11 +1,15 @@
 package de.rwth.idsg.bikeman.psinterface.log;
 
 import com.google.common.base.Joiner;
+import de.rwth.idsg.bikeman.journal.Direction;
+import de.rwth.idsg.bikeman.journal.TrafficJournal;
 import de.rwth.idsg.bikeman.psinterface.Utils;
 import de.rwth.idsg.bikeman.psinterface.exception.PsException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -18,7 +22,9 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Taken from https://github.com/isrsal/spring-mvc-logger and modified
+ * Taken from https://github.com/isrsal/spring-mvc-logger and modified.
+ *
+ * Besides the debug log, the filter records a sample of the requests and responses in the traffic journal.
  *
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
  * @since 09.10.2015
@@ -33,11 +39,20 @@ public class ResourceLogFilter extends OncePerRequestFilter {
     private AtomicInteger id = new AtomicInteger(0);
     private static final Joiner.MapJoiner joiner = Joiner.on(", ").withKeyValueSeparator("=");
 
+    private final TrafficJournal trafficJournal;
+
+    public ResourceLogFilter(TrafficJournal trafficJournal) {
+        this.trafficJournal = trafficJournal;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     final FilterChain filterChain) throws ServletException, IOException {
-        if (log.isDebugEnabled()) {
-            String from = null;
+        final boolean debug = log.isDebugEnabled();
+        final boolean journal = trafficJournal.sample();
+
+        String from = null;
+        if (debug || journal) {
             boolean stationHeaderMissing = false;
             try {
                 from = Utils.getFrom(request);
@@ -55,10 +70,42 @@ public class ResourceLogFilter extends OncePerRequestFilter {
             filterChain.doFilter(request, response);
             //response.flushBuffer();
         } finally {
-            if (log.isDebugEnabled()) {
+            if (debug) {
                 logRequest(request);
-                logResponse(response);
             }
+            if (journal) {
+                journalRequest(from, request);
+            }
+
+            if (debug || journal) {
+                // The PSI requests are processed asynchronously (see StationMailboxExecutor).
+                // In this case the response is not written yet, and we can log it only after completion.
+                if (isAsyncStarted(request)) {
+                    request.getAsyncContext().addListener(new ResponseLogListener(from, response, debug, journal));
+                } else {
+                    completeResponse(from, response, debug, journal);
+                }
+            }
+        }
+    }
+
+    private void completeResponse(String from, HttpServletResponse response, boolean debug, boolean journal) {
+        if (debug) {
+            logResponse(response);
+        }
+        if (journal && response instanceof ResponseWrapper) {
+            trafficJournal.append(Direction.PSI_RESPONSE, from, String.valueOf(response.getStatus()),
+                    ((ResponseWrapper) response).toByteArray());
+        }
+    }
+
+    private void journalRequest(String from, HttpServletRequest request) {
+        if (request instanceof RequestWrapper) {
+            String target = request.getMethod() + " " + request.getRequestURI();
+            if (request.getQueryString() != null) {
+                target += "?" + request.getQueryString();
+            }
+            trafficJournal.append(Direction.PSI_REQUEST, from, target, ((RequestWrapper) request).toByteArray());
         }
     }
 
@@ -107,6 +154,41 @@ public class ResourceLogFilter extends OncePerRequestFilter {
         }
     }
 
+    private class ResponseLogListener implements AsyncListener {
+
+        private final String from;
+        private final HttpServletResponse response;
+        private final boolean debug;
+        private final boolean journal;
+
+        private ResponseLogListener(String from, HttpServletResponse response, boolean debug, boolean journal) {
+            this.from = from;
+            this.response = response;
+            this.debug = debug;
+            this.journal = journal;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            completeResponse(from, response, debug, journal);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            // No-op
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            // No-op
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            // No-op
+        }
+    }
+
     private Map<String, String> getHeadersMap(HttpServletRequest request) {
         Map<String, String> map = new HashMap<>();
         Enumeration names = request.getHeaderNames();
@@ -0,0 +1,147 @@
+package de.rwth.idsg.bikeman.psinterface.mailbox;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serial executor for the requests of ONE station.
+ *
+ * Tasks are appended to a lock-free queue. At most one thread of the shared executor drains the queue at a time
+ * (guarded by the scheduled flag), so the tasks of a station are processed one after another in arrival order,
+ * while the mailboxes of different stations never block each other.
+ *
+ * A drain run processes at most {@link #MAX_TASKS_PER_RUN} tasks and then gives the thread back to the executor,
+ * so that one busy station cannot starve the others.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+public class StationMailbox implements Runnable {
+
+    private static final int MAX_TASKS_PER_RUN = 16;
+
+    @Getter private final String stationId;
+    private final Executor executor;
+
+    private final Queue<Envelope> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    // Statistics
+    private final AtomicInteger depth = new AtomicInteger(0);
+    private final AtomicLong processedCount = new AtomicLong(0);
+    private final AtomicLong totalWaitNanos = new AtomicLong(0);
+    private final AtomicLong maxWaitNanos = new AtomicLong(0);
+    private final AtomicLong totalServiceNanos = new AtomicLong(0);
+
+    public StationMailbox(String stationId, Executor executor) {
+        this.stationId = stationId;
+        this.executor = executor;
+    }
+
+    public void submit(Runnable task) {
+        queue.offer(new Envelope(task, System.nanoTime()));
+        depth.incrementAndGet();
+        trySchedule();
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+                Envelope envelope = queue.poll();
+                if (envelope == null) {
+                    break;
+                }
+                depth.decrementAndGet();
+                process(envelope);
+            }
+        } finally {
+            scheduled.set(false);
+
+            // A task might have been added after the last poll, but before the flag was reset.
+            // Its submitter could not schedule a run, so we have to.
+            if (!queue.isEmpty()) {
+                trySchedule();
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getMaxWaitInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public double getAverageWaitInMillis() {
+        return average(totalWaitNanos.get());
+    }
+
+    public double getAverageServiceInMillis() {
+        return average(totalServiceNanos.get());
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void trySchedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void process(Envelope envelope) {
+        long start = System.nanoTime();
+        long wait = start - envelope.getEnqueuedAt();
+
+        try {
+            envelope.getTask().run();
+        } catch (Throwable t) {
+            log.error("[stationId={}] Task failed", stationId, t);
+        } finally {
+            totalServiceNanos.addAndGet(System.nanoTime() - start);
+            totalWaitNanos.addAndGet(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            processedCount.incrementAndGet();
+        }
+    }
+
+    private double average(long totalNanos) {
+        long count = processedCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return (double) totalNanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Envelope {
+        private final Runnable task;
+        private final long enqueuedAt;
+    }
+}
@@ -0,0 +1,118 @@
+package de.rwth.idsg.bikeman.psinterface.mailbox;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
+import de.rwth.idsg.bikeman.psinterface.exception.PsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands off the PSI requests of the stations to their mailboxes and releases the servlet thread.
+ *
+ * The requests of one station are processed serially and in arrival order (which was the intention of the
+ * former striped locks), whereas requests of different stations are processed in parallel without any contention.
+ * The result is delivered to the station via async servlet processing ({@link DeferredResult}).
+ *
+ * The number of stations is limited, therefore the mailboxes are created lazily and never removed.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class StationMailboxExecutor implements EnvironmentAware {
+
+    private static final String ENV_MAILBOX = "psi.mailbox.";
+    private static final String PROP_POOL_SIZE = "poolSize";
+    private static final String PROP_TIMEOUT = "timeoutInSeconds";
+
+    private final ConcurrentHashMap<String, StationMailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private RelaxedPropertyResolver propertyResolver;
+    private ExecutorService executorService;
+    private long timeoutInMillis;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_MAILBOX);
+    }
+
+    @PostConstruct
+    public void init() {
+        int poolSize = propertyResolver.getProperty(PROP_POOL_SIZE, Integer.class, 10);
+        timeoutInMillis = TimeUnit.SECONDS.toMillis(propertyResolver.getProperty(PROP_TIMEOUT, Long.class, 30L));
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("bikeman-Station-Mailbox-%d")
+                                                                .build();
+
+        executorService = Executors.newFixedThreadPool(poolSize, threadFactory);
+        log.info("Initialized station mailboxes with {} threads", poolSize);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        try {
+            executorService.shutdown();
+            executorService.awaitTermination(30, TimeUnit.SECONDS);
+
+        } catch (InterruptedException e) {
+            log.error("Termination interrupted", e);
+
+        } finally {
+            if (!executorService.isTerminated()) {
+                log.warn("Killing non-finished tasks");
+            }
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Enqueues the task in the mailbox of the station. If the task is not processed within the configured timeout,
+     * the station receives an error. A task that expired while waiting in the mailbox is not processed anymore,
+     * since nobody is waiting for its result.
+     */
+    public <T> DeferredResult<T> submit(String stationId, Callable<T> task) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutInMillis, buildTimeoutException(stationId));
+
+        getMailbox(stationId).submit(() -> {
+            if (result.isSetOrExpired()) {
+                log.warn("[stationId={}] Request expired while waiting in mailbox. Will not process", stationId);
+                return;
+            }
+
+            try {
+                result.setResult(task.call());
+            } catch (Exception e) {
+                result.setErrorResult(e);
+            }
+        });
+
+        return result;
+    }
+
+    public Collection<StationMailbox> getMailboxes() {
+        return mailboxes.values();
+    }
+
+    private StationMailbox getMailbox(String stationId) {
+        return mailboxes.computeIfAbsent(stationId, id -> new StationMailbox(id, executorService));
+    }
+
+    private PsException buildTimeoutException(String stationId) {
+        return new PsException("Request of station '" + stationId + "' timed out in mailbox",
+                PsErrorCode.UNKNOWN_SERVER_ERROR);
+    }
+}
@@ -1,6 +1,7 @@
 package de.rwth.idsg.bikeman.psinterface.repository;
 
 import de.rwth.idsg.bikeman.domain.CardAccount;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorization;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 
 /**
@@ -15,6 +16,19 @@ public interface PsiCustomerRepository {
      */
     CardAccount findByCardId(String cardId) throws DatabaseException;
 
-    CardAccount saveCardAccount(CardAccount cardAccount);
-    void resetAuthenticationTrialCount(CardAccount cardAccount);
+    /**
+     * @return null, if the card is unknown
+     */
+    CardAuthorization findAuthorization(String cardId);
+
+    void updateAuthenticationTrialCount(String cardId, int trialCount);
+
+    /**
+     * Increments the count in the DB, so that concurrent trials are not lost
+     *
+     * @return the count including this trial
+     */
+    int incrementAuthenticationTrialCount(String cardId);
+
+    void disableAfterFailedTrials(String cardId, int trialCount);
 }
@@ -1,9 +1,10 @@
 package de.rwth.idsg.bikeman.psinterface.repository;
 
 import de.rwth.idsg.bikeman.domain.CardAccount;
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorization;
 import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
 import de.rwth.idsg.bikeman.psinterface.exception.PsException;
-import de.rwth.idsg.bikeman.repository.CardAccountRepository;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
@@ -13,6 +14,7 @@ import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.util.List;
 
 /**
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
@@ -24,7 +26,7 @@ public class PsiCustomerRepositoryImpl implements PsiCustomerRepository {
 
     @PersistenceContext private EntityManager em;
 
-    @Inject private CardAccountRepository cardAccountRepository;
+    @Inject private PsiTransactionRepository transactionRepository;
 
     @Override
     @Transactional(readOnly = true)
@@ -44,18 +46,61 @@ public class PsiCustomerRepositoryImpl implements PsiCustomerRepository {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CardAuthorization findAuthorization(String cardId) {
+        final String query = "SELECT c.operationState, c.cardPin, c.authenticationTrialCount, t.maxNumberPedelecs " +
+                             "FROM CardAccount c LEFT JOIN c.currentTariff bt LEFT JOIN bt.tariff t " +
+                             "WHERE c.cardId = :cardId";
+        try {
+            List<Object[]> rows = em.createQuery(query, Object[].class)
+                                    .setParameter("cardId", cardId)
+                                    .getResultList();
+            if (rows.isEmpty()) {
+                return null;
+            }
+
+            Object[] row = rows.get(0);
+            return new CardAuthorization(cardId, (OperationState) row[0], (String) row[1], (Integer) row[2],
+                    (Integer) row[3], transactionRepository.countOpenTransactions(cardId));
+
+        } catch (Exception e) {
+            throw new PsException("Failed during database operation.", e, PsErrorCode.DATABASE_OPERATION_FAILED);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void updateAuthenticationTrialCount(String cardId, int trialCount) {
+        em.createQuery("UPDATE CardAccount c SET c.authenticationTrialCount = :trialCount WHERE c.cardId = :cardId")
+          .setParameter("trialCount", trialCount)
+          .setParameter("cardId", cardId)
+          .executeUpdate();
+    }
+
     @Override
     @Transactional
-    public CardAccount saveCardAccount(CardAccount cardAccount) {
-        cardAccountRepository.save(cardAccount);
+    public int incrementAuthenticationTrialCount(String cardId) {
+        em.createQuery("UPDATE CardAccount c SET c.authenticationTrialCount = " +
+                       "COALESCE(c.authenticationTrialCount, 0) + 1 WHERE c.cardId = :cardId")
+          .setParameter("cardId", cardId)
+          .executeUpdate();
 
-        return cardAccount;
+        List<Integer> counts = em.createQuery("SELECT c.authenticationTrialCount FROM CardAccount c " +
+                                              "WHERE c.cardId = :cardId", Integer.class)
+                                 .setParameter("cardId", cardId)
+                                 .getResultList();
+        return counts.isEmpty() || counts.get(0) == null ? 0 : counts.get(0);
     }
 
     @Override
     @Transactional
-    public void resetAuthenticationTrialCount(CardAccount cardAccount) {
-        cardAccount.setAuthenticationTrialCount(0);
-        cardAccountRepository.save(cardAccount);
+    public void disableAfterFailedTrials(String cardId, int trialCount) {
+        em.createQuery("UPDATE CardAccount c SET c.authenticationTrialCount = :trialCount, " +
+                       "c.operationState = :state WHERE c.cardId = :cardId")
+          .setParameter("trialCount", trialCount)
+          .setParameter("state", OperationState.INOPERATIVE)
+          .setParameter("cardId", cardId)
+          .executeUpdate();
     }
 }
@@ -1,7 +1,7 @@
 package de.rwth.idsg.bikeman.psinterface.repository;
 
-import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
+import de.rwth.idsg.bikeman.telemetry.BatterySample;
 
 import java.util.List;
 
@@ -10,8 +10,6 @@ import java.util.List;
  * @since 16.06.2015
  */
 public interface PsiPedelecRepository {
-    List<String> findAvailablePedelecs(String stationManufacturerId);
-    List<String> findReservedPedelecs(String stationManufacturerId, String cardId);
     void updatePedelecStatus(PedelecStatusDTO dto);
-    void updatePedelecChargingStatus(List<ChargingStatusDTO> dtoList);
+    void updatePedelecChargingStatus(List<BatterySample> sampleList);
 }
@@ -1,8 +1,8 @@
 package de.rwth.idsg.bikeman.psinterface.repository;
 
 import de.rwth.idsg.bikeman.domain.OperationState;
-import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
+import de.rwth.idsg.bikeman.telemetry.BatterySample;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.LocalDateTime;
@@ -24,79 +24,6 @@ public class PsiPedelecRepositoryImpl implements PsiPedelecRepository {
 
     @PersistenceContext private EntityManager em;
 
-    // nachfolgende funktion nur mit einem rückgabewert (keine liste)
-
-    @Override
-    @Transactional(readOnly = true)
-    public List<String> findAvailablePedelecs(String stationManufacturerId) {
-//        final String q = "select p.manufacturerId " +
-//                         "from Pedelec p " +
-//                         "join p.chargingStatus cs " +
-//                         "join p.stationSlot ss " +
-//                         "join ss.station s " +
-//                         "left join p.reservations r on (p = r.pedelec " +
-//                            "and not r.state = de.rwth.idsg.bikeman.domain.ReservationState.USED " +
-//                            "and (CURRENT_TIMESTAMP between r.startDateTime and r.endDateTime)) " +
-//                         "where s.manufacturerId = :stationManufacturerId " +
-//                         "and ss.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
-//                         "and p.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
-//                         "and r.pedelec IS NULL " +
-//                         "order by cs.batteryStateOfCharge desc";
-
-        final String q = "select p.manufacturerId " +
-                         "from Pedelec p " +
-                         "join p.chargingStatus cs " +
-                         "join p.stationSlot sl " +
-                         "join sl.station s " +
-                         "where s.manufacturerId = :stationManufacturerId " +
-                         "and sl.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
-                         "and p.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
-                         "and p not in (select r.pedelec from Reservation r " +
-                            "where r.state = de.rwth.idsg.bikeman.domain.ReservationState.CREATED " +
-                            "and (:now between r.startDateTime and r.endDateTime)) " +
-                         "order by cs.batteryStateOfCharge desc";
-
-        try {
-            return em.createQuery(q, String.class)
-                     .setParameter("stationManufacturerId", stationManufacturerId)
-                     .setParameter("now", new LocalDateTime())
-                     .setMaxResults(5)
-                     .getResultList();
-        } catch (Exception e) {
-            throw new DatabaseException("Failed to find pedelecs in station with manufacturerId "
-                    + stationManufacturerId, e);
-        }
-    }
-
-    @Override
-    @Transactional(readOnly = true)
-    public List<String> findReservedPedelecs(String stationManufacturerId, String cardId) {
-        final String q = "SELECT p.manufacturerId " +
-                         "FROM Reservation r " +
-                         "JOIN r.pedelec p " +
-                         "JOIN r.cardAccount ca " +
-                         "JOIN p.stationSlot ss " +
-                         "JOIN ss.station s " +
-                         "WHERE ca.cardId = :cardId " +
-                         "AND (:now BETWEEN r.startDateTime AND r.endDateTime) " +
-                         "AND s.manufacturerId = :stationManufacturerId " +
-                         "AND ss.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
-                         "AND p.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE " +
-                         "AND r.state = de.rwth.idsg.bikeman.domain.ReservationState.CREATED";
-
-        try {
-            return em.createQuery(q, String.class)
-                .setParameter("stationManufacturerId", stationManufacturerId)
-                .setParameter("cardId", cardId)
-                .setParameter("now", new LocalDateTime())
-                .setMaxResults(1)
-                .getResultList();
-        } catch (Exception e) {
-            throw new DatabaseException("Failed to find pedelecs in station with manufacturerId "
-                + stationManufacturerId, e);
-        }
-    }
-
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void updatePedelecStatus(PedelecStatusDTO dto) {
@@ -127,7 +54,7 @@ public class PsiPedelecRepositoryImpl implements PsiPedelecRepository {
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public void updatePedelecChargingStatus(List<ChargingStatusDTO> dtoList) {
+    public void updatePedelecChargingStatus(List<BatterySample> sampleList) {
         final String s = "UPDATE PedelecChargingStatus s SET " +
             "s.state = :state, " +
             "s.meterValue = :meterValue, " +
@@ -140,21 +67,21 @@ public class PsiPedelecRepositoryImpl implements PsiPedelecRepository {
             "WHERE s.pedelec = (SELECT p FROM Pedelec p WHERE p.manufacturerId = :pedelecManufacturerId)";
 
         try {
-            for (ChargingStatusDTO dto : dtoList) {
+            for (BatterySample sample : sampleList) {
                 int count = em.createQuery(s)
-                              .setParameter("state", dto.getChargingState())
-                              .setParameter("meterValue", dto.getMeterValue())
-                              .setParameter("cycleCount", dto.getBattery().getCycleCount())
-                              .setParameter("stateOfCharge", dto.getBattery().getSoc())
-                              .setParameter("temperature", dto.getBattery().getTemperature())
-                              .setParameter("voltage", dto.getBattery().getVoltage())
-                              .setParameter("current", dto.getBattery().getCurrent())
-                              .setParameter("timestamp", dto.getTimestamp().toLocalDateTime())
-                              .setParameter("pedelecManufacturerId", dto.getPedelecManufacturerId())
+                              .setParameter("state", sample.getChargingState())
+                              .setParameter("meterValue", sample.getMeterValue())
+                              .setParameter("cycleCount", sample.getCycleCount())
+                              .setParameter("stateOfCharge", sample.getSoc())
+                              .setParameter("temperature", sample.getTemperature())
+                              .setParameter("voltage", sample.getVoltage())
+                              .setParameter("current", sample.getCurrent())
+                              .setParameter("timestamp", new LocalDateTime(sample.getTimestamp()))
+                              .setParameter("pedelecManufacturerId", sample.getPedelecManufacturerId())
                               .executeUpdate();
 
                 if (count != 1) {
-                    log.warn("Failed to update charging status of pedelec with manufacturerId {}", dto.getPedelecManufacturerId());
+                    log.warn("Failed to update charging status of pedelec with manufacturerId {}", sample.getPedelecManufacturerId());
                 }
             }
         } catch (Exception e) {
@@ -12,19 +12,25 @@ import de.rwth.idsg.bikeman.psinterface.dto.response.CardReadKeyDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.CardWriteKeyDTO;
 import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
 import de.rwth.idsg.bikeman.psinterface.exception.PsException;
-import de.rwth.idsg.bikeman.repository.PedelecRepository;
 import de.rwth.idsg.bikeman.utils.ItemIdComparator;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -36,7 +42,6 @@ import java.util.stream.Collectors;
 public class PsiStationRepositoryImpl implements PsiStationRepository {
 
     @PersistenceContext private EntityManager em;
-    @Inject private PedelecRepository pedelecRepository;
 
     @Override
     public List<CardReadKeyDTO> getCardReadKeys() {
@@ -100,21 +105,18 @@ public class PsiStationRepositoryImpl implements PsiStationRepository {
         idComparator.setDatabaseList(dbList);
         idComparator.setNewList(newList);
 
-        List<String> updateList = idComparator.getForUpdate();
-        List<String> insertList = idComparator.getForInsert();
+        Set<String> updateSet = new HashSet<>(idComparator.getForUpdate());
+        Set<String> insertSet = new HashSet<>(idComparator.getForInsert());
         List<String> deleteList = idComparator.getForDelete();
 
         // -------------------------------------------------------------------------
         // Update/Insert
         // -------------------------------------------------------------------------
 
-        final String updateQuery = "UPDATE StationSlot ss " +
-                                   "SET ss.isOccupied = :isOccupied, " +
-                                   "ss.stationSlotPosition = :slotPosition, " +
-                                   "ss.state = de.rwth.idsg.bikeman.domain.OperationState.OPERATIVE, " +
-                                   "ss.pedelec = (SELECT p FROM Pedelec p WHERE p.manufacturerId = :pedelecManufacturerId) " +
-                                   "WHERE ss.station = :station " +
-                                   "AND ss.manufacturerId = :slotManufacturerId";
+        Map<String, Long> pedelecIds = findPedelecIds(stationSlotList);
+
+        // Updated with one batch, the inserts are batched by Hibernate (hibernate.jdbc.batch_size)
+        List<StationSlotBatchUpdate.BootSlot> updateList = new ArrayList<>(updateSet.size());
 
         for (SlotDTO.Boot slot : stationSlotList) {
             String slotManufacturerId = slot.getSlotManufacturerId();
@@ -127,17 +129,13 @@ public class PsiStationRepositoryImpl implements PsiStationRepository {
             }
 
             boolean hasPedelec = (pedelecManufacturerId != null);
+            Long pedelecId = hasPedelec ? pedelecIds.get(pedelecManufacturerId) : null;
 
-            if (updateList.contains(slotManufacturerId)) {
-                em.createQuery(updateQuery)
-                  .setParameter("isOccupied", hasPedelec)
-                  .setParameter("slotPosition", slot.getSlotPosition())
-                  .setParameter("pedelecManufacturerId", pedelecManufacturerId)
-                  .setParameter("station", station)
-                  .setParameter("slotManufacturerId", slotManufacturerId)
-                  .executeUpdate();
+            if (updateSet.contains(slotManufacturerId)) {
+                updateList.add(new StationSlotBatchUpdate.BootSlot(slotManufacturerId, slot.getSlotPosition(),
+                        pedelecManufacturerId, pedelecId));
 
-            } else if (insertList.contains(slotManufacturerId)) {
+            } else if (insertSet.contains(slotManufacturerId)) {
                 StationSlot newSlot = new StationSlot();
                 newSlot.setManufacturerId(slotManufacturerId);
                 newSlot.setStationSlotPosition(slot.getSlotPosition());
@@ -146,18 +144,20 @@ public class PsiStationRepositoryImpl implements PsiStationRepository {
                 newSlot.setState(OperationState.OPERATIVE);
 
                 if (hasPedelec) {
-                    try {
-                        Pedelec pedelec = pedelecRepository.findByManufacturerId(pedelecManufacturerId);
-                        newSlot.setPedelec(pedelec);
-                    } catch (DatabaseException e) {
-                        throw new PsException(e.getMessage(), e, PsErrorCode.NOT_REGISTERED);
+                    if (pedelecId == null) {
+                        throw new PsException("Failed to find pedelec with manufacturerId " + pedelecManufacturerId,
+                                PsErrorCode.NOT_REGISTERED);
                     }
+                    newSlot.setPedelec(em.getReference(Pedelec.class, pedelecId));
                 }
 
                 em.persist(newSlot);
             }
         }
 
+        long stationId = station.getStationId();
+        doWork(connection -> StationSlotBatchUpdate.updateAfterBoot(connection, stationId, updateList));
+
         // -------------------------------------------------------------------------
         // Delete
         // -------------------------------------------------------------------------
@@ -211,33 +211,90 @@ public class PsiStationRepositoryImpl implements PsiStationRepository {
         // Update Slots
         // -------------------------------------------------------------------------
 
-        final String ss = "UPDATE StationSlot ss SET " +
-                          "ss.errorCode = :slotErrorCode, " +
-                          "ss.errorInfo = :slotErrorInfo, " +
-                          "ss.state = :slotState " +
-                          "WHERE ss.manufacturerId = :slotManufacturerId " +
-                          "AND ss.station = (SELECT s FROM Station s WHERE s.manufacturerId = :stationManufacturerId)";
-
-        for (SlotDTO.StationStatus slot : dto.getSlots()) {
-            try {
-                int count = em.createQuery(ss)
-                              .setParameter("slotErrorCode", slot.getSlotErrorCode())
-                              .setParameter("slotErrorInfo", slot.getSlotErrorInfo())
-                              .setParameter("slotState", OperationState.valueOf(slot.getSlotState().name()))
-                              .setParameter("slotManufacturerId", slot.getSlotManufacturerId())
-                              .setParameter("stationManufacturerId", dto.getStationManufacturerId())
-                              .executeUpdate();
-
-                if (count != 1) {
-                    log.warn("Failed to update status of station slot with manufacturerId {}", dto.getStationManufacturerId());
-                }
-            } catch (Exception e) {
-                throw new DatabaseException("Failed to update the slot status with manufacturerId "
-                    + slot.getSlotManufacturerId(), e);
+        List<SlotDTO.StationStatus> slots = dto.getSlots();
+        if (slots == null || slots.isEmpty()) {
+            return;
+        }
+
+        Long stationId = findStationId(dto.getStationManufacturerId());
+        if (stationId == null) {
+            log.warn("Failed to update status of slots of unknown station with manufacturerId {}",
+                    dto.getStationManufacturerId());
+            return;
+        }
+
+        int[] counts;
+        try {
+            counts = doWork(connection -> StationSlotBatchUpdate.updateStatus(connection, stationId, slots));
+        } catch (Exception e) {
+            throw new DatabaseException("Failed to update the slot status of station with manufacturerId "
+                + dto.getStationManufacturerId(), e);
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+            // Drivers may report SUCCESS_NO_INFO (-2) for batched statements
+            if (counts[i] == 0) {
+                log.warn("Failed to update status of station slot with manufacturerId {}",
+                        slots.get(i).getSlotManufacturerId());
             }
         }
     }
 
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private Long findStationId(String manufacturerId) {
+        List<Long> ids = em.createQuery("SELECT s.stationId FROM Station s WHERE s.manufacturerId = :stationManufacturerId",
+                                        Long.class)
+                           .setParameter("stationManufacturerId", manufacturerId)
+                           .getResultList();
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    /**
+     * One query for the pedelecs of all slots. Unknown pedelecs are missing in the map.
+     */
+    private Map<String, Long> findPedelecIds(List<SlotDTO.Boot> slots) {
+        List<String> manufacturerIds = slots.stream()
+                                            .map(SlotDTO.Boot::getPedelecManufacturerId)
+                                            .filter(id -> !Strings.isNullOrEmpty(id))
+                                            .collect(Collectors.toList());
+
+        Map<String, Long> map = new HashMap<>(manufacturerIds.size());
+        if (manufacturerIds.isEmpty()) {
+            return map;
+        }
+
+        List<Object[]> rows = em.createQuery("SELECT p.manufacturerId, p.pedelecId FROM Pedelec p " +
+                                             "WHERE p.manufacturerId IN :pedelecManufacturerIds", Object[].class)
+                                .setParameter("pedelecManufacturerIds", manufacturerIds)
+                                .getResultList();
+
+        for (Object[] row : rows) {
+            map.put((String) row[0], (Long) row[1]);
+        }
+        return map;
+    }
+
+    /**
+     * Runs the JDBC work on the connection of the current transaction, and evicts the cached slots afterwards,
+     * since they were changed behind the back of Hibernate
+     */
+    private int[] doWork(SlotWork work) {
+        int[][] result = new int[1][];
+        try {
+            em.unwrap(Session.class).doWork(connection -> result[0] = work.execute(connection));
+        } finally {
+            em.getEntityManagerFactory().getCache().evict(StationSlot.class);
+        }
+        return result[0];
+    }
+
+    private interface SlotWork {
+        int[] execute(Connection connection) throws SQLException;
+    }
+
     @Transactional(readOnly = true)
     private Station findOneByManufacturerId(String manufacturerId) {
         return em.createQuery("SELECT s FROM Station s where s.manufacturerId = :stationManufacturerId", Station.class)
@@ -0,0 +1,94 @@
+package de.rwth.idsg.bikeman.psinterface.repository;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes the slots of one station as a single JDBC batch, i.e. one prepared statement and one round trip for all
+ * slots, instead of one JPQL UPDATE per slot. The slots are addressed by the already resolved station id, so the
+ * statements do not need a subquery on the station.
+ *
+ * Bypasses the persistence context and the second level cache, like the JPQL bulk updates did. The caller has to
+ * evict the cached slots.
+ *
+ * @since 18.10.2016
+ */
+final class StationSlotBatchUpdate {
+    private StationSlotBatchUpdate() { }
+
+    private static final String UPDATE_STATUS =
+            "UPDATE T_STATION_SLOT SET error_code = ?, error_info = ?, state = ? " +
+            "WHERE station_id = ? AND manufacturer_id = ?";
+
+    private static final String UPDATE_AFTER_BOOT =
+            "UPDATE T_STATION_SLOT SET is_occupied = ?, station_slot_position = ?, state = ?, pedelec_id = ? " +
+            "WHERE station_id = ? AND manufacturer_id = ?";
+
+    /**
+     * @return the update count per slot, in the order of the list
+     */
+    static int[] updateStatus(Connection connection, long stationId,
+                              List<SlotDTO.StationStatus> slots) throws SQLException {
+        if (slots.isEmpty()) {
+            return new int[0];
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement(UPDATE_STATUS)) {
+            for (SlotDTO.StationStatus slot : slots) {
+                ps.setString(1, slot.getSlotErrorCode());
+                ps.setString(2, slot.getSlotErrorInfo());
+                ps.setString(3, OperationState.valueOf(slot.getSlotState().name()).name());
+                ps.setLong(4, stationId);
+                ps.setString(5, slot.getSlotManufacturerId());
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+
+    /**
+     * Sets the slots operative, with their position and current pedelec (null if empty or unknown)
+     *
+     * @return the update count per slot, in the order of the collection
+     */
+    static int[] updateAfterBoot(Connection connection, long stationId,
+                                 Collection<BootSlot> slots) throws SQLException {
+        if (slots.isEmpty()) {
+            return new int[0];
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement(UPDATE_AFTER_BOOT)) {
+            for (BootSlot slot : slots) {
+                ps.setBoolean(1, slot.pedelecManufacturerId != null);
+                ps.setObject(2, slot.position, Types.INTEGER);
+                ps.setString(3, OperationState.OPERATIVE.name());
+                ps.setObject(4, slot.pedelecId, Types.BIGINT);
+                ps.setLong(5, stationId);
+                ps.setString(6, slot.slotManufacturerId);
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+
+    static final class BootSlot {
+        final String slotManufacturerId;
+        final Integer position;
+        final String pedelecManufacturerId;
+        final Long pedelecId;
+
+        BootSlot(String slotManufacturerId, Integer position, String pedelecManufacturerId, Long pedelecId) {
+            this.slotManufacturerId = slotManufacturerId;
+            this.position = position;
+            this.pedelecManufacturerId = pedelecManufacturerId;
+            this.pedelecId = pedelecId;
+        }
+    }
+}
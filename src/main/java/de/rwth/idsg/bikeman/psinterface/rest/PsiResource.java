@@ -1,7 +1,6 @@
 package de.rwth.idsg.bikeman.psinterface.rest;
 
 import com.google.common.base.Optional;
-import com.google.common.util.concurrent.Striped;
 import de.rwth.idsg.bikeman.psinterface.Utils;
 import de.rwth.idsg.bikeman.psinterface.dto.request.BootNotificationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.CardActivationDTO;
@@ -13,15 +12,17 @@ import de.rwth.idsg.bikeman.psinterface.dto.request.LogsStatusDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.StartTransactionDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StatusBatchItemDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.StopTransactionDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.AuthorizeConfirmationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.BootConfirmationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.CardActivationResponseDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.HeartbeatDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.response.StatusBatchResultDTO;
 import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
 import de.rwth.idsg.bikeman.psinterface.exception.PsException;
+import de.rwth.idsg.bikeman.psinterface.mailbox.StationMailboxExecutor;
 import de.rwth.idsg.bikeman.service.CardAccountService;
-import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.http.MediaType;
@@ -30,13 +31,12 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
 
 /**
  * Created by swam on 31/07/14.
@@ -49,8 +49,7 @@ public class PsiResource {
 
     @Inject private PsiService psiService;
     @Inject private CardAccountService cardAccountService;
-
-    private final Striped<Lock> stationLocks = Striped.lock(25);
+    @Inject private StationMailboxExecutor mailboxExecutor;
 
     private static final String BOOT_NOTIFICATION_PATH = "/boot";
     private static final String AUTHORIZE_PATH = "/authorize";
@@ -62,6 +61,7 @@ public class PsiResource {
     private static final String STATION_STATUS_PATH = "/status/station";
     private static final String PEDELEC_STATUS_PATH = "/status/pedelec";
     private static final String CHARGING_STATUS_PATH = "/status/charging";
+    private static final String STATUS_BATCH_PATH = "/status/batch";
     private static final String FIRMWARE_STATUS_PATH = "/status/firmware";
     private static final String LOGS_STATUS_PATH = "/status/logs";
 
@@ -73,22 +73,16 @@ public class PsiResource {
     // -------------------------------------------------------------------------
 
     @RequestMapping(value = BOOT_NOTIFICATION_PATH, method = RequestMethod.POST)
-    public BootConfirmationDTO bootNotification(@RequestBody BootNotificationDTO bootNotificationDTO,
-                                                HttpServletRequest request) throws DatabaseException {
+    public DeferredResult<BootConfirmationDTO> bootNotification(@RequestBody BootNotificationDTO bootNotificationDTO,
+                                                                HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received bootNotification {}", stationId, bootNotificationDTO);
-        BootConfirmationDTO dto;
-
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
-            dto = psiService.handleBootNotification(bootNotificationDTO);
-        } finally {
-            l.unlock();
-        }
-
-        log.debug("bootNotification returns {}", dto);
-        return dto;
+
+        return mailboxExecutor.submit(stationId, () -> {
+            BootConfirmationDTO dto = psiService.handleBootNotification(bootNotificationDTO);
+            log.debug("bootNotification returns {}", dto);
+            return dto;
+        });
     }
 
     @RequestMapping(value = HEARTBEAT_PATH, method = RequestMethod.GET)
@@ -102,22 +96,16 @@ public class PsiResource {
     }
 
     @RequestMapping(value = AVAIL_PEDELECS_PATH, method = RequestMethod.GET)
-    public List<String> getAvailablePedelecs(@RequestParam(value = "cardId", required = false) String cardId,
-                                             HttpServletRequest request) throws DatabaseException {
+    public DeferredResult<List<String>> getAvailablePedelecs(@RequestParam(value = "cardId", required = false) String cardId,
+                                                             HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received getAvailablePedelecs for cardId '{}'", stationId, cardId);
-        List<String> list;
-
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
-            list = psiService.getAvailablePedelecs(stationId, cardId);
-        } finally {
-            l.unlock();
-        }
-
-        log.debug("getAvailablePedelecs returns {}", list);
-        return list;
+
+        return mailboxExecutor.submit(stationId, () -> {
+            List<String> list = psiService.getAvailablePedelecs(stationId, cardId);
+            log.debug("getAvailablePedelecs returns {}", list);
+            return list;
+        });
     }
 
     // -------------------------------------------------------------------------
@@ -125,44 +113,32 @@ public class PsiResource {
     // -------------------------------------------------------------------------
 
     @RequestMapping(value = ACTIVATE_CARD_PATH, method = RequestMethod.POST)
-    public CardActivationResponseDTO activateCard(@RequestBody CardActivationDTO cardActivationDTO,
-                                                  HttpServletRequest request, HttpServletResponse response) {
+    public DeferredResult<CardActivationResponseDTO> activateCard(@RequestBody CardActivationDTO cardActivationDTO,
+                                                                  HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received activateCard {}", stationId, cardActivationDTO);
-        Optional<CardActivationResponseDTO> optional;
-
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
-            optional = cardAccountService.activateCardAccount(cardActivationDTO);
-        } finally {
-            l.unlock();
-        }
-
-        if (optional.isPresent()) {
-            return optional.get();
-        } else {
-            throw new PsException("Credentials are not accepted", PsErrorCode.CONSTRAINT_FAILED);
-        }
+
+        return mailboxExecutor.submit(stationId, () -> {
+            Optional<CardActivationResponseDTO> optional = cardAccountService.activateCardAccount(cardActivationDTO);
+            if (optional.isPresent()) {
+                return optional.get();
+            } else {
+                throw new PsException("Credentials are not accepted", PsErrorCode.CONSTRAINT_FAILED);
+            }
+        });
     }
 
     @RequestMapping(value = AUTHORIZE_PATH, method = RequestMethod.POST)
-    public AuthorizeConfirmationDTO authorize(@RequestBody CustomerAuthorizeDTO customerAuthorizeDTO,
-                                              HttpServletRequest request) throws DatabaseException {
+    public DeferredResult<AuthorizeConfirmationDTO> authorize(@RequestBody CustomerAuthorizeDTO customerAuthorizeDTO,
+                                                              HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received authorize {}", stationId, customerAuthorizeDTO);
-        AuthorizeConfirmationDTO dto;
-
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
-            dto = psiService.handleAuthorize(customerAuthorizeDTO);
-        } finally {
-            l.unlock();
-        }
-
-        log.debug("authorize returns {}", dto);
-        return dto;
+
+        return mailboxExecutor.submit(stationId, () -> {
+            AuthorizeConfirmationDTO dto = psiService.handleAuthorize(customerAuthorizeDTO);
+            log.debug("authorize returns {}", dto);
+            return dto;
+        });
     }
 
     // -------------------------------------------------------------------------
@@ -170,33 +146,27 @@ public class PsiResource {
     // -------------------------------------------------------------------------
 
     @RequestMapping(value = TRANSACTION_START_PATH, method = RequestMethod.POST)
-    public void startTransaction(@RequestBody StartTransactionDTO startTransactionDTO,
-                                 HttpServletRequest request) throws DatabaseException {
+    public DeferredResult<Void> startTransaction(@RequestBody StartTransactionDTO startTransactionDTO,
+                                                 HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received startTransaction: {}", stationId, startTransactionDTO);
 
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
+        return mailboxExecutor.submit(stationId, () -> {
             psiService.handleStartTransaction(startTransactionDTO);
-        } finally {
-            l.unlock();
-        }
+            return null;
+        });
     }
 
     @RequestMapping(value = TRANSACTION_STOP_PATH, method = RequestMethod.POST)
-    public void stopTransaction(@RequestBody StopTransactionDTO stopTransactionDTO,
-                                HttpServletRequest request) throws DatabaseException {
+    public DeferredResult<Void> stopTransaction(@RequestBody StopTransactionDTO stopTransactionDTO,
+                                                HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received stopTransaction: {}", stationId, stopTransactionDTO);
 
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
+        return mailboxExecutor.submit(stationId, () -> {
             psiService.handleStopTransaction(stopTransactionDTO);
-        } finally {
-            l.unlock();
-        }
+            return null;
+        });
     }
 
     // -------------------------------------------------------------------------
@@ -204,63 +174,69 @@ public class PsiResource {
     // -------------------------------------------------------------------------
 
     @RequestMapping(value = CARD_ACTIVATION_STATUS_PATH, method = RequestMethod.POST)
-    public void stationCardActivationNotification(@RequestBody CardActivationStatusDTO dto,
-                                                  HttpServletRequest request) {
+    public DeferredResult<Void> stationCardActivationNotification(@RequestBody CardActivationStatusDTO dto,
+                                                                  HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received cardActivationNotification: {}", stationId, dto);
 
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
+        return mailboxExecutor.submit(stationId, () -> {
             cardAccountService.setCardOperative(dto);
-        } finally {
-            l.unlock();
-        }
+            return null;
+        });
     }
 
     @RequestMapping(value = STATION_STATUS_PATH, method = RequestMethod.POST)
-    public void stationStatusNotification(@RequestBody StationStatusDTO stationStatusDTO,
-                                          HttpServletRequest request) {
+    public DeferredResult<Void> stationStatusNotification(@RequestBody StationStatusDTO stationStatusDTO,
+                                                          HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received stationStatusNotification: {}", stationId, stationStatusDTO);
 
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
+        return mailboxExecutor.submit(stationId, () -> {
             psiService.handleStationStatusNotification(stationStatusDTO);
-        } finally {
-            l.unlock();
-        }
+            return null;
+        });
     }
 
     @RequestMapping(value = PEDELEC_STATUS_PATH, method = RequestMethod.POST)
-    public void pedelecStatusNotification(@RequestBody PedelecStatusDTO pedelecStatusDTO,
-                                          HttpServletRequest request) {
+    public DeferredResult<Void> pedelecStatusNotification(@RequestBody PedelecStatusDTO pedelecStatusDTO,
+                                                          HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received pedelecStatusNotification: {}", stationId, pedelecStatusDTO);
 
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
+        return mailboxExecutor.submit(stationId, () -> {
             psiService.handlePedelecStatusNotification(pedelecStatusDTO);
-        } finally {
-            l.unlock();
-        }
+            return null;
+        });
     }
 
     @RequestMapping(value = CHARGING_STATUS_PATH, method = RequestMethod.POST)
-    public void chargingStatusNotification(@Valid @RequestBody List<ChargingStatusDTO> chargingStatusDTOs,
-                                           HttpServletRequest request) {
+    public DeferredResult<Void> chargingStatusNotification(@Valid @RequestBody List<ChargingStatusDTO> chargingStatusDTOs,
+                                                           HttpServletRequest request) {
         String stationId = Utils.getFrom(request);
         log.info("[From: {}] Received chargingStatusNotification: {}", stationId, chargingStatusDTOs);
 
-        Lock l = stationLocks.get(stationId);
-        l.lock();
-        try {
+        return mailboxExecutor.submit(stationId, () -> {
             psiService.handleChargingStatusNotification(chargingStatusDTOs);
-        } finally {
-            l.unlock();
-        }
+            return null;
+        });
+    }
+
+    /**
+     * Station, pedelec and charging status events in one request and one transaction, instead of one request
+     * per event. Advertised to the stations with BootConfirmationDTO.maxStatusBatchSize.
+     */
+    @RequestMapping(value = STATUS_BATCH_PATH, method = RequestMethod.POST)
+    public DeferredResult<List<StatusBatchResultDTO>> statusBatchNotification(@RequestBody List<StatusBatchItemDTO> items,
+                                                                              HttpServletRequest request) {
+        String stationId = Utils.getFrom(request);
+        log.info("[From: {}] Received statusBatchNotification with {} events", stationId, items.size());
+        log.debug("[From: {}] statusBatchNotification: {}", stationId, items);
+
+        return mailboxExecutor.submit(stationId, () -> {
+            List<StatusBatchResultDTO> results = psiService.handleStatusBatch(stationId, items);
+            log.debug("statusBatchNotification returns {}", results);
+            return results;
+        });
     }
 
     @RequestMapping(value = FIRMWARE_STATUS_PATH, method = RequestMethod.POST)
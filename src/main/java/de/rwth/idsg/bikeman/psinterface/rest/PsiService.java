@@ -2,46 +2,57 @@ package de.rwth.idsg.bikeman.psinterface.rest;
 
 import com.google.common.base.Strings;
 import de.rwth.idsg.bikeman.domain.Booking;
-import de.rwth.idsg.bikeman.domain.CardAccount;
-import de.rwth.idsg.bikeman.domain.ErrorType;
 import de.rwth.idsg.bikeman.domain.OperationState;
 import de.rwth.idsg.bikeman.domain.Reservation;
 import de.rwth.idsg.bikeman.domain.ReservationState;
 import de.rwth.idsg.bikeman.domain.Transaction;
-import de.rwth.idsg.bikeman.ixsi.service.AvailabilityPushService;
-import de.rwth.idsg.bikeman.ixsi.service.ConsumptionPushService;
-import de.rwth.idsg.bikeman.ixsi.service.ExternalBookingPushService;
-import de.rwth.idsg.bikeman.ixsi.service.PlaceAvailabilityPushService;
+import de.rwth.idsg.bikeman.event.ChargingStatusReceivedEvent;
+import de.rwth.idsg.bikeman.event.DomainEventBus;
+import de.rwth.idsg.bikeman.event.ExternalBookingStartedEvent;
+import de.rwth.idsg.bikeman.event.PedelecStatusReceivedEvent;
+import de.rwth.idsg.bikeman.event.StationBootedEvent;
+import de.rwth.idsg.bikeman.event.StationStatusReceivedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStartedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStoppedEvent;
+import de.rwth.idsg.bikeman.fleet.AvailablePedelec;
+import de.rwth.idsg.bikeman.fleet.FleetSnapshot;
+import de.rwth.idsg.bikeman.fleet.FleetState;
+import de.rwth.idsg.bikeman.psinterface.Utils;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorization;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationCache;
 import de.rwth.idsg.bikeman.psinterface.dto.request.BootNotificationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.CustomerAuthorizeDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
-import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.StartTransactionDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StatusBatchItemDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.StopTransactionDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.AuthorizeConfirmationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.BootConfirmationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.CardReadKeyDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.response.StatusBatchResultDTO;
 import de.rwth.idsg.bikeman.psinterface.exception.PsException;
 import de.rwth.idsg.bikeman.psinterface.repository.PsiBookingRepository;
-import de.rwth.idsg.bikeman.psinterface.repository.PsiCustomerRepository;
-import de.rwth.idsg.bikeman.psinterface.repository.PsiPedelecRepository;
 import de.rwth.idsg.bikeman.psinterface.repository.PsiReservationRepository;
 import de.rwth.idsg.bikeman.psinterface.repository.PsiStationRepository;
 import de.rwth.idsg.bikeman.psinterface.repository.PsiTransactionRepository;
-import de.rwth.idsg.bikeman.service.ErrorHistoryService;
+import de.rwth.idsg.bikeman.psinterface.writebehind.StatusWriteBehind;
 import de.rwth.idsg.bikeman.service.OperationStateService;
+import de.rwth.idsg.bikeman.service.OperationStateSnapshot;
 import de.rwth.idsg.bikeman.service.TransactionEventService;
+import de.rwth.idsg.bikeman.telemetry.BatteryTelemetryStore;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.joda.time.LocalDateTime;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
 
 import static de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode.AUTH_ATTEMPTS_EXCEEDED;
@@ -55,53 +66,60 @@ import static de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode.CONSTRAINT_
 @Slf4j
 public class PsiService {
 
-    @Inject private PsiCustomerRepository customerRepository;
     @Inject private PsiTransactionRepository transactionRepository;
     @Inject private PsiStationRepository stationRepository;
     @Inject private PsiBookingRepository bookingRepository;
-    @Inject private PsiPedelecRepository pedelecRepository;
     @Inject private PsiReservationRepository reservationRepository;
 
-    @Inject private ConsumptionPushService consumptionPushService;
-    @Inject private AvailabilityPushService availabilityPushService;
-    @Inject private PlaceAvailabilityPushService placeAvailabilityPushService;
-    @Inject private ExternalBookingPushService externalBookingPushService;
     @Inject private TransactionEventService transactionEventService;
     @Inject private OperationStateService operationStateService;
+    @Inject private OperationStateSnapshot operationStateSnapshot;
 
-    @Inject private ErrorHistoryService errorHistoryService;
+    @Inject private DomainEventBus domainEventBus;
+    @Inject private BatteryTelemetryStore batteryTelemetryStore;
+    @Inject private StatusWriteBehind statusWriteBehind;
+    @Inject private CardAuthorizationCache cardAuthorizationCache;
+    @Inject private FleetState fleetState;
+    @Inject private PlatformTransactionManager transactionManager;
 
     private static final Integer HEARTBEAT_INTERVAL_IN_SECONDS = 60;
     private static final int MAX_AUTH_RETRIES = 3;
+    private static final int MAX_STATUS_BATCH_SIZE = 100;
+    private static final int MAX_AVAILABLE_PEDELECS = 5;
 
     public BootConfirmationDTO handleBootNotification(BootNotificationDTO bootNotificationDTO)
             throws DatabaseException {
 
         stationRepository.updateAfterBoot(bootNotificationDTO);
+        operationStateSnapshot.forgetStation(bootNotificationDTO.getStationManufacturerId());
+        statusWriteBehind.forgetStation(bootNotificationDTO.getStationManufacturerId());
+        domainEventBus.publish(new StationBootedEvent(bootNotificationDTO.getStationManufacturerId()));
         List<CardReadKeyDTO> cardKeys = stationRepository.getCardReadKeys();
 
         BootConfirmationDTO bootConfirmationDTO = new BootConfirmationDTO();
         bootConfirmationDTO.setTimestamp(DateTime.now());
         bootConfirmationDTO.setHeartbeatInterval(HEARTBEAT_INTERVAL_IN_SECONDS);
         bootConfirmationDTO.setCardKeys(cardKeys);
+        bootConfirmationDTO.setMaxStatusBatchSize(MAX_STATUS_BATCH_SIZE);
         return bootConfirmationDTO;
     }
 
-    @Transactional
+    /**
+     * Not transactional, so that a cached authorization does not need a DB connection. The writes commit on their
+     * own, and are therefore not rolled back by the exceptions of a failed authorization.
+     */
     public AuthorizeConfirmationDTO handleAuthorize(CustomerAuthorizeDTO customerAuthorizeDTO)
             throws DatabaseException {
 
         log.info("Card with CardId {} start authorization from Station", customerAuthorizeDTO.getCardId());
 
-        CardAccount cardAccount = customerRepository.findByCardId(customerAuthorizeDTO.getCardId());
-
-        checkOperationState(cardAccount, customerAuthorizeDTO);
-        checkPin(cardAccount, customerAuthorizeDTO);
+        CardAuthorization authorization = cardAuthorizationCache.get(customerAuthorizeDTO.getCardId());
 
-        int actualRentedPedelecs = transactionRepository.countOpenTransactions(cardAccount.getCardId());
-        int canRentCount = cardAccount.getCurrentTariff().getTariff().getMaxNumberPedelecs();
+        checkOperationState(authorization, customerAuthorizeDTO);
+        checkPin(authorization, customerAuthorizeDTO);
 
-        return new AuthorizeConfirmationDTO(cardAccount.getCardId(), actualRentedPedelecs, canRentCount);
+        return new AuthorizeConfirmationDTO(authorization.getCardId(), authorization.getOpenRentals(),
+                authorization.getMaxPedelecs());
     }
 
     @Transactional
@@ -134,12 +152,20 @@ public class PsiService {
         bookingRepository.save(booking);
 
         if (reservationList == null || reservationList.isEmpty()) {
-            performExternalBookingPush(booking, transaction);
-            log.debug("Perform External Booking for booking: {} and Transaction: {}", booking, transaction);
+            domainEventBus.publish(new ExternalBookingStartedEvent(
+                    booking.getIxsiBookingId(),
+                    transaction.getCardAccount().getCardId(),
+                    transaction.getPedelec().getManufacturerId(),
+                    transaction.getStartDateTime().toDateTime()));
         }
 
-        performStartPush(startTransactionDTO);
-        log.debug("Perform Start Push for Transaction: {} and Booking: {}", transaction, booking);
+        TransactionStartedEvent event = new TransactionStartedEvent(
+                startTransactionDTO.getStationManufacturerId(),
+                startTransactionDTO.getSlotManufacturerId(),
+                startTransactionDTO.getPedelecManufacturerId(),
+                startTransactionDTO.getTimestamp());
+        fleetState.applyAfterCommit(event);
+        domainEventBus.publish(event);
     }
 
     @Transactional
@@ -149,25 +175,40 @@ public class PsiService {
         Transaction t = transactionRepository.stop(stopTransactionDTO);
 
         if (t != null) {
-            performStopPush(stopTransactionDTO, t);
+            Booking booking = bookingRepository.findByTransaction(t);
+
+            TransactionStoppedEvent event = new TransactionStoppedEvent(
+                    stopTransactionDTO.getStationManufacturerId(),
+                    stopTransactionDTO.getSlotManufacturerId(),
+                    stopTransactionDTO.getPedelecManufacturerId(),
+                    booking.getIxsiBookingId(),
+                    t.getStartDateTime().toDateTime(),
+                    t.getEndDateTime().toDateTime());
+            fleetState.applyAfterCommit(event);
+            domainEventBus.publish(event);
         }
     }
 
-    public List<String> getAvailablePedelecs(String stationManufacturerId, String cardId) throws DatabaseException {
+    /**
+     * Answered by the in-memory fleet state, not the DB
+     */
+    public List<String> getAvailablePedelecs(String stationManufacturerId, String cardId) {
+        FleetSnapshot fleet = fleetState.getSnapshot();
+
         if (Strings.isNullOrEmpty(cardId)) {
             log.debug("cardId is not set. Returning available pedelecs");
-            return pedelecRepository.findAvailablePedelecs(stationManufacturerId);
+            return toManufacturerIds(fleet.findAvailablePedelecs(stationManufacturerId, MAX_AVAILABLE_PEDELECS));
         }
 
         log.debug("Querying reserved pedelecs for cardId '{}'", cardId);
-        List<String> pedelecs = pedelecRepository.findReservedPedelecs(stationManufacturerId, cardId);
+        List<AvailablePedelec> pedelecs = fleet.findReservedPedelecs(stationManufacturerId, cardId, 1);
 
         if (pedelecs.isEmpty()) {
             log.debug("cardId '{}' has no reservations. Returning available pedelecs", cardId);
-            pedelecs = pedelecRepository.findAvailablePedelecs(stationManufacturerId);
+            pedelecs = fleet.findAvailablePedelecs(stationManufacturerId, MAX_AVAILABLE_PEDELECS);
         }
 
-        return pedelecs;
+        return toManufacturerIds(pedelecs);
     }
 
     public void handleStationStatusNotification(StationStatusDTO stationStatusDTO) {
@@ -177,8 +218,8 @@ public class PsiService {
             log.warn("Error occurred during IXSI availability push", e);
         }
 
-        stationRepository.updateStationStatus(stationStatusDTO);
-        checkForStationErrors(stationStatusDTO);
+        statusWriteBehind.updateStationStatus(stationStatusDTO);
+        domainEventBus.publish(new StationStatusReceivedEvent(stationStatusDTO));
     }
 
     public void handlePedelecStatusNotification(PedelecStatusDTO pedelecStatusDTO) {
@@ -188,90 +229,140 @@ public class PsiService {
             log.warn("Error occurred during IXSI availability push", e);
         }
 
-        pedelecRepository.updatePedelecStatus(pedelecStatusDTO);
-        checkForPedelecErrors(pedelecStatusDTO);
+        statusWriteBehind.updatePedelecStatus(pedelecStatusDTO);
+        domainEventBus.publish(new PedelecStatusReceivedEvent(pedelecStatusDTO));
     }
 
     public void handleChargingStatusNotification(List<ChargingStatusDTO> chargingStatusDTO) {
-        pedelecRepository.updatePedelecChargingStatus(chargingStatusDTO);
-    }
-
-    // -------------------------------------------------------------------------
-    // Async calls
-    // -------------------------------------------------------------------------
-
-    @Async
-    private void performStopPush(StopTransactionDTO stopTransactionDTO, Transaction t) {
-        Booking booking = bookingRepository.findByTransaction(t);
-        consumptionPushService.report(booking);
-
-        DateTime startDateTime = t.getStartDateTime().toDateTime();
-        availabilityPushService.arrivedAtPlace(
-                stopTransactionDTO.getPedelecManufacturerId(),
-                stopTransactionDTO.getStationManufacturerId(),
-                startDateTime);
-
-        placeAvailabilityPushService.reportChange(stopTransactionDTO.getStationManufacturerId());
+        batteryTelemetryStore.ingest(chargingStatusDTO);
+        domainEventBus.publish(new ChargingStatusReceivedEvent(chargingStatusDTO));
     }
 
-    @Async
-    private void performExternalBookingPush(Booking booking, Transaction transaction) {
-        externalBookingPushService.report(booking, transaction);
-    }
+    /**
+     * Applies the events of a batch in order, within one transaction. Malformed events are rejected and skipped,
+     * the others are applied. If applying fails, the whole batch is rolled back and the station has to resend it.
+     * The domain events are dispatched only after the commit.
+     *
+     * The IXSI pushes of the station and pedelec events are made after the commit, each in its own transaction,
+     * so that a failed push cannot roll back the batch, and nothing is pushed for a batch that was rolled back.
+     */
+    public List<StatusBatchResultDTO> handleStatusBatch(String stationId, List<StatusBatchItemDTO> items) {
+        if (items.size() > MAX_STATUS_BATCH_SIZE) {
+            throw new PsException("The batch contains more than " + MAX_STATUS_BATCH_SIZE + " events", CONSTRAINT_FAILED);
+        }
 
-    @Async
-    public void performStartPush(StartTransactionDTO startTransactionDTO) {
+        List<StatusBatchResultDTO> results = new ArrayList<>(items.size());
+        List<StatusBatchItemDTO> accepted = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            StatusBatchItemDTO item = items.get(i);
+            try {
+                checkBatchItem(stationId, item);
+            } catch (PsException e) {
+                log.warn("[From: {}] Rejected status batch event {}: {}", stationId, i, e.getMessage());
+                results.add(StatusBatchResultDTO.rejected(i, e.getErrorCode(), e.getMessage()));
+                continue;
+            }
+            accepted.add(item);
+            results.add(StatusBatchResultDTO.accepted(i));
+        }
 
-        availabilityPushService.takenFromPlace(
-                startTransactionDTO.getPedelecManufacturerId(),
-                startTransactionDTO.getTimestamp());
+        new TransactionTemplate(transactionManager).execute(status -> {
+            accepted.forEach(this::applyBatchItem);
+            return null;
+        });
 
-        placeAvailabilityPushService.reportChange(startTransactionDTO.getStationManufacturerId());
+        accepted.forEach(this::pushBatchItem);
+        return results;
     }
 
-    @Async
-    private void checkForStationErrors(StationStatusDTO stationStatusDTO) {
-        if (stationStatusDTO.getStationErrorCode() != null) {
-            errorHistoryService.createAndSaveErrorHistoryEntry(
-                    ErrorType.STATION_ERROR,
-                    stationStatusDTO.getStationErrorCode(),
-                    stationStatusDTO.getStationErrorInfo(),
-                    stationStatusDTO.getStationManufacturerId()
-            );
-        }
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
 
-        for (SlotDTO.StationStatus slotDTO : stationStatusDTO.getSlots()) {
-            checkForSlotErrors(slotDTO);
+    private void applyBatchItem(StatusBatchItemDTO item) {
+        switch (item.getType()) {
+            case STATION:
+                statusWriteBehind.updateStationStatus(item.getStation());
+                domainEventBus.publish(new StationStatusReceivedEvent(item.getStation()));
+                break;
+            case PEDELEC:
+                statusWriteBehind.updatePedelecStatus(item.getPedelec());
+                domainEventBus.publish(new PedelecStatusReceivedEvent(item.getPedelec()));
+                break;
+            case CHARGING:
+                handleChargingStatusNotification(item.getCharging());
+                break;
         }
     }
 
-    @Async
-    private void checkForPedelecErrors(PedelecStatusDTO pedelecStatusDTO) {
-        if (pedelecStatusDTO.getPedelecErrorCode() != null) {
-            errorHistoryService.createAndSaveErrorHistoryEntry(
-                    ErrorType.PEDELEC_ERROR,
-                    pedelecStatusDTO.getPedelecErrorCode(),
-                    pedelecStatusDTO.getPedelecErrorInfo(),
-                    pedelecStatusDTO.getPedelecManufacturerId()
-            );
+    private void pushBatchItem(StatusBatchItemDTO item) {
+        try {
+            switch (item.getType()) {
+                case STATION:
+                    operationStateService.pushCommittedChanges(item.getStation());
+                    break;
+                case PEDELEC:
+                    pushToIxsi(item.getPedelec());
+                    break;
+                case CHARGING:
+                    break;
+            }
+        } catch (Exception e) {
+            log.warn("Error occurred during IXSI availability push", e);
         }
     }
 
-    // -------------------------------------------------------------------------
-    // Private helpers
-    // -------------------------------------------------------------------------
-
     private void pushToIxsi(PedelecStatusDTO dto) {
-        operationStateService.pushAvailability(dto);
-        operationStateService.pushInavailability(dto);
+        operationStateService.pushChanges(dto);
     }
 
     private void pushToIxsi(StationStatusDTO dto) {
-        operationStateService.pushAvailability(dto);
-        operationStateService.pushInavailability(dto);
+        operationStateService.pushChanges(dto);
+    }
+
+    private void checkBatchItem(String stationId, StatusBatchItemDTO item) {
+        if (item == null || item.getType() == null) {
+            throw new PsException("Event type is missing", CONSTRAINT_FAILED);
+        }
+
+        switch (item.getType()) {
+            case STATION:
+                StationStatusDTO station = item.getStation();
+                if (station == null || station.getStationState() == null || station.getTimestamp() == null) {
+                    throw new PsException("Station status is incomplete", CONSTRAINT_FAILED);
+                }
+                if (!stationId.equals(station.getStationManufacturerId())) {
+                    throw new PsException("Station status of another station", CONSTRAINT_FAILED);
+                }
+                if (station.getSlots() == null || station.getSlots().stream().anyMatch(s -> s.getSlotState() == null)) {
+                    throw new PsException("Slot status is incomplete", CONSTRAINT_FAILED);
+                }
+                break;
+
+            case PEDELEC:
+                PedelecStatusDTO pedelec = item.getPedelec();
+                if (pedelec == null || Strings.isNullOrEmpty(pedelec.getPedelecManufacturerId())
+                        || pedelec.getPedelecState() == null || pedelec.getTimestamp() == null) {
+                    throw new PsException("Pedelec status is incomplete", CONSTRAINT_FAILED);
+                }
+                break;
+
+            case CHARGING:
+                List<ChargingStatusDTO> charging = item.getCharging();
+                if (Utils.isEmpty(charging)) {
+                    throw new PsException("Charging status is missing", CONSTRAINT_FAILED);
+                }
+                for (ChargingStatusDTO c : charging) {
+                    if (c == null || Strings.isNullOrEmpty(c.getPedelecManufacturerId()) || c.getChargingState() == null
+                            || c.getTimestamp() == null || c.getBattery() == null) {
+                        throw new PsException("Charging status is incomplete", CONSTRAINT_FAILED);
+                    }
+                }
+                break;
+        }
     }
 
-    private void checkOperationState(CardAccount ca, CustomerAuthorizeDTO dto) {
+    private void checkOperationState(CardAuthorization ca, CustomerAuthorizeDTO dto) {
         if (OperationState.OPERATIVE.equals(ca.getOperationState())) {
             return;
         }
@@ -280,46 +371,39 @@ public class PsiService {
         throw new PsException("Card account is disabled", CONSTRAINT_FAILED);
     }
 
-    private void checkPin(CardAccount ca, CustomerAuthorizeDTO dto) {
-        if (ca.getCardPin().equals(dto.getCardPin())) {
+    private void checkPin(CardAuthorization ca, CustomerAuthorizeDTO dto) {
+        if (ca.matchesPin(dto.getCardPin())) {
             // PIN is correct, reset auth trial count
-            customerRepository.resetAuthenticationTrialCount(ca);
+            cardAuthorizationCache.resetTrialCount(ca);
             return;
         }
 
         // increase auth fail count by one
-        ca.setAuthenticationTrialCount(ca.getAuthenticationTrialCount() + 1);
+        int trialCount = cardAuthorizationCache.countFailedTrial(ca);
 
-        try {
-            checkPinRetryLimit(ca);
-        } finally {
-            customerRepository.saveCardAccount(ca);
-        }
+        checkPinRetryLimit(ca, trialCount);
 
         log.info("Card with CardId {} authorization failed (wrong pin) with {}", dto.getCardId(), CONSTRAINT_FAILED);
         throw new PsException("Wrong PIN", CONSTRAINT_FAILED);
     }
 
-    private void checkPinRetryLimit(CardAccount ca) {
-        boolean exceeded = ca.getAuthenticationTrialCount() >= MAX_AUTH_RETRIES;
+    private void checkPinRetryLimit(CardAuthorization ca, int trialCount) {
+        boolean exceeded = trialCount >= MAX_AUTH_RETRIES;
 
         // auth attempts exceeded
         if (exceeded) {
-            ca.setOperationState(OperationState.INOPERATIVE);
+            cardAuthorizationCache.disable(ca);
 
             log.warn("Card with CardId {} authorization failed (3x wrong pin) with {}", ca.getCardId(), AUTH_ATTEMPTS_EXCEEDED);
             throw new PsException("No trials remaining and account gets disabled", AUTH_ATTEMPTS_EXCEEDED);
         }
     }
 
-    private void checkForSlotErrors(SlotDTO.StationStatus slotDTO) {
-        if (slotDTO.getSlotErrorCode() != null) {
-            errorHistoryService.createAndSaveErrorHistoryEntry(
-                    ErrorType.SLOT_ERROR,
-                    slotDTO.getSlotErrorCode(),
-                    slotDTO.getSlotErrorInfo(),
-                    slotDTO.getSlotManufacturerId()
-            );
+    private static List<String> toManufacturerIds(List<AvailablePedelec> pedelecs) {
+        List<String> ids = new ArrayList<>(pedelecs.size());
+        for (AvailablePedelec p : pedelecs) {
+            ids.add(p.getPedelecManufacturerId());
         }
+        return ids;
     }
 }
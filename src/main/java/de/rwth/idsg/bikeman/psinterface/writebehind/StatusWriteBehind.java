@@ -0,0 +1,545 @@
+package de.rwth.idsg.bikeman.psinterface.writebehind;
+
+import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiPedelecRepository;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiStationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind layer for the station, slot and pedelec status, which the stations report several times per
+ * minute, mostly with nothing but the time stamp changed. The latest status per entity is kept in memory (and can
+ * be read from here), and only the rows that changed since the last write are flushed to the DB on an interval and
+ * on shutdown. A slot is only written when its state, error code or error info changed. The charging status is
+ * written by the {@link de.rwth.idsg.bikeman.telemetry.BatteryTelemetryStore}.
+ *
+ * A change of the state, error code or error info of a station, slot or pedelec is written immediately, within the
+ * transaction of the caller, so that the readers of the DB do not see an outdated state. Only the update time
+ * stamps lag behind by up to the flush interval. The status is only kept in memory after the commit of the
+ * caller, so that a rolled back status is neither read from here nor flushed later.
+ *
+ * An immediate write and a flush of the same entity are serialized, and the flush skips an entity while an
+ * immediate write of it is not committed yet. Therefore a flush cannot overwrite a newer state with an older one.
+ *
+ * The status rows are counted as DB writes: a station status is one row for the station and one per slot. The
+ * writes avoided are logged every minute.
+ *
+ * <pre>
+ * psi.writeBehind.enabled: true
+ * psi.writeBehind.flushIntervalInSeconds: 30
+ * </pre>
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class StatusWriteBehind implements EnvironmentAware {
+
+    private static final String ENV_WRITE_BEHIND = "psi.writeBehind.";
+
+    @Autowired private PsiStationRepository stationRepository;
+    @Autowired private PsiPedelecRepository pedelecRepository;
+
+    private RelaxedPropertyResolver propertyResolver;
+
+    private boolean enabled;
+    private int flushIntervalInSeconds;
+    private ScheduledExecutorService executor;
+
+    private final ConcurrentHashMap<String, StationEntry> stations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PedelecEntry> pedelecs = new ConcurrentHashMap<>();
+
+    private final AtomicLong receivedRows = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+    private final AtomicLong immediateWrites = new AtomicLong();
+
+    private long lastReceivedRows;
+    private long lastWrittenRows;
+    private volatile long avoidedLastMinute;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_WRITE_BEHIND);
+    }
+
+    @PostConstruct
+    public void init() {
+        enabled = propertyResolver.getProperty("enabled", Boolean.class, true);
+        flushIntervalInSeconds = propertyResolver.getProperty("flushIntervalInSeconds", Integer.class, 30);
+
+        if (!enabled) {
+            log.info("Status write-behind is disabled");
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "status-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalInSeconds, flushIntervalInSeconds, TimeUnit.SECONDS);
+        executor.scheduleAtFixedRate(this::report, 1, 1, TimeUnit.MINUTES);
+
+        log.info("Status write-behind flushes every {} s", flushIntervalInSeconds);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    // -------------------------------------------------------------------------
+    // Writes
+    // -------------------------------------------------------------------------
+
+    public void updateStationStatus(StationStatusDTO dto) {
+        int rows = 1 + sizeOf(dto.getSlots());
+        receivedRows.addAndGet(rows);
+
+        if (!enabled) {
+            stationRepository.updateStationStatus(dto);
+            writtenRows.addAndGet(rows);
+            return;
+        }
+
+        StationEntry entry = stations.computeIfAbsent(dto.getStationManufacturerId(), k -> new StationEntry());
+        StationStatusDTO write;
+        synchronized (entry) {
+            write = entry.changes(dto);
+        }
+
+        if (write == null) {
+            afterCommit(() -> {
+                synchronized (entry) {
+                    entry.apply(dto);
+                }
+            });
+            return;
+        }
+
+        immediateWrites.incrementAndGet();
+        writeImmediately(entry, () -> stationRepository.updateStationStatus(write), () -> {
+            entry.apply(dto);
+            entry.persisted(write);
+        });
+        writtenRows.addAndGet(1 + write.getSlots().size());
+    }
+
+    public void updatePedelecStatus(PedelecStatusDTO dto) {
+        receivedRows.incrementAndGet();
+
+        if (!enabled) {
+            pedelecRepository.updatePedelecStatus(dto);
+            writtenRows.incrementAndGet();
+            return;
+        }
+
+        PedelecEntry entry = pedelecs.computeIfAbsent(dto.getPedelecManufacturerId(), k -> new PedelecEntry());
+        boolean immediate;
+        synchronized (entry) {
+            // While an immediate write is not committed, the state in the DB is not known
+            immediate = entry.pending > 0 || entry.persisted == null || !sameState(entry.persisted, dto);
+        }
+
+        if (!immediate) {
+            afterCommit(() -> {
+                synchronized (entry) {
+                    entry.latest = dto;
+                }
+            });
+            return;
+        }
+
+        immediateWrites.incrementAndGet();
+        writeImmediately(entry, () -> pedelecRepository.updatePedelecStatus(dto), () -> {
+            entry.latest = dto;
+            entry.persisted = dto;
+        });
+        writtenRows.incrementAndGet();
+    }
+
+    /**
+     * The slots of the station were written by the boot notification, so that our view of the DB is outdated.
+     * Pending changes of the station are dropped.
+     */
+    public void forgetStation(String stationManufacturerId) {
+        stations.remove(stationManufacturerId);
+    }
+
+    // -------------------------------------------------------------------------
+    // Reads
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return the latest status of the station (the slots of the latest notification), or null if not known
+     */
+    public StationStatusDTO getStationStatus(String stationManufacturerId) {
+        StationEntry entry = stations.get(stationManufacturerId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.latest;
+        }
+    }
+
+    public SlotDTO.StationStatus getSlotStatus(String stationManufacturerId, String slotManufacturerId) {
+        StationEntry entry = stations.get(stationManufacturerId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.latestSlots.get(slotManufacturerId);
+        }
+    }
+
+    public PedelecStatusDTO getPedelecStatus(String pedelecManufacturerId) {
+        PedelecEntry entry = pedelecs.get(pedelecManufacturerId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.latest;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Views for monitoring
+    // -------------------------------------------------------------------------
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getFlushIntervalInSeconds() {
+        return flushIntervalInSeconds;
+    }
+
+    public long getReceivedCount() {
+        return receivedRows.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenRows.get();
+    }
+
+    public long getImmediateCount() {
+        return immediateWrites.get();
+    }
+
+    public long getAvoidedLastMinute() {
+        return avoidedLastMinute;
+    }
+
+    // -------------------------------------------------------------------------
+    // Flush
+    // -------------------------------------------------------------------------
+
+    synchronized void flush() {
+        flushEach(stations.values(), this::flush);
+        flushEach(pedelecs.values(), this::flush);
+    }
+
+    private static <T> void flushEach(Collection<T> entries, Consumer<T> flusher) {
+        for (T entry : entries) {
+            try {
+                flusher.accept(entry);
+            } catch (RuntimeException e) {
+                // Stays dirty, and is retried with the next flush
+                log.error("Failed to flush a status", e);
+            }
+        }
+    }
+
+    /**
+     * Skips the entry while an immediate write of it is in progress or not committed. It is retried with the next
+     * flush.
+     */
+    private void flush(StationEntry entry) {
+        if (!entry.writeLock.tryLock()) {
+            return;
+        }
+
+        try {
+            StationStatusDTO station;
+            StationStatusDTO write;
+            Map<String, SlotDTO.StationStatus> slots;
+
+            synchronized (entry) {
+                station = entry.latest;
+                slots = entry.changedSlots();
+                if (entry.pending > 0 || station == null
+                        || (sameStatus(station, entry.persisted) && slots.isEmpty())) {
+                    return;
+                }
+
+                write = new StationStatusDTO();
+                write.setStationManufacturerId(station.getStationManufacturerId());
+                write.setStationErrorCode(station.getStationErrorCode());
+                write.setStationErrorInfo(station.getStationErrorInfo());
+                write.setStationState(station.getStationState());
+                write.setTimestamp(station.getTimestamp());
+                write.setSlots(new ArrayList<>(slots.values()));
+            }
+
+            stationRepository.updateStationStatus(write);
+            writtenRows.addAndGet(1 + slots.size());
+
+            synchronized (entry) {
+                entry.persisted = station;
+                entry.persistedSlots.putAll(slots);
+            }
+        } finally {
+            entry.writeLock.unlock();
+        }
+    }
+
+    private void flush(PedelecEntry entry) {
+        if (!entry.writeLock.tryLock()) {
+            return;
+        }
+
+        try {
+            PedelecStatusDTO pedelec;
+            synchronized (entry) {
+                pedelec = entry.latest;
+                if (entry.pending > 0 || pedelec == null || pedelec.equals(entry.persisted)) {
+                    return;
+                }
+            }
+
+            pedelecRepository.updatePedelecStatus(pedelec);
+            writtenRows.incrementAndGet();
+
+            synchronized (entry) {
+                entry.persisted = pedelec;
+            }
+        } finally {
+            entry.writeLock.unlock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void report() {
+        long received = receivedRows.get();
+        long written = writtenRows.get();
+
+        long receivedDelta = received - lastReceivedRows;
+        long avoided = Math.max(0, receivedDelta - (written - lastWrittenRows));
+        lastReceivedRows = received;
+        lastWrittenRows = written;
+        avoidedLastMinute = avoided;
+
+        if (receivedDelta > 0) {
+            log.info("Status write-behind avoided {} of {} DB writes in the last minute", avoided, receivedDelta);
+        }
+    }
+
+    /**
+     * An update joins the transaction of the caller, and is only known to be valid after the commit
+     */
+    private static void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runnable.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+    /**
+     * Writes within the transaction of the caller, while a flush of the entry is not in progress. The entry is
+     * marked as pending until the transaction is completed, so that the flush does not overwrite the write with
+     * an older state in the meantime. The onCommit action is run while holding the monitor of the entry.
+     */
+    private static void writeImmediately(Entry entry, Runnable write, Runnable onCommit) {
+        synchronized (entry) {
+            entry.pending++;
+        }
+
+        boolean transactional = TransactionSynchronizationManager.isSynchronizationActive();
+        if (transactional) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    synchronized (entry) {
+                        entry.pending--;
+                        if (status == STATUS_COMMITTED) {
+                            onCommit.run();
+                        }
+                    }
+                }
+            });
+        }
+
+        entry.writeLock.lock();
+        try {
+            write.run();
+        } catch (RuntimeException e) {
+            if (!transactional) {
+                synchronized (entry) {
+                    entry.pending--;
+                }
+            }
+            throw e;
+        } finally {
+            entry.writeLock.unlock();
+        }
+
+        if (!transactional) {
+            synchronized (entry) {
+                entry.pending--;
+                onCommit.run();
+            }
+        }
+    }
+
+    private static boolean sameState(StationStatusDTO a, StationStatusDTO b) {
+        return a.getStationState() == b.getStationState()
+                && Objects.equals(a.getStationErrorCode(), b.getStationErrorCode())
+                && Objects.equals(a.getStationErrorInfo(), b.getStationErrorInfo());
+    }
+
+    /**
+     * The slots are compared separately
+     */
+    private static boolean sameStatus(StationStatusDTO a, StationStatusDTO b) {
+        return b != null && sameState(a, b) && Objects.equals(a.getTimestamp(), b.getTimestamp());
+    }
+
+    private static boolean sameState(PedelecStatusDTO a, PedelecStatusDTO b) {
+        return a.getPedelecState() == b.getPedelecState()
+                && Objects.equals(a.getPedelecErrorCode(), b.getPedelecErrorCode())
+                && Objects.equals(a.getPedelecErrorInfo(), b.getPedelecErrorInfo());
+    }
+
+    private static boolean sameState(SlotDTO.StationStatus a, SlotDTO.StationStatus b) {
+        return a.getSlotState() == b.getSlotState()
+                && Objects.equals(a.getSlotErrorCode(), b.getSlotErrorCode())
+                && Objects.equals(a.getSlotErrorInfo(), b.getSlotErrorInfo());
+    }
+
+    private static int sizeOf(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * The fields are not private, so that they are inherited
+     */
+    private abstract static class Entry {
+        final ReentrantLock writeLock = new ReentrantLock();
+        int pending;
+    }
+
+    private static class StationEntry extends Entry {
+        private StationStatusDTO latest;
+        private StationStatusDTO persisted;
+        private final Map<String, SlotDTO.StationStatus> latestSlots = new HashMap<>();
+        private final Map<String, SlotDTO.StationStatus> persistedSlots = new HashMap<>();
+
+        private Map<String, SlotDTO.StationStatus> changedSlots() {
+            Map<String, SlotDTO.StationStatus> changed = new HashMap<>();
+            for (Map.Entry<String, SlotDTO.StationStatus> e : latestSlots.entrySet()) {
+                if (!e.getValue().equals(persistedSlots.get(e.getKey()))) {
+                    changed.put(e.getKey(), e.getValue());
+                }
+            }
+            return changed;
+        }
+
+        private void apply(StationStatusDTO dto) {
+            latest = dto;
+            if (dto.getSlots() != null) {
+                for (SlotDTO.StationStatus slot : dto.getSlots()) {
+                    latestSlots.put(slot.getSlotManufacturerId(), slot);
+                }
+            }
+        }
+
+        private void persisted(StationStatusDTO dto) {
+            persisted = dto;
+            if (dto.getSlots() != null) {
+                for (SlotDTO.StationStatus slot : dto.getSlots()) {
+                    persistedSlots.put(slot.getSlotManufacturerId(), slot);
+                }
+            }
+        }
+
+        /**
+         * While an immediate write is not committed (e.g. within a status batch), the state in the DB is not
+         * known, and the station is written with all slots.
+         *
+         * @return the station with the slots, the state, error code or error info of which differs from the one in
+         *         the DB, or null if neither the station nor a slot changed
+         */
+        private StationStatusDTO changes(StationStatusDTO dto) {
+            boolean unknown = pending > 0;
+
+            List<SlotDTO.StationStatus> slots = new ArrayList<>();
+            if (dto.getSlots() != null) {
+                for (SlotDTO.StationStatus slot : dto.getSlots()) {
+                    SlotDTO.StationStatus old = persistedSlots.get(slot.getSlotManufacturerId());
+                    if (unknown || old == null || !sameState(old, slot)) {
+                        slots.add(slot);
+                    }
+                }
+            }
+
+            if (!unknown && persisted != null && sameState(persisted, dto) && slots.isEmpty()) {
+                return null;
+            }
+
+            StationStatusDTO write = new StationStatusDTO();
+            write.setStationManufacturerId(dto.getStationManufacturerId());
+            write.setStationErrorCode(dto.getStationErrorCode());
+            write.setStationErrorInfo(dto.getStationErrorInfo());
+            write.setStationState(dto.getStationState());
+            write.setTimestamp(dto.getTimestamp());
+            write.setSlots(slots);
+            return write;
+        }
+    }
+
+    private static class PedelecEntry extends Entry {
+        private PedelecStatusDTO latest;
+        private PedelecStatusDTO persisted;
+    }
+}
@@ -0,0 +1,16 @@
+package de.rwth.idsg.bikeman.repository;
+
+import de.rwth.idsg.bikeman.ixsi.dto.BookingCheckDTO;
+import org.joda.time.LocalDateTime;
+
+import java.util.List;
+
+/**
+ * @since 18.10.2016
+ */
+public interface BookingCheckRepository {
+    void schedule(String ixsiBookingId, LocalDateTime checkAt);
+    void remove(String ixsiBookingId);
+    List<BookingCheckDTO> findDueAndNotUsed(LocalDateTime now);
+    int removeDue(LocalDateTime now);
+}
@@ -0,0 +1,71 @@
+package de.rwth.idsg.bikeman.repository;
+
+import de.rwth.idsg.bikeman.domain.ixsi.BookingCheck;
+import de.rwth.idsg.bikeman.ixsi.dto.BookingCheckDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.LocalDateTime;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+/**
+ * @since 18.10.2016
+ */
+@Repository
+@Slf4j
+public class BookingCheckRepositoryImpl implements BookingCheckRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Creates or reschedules the check. Joins the transaction of the booking operation.
+     */
+    @Override
+    @Transactional
+    public void schedule(String ixsiBookingId, LocalDateTime checkAt) {
+        em.merge(new BookingCheck(ixsiBookingId, checkAt));
+    }
+
+    @Override
+    @Transactional
+    public void remove(String ixsiBookingId) {
+        em.createQuery("DELETE FROM BookingCheck c WHERE c.ixsiBookingId = :ixsiBookingId")
+          .setParameter("ixsiBookingId", ixsiBookingId)
+          .executeUpdate();
+    }
+
+    /**
+     * All due checks in one query. Checks of bookings that do not exist anymore are not returned
+     * (since the join fails), but are removed with {@link #removeDue(LocalDateTime)}.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingCheckDTO> findDueAndNotUsed(LocalDateTime now) {
+        final String query = "SELECT new de.rwth.idsg.bikeman.ixsi.dto.BookingCheckDTO" +
+                             "(b.ixsiBookingId, b.reservation.endDateTime) " +
+                             "FROM BookingCheck c, Booking b " +
+                             "WHERE c.ixsiBookingId = b.ixsiBookingId " +
+                             "AND c.checkAt <= :now " +
+                             "AND b.transaction IS NULL " +
+                             "AND b.reservation.endDateTime < :now";
+
+        return em.createQuery(query, BookingCheckDTO.class)
+                 .setParameter("now", now)
+                 .getResultList();
+    }
+
+    /**
+     * Checks rescheduled in the meantime (i.e. checkAt moved after now) are kept
+     */
+    @Override
+    @Transactional
+    public int removeDue(LocalDateTime now) {
+        return em.createQuery("DELETE FROM BookingCheck c WHERE c.checkAt <= :now")
+                 .setParameter("now", now)
+                 .executeUpdate();
+    }
+}
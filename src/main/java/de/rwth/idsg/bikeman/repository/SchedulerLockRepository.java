@@ -0,0 +1,10 @@
+package de.rwth.idsg.bikeman.repository;
+
+import org.joda.time.Duration;
+
+/**
+ * @since 18.10.2016
+ */
+public interface SchedulerLockRepository {
+    boolean tryAcquire(String lockName, String nodeId, Duration lease);
+}
@@ -0,0 +1,45 @@
+package de.rwth.idsg.bikeman.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.Duration;
+import org.joda.time.LocalDateTime;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * @since 18.10.2016
+ */
+@Repository
+@Slf4j
+public class SchedulerLockRepositoryImpl implements SchedulerLockRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * The conditional update is atomic in the database: A node gets the lock, if the lease of the
+     * previous holder ran out or if it holds the lock already (and thereby extends the lease).
+     */
+    @Override
+    @Transactional
+    public boolean tryAcquire(String lockName, String nodeId, Duration lease) {
+        final String query = "UPDATE SchedulerLock l " +
+                             "SET l.lockedBy = :nodeId, l.lockedUntil = :until " +
+                             "WHERE l.lockName = :lockName " +
+                             "AND (l.lockedUntil < :now OR l.lockedBy = :nodeId)";
+
+        LocalDateTime now = new LocalDateTime();
+
+        int count = em.createQuery(query)
+                      .setParameter("nodeId", nodeId)
+                      .setParameter("until", now.plus(lease))
+                      .setParameter("lockName", lockName)
+                      .setParameter("now", now)
+                      .executeUpdate();
+
+        return count == 1;
+    }
+}
@@ -3,6 +3,7 @@ package de.rwth.idsg.bikeman.repository;
 import de.rwth.idsg.bikeman.domain.OperationState;
 import de.rwth.idsg.bikeman.domain.Station;
 import de.rwth.idsg.bikeman.web.rest.dto.modify.CreateEditStationDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.view.StationLocationDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.view.ViewErrorDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.view.ViewStationDTO;
 import de.rwth.idsg.bikeman.web.rest.exception.DatabaseException;
@@ -21,6 +22,10 @@ public interface StationRepository {
 
     List<ViewErrorDTO> findErrors() throws DatabaseException;
 
+    // For the spatial index
+    List<StationLocationDTO> findLocations() throws DatabaseException;
+    List<StationLocationDTO> findLocations(List<String> manufacturerIds) throws DatabaseException;
+
     String getEndpointAddress(long stationId) throws DatabaseException;
 
     void create(CreateEditStationDTO dto) throws DatabaseException;
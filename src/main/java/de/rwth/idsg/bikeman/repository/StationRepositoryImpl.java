@@ -11,6 +11,7 @@ import de.rwth.idsg.bikeman.domain.StationSlot_;
 import de.rwth.idsg.bikeman.domain.Station_;
 import de.rwth.idsg.bikeman.web.rest.dto.modify.CreateEditAddressDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.modify.CreateEditStationDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.view.StationLocationDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.view.ViewErrorDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.view.ViewStationDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.view.ViewStationSlotDTO;
@@ -124,6 +125,37 @@ public class StationRepositoryImpl implements StationRepository {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<StationLocationDTO> findLocations() throws DatabaseException {
+        try {
+            return em.createQuery(LOCATION_QUERY, StationLocationDTO.class)
+                     .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Failed to find the station locations", e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StationLocationDTO> findLocations(List<String> manufacturerIds) throws DatabaseException {
+        try {
+            return em.createQuery(LOCATION_QUERY + " AND s.manufacturerId IN :manufacturerIds", StationLocationDTO.class)
+                     .setParameter("manufacturerIds", manufacturerIds)
+                     .getResultList();
+        } catch (Exception e) {
+            throw new DatabaseException("Failed to find the locations of stations " + manufacturerIds, e);
+        }
+    }
+
+    private static final String LOCATION_QUERY =
+            "SELECT new de.rwth.idsg.bikeman.web.rest.dto.view.StationLocationDTO" +
+            "(s.stationId, s.manufacturerId, s.locationLatitude, s.locationLongitude) " +
+            "FROM Station s " +
+            "WHERE NOT s.state = de.rwth.idsg.bikeman.domain.OperationState.DELETED " +
+            "AND s.locationLatitude IS NOT NULL " +
+            "AND s.locationLongitude IS NOT NULL";
+
     @Override
     @Transactional(readOnly = true)
     public String getEndpointAddress(long stationId) throws DatabaseException {
@@ -7,6 +7,7 @@ import de.rwth.idsg.bikeman.domain.CustomerType;
 import de.rwth.idsg.bikeman.domain.OperationState;
 import de.rwth.idsg.bikeman.domain.TariffType;
 import de.rwth.idsg.bikeman.domain.User;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationCache;
 import de.rwth.idsg.bikeman.psinterface.dto.request.CardActivationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.CardActivationStatusDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.response.CardActivationResponseDTO;
@@ -43,6 +44,7 @@ public class CardAccountService {
     @Inject private UserRepository userRepository;
     @Inject private TariffRepository tariffRepository;
     @Inject private PsiStationRepository stationRepository;
+    @Inject private CardAuthorizationCache cardAuthorizationCache;
 
     @Transactional(readOnly = true)
     public Optional<CardActivationResponseDTO> activateCardAccount(CardActivationDTO cardActivationDTO) {
@@ -72,6 +74,7 @@ public class CardAccountService {
     public void setCardOperative(CardActivationStatusDTO dto) {
         if (dto.isSuccessfulActivation()) {
             cardAccountRepository.setOperationStateForCardId(OperationState.OPERATIVE, dto.getCardId());
+            cardAuthorizationCache.invalidate(dto.getCardId());
         } else {
             // TODO: We should probably raise an exception, or notice somebody instead
             log.warn("The cardId '{}' could not be activated", dto.getCardId());
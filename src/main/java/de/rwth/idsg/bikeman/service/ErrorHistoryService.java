@@ -2,6 +2,12 @@ package de.rwth.idsg.bikeman.service;
 
 import de.rwth.idsg.bikeman.domain.ErrorHistory;
 import de.rwth.idsg.bikeman.domain.ErrorType;
+import de.rwth.idsg.bikeman.event.DomainEventListener;
+import de.rwth.idsg.bikeman.event.PedelecStatusReceivedEvent;
+import de.rwth.idsg.bikeman.event.StationStatusReceivedEvent;
+import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
 import de.rwth.idsg.bikeman.repository.ErrorHistoryRepository;
 import de.rwth.idsg.bikeman.web.rest.dto.view.ErrorHistoryEntryDTO;
 import org.joda.time.LocalDateTime;
@@ -18,7 +24,7 @@ import java.util.stream.Collectors;
 
 @Service
 @Transactional
-public class ErrorHistoryService {
+public class ErrorHistoryService implements DomainEventListener {
 
     @Autowired
     private ErrorHistoryRepository errorHistoryRepository;
@@ -34,6 +40,45 @@ public class ErrorHistoryService {
         errorHistoryRepository.save(errorHistory);
     }
 
+    @Override
+    public void onStationStatusReceived(StationStatusReceivedEvent event) {
+        StationStatusDTO stationStatusDTO = event.getStationStatus();
+
+        if (stationStatusDTO.getStationErrorCode() != null) {
+            createAndSaveErrorHistoryEntry(
+                    ErrorType.STATION_ERROR,
+                    stationStatusDTO.getStationErrorCode(),
+                    stationStatusDTO.getStationErrorInfo(),
+                    stationStatusDTO.getStationManufacturerId()
+            );
+        }
+
+        for (SlotDTO.StationStatus slotDTO : stationStatusDTO.getSlots()) {
+            if (slotDTO.getSlotErrorCode() != null) {
+                createAndSaveErrorHistoryEntry(
+                        ErrorType.SLOT_ERROR,
+                        slotDTO.getSlotErrorCode(),
+                        slotDTO.getSlotErrorInfo(),
+                        slotDTO.getSlotManufacturerId()
+                );
+            }
+        }
+    }
+
+    @Override
+    public void onPedelecStatusReceived(PedelecStatusReceivedEvent event) {
+        PedelecStatusDTO pedelecStatusDTO = event.getPedelecStatus();
+
+        if (pedelecStatusDTO.getPedelecErrorCode() != null) {
+            createAndSaveErrorHistoryEntry(
+                    ErrorType.PEDELEC_ERROR,
+                    pedelecStatusDTO.getPedelecErrorCode(),
+                    pedelecStatusDTO.getPedelecErrorInfo(),
+                    pedelecStatusDTO.getPedelecManufacturerId()
+            );
+        }
+    }
+
     public List<ErrorHistoryEntryDTO> getErrorHistory() {
         List<ErrorHistory> errorHistoryEntries = errorHistoryRepository.findAllOrderByCreatedAt();
 
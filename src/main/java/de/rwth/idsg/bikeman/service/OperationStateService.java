@@ -4,7 +4,8 @@ import com.google.common.base.Optional;
 import de.rwth.idsg.bikeman.domain.Pedelec;
 import de.rwth.idsg.bikeman.domain.Station;
 import de.rwth.idsg.bikeman.domain.StationSlot;
-import de.rwth.idsg.bikeman.ixsi.service.AvailabilityPushService;
+import de.rwth.idsg.bikeman.event.AvailabilityChangedEvent;
+import de.rwth.idsg.bikeman.event.DomainEventBus;
 import de.rwth.idsg.bikeman.psinterface.Utils;
 import de.rwth.idsg.bikeman.psinterface.dto.OperationState;
 import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
@@ -13,11 +14,9 @@ import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
 import de.rwth.idsg.bikeman.repository.PedelecRepository;
 import de.rwth.idsg.bikeman.repository.StationRepository;
 import de.rwth.idsg.bikeman.repository.StationSlotRepository;
-import de.rwth.idsg.bikeman.web.rest.dto.modify.CreateEditStationDTO;
 import org.joda.time.DateTime;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import xjc.schema.ixsi.TimePeriodType;
 
 import javax.inject.Inject;
 import java.util.Collections;
@@ -35,16 +34,17 @@ public class OperationStateService {
     @Inject private PedelecRepository pedelecRepository;
     @Inject private StationRepository stationRepository;
     @Inject private StationSlotRepository stationSlotRepository;
-    @Inject private AvailabilityPushService availabilityPushService;
+    @Inject private DomainEventBus domainEventBus;
+    @Inject private OperationStateSnapshot operationStateSnapshot;
 
-    public void pushStationChange(CreateEditStationDTO dto) {
-        switch (dto.getState()) {
+    public void pushStationChange(String stationManufacturerId, de.rwth.idsg.bikeman.domain.OperationState state) {
+        switch (state) {
             case OPERATIVE:
-                pushStationAvailability(dto.getManufacturerId());
+                pushStationAvailability(stationManufacturerId);
                 break;
 
             case INOPERATIVE:
-                pushStationInavailability(dto.getManufacturerId());
+                pushStationInavailability(stationManufacturerId);
                 break;
 
             case DELETED:
@@ -52,14 +52,15 @@ public class OperationStateService {
         }
     }
 
-    public void pushSlotChange(StationSlot slot) {
-        switch (slot.getState()) {
+    public void pushSlotChange(String stationManufacturerId, String slotManufacturerId,
+                               de.rwth.idsg.bikeman.domain.OperationState state) {
+        switch (state) {
             case OPERATIVE:
-                pushSlotAvailability(slot.getStation().getManufacturerId(), slot.getManufacturerId());
+                pushSlotAvailability(stationManufacturerId, slotManufacturerId);
                 break;
 
             case INOPERATIVE:
-                pushSlotInavailability(slot.getStation().getManufacturerId(), slot.getManufacturerId());
+                pushSlotInavailability(stationManufacturerId, slotManufacturerId);
                 break;
 
             case DELETED:
@@ -93,33 +94,26 @@ public class OperationStateService {
         }
     }
 
-    public void pushInavailability(StationStatusDTO dto) {
+    private boolean pushInavailability(StationStatusDTO dto, boolean stationChanged,
+                                       List<SlotDTO.StationStatus> changedSlots) {
         if (isInoperative(dto.getStationState())) {
-            pushStationInavailability(dto.getStationManufacturerId());
-            return;
-        }
-
-        if (Utils.isEmpty(dto.getSlots())) {
-            return;
+            if (stationChanged) {
+                pushStationInavailability(dto.getStationManufacturerId());
+            }
+            return stationChanged;
         }
 
-        // For all inoperative slots, if there is a pedelec, get it's id
+        // For all slots that became inoperative, if there is a pedelec, get it's id
         List<String> pedelecManufacturerIds =
-                dto.getSlots()
-                   .parallelStream()
-                   .filter(s -> isInoperative(s.getSlotState()))
-                   .map(s -> pedelecRepository.findPedelecsByStationSlot(dto.getStationManufacturerId(), s.getSlotManufacturerId()))
-                   .filter(Optional::isPresent)
-                   .map(s -> s.get().getManufacturerId())
-                   .collect(Collectors.toList());
+                changedSlots.stream()
+                            .filter(s -> isInoperative(s.getSlotState()))
+                            .map(s -> pedelecRepository.findPedelecsByStationSlot(dto.getStationManufacturerId(), s.getSlotManufacturerId()))
+                            .filter(Optional::isPresent)
+                            .map(s -> s.get().getManufacturerId())
+                            .collect(Collectors.toList());
 
         pushInavailability(dto.getStationManufacturerId(), pedelecManufacturerIds);
-    }
-
-    public void pushInavailability(PedelecStatusDTO dto) {
-        if (isInoperative(dto.getPedelecState())) {
-            pushPedelecInavailability(dto.getPedelecManufacturerId());
-        }
+        return !pedelecManufacturerIds.isEmpty();
     }
 
     // -------------------------------------------------------------------------
@@ -154,33 +148,96 @@ public class OperationStateService {
         }
     }
 
-    public void pushAvailability(StationStatusDTO dto) {
-        Station station = stationRepository.findByManufacturerId(dto.getStationManufacturerId());
-
-        if (becameOperative(station.getState(), dto.getStationState())) {
-            pushStationAvailability(station.getManufacturerId());
-            return;
-        }
-
-        if (Utils.isEmpty(dto.getSlots())) {
-            return;
+    private boolean pushAvailability(StationStatusDTO dto, boolean stationChanged,
+                                     List<SlotDTO.StationStatus> changedSlots, boolean committed) {
+        if (stationChanged) {
+            if (committed) {
+                if (isOperative(dto.getStationState())) {
+                    pushStationAvailability(dto.getStationManufacturerId());
+                    return true;
+                }
+            } else {
+                Station station = stationRepository.findByManufacturerId(dto.getStationManufacturerId());
+
+                if (becameOperative(station.getState(), dto.getStationState())) {
+                    pushStationAvailability(station.getManufacturerId());
+                    return true;
+                }
+            }
         }
 
         // For all slots, that changed from inoperative to operative, if there is an operative pedelec, get it's id
         List<String> pedelecManufacturerIds =
-                dto.getSlots()
-                   .parallelStream()
-                   .map(s -> getPedelecToPush(station, s))
-                   .filter(Optional::isPresent)
-                   .map(p -> p.get().getManufacturerId())
-                   .collect(Collectors.toList());
+                changedSlots.stream()
+                            .map(s -> getPedelecToPush(dto.getStationManufacturerId(), s, committed))
+                            .filter(Optional::isPresent)
+                            .map(p -> p.get().getManufacturerId())
+                            .collect(Collectors.toList());
 
         pushAvailability(dto.getStationManufacturerId(), pedelecManufacturerIds);
+        return !pedelecManufacturerIds.isEmpty();
+    }
+
+    // -------------------------------------------------------------------------
+    // Entry points for the status notifications
+    //
+    // Only the entities, the state of which differs from the last known one (see OperationStateSnapshot),
+    // are looked at. Must be called before the DB is updated with the status. If the transaction is rolled
+    // back, the snapshot forgets the changes by itself.
+    //
+    // The events of a status batch are pushed after the batch is committed, when the DB already has the new
+    // states. Then a slot or station counts as having become operative by the diff of the snapshot alone.
+    // -------------------------------------------------------------------------
+
+    public void pushChanges(StationStatusDTO dto) {
+        pushChanges(dto, false);
+    }
+
+    public void pushCommittedChanges(StationStatusDTO dto) {
+        pushChanges(dto, true);
+    }
+
+    private void pushChanges(StationStatusDTO dto, boolean committed) {
+        String stationManufacturerId = dto.getStationManufacturerId();
+
+        boolean stationChanged = operationStateSnapshot.stationChanged(stationManufacturerId, dto.getStationState());
+        List<SlotDTO.StationStatus> changedSlots =
+                operationStateSnapshot.changedSlots(stationManufacturerId, dto.getSlots());
+
+        if (!stationChanged && changedSlots.isEmpty()) {
+            operationStateSnapshot.record(false);
+            return;
+        }
+
+        try {
+            boolean emitted = pushAvailability(dto, stationChanged, changedSlots, committed);
+            emitted |= pushInavailability(dto, stationChanged, changedSlots);
+            operationStateSnapshot.record(emitted);
+        } catch (RuntimeException e) {
+            // The transitions are lost otherwise
+            operationStateSnapshot.forgetStation(stationManufacturerId);
+            throw e;
+        }
     }
 
-    public void pushAvailability(PedelecStatusDTO dto) {
-        if (isOperative(dto.getPedelecState())) {
-            pushPedelecAvailability(dto.getPedelecManufacturerId());
+    public void pushChanges(PedelecStatusDTO dto) {
+        String pedelecManufacturerId = dto.getPedelecManufacturerId();
+
+        if (!operationStateSnapshot.pedelecChanged(pedelecManufacturerId, dto.getPedelecState())) {
+            operationStateSnapshot.record(false);
+            return;
+        }
+
+        try {
+            if (isOperative(dto.getPedelecState())) {
+                pushPedelecAvailability(pedelecManufacturerId);
+            } else if (isInoperative(dto.getPedelecState())) {
+                pushPedelecInavailability(pedelecManufacturerId);
+            }
+            operationStateSnapshot.record(true);
+        } catch (RuntimeException e) {
+            operationStateSnapshot.forgetPedelec(pedelecManufacturerId);
+            throw e;
         }
     }
 
@@ -194,9 +251,9 @@ public class OperationStateService {
                 && isOperative(p.getStationSlot().getStation().getState());
     }
 
-    private boolean shouldSendAvailability(StationSlot slot, SlotDTO.StationStatus dto) {
+    private boolean shouldSendAvailability(StationSlot slot, SlotDTO.StationStatus dto, boolean committed) {
         return slot.getPedelec() != null
-                && becameOperative(slot.getState(), dto.getSlotState());
+                && (committed ? isOperative(dto.getSlotState()) : becameOperative(slot.getState(), dto.getSlotState()));
     }
 
     private boolean becameOperative(de.rwth.idsg.bikeman.domain.OperationState oldState, OperationState newState) {
@@ -215,10 +272,11 @@ public class OperationStateService {
         return os == OperationState.INOPERATIVE;
     }
 
-    private Optional<Pedelec> getPedelecToPush(Station station, SlotDTO.StationStatus dto) {
-        StationSlot slot = stationSlotRepository.findByManufacturerId(dto.getSlotManufacturerId(), station.getManufacturerId());
+    private Optional<Pedelec> getPedelecToPush(String stationManufacturerId, SlotDTO.StationStatus dto,
+                                               boolean committed) {
+        StationSlot slot = stationSlotRepository.findByManufacturerId(dto.getSlotManufacturerId(), stationManufacturerId);
 
-        if (shouldSendAvailability(slot, dto)) {
+        if (shouldSendAvailability(slot, dto, committed)) {
             return Optional.of(slot.getPedelec());
         } else {
             return Optional.absent();
@@ -239,39 +297,27 @@ public class OperationStateService {
         );
     }
 
-    private TimePeriodType buildTimePeriod() {
-        DateTime now = DateTime.now();
-
-        return new TimePeriodType()
-                .withBegin(now)
-                .withEnd(now.plusDays(90));
-    }
-
     // -------------------------------------------------------------------------
     // Main methods for IXSI calls
     //
-    // TODO: instead of pushing each pedelec on it's own, push a list
+    // The pedelec ids are determined here, since this requires the state before the update.
+    // The actual IXSI push happens asynchronously after commit.
     // -------------------------------------------------------------------------
 
     private void pushInavailability(String stationManufacturerId, List<String> idList) {
-        if (Utils.isEmpty(idList)) {
-            return;
-        }
-
-        TimePeriodType timePeriodType = buildTimePeriod();
-
-        idList.parallelStream()
-              .forEach(s -> availabilityPushService.placedBooking(s, stationManufacturerId, timePeriodType));
+        publishAvailabilityChange(stationManufacturerId, idList, false);
     }
 
     private void pushAvailability(String stationManufacturerId, List<String> idList) {
+        publishAvailabilityChange(stationManufacturerId, idList, true);
+    }
+
+    private void publishAvailabilityChange(String stationManufacturerId, List<String> idList, boolean available) {
         if (Utils.isEmpty(idList)) {
             return;
         }
 
-        TimePeriodType timePeriodType = buildTimePeriod();
-
-        idList.parallelStream()
-              .forEach(s -> availabilityPushService.cancelledBooking(s, stationManufacturerId, timePeriodType));
+        DateTime now = DateTime.now();
+        domainEventBus.publish(new AvailabilityChangedEvent(stationManufacturerId, idList, available, now, now.plusDays(90)));
     }
 }
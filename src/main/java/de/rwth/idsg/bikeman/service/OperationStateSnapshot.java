@@ -0,0 +1,192 @@
+package de.rwth.idsg.bikeman.service;
+
+import de.rwth.idsg.bikeman.event.DomainEventListener;
+import de.rwth.idsg.bikeman.event.SlotStateChangedEvent;
+import de.rwth.idsg.bikeman.event.StationStateChangedEvent;
+import de.rwth.idsg.bikeman.psinterface.Utils;
+import de.rwth.idsg.bikeman.psinterface.dto.OperationState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last known operation states of the stations, slots and pedelecs, as reported in the status notifications.
+ *
+ * Stations send status notifications frequently, but the states rarely change. The incoming states are diffed
+ * against this snapshot, so that the availability pushes (and the DB work to determine them) are only done
+ * for real transitions. The snapshot is updated with the diff.
+ *
+ * Unknown entries (after a startup or after {@link #forgetStation(String)}) always count as changed, which is
+ * the behaviour without the snapshot. The status notifications of a station are processed serially in its
+ * mailbox, therefore the diff of one station is not subject to races.
+ *
+ * A change is recorded right away, so that later notifications within the same transaction (e.g. of a status
+ * batch) are diffed against it. If the transaction is rolled back, the DB keeps the old state and no push is
+ * sent. Therefore the changed entries are forgotten after a rollback, and the next notification counts as
+ * changed again.
+ *
+ * If the domain event bus drops events, the whole snapshot is forgotten, since a missed state change event
+ * would otherwise suppress the pushes of the next real transition.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class OperationStateSnapshot implements DomainEventListener {
+
+    private final ConcurrentHashMap<String, OperationState> stationStates = new ConcurrentHashMap<>();
+
+    /**
+     * Key   (String)                                      = Manufacturer id of the station
+     * Value (ConcurrentHashMap<String, OperationState>) = Manufacturer id of the slot -> state
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, OperationState>> slotStates = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, OperationState> pedelecStates = new ConcurrentHashMap<>();
+
+    private final AtomicLong emittedCount = new AtomicLong(0);
+    private final AtomicLong suppressedCount = new AtomicLong(0);
+
+    public boolean stationChanged(String stationManufacturerId, OperationState state) {
+        boolean changed = changed(stationStates, stationManufacturerId, state);
+        if (changed) {
+            afterRollback(() -> forgetStation(stationManufacturerId));
+        }
+        return changed;
+    }
+
+    /**
+     * @return The slots, the state of which changed
+     */
+    public List<SlotDTO.StationStatus> changedSlots(String stationManufacturerId, List<SlotDTO.StationStatus> slots) {
+        if (Utils.isEmpty(slots)) {
+            return Collections.emptyList();
+        }
+
+        Map<String, OperationState> states = slotStates.computeIfAbsent(stationManufacturerId,
+                id -> new ConcurrentHashMap<>());
+
+        List<SlotDTO.StationStatus> changed = new ArrayList<>();
+        for (SlotDTO.StationStatus slot : slots) {
+            if (changed(states, slot.getSlotManufacturerId(), slot.getSlotState())) {
+                changed.add(slot);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            afterRollback(() -> forgetStation(stationManufacturerId));
+        }
+        return changed;
+    }
+
+    public boolean pedelecChanged(String pedelecManufacturerId, OperationState state) {
+        boolean changed = changed(pedelecStates, pedelecManufacturerId, state);
+        if (changed) {
+            afterRollback(() -> forgetPedelec(pedelecManufacturerId));
+        }
+        return changed;
+    }
+
+    /**
+     * Records whether a status notification caused any pushes
+     */
+    public void record(boolean emitted) {
+        if (emitted) {
+            emittedCount.incrementAndGet();
+        } else {
+            suppressedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * The next status of the station and its slots will be processed as a change.
+     * To be used, if the states might have changed in some other way than a status notification.
+     */
+    public void forgetStation(String stationManufacturerId) {
+        stationStates.remove(stationManufacturerId);
+        slotStates.remove(stationManufacturerId);
+    }
+
+    public void forgetPedelec(String pedelecManufacturerId) {
+        pedelecStates.remove(pedelecManufacturerId);
+    }
+
+    // -------------------------------------------------------------------------
+    // Domain events
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void onStationStateChanged(StationStateChangedEvent event) {
+        forgetStation(event.getStationManufacturerId());
+    }
+
+    @Override
+    public void onSlotStateChanged(SlotStateChangedEvent event) {
+        Map<String, OperationState> states = slotStates.get(event.getStationManufacturerId());
+        if (states != null) {
+            states.remove(event.getSlotManufacturerId());
+        }
+    }
+
+    @Override
+    public void onEventsDropped() {
+        stationStates.clear();
+        slotStates.clear();
+        pedelecStates.clear();
+    }
+
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    public long getEmittedCount() {
+        return emittedCount.get();
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount.get();
+    }
+
+    public int getStationCount() {
+        return stationStates.size();
+    }
+
+    public int getPedelecCount() {
+        return pedelecStates.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static void afterRollback(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+
+    private static boolean changed(Map<String, OperationState> states, String id, OperationState state) {
+        if (state == null) {
+            return false;
+        }
+        return states.put(id, state) != state;
+    }
+}
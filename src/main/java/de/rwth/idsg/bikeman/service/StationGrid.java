@@ -0,0 +1,310 @@
+package de.rwth.idsg.bikeman.service;
+
+import de.rwth.idsg.bikeman.web.rest.dto.view.StationLocationDTO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Immutable uniform grid over the station coordinates. Every cell spans the same number of degrees in both
+ * directions and holds the stations located in it, so that a query only looks at the cells overlapping its area
+ * instead of computing the distance to every station (which is what the native PostGIS queries did).
+ *
+ * An update copies the grid. This is fine, since stations are created or moved rarely and their number is limited.
+ *
+ * The grid does not wrap around the antimeridian.
+ *
+ * @since 18.10.2016
+ */
+final class StationGrid {
+
+    static final double EARTH_RADIUS_IN_METERS = 6_371_008.8;
+
+    private final double cellSize;
+
+    /**
+     * Key   (String)             = Manufacturer id of the station
+     * Value (StationLocationDTO) = Location of the station
+     */
+    private final Map<String, StationLocationDTO> stations;
+
+    /**
+     * Key   (Long)                     = Row and column of the cell, see {@link #key(int, int)}
+     * Value (List<StationLocationDTO>) = Stations in the cell
+     */
+    private final Map<Long, List<StationLocationDTO>> cells;
+
+    // Bounds of the non-empty cells
+    private final int minRow;
+    private final int maxRow;
+    private final int minCol;
+    private final int maxCol;
+
+    StationGrid(Collection<StationLocationDTO> locations, double cellSize) {
+        this.cellSize = cellSize;
+        this.stations = new HashMap<>(locations.size() * 2);
+        this.cells = new HashMap<>();
+
+        for (StationLocationDTO location : locations) {
+            stations.put(location.getManufacturerId(), location);
+        }
+
+        int minR = Integer.MAX_VALUE, maxR = Integer.MIN_VALUE;
+        int minC = Integer.MAX_VALUE, maxC = Integer.MIN_VALUE;
+
+        for (StationLocationDTO location : stations.values()) {
+            int row = row(location.getLatitude());
+            int col = col(location.getLongitude());
+            cells.computeIfAbsent(key(row, col), k -> new ArrayList<>(4)).add(location);
+
+            minR = Math.min(minR, row);
+            maxR = Math.max(maxR, row);
+            minC = Math.min(minC, col);
+            maxC = Math.max(maxC, col);
+        }
+
+        this.minRow = minR;
+        this.maxRow = maxR;
+        this.minCol = minC;
+        this.maxCol = maxC;
+    }
+
+    /**
+     * The manufacturer id of a station might have been changed, too
+     */
+    StationGrid with(StationLocationDTO location) {
+        Map<String, StationLocationDTO> copy = new HashMap<>(stations);
+        copy.values().removeIf(old -> old.getStationId().equals(location.getStationId()));
+        copy.put(location.getManufacturerId(), location);
+        return new StationGrid(copy.values(), cellSize);
+    }
+
+    StationGrid without(String manufacturerId) {
+        if (!stations.containsKey(manufacturerId)) {
+            return this;
+        }
+        Map<String, StationLocationDTO> copy = new HashMap<>(stations);
+        copy.remove(manufacturerId);
+        return new StationGrid(copy.values(), cellSize);
+    }
+
+    int size() {
+        return stations.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Queries
+    // -------------------------------------------------------------------------
+
+    /**
+     * The corners can be given in any order
+     */
+    List<StationLocationDTO> withinRectangle(double lat1, double lon1, double lat2, double lon2) {
+        double minLat = Math.min(lat1, lat2);
+        double maxLat = Math.max(lat1, lat2);
+        double minLon = Math.min(lon1, lon2);
+        double maxLon = Math.max(lon1, lon2);
+
+        List<StationLocationDTO> result = new ArrayList<>();
+        forEachInCells(row(minLat), row(maxLat), col(minLon), col(maxLon), location -> {
+            if (location.getLatitude() >= minLat && location.getLatitude() <= maxLat
+                    && location.getLongitude() >= minLon && location.getLongitude() <= maxLon) {
+                result.add(location);
+            }
+        });
+        return result;
+    }
+
+    List<StationLocationDTO> withinCircle(double lat, double lon, double radiusInMeters) {
+        double latSpan = latitudeSpan(radiusInMeters);
+        double lonSpan = longitudeSpan(lat, radiusInMeters);
+
+        List<StationLocationDTO> result = new ArrayList<>();
+        forEachInCells(row(lat - latSpan), row(lat + latSpan), col(lon - lonSpan), col(lon + lonSpan), location -> {
+            if (distanceInMeters(lat, lon, location.getLatitude(), location.getLongitude()) <= radiusInMeters) {
+                result.add(location);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Visits the cells in rings around the cell of the point, until the circle around the point with the distance
+     * of the farthest candidate lies within the visited rings. If the point is so far away from the stations that
+     * the rings would visit more cells than there are non-empty ones, all stations are scanned instead.
+     *
+     * @return at most count stations, nearest first
+     */
+    List<StationLocationDTO> nearest(double lat, double lon, int count) {
+        if (count <= 0 || stations.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Farthest candidate first, so that it can be replaced by a nearer one
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(count, Comparator.comparingDouble(Candidate::getDistance)
+                                                                            .reversed());
+        int row = row(lat);
+        int col = col(lon);
+        int maxRing = Math.max(Math.max(Math.abs(row - minRow), Math.abs(row - maxRow)),
+                               Math.max(Math.abs(col - minCol), Math.abs(col - maxCol)));
+
+        long visitedCells = 0;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            visitedCells += ring == 0 ? 1 : 8L * ring;
+            if (visitedCells > 2L * cells.size()) {
+                heap.clear();
+                stations.values().forEach(location -> offer(heap, count, lat, lon, location));
+                break;
+            }
+
+            for (int dr = -ring; dr <= ring; dr++) {
+                // Inner rows of the ring consist of the first and last column only
+                int step = Math.abs(dr) == ring ? 1 : 2 * ring;
+                for (int dc = -ring; dc <= ring; dc += step) {
+                    List<StationLocationDTO> cell = cells.get(key(row + dr, col + dc));
+                    if (cell != null) {
+                        cell.forEach(location -> offer(heap, count, lat, lon, location));
+                    }
+                }
+            }
+
+            if (heap.size() == count && isCovered(heap.peek().getDistance(), lat, lon, row, col, ring)) {
+                break;
+            }
+        }
+
+        List<StationLocationDTO> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll().getLocation());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Great-circle distance (haversine formula)
+     */
+    static double distanceInMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+
+        return 2 * EARTH_RADIUS_IN_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * If the range spans more cells than there are non-empty ones, iterating over the non-empty cells is cheaper
+     */
+    private void forEachInCells(int fromRow, int toRow, int fromCol, int toCol, Consumer<StationLocationDTO> consumer) {
+        if (stations.isEmpty()) {
+            return;
+        }
+
+        fromRow = Math.max(fromRow, minRow);
+        toRow = Math.min(toRow, maxRow);
+        fromCol = Math.max(fromCol, minCol);
+        toCol = Math.min(toCol, maxCol);
+
+        if (fromRow > toRow || fromCol > toCol) {
+            return;
+        }
+
+        long area = (long) (toRow - fromRow + 1) * (toCol - fromCol + 1);
+        if (area > cells.size()) {
+            for (Map.Entry<Long, List<StationLocationDTO>> entry : cells.entrySet()) {
+                int row = (int) (entry.getKey() >> 32);
+                int col = (int) (long) entry.getKey();
+                if (row >= fromRow && row <= toRow && col >= fromCol && col <= toCol) {
+                    entry.getValue().forEach(consumer);
+                }
+            }
+        } else {
+            for (int row = fromRow; row <= toRow; row++) {
+                for (int col = fromCol; col <= toCol; col++) {
+                    List<StationLocationDTO> cell = cells.get(key(row, col));
+                    if (cell != null) {
+                        cell.forEach(consumer);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true, if all points within the distance lie in the cells of the rings visited so far
+     */
+    private boolean isCovered(double distanceInMeters, double lat, double lon, int row, int col, int ring) {
+        double latSpan = latitudeSpan(distanceInMeters);
+        double lonSpan = longitudeSpan(lat, distanceInMeters);
+
+        return row(lat - latSpan) >= row - ring
+                && row(lat + latSpan) <= row + ring
+                && col(lon - lonSpan) >= col - ring
+                && col(lon + lonSpan) <= col + ring;
+    }
+
+    private static void offer(PriorityQueue<Candidate> heap, int count, double lat, double lon,
+                              StationLocationDTO location) {
+        double distance = distanceInMeters(lat, lon, location.getLatitude(), location.getLongitude());
+        if (heap.size() < count) {
+            heap.add(new Candidate(location, distance));
+        } else if (distance < heap.peek().getDistance()) {
+            heap.poll();
+            heap.add(new Candidate(location, distance));
+        }
+    }
+
+    private static double latitudeSpan(double radiusInMeters) {
+        return Math.toDegrees(radiusInMeters / EARTH_RADIUS_IN_METERS);
+    }
+
+    /**
+     * Longitude extent of a circle on the sphere. If the circle contains a pole, it spans all longitudes.
+     */
+    private static double longitudeSpan(double lat, double radiusInMeters) {
+        double angularRadius = radiusInMeters / EARTH_RADIUS_IN_METERS;
+        double latInRadians = Math.toRadians(lat);
+
+        if (Math.abs(latInRadians) + angularRadius >= Math.PI / 2) {
+            return 360;
+        }
+        return Math.toDegrees(Math.asin(Math.sin(angularRadius) / Math.cos(latInRadians)));
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellSize);
+    }
+
+    private int col(double lon) {
+        return (int) Math.floor(lon / cellSize);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Candidate {
+        private final StationLocationDTO location;
+        private final double distance;
+    }
+}
@@ -6,13 +6,18 @@ import de.rwth.idsg.bikeman.domain.Pedelec;
 import de.rwth.idsg.bikeman.domain.Reservation;
 import de.rwth.idsg.bikeman.domain.StationSlot;
 import de.rwth.idsg.bikeman.domain.Transaction;
+import de.rwth.idsg.bikeman.event.DomainEventBus;
+import de.rwth.idsg.bikeman.event.SlotStateChangedEvent;
+import de.rwth.idsg.bikeman.event.StationSavedEvent;
+import de.rwth.idsg.bikeman.event.StationStateChangedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStartedEvent;
+import de.rwth.idsg.bikeman.fleet.FleetState;
 import de.rwth.idsg.bikeman.ixsi.service.BookingService;
 import de.rwth.idsg.bikeman.psinterface.dto.request.CancelReservationDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.ReserveNowDTO;
 import de.rwth.idsg.bikeman.psinterface.dto.request.StartTransactionDTO;
 import de.rwth.idsg.bikeman.psinterface.exception.PsException;
 import de.rwth.idsg.bikeman.psinterface.repository.PsiTransactionRepository;
-import de.rwth.idsg.bikeman.psinterface.rest.PsiService;
 import de.rwth.idsg.bikeman.psinterface.rest.client.StationClient;
 import de.rwth.idsg.bikeman.repository.BookingRepository;
 import de.rwth.idsg.bikeman.repository.ReservationRepository;
@@ -47,10 +52,10 @@ public class StationService {
 
     @Autowired private StationClient stationClient;
     @Autowired private StationRepository stationRepository;
-    @Autowired private OperationStateService operationStateService;
     @Autowired private StationSlotRepository stationSlotRepository;
     @Autowired private TransactionEventService transactionEventService;
-    @Autowired private PsiService psiService;
+    @Autowired private DomainEventBus domainEventBus;
+    @Autowired private FleetState fleetState;
     @Autowired private PsiTransactionRepository transactionRepository;
     @Autowired private BookingService bookingService;
     @Autowired private BookingRepository bookingRepository;
@@ -59,6 +64,8 @@ public class StationService {
 
     public void create(CreateEditStationDTO dto) throws DatabaseException {
         stationRepository.create(dto);
+
+        domainEventBus.publish(new StationSavedEvent(dto.getManufacturerId()));
     }
 
     public List<ViewStationDTO> getAll() throws DatabaseException {
@@ -117,7 +124,8 @@ public class StationService {
         stationClient.changeOperationState(endpointAddress, changeDTO);
         stationRepository.update(dto);
 
-        operationStateService.pushStationChange(dto);
+        domainEventBus.publish(new StationSavedEvent(dto.getManufacturerId()));
+        domainEventBus.publish(new StationStateChangedEvent(dto.getManufacturerId(), dto.getState()));
     }
 
     public void changeSlotState(Long stationId, ChangeStationOperationStateDTO dto) throws DatabaseException {
@@ -133,7 +141,10 @@ public class StationService {
 
         StationSlot stationSlot = stationSlotRepository.findByStationSlotPositionAndStationStationId(dto.getSlotPosition(), stationId);
 
-        operationStateService.pushSlotChange(stationSlot);
+        domainEventBus.publish(new SlotStateChangedEvent(
+                stationSlot.getStation().getManufacturerId(),
+                stationSlot.getManufacturerId(),
+                stationSlot.getState()));
     }
 
     @Async
@@ -207,6 +218,12 @@ public class StationService {
         booking.setTransaction(transaction);
         bookingRepository.save(booking);
 
-        psiService.performStartPush(startTransactionDTO);
+        TransactionStartedEvent event = new TransactionStartedEvent(
+                startTransactionDTO.getStationManufacturerId(),
+                startTransactionDTO.getSlotManufacturerId(),
+                startTransactionDTO.getPedelecManufacturerId(),
+                startTransactionDTO.getTimestamp());
+        fleetState.applyAfterCommit(event);
+        domainEventBus.publish(event);
     }
 }
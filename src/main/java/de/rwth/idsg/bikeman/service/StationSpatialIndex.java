@@ -0,0 +1,164 @@
+package de.rwth.idsg.bikeman.service;
+
+import de.rwth.idsg.bikeman.event.DomainEventListener;
+import de.rwth.idsg.bikeman.event.StationSavedEvent;
+import de.rwth.idsg.bikeman.repository.StationRepository;
+import de.rwth.idsg.bikeman.web.rest.dto.view.StationLocationDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import xjc.schema.ixsi.GeoCircleType;
+import xjc.schema.ixsi.GeoRectangleType;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory spatial index over the locations of the stations (that are not deleted), which answers the geo
+ * queries of IXSI and the app without the DB.
+ *
+ * The index is built on first use (or right after startup, whichever comes first) and updated, when a station
+ * is created or edited. Once built, the queries read an immutable grid and do not block.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class StationSpatialIndex implements DomainEventListener {
+
+    /**
+     * About 1.1 km in north-south direction, and less in east-west direction depending on the latitude
+     */
+    private static final double CELL_SIZE_IN_DEGREES = 0.01;
+
+    @Autowired private ScheduledExecutorService executorService;
+    @Autowired private StationRepository stationRepository;
+
+    private volatile StationGrid grid;
+
+    @PostConstruct
+    public void init() {
+        executorService.execute(() -> {
+            try {
+                getGrid();
+            } catch (Exception e) {
+                log.error("Failed to build the station spatial index. Will retry on first use", e);
+            }
+        });
+    }
+
+    public List<StationLocationDTO> withinCircle(double lat, double lon, double radiusInMeters) {
+        return getGrid().withinCircle(lat, lon, radiusInMeters);
+    }
+
+    public List<StationLocationDTO> withinRectangle(double lat1, double lon1, double lat2, double lon2) {
+        return getGrid().withinRectangle(lat1, lon1, lat2, lon2);
+    }
+
+    /**
+     * @return at most count stations, nearest first
+     */
+    public List<StationLocationDTO> nearest(double lat, double lon, int count) {
+        return getGrid().nearest(lat, lon, count);
+    }
+
+    /**
+     * @return the manufacturer ids of the stations within the IXSI circle
+     */
+    public List<String> placeIds(GeoCircleType circle) {
+        Number radius = circle.getRadius();
+        return toPlaceIds(withinCircle(
+                circle.getCenter().getLatitude().doubleValue(),
+                circle.getCenter().getLongitude().doubleValue(),
+                radius.doubleValue()));
+    }
+
+    /**
+     * @return the manufacturer ids of the stations within the IXSI rectangle
+     */
+    public List<String> placeIds(GeoRectangleType rectangle) {
+        return toPlaceIds(withinRectangle(
+                rectangle.getUpperLeft().getLatitude().doubleValue(),
+                rectangle.getUpperLeft().getLongitude().doubleValue(),
+                rectangle.getLowerRight().getLatitude().doubleValue(),
+                rectangle.getLowerRight().getLongitude().doubleValue()));
+    }
+
+    public static double distanceInMeters(double lat1, double lon1, double lat2, double lon2) {
+        return StationGrid.distanceInMeters(lat1, lon1, lat2, lon2);
+    }
+
+    public int getStationCount() {
+        StationGrid current = grid;
+        return current == null ? 0 : current.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Domain events
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void onStationSaved(StationSavedEvent event) {
+        update(event.getStationManufacturerId());
+    }
+
+    /**
+     * A missed station edit would stay in the index, therefore it is built again on next use
+     */
+    @Override
+    public void onEventsDropped() {
+        executorService.execute(() -> {
+            synchronized (this) {
+                grid = null;
+            }
+        });
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static List<String> toPlaceIds(List<StationLocationDTO> locations) {
+        return locations.stream()
+                        .map(StationLocationDTO::getManufacturerId)
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * If the index is not built yet, it will contain the change anyway
+     */
+    private synchronized void update(String stationManufacturerId) {
+        StationGrid current = grid;
+        if (current == null) {
+            return;
+        }
+
+        List<StationLocationDTO> locations =
+                stationRepository.findLocations(Collections.singletonList(stationManufacturerId));
+
+        if (locations.isEmpty()) {
+            // Deleted or without coordinates
+            grid = current.without(stationManufacturerId);
+        } else {
+            grid = current.with(locations.get(0));
+        }
+    }
+
+    private StationGrid getGrid() {
+        StationGrid current = grid;
+        if (current == null) {
+            synchronized (this) {
+                current = grid;
+                if (current == null) {
+                    current = new StationGrid(stationRepository.findLocations(), CELL_SIZE_IN_DEGREES);
+                    grid = current;
+                    log.info("Built the station spatial index with {} station(s)", current.size());
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,46 @@
+package de.rwth.idsg.bikeman.telemetry;
+
+import de.rwth.idsg.bikeman.domain.ChargingState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.BatteryStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * One charging status of a pedelec, as reported by the station. Every value but the time stamp may be missing.
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BatterySample {
+    private final String pedelecManufacturerId;
+    private final long timestamp; // epoch millis
+    private final ChargingState chargingState;
+    private final Double soc;
+    private final Double voltage;
+    private final Double current;
+    private final Double temperature;
+    private final Integer cycleCount;
+    private final Double meterValue;
+
+    public static BatterySample from(ChargingStatusDTO dto) {
+        BatteryStatusDTO battery = dto.getBattery();
+        if (battery == null) {
+            battery = new BatteryStatusDTO();
+        }
+
+        return new BatterySample(
+                dto.getPedelecManufacturerId(),
+                dto.getTimestamp().getMillis(),
+                dto.getChargingState(),
+                battery.getSoc(),
+                battery.getVoltage(),
+                battery.getCurrent(),
+                battery.getTemperature(),
+                battery.getCycleCount(),
+                dto.getMeterValue());
+    }
+}
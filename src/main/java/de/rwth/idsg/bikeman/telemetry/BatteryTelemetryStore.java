@@ -0,0 +1,514 @@
+package de.rwth.idsg.bikeman.telemetry;
+
+import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiPedelecRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only history of the charging status of the pedelecs (SOC, voltage, current, temperature, cycle count and
+ * meter value), for battery curves per pedelec and SOC snapshots of the fleet.
+ *
+ * The samples are buffered in memory (write-behind) and flushed periodically by a single thread. Each flush appends
+ * one compressed block per time partition (see {@link TelemetryBlockCodec}) to the partition file, which is never
+ * rewritten. Partitions older than the retention are deleted as a whole. The latest sample of every pedelec is
+ * additionally kept in memory, so that the fleet snapshot does not need to read any files.
+ *
+ * The row of a pedelec in T_PEDELEC_CHARGING_STATUS is a projection of its latest sample. It is written with the
+ * flush, for the pedelecs that got new samples since the last one, and lags behind by up to the flush interval.
+ * Readers that decide on the charging status use {@link #getLatest(String)}. A sample is only taken after the
+ * commit of the notification. If the store is disabled, no history is kept and the row is written right away,
+ * within the transaction of the notification.
+ *
+ * A block that was only partially written (after a crash or a failed write) is cut off the partition file when the
+ * store is opened, so that the blocks appended afterwards are found by the reader.
+ *
+ * <pre>
+ * telemetry.battery.enabled: true
+ * telemetry.battery.directory: telemetry
+ * telemetry.battery.partitionInHours: 1
+ * telemetry.battery.flushIntervalInSeconds: 10
+ * telemetry.battery.bufferCapacity: 65536
+ * telemetry.battery.retentionInDays: 90
+ * </pre>
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Component
+public class BatteryTelemetryStore implements EnvironmentAware {
+
+    private static final String ENV_TELEMETRY = "telemetry.battery.";
+
+    static final int MAGIC = 0x424D5431; // "BMT1"
+    static final String FILE_PREFIX = "battery-";
+    static final String FILE_SUFFIX = ".tlm";
+    static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormat.forPattern("yyyyMMdd-HH").withZoneUTC();
+
+    private static final long RETENTION_CHECK_INTERVAL_IN_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired private PsiPedelecRepository pedelecRepository;
+
+    private RelaxedPropertyResolver propertyResolver;
+
+    private boolean enabled;
+    private Path directory;
+    private long partitionInMillis;
+    private long retentionInMillis;
+
+    private ArrayBlockingQueue<BatterySample> buffer;
+    private ScheduledExecutorService executor;
+    private long lastRetentionCheck;
+
+    private final ConcurrentHashMap<String, BatterySample> latest = new ConcurrentHashMap<>();
+    private final Set<String> unprojected = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.propertyResolver = new RelaxedPropertyResolver(environment, ENV_TELEMETRY);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        enabled = propertyResolver.getProperty("enabled", Boolean.class, true);
+        if (!enabled) {
+            log.info("Battery telemetry is disabled, the charging status is written without a history");
+            return;
+        }
+
+        directory = Paths.get(propertyResolver.getProperty("directory", "telemetry")).toAbsolutePath();
+        int partitionInHours = propertyResolver.getProperty("partitionInHours", Integer.class, 1);
+        partitionInMillis = TimeUnit.HOURS.toMillis(Math.max(1, partitionInHours));
+        retentionInMillis = TimeUnit.DAYS.toMillis(propertyResolver.getProperty("retentionInDays", Integer.class, 90));
+        int flushIntervalInSeconds = propertyResolver.getProperty("flushIntervalInSeconds", Integer.class, 10);
+
+        buffer = new ArrayBlockingQueue<>(propertyResolver.getProperty("bufferCapacity", Integer.class, 65536));
+        Files.createDirectories(directory);
+        repairPartitions();
+        restoreLatest();
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "battery-telemetry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalInSeconds, flushIntervalInSeconds, TimeUnit.SECONDS);
+
+        log.info("Storing battery telemetry in {} (partitions of {} hours, flushed every {} s, kept for {} days)",
+                directory, TimeUnit.MILLISECONDS.toHours(partitionInMillis), flushIntervalInSeconds,
+                TimeUnit.MILLISECONDS.toDays(retentionInMillis));
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Never blocks: if the buffer is full, the samples are dropped from the history and counted. They are still
+     * projected into the charging status.
+     */
+    public void ingest(List<ChargingStatusDTO> dtoList) {
+        List<BatterySample> samples = new ArrayList<>(dtoList.size());
+        for (ChargingStatusDTO dto : dtoList) {
+            if (dto.getPedelecManufacturerId() != null && dto.getTimestamp() != null) {
+                samples.add(BatterySample.from(dto));
+            }
+        }
+
+        if (samples.isEmpty()) {
+            return;
+        }
+
+        if (!enabled) {
+            pedelecRepository.updatePedelecChargingStatus(samples);
+            return;
+        }
+
+        afterCommit(() -> {
+            for (BatterySample sample : samples) {
+                // The pedelec is marked after the merge, so that the projection cannot miss the sample
+                latest.merge(sample.getPedelecManufacturerId(), sample, BatteryTelemetryStore::newer);
+                unprojected.add(sample.getPedelecManufacturerId());
+
+                if (!buffer.offer(sample)) {
+                    dropped.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    // -------------------------------------------------------------------------
+    // Queries
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return the latest sample of every pedelec, ordered by manufacturer id
+     */
+    public List<BatterySample> getSocSnapshot() {
+        List<BatterySample> snapshot = new ArrayList<>(latest.values());
+        snapshot.sort(Comparator.comparing(BatterySample::getPedelecManufacturerId));
+        return snapshot;
+    }
+
+    /**
+     * @return the latest sample of the pedelec, or null if there was none since the startup (or within the last
+     *         two partitions), or if the store is disabled
+     */
+    public BatterySample getLatest(String pedelecManufacturerId) {
+        return latest.get(pedelecManufacturerId);
+    }
+
+    /**
+     * @return the stored samples of the pedelec within [from, to], ordered by time. The samples of the last
+     *         flush interval are not stored yet.
+     */
+    public List<BatterySample> getBatteryCurve(String pedelecManufacturerId, DateTime from, DateTime to)
+            throws IOException {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+
+        long fromMillis = from.getMillis();
+        long toMillis = to.getMillis();
+
+        List<BatterySample> curve = new ArrayList<>();
+        for (Map.Entry<Long, Path> entry : listPartitions().entrySet()) {
+            long start = entry.getKey();
+            if (start + partitionInMillis <= fromMillis || start > toMillis) {
+                continue;
+            }
+
+            readPartition(entry.getValue(), fromMillis, toMillis, sample -> {
+                if (pedelecManufacturerId.equals(sample.getPedelecManufacturerId())) {
+                    curve.add(sample);
+                }
+            });
+        }
+
+        curve.sort(Comparator.comparingLong(BatterySample::getTimestamp));
+        return curve;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Write-behind
+    // -------------------------------------------------------------------------
+
+    /**
+     * Appends one block per partition with the buffered samples, and projects the latest samples into the charging
+     * status
+     */
+    synchronized void flush() {
+        List<BatterySample> samples = new ArrayList<>(buffer.size());
+        buffer.drainTo(samples);
+
+        if (!samples.isEmpty()) {
+            Map<Long, List<BatterySample>> partitions = new TreeMap<>();
+            for (BatterySample sample : samples) {
+                partitions.computeIfAbsent(partitionStart(sample.getTimestamp()), k -> new ArrayList<>()).add(sample);
+            }
+
+            for (Map.Entry<Long, List<BatterySample>> entry : partitions.entrySet()) {
+                try {
+                    byte[] block = TelemetryBlockCodec.encode(entry.getValue());
+                    append(partitionFile(entry.getKey()), block);
+                    written.addAndGet(entry.getValue().size());
+
+                    log.debug("Stored {} battery samples in {} bytes", entry.getValue().size(), block.length);
+                } catch (IOException | RuntimeException e) {
+                    log.error("Failed to store {} battery samples", entry.getValue().size(), e);
+                }
+            }
+        }
+
+        projectLatest();
+
+        long now = System.currentTimeMillis();
+        if (now - lastRetentionCheck > RETENTION_CHECK_INTERVAL_IN_MILLIS) {
+            lastRetentionCheck = now;
+            deleteExpired(now);
+        }
+    }
+
+    /**
+     * Writes the latest sample of every pedelec that got new samples since the last projection, in one transaction.
+     * If the write fails, the pedelecs are retried with the next flush.
+     */
+    private void projectLatest() {
+        List<BatterySample> samples = new ArrayList<>();
+        for (Iterator<String> it = unprojected.iterator(); it.hasNext(); ) {
+            String pedelecManufacturerId = it.next();
+            it.remove();
+            samples.add(latest.get(pedelecManufacturerId));
+        }
+
+        if (samples.isEmpty()) {
+            return;
+        }
+
+        try {
+            pedelecRepository.updatePedelecChargingStatus(samples);
+        } catch (RuntimeException e) {
+            log.error("Failed to write the charging status of {} pedelecs", samples.size(), e);
+            for (BatterySample sample : samples) {
+                unprojected.add(sample.getPedelecManufacturerId());
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * A notification is only known to be valid after the commit
+     */
+    private static void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runnable.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+    private interface SampleConsumer {
+        void accept(BatterySample sample);
+    }
+
+    private static BatterySample newer(BatterySample a, BatterySample b) {
+        return b.getTimestamp() >= a.getTimestamp() ? b : a;
+    }
+
+    private long partitionStart(long timestamp) {
+        return Math.floorDiv(timestamp, partitionInMillis) * partitionInMillis;
+    }
+
+    private Path partitionFile(long start) {
+        return directory.resolve(FILE_PREFIX + FILE_TIME_FORMAT.print(start) + FILE_SUFFIX);
+    }
+
+    /**
+     * @return the partition files by their start
+     */
+    private TreeMap<Long, Path> listPartitions() throws IOException {
+        TreeMap<Long, Path> partitions = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String time = name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length());
+                try {
+                    partitions.put(FILE_TIME_FORMAT.parseMillis(time), path);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Ignoring unexpected file {} in the telemetry directory", path);
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private static void append(Path path, byte[] block) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.APPEND)) {
+            long size = channel.size();
+            try {
+                if (size == 0) {
+                    channel.write((ByteBuffer) ByteBuffer.allocate(4).putInt(MAGIC).flip());
+                }
+
+                ByteBuffer bytes = ByteBuffer.wrap(block);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                // The next block must not be appended after a partial one. After a crash, see repairPartitions().
+                channel.truncate(size);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Cuts off an incomplete block at the end of every partition file. The blocks are only walked by their
+     * headers, and not decompressed.
+     */
+    private void repairPartitions() throws IOException {
+        for (Path path : listPartitions().values()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                long valid = validLength(channel, size);
+                if (valid < 0) {
+                    log.warn("Skipping telemetry partition {} without the expected header", path);
+                } else if (valid < size) {
+                    channel.truncate(valid);
+                    log.warn("Cut off an incomplete block of {} bytes at the end of the telemetry partition {}",
+                            size - valid, path);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the length of the file up to the end of the last complete block, or -1 if the file is not a partition
+     */
+    private static long validLength(FileChannel channel, long size) throws IOException {
+        if (size < 4) {
+            // The header itself was not written completely
+            return 0;
+        }
+
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        readFully(channel, magic, 0);
+        if (magic.getInt(0) != MAGIC) {
+            return -1;
+        }
+
+        long position = 4;
+        ByteBuffer header = ByteBuffer.allocate(TelemetryBlockCodec.HEADER_SIZE);
+        while (size - position >= TelemetryBlockCodec.HEADER_SIZE) {
+            header.clear();
+            readFully(channel, header, position);
+
+            int compressedLength = header.getInt(0);
+            long end = position + TelemetryBlockCodec.HEADER_SIZE + compressedLength;
+            if (compressedLength <= 0 || end > size) {
+                break;
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Skips the blocks outside of [from, to] without decompressing them, and stops at an incomplete block
+     */
+    private static void readPartition(Path path, long from, long to, SampleConsumer consumer) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (in.remaining() < 4 || in.getInt() != MAGIC) {
+            log.warn("Skipping telemetry partition {} without the expected header", path);
+            return;
+        }
+
+        while (in.remaining() >= TelemetryBlockCodec.HEADER_SIZE) {
+            int compressedLength = in.getInt();
+            int rawLength = in.getInt();
+            long min = in.getLong();
+            long max = in.getLong();
+
+            if (compressedLength <= 0 || compressedLength > in.remaining()) {
+                break;
+            }
+
+            if (max < from || min > to) {
+                in.position(in.position() + compressedLength);
+                continue;
+            }
+
+            byte[] compressed = new byte[compressedLength];
+            in.get(compressed);
+            try {
+                for (BatterySample sample : TelemetryBlockCodec.decode(compressed, rawLength)) {
+                    if (sample.getTimestamp() >= from && sample.getTimestamp() <= to) {
+                        consumer.accept(sample);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("Skipping a corrupt block in the telemetry partition {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * The latest samples of the last two partitions, so that the snapshot is not empty after a restart
+     */
+    private void restoreLatest() throws IOException {
+        TreeMap<Long, Path> partitions = listPartitions();
+        for (int i = 0; i < 2 && !partitions.isEmpty(); i++) {
+            Map.Entry<Long, Path> entry = partitions.pollLastEntry();
+            readPartition(entry.getValue(), Long.MIN_VALUE, Long.MAX_VALUE,
+                    sample -> latest.merge(sample.getPedelecManufacturerId(), sample, BatteryTelemetryStore::newer));
+        }
+        log.debug("Restored the latest battery samples of {} pedelecs", latest.size());
+    }
+
+    private void deleteExpired(long now) {
+        try {
+            for (Map.Entry<Long, Path> entry : listPartitions().entrySet()) {
+                if (entry.getKey() + partitionInMillis < now - retentionInMillis) {
+                    Files.deleteIfExists(entry.getValue());
+                    log.debug("Deleted telemetry partition {}", entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete expired telemetry partitions", e);
+        }
+    }
+}
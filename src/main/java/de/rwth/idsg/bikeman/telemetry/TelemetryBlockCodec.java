@@ -0,0 +1,315 @@
+package de.rwth.idsg.bikeman.telemetry;
+
+import de.rwth.idsg.bikeman.domain.ChargingState;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes a batch of samples into a compressed, columnar block. The samples are grouped by pedelec and sorted by
+ * time, so that consecutive values of a column are close to each other. Each column is stored as zig-zag encoded
+ * variable-length deltas, which mostly take one byte per value, and the block is deflated on top of that.
+ *
+ * The values are stored with a fixed precision: 0.01 % SOC, 1 mV, 1 mA, 0.01 °C and 0.001 meter units.
+ *
+ * Block layout:
+ *
+ * <pre>
+ * int    length of the compressed content
+ * int    length of the uncompressed content
+ * long   min. timestamp (epoch millis)
+ * long   max. timestamp (epoch millis)
+ * byte[] compressed content
+ * </pre>
+ *
+ * Uncompressed content (varint = unsigned LEB128):
+ *
+ * <pre>
+ * varint sample count
+ * varint pedelec count, then per pedelec: varint length, UTF-8 manufacturer id, varint sample count
+ * timestamps:  deltas
+ * state:       varint per sample, ordinal + 1 (0 = unknown)
+ * soc, voltage, current, temperature, cycle count, meter value:
+ *              presence bitmap, then the deltas of the present values
+ * </pre>
+ *
+ * @since 18.10.2016
+ */
+final class TelemetryBlockCodec {
+    private TelemetryBlockCodec() { }
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+
+    private static final double SOC_SCALE = 100;
+    private static final double VOLTAGE_SCALE = 1000;
+    private static final double CURRENT_SCALE = 1000;
+    private static final double TEMPERATURE_SCALE = 100;
+    private static final double METER_VALUE_SCALE = 1000;
+
+    private static final ChargingState[] STATES = ChargingState.values();
+
+    static final Comparator<BatterySample> ORDER =
+            Comparator.comparing(BatterySample::getPedelecManufacturerId)
+                      .thenComparingLong(BatterySample::getTimestamp);
+
+    // -------------------------------------------------------------------------
+    // Encode
+    // -------------------------------------------------------------------------
+
+    static byte[] encode(List<BatterySample> samples) {
+        List<BatterySample> sorted = new ArrayList<>(samples);
+        sorted.sort(ORDER);
+        int n = sorted.size();
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(64 + n * 16);
+        writeVarLong(raw, n);
+        writeDictionary(raw, sorted);
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long previous = 0;
+        for (BatterySample s : sorted) {
+            writeVarLong(raw, zigZag(s.getTimestamp() - previous));
+            previous = s.getTimestamp();
+            min = Math.min(min, previous);
+            max = Math.max(max, previous);
+        }
+
+        for (BatterySample s : sorted) {
+            writeVarLong(raw, s.getChargingState() == null ? 0 : s.getChargingState().ordinal() + 1);
+        }
+
+        Long[] column = new Long[n];
+        writeColumn(raw, fill(column, sorted, s -> fixed(s.getSoc(), SOC_SCALE)));
+        writeColumn(raw, fill(column, sorted, s -> fixed(s.getVoltage(), VOLTAGE_SCALE)));
+        writeColumn(raw, fill(column, sorted, s -> fixed(s.getCurrent(), CURRENT_SCALE)));
+        writeColumn(raw, fill(column, sorted, s -> fixed(s.getTemperature(), TEMPERATURE_SCALE)));
+        writeColumn(raw, fill(column, sorted, s -> s.getCycleCount() == null ? null : s.getCycleCount().longValue()));
+        writeColumn(raw, fill(column, sorted, s -> fixed(s.getMeterValue(), METER_VALUE_SCALE)));
+
+        byte[] content = raw.toByteArray();
+        byte[] compressed = deflate(content);
+
+        return ByteBuffer.allocate(HEADER_SIZE + compressed.length)
+                         .putInt(compressed.length)
+                         .putInt(content.length)
+                         .putLong(min)
+                         .putLong(max)
+                         .put(compressed)
+                         .array();
+    }
+
+    // -------------------------------------------------------------------------
+    // Decode
+    // -------------------------------------------------------------------------
+
+    static List<BatterySample> decode(byte[] compressed, int rawLength) {
+        ByteBuffer in = ByteBuffer.wrap(inflate(compressed, rawLength));
+        int n = (int) readVarLong(in);
+
+        String[] ids = readDictionary(in, n);
+
+        long[] timestamps = new long[n];
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            previous += unZigZag(readVarLong(in));
+            timestamps[i] = previous;
+        }
+
+        ChargingState[] states = new ChargingState[n];
+        for (int i = 0; i < n; i++) {
+            int code = (int) readVarLong(in);
+            states[i] = code == 0 ? null : STATES[code - 1];
+        }
+
+        Long[] soc = readColumn(in, n);
+        Long[] voltage = readColumn(in, n);
+        Long[] current = readColumn(in, n);
+        Long[] temperature = readColumn(in, n);
+        Long[] cycleCount = readColumn(in, n);
+        Long[] meterValue = readColumn(in, n);
+
+        List<BatterySample> samples = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            samples.add(new BatterySample(ids[i], timestamps[i], states[i],
+                    unfixed(soc[i], SOC_SCALE),
+                    unfixed(voltage[i], VOLTAGE_SCALE),
+                    unfixed(current[i], CURRENT_SCALE),
+                    unfixed(temperature[i], TEMPERATURE_SCALE),
+                    cycleCount[i] == null ? null : cycleCount[i].intValue(),
+                    unfixed(meterValue[i], METER_VALUE_SCALE)));
+        }
+        return samples;
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private interface Extractor {
+        Long get(BatterySample sample);
+    }
+
+    private static Long[] fill(Long[] column, List<BatterySample> samples, Extractor extractor) {
+        for (int i = 0; i < column.length; i++) {
+            column[i] = extractor.get(samples.get(i));
+        }
+        return column;
+    }
+
+    private static void writeDictionary(ByteArrayOutputStream out, List<BatterySample> sorted) {
+        List<String> ids = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (BatterySample s : sorted) {
+            int last = ids.size() - 1;
+            if (last >= 0 && ids.get(last).equals(s.getPedelecManufacturerId())) {
+                counts.set(last, counts.get(last) + 1);
+            } else {
+                ids.add(s.getPedelecManufacturerId());
+                counts.add(1);
+            }
+        }
+
+        writeVarLong(out, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            byte[] bytes = ids.get(i).getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+            writeVarLong(out, counts.get(i));
+        }
+    }
+
+    private static String[] readDictionary(ByteBuffer in, int sampleCount) {
+        String[] ids = new String[sampleCount];
+        int pedelecCount = (int) readVarLong(in);
+        int index = 0;
+        for (int p = 0; p < pedelecCount; p++) {
+            byte[] bytes = new byte[(int) readVarLong(in)];
+            in.get(bytes);
+            String id = new String(bytes, StandardCharsets.UTF_8);
+            int count = (int) readVarLong(in);
+            for (int i = 0; i < count; i++) {
+                ids[index++] = id;
+            }
+        }
+        return ids;
+    }
+
+    private static void writeColumn(ByteArrayOutputStream out, Long[] values) {
+        byte[] bitmap = new byte[(values.length + 7) / 8];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                bitmap[i / 8] |= 1 << (i % 8);
+            }
+        }
+        out.write(bitmap, 0, bitmap.length);
+
+        long previous = 0;
+        for (Long value : values) {
+            if (value != null) {
+                writeVarLong(out, zigZag(value - previous));
+                previous = value;
+            }
+        }
+    }
+
+    private static Long[] readColumn(ByteBuffer in, int n) {
+        byte[] bitmap = new byte[(n + 7) / 8];
+        in.get(bitmap);
+
+        Long[] values = new Long[n];
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            if ((bitmap[i / 8] & (1 << (i % 8))) != 0) {
+                previous += unZigZag(readVarLong(in));
+                values[i] = previous;
+            }
+        }
+        return values;
+    }
+
+    private static Long fixed(Double value, double scale) {
+        return value == null ? null : Math.round(value * scale);
+    }
+
+    private static Double unfixed(Long value, double scale) {
+        return value == null ? null : value / scale;
+    }
+
+    private static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unZigZag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static byte[] deflate(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] content = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int count = inflater.inflate(content, offset, rawLength - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != rawLength) {
+                throw new IllegalStateException("Corrupt telemetry block");
+            }
+            return content;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt telemetry block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -19,6 +21,10 @@ import java.util.function.Consumer;
  * The clients of this class are producers which put the items in the queue in their current thread
  * {@link #add(T item)}. A consumer runs in the background thread, watches the queue and processes the items.
  *
+ * The queue can be bounded. If it is full, a producer waits up to a timeout for free space. If the queue is still full
+ * after the timeout, the item is dropped (and counted) and handed to the dropped item handler, so that the client can
+ * compensate for it. The consumer itself never waits when it adds items, since nobody would free the space.
+ *
  * @author Sevket Goekay <goekay@dbis.rwth-aachen.de>
  * @since 12.08.2016
  */
@@ -29,9 +35,16 @@ public class QueueProcessor<T> implements Runnable {
     private final LinkedBlockingQueue<T> queue;
     private final Consumer<T> consumer;
     private final String queueName;
+    private final long offerTimeoutInMillis;
+    private final Consumer<T> droppedItemHandler;
+
+    private final AtomicLong processedCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
 
     private Consumer<T> queueAdder = this::addInternal;
     private Future task;
+    private volatile Thread consumerThread;
 
     // These locks are only relevant for interrupt case. During the consumer impl change,
     // since this is not that immediate, incoming items are still accepted and added to
@@ -49,14 +62,36 @@ public class QueueProcessor<T> implements Runnable {
      *                        any). This should better be something unique, but it's not a hard rule.
      */
     public QueueProcessor(ExecutorService executorService, Consumer<T> consumer, String queueName) {
+        this(executorService, consumer, queueName, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity The maximum number of items waiting in the queue. Items that are added to a full queue
+     *                 are dropped.
+     */
+    public QueueProcessor(ExecutorService executorService, Consumer<T> consumer, String queueName, int capacity) {
+        this(executorService, consumer, queueName, capacity, 0, item -> { });
+    }
+
+    /**
+     * @param offerTimeoutInMillis How long a producer waits for free space, if the queue is full.
+     * @param droppedItemHandler   Invoked in the thread of the producer with every item that is dropped.
+     */
+    public QueueProcessor(ExecutorService executorService, Consumer<T> consumer, String queueName, int capacity,
+                          long offerTimeoutInMillis, Consumer<T> droppedItemHandler) {
         Objects.requireNonNull(executorService, "executorService may not be null!");
         Objects.requireNonNull(consumer, "consumer may not be null!");
+        Objects.requireNonNull(droppedItemHandler, "droppedItemHandler may not be null!");
         Preconditions.checkArgument(!Strings.isNullOrEmpty(queueName), "queueName may not be null!");
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive!");
+        Preconditions.checkArgument(offerTimeoutInMillis >= 0, "offerTimeoutInMillis may not be negative!");
 
         this.executorService = executorService;
         this.consumer = consumer;
         this.queueName = "name=" + queueName;
-        this.queue = new LinkedBlockingQueue<>();
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.offerTimeoutInMillis = offerTimeoutInMillis;
+        this.droppedItemHandler = droppedItemHandler;
     }
 
     public void start() {
@@ -86,9 +121,24 @@ public class QueueProcessor<T> implements Runnable {
         log.debug("[{}] Adding {}", queueName, item);
 
         boolean success = queue.offer(item);
+        if (!success && offerTimeoutInMillis > 0 && Thread.currentThread() != consumerThread) {
+            // Only happens with a "capacity-restricted" LinkedBlockingQueue. Slow down the producer
+            success = offerWithTimeout(item);
+        }
+
         if (!success) {
-            // Should not happen because we do NOT use a "capacity-restricted" LinkedBlockingQueue.
-            log.warn("[{}] Failed to put the item {} in queue", queueName, item);
+            droppedCount.incrementAndGet();
+            log.error("[{}] Queue is full. Dropped the item {}", queueName, item);
+            droppedItemHandler.accept(item);
+        }
+    }
+
+    private boolean offerWithTimeout(final T item) {
+        try {
+            return queue.offer(item, offerTimeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
@@ -102,6 +152,7 @@ public class QueueProcessor<T> implements Runnable {
 
     @Override
     public void run() {
+        consumerThread = Thread.currentThread();
         while (true) {
             try {
                 consumeInternal();
@@ -116,7 +167,15 @@ public class QueueProcessor<T> implements Runnable {
         // If there are no items, blocks the thread and waits until there is an element to take
         T item = queue.take();
         // Delegate
-        consumer.accept(item);
+        try {
+            consumer.accept(item);
+        } catch (RuntimeException e) {
+            // Do not let the consumer thread die because of one faulty item
+            failedCount.incrementAndGet();
+            log.error("[{}] Failed to process the item {}", queueName, item, e);
+        } finally {
+            processedCount.incrementAndGet();
+        }
     }
 
     private void consumeRemaining() {
@@ -132,6 +191,26 @@ public class QueueProcessor<T> implements Runnable {
         log.info("[{}] Finished processing of all {} remaining item(s)", queueName, counter);
     }
 
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
     // -------------------------------------------------------------------------
     // Other helpers
     // -------------------------------------------------------------------------
@@ -0,0 +1,66 @@
+package de.rwth.idsg.bikeman.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import de.rwth.idsg.bikeman.telemetry.BatterySample;
+import de.rwth.idsg.bikeman.telemetry.BatteryTelemetryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * REST controller for the battery telemetry of the pedelecs.
+ *
+ * @since 18.10.2016
+ */
+@RestController
+@RequestMapping(value = "/api", produces = MediaType.APPLICATION_JSON_VALUE)
+@Slf4j
+public class BatteryTelemetryResource {
+
+    @Autowired
+    private BatteryTelemetryStore batteryTelemetryStore;
+
+    private static final String SNAPSHOT_PATH = "/pedelecs/battery";
+    private static final String CURVE_PATH = "/pedelecs/battery/{manufacturerId}";
+
+    private static final int DEFAULT_CURVE_HOURS = 24;
+
+    @Timed
+    @RequestMapping(value = SNAPSHOT_PATH, method = RequestMethod.GET)
+    public List<BatterySample> getSocSnapshot() {
+        log.debug("REST request to get the battery snapshot of the fleet");
+        return batteryTelemetryStore.getSocSnapshot();
+    }
+
+    /**
+     * The last 24 hours, if the interval is not given. The time stamps are ISO 8601.
+     */
+    @Timed
+    @RequestMapping(value = CURVE_PATH, method = RequestMethod.GET)
+    public List<BatterySample> getBatteryCurve(@PathVariable String manufacturerId,
+                                               @RequestParam(required = false)
+                                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) DateTime from,
+                                               @RequestParam(required = false)
+                                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) DateTime to)
+            throws IOException {
+        if (to == null) {
+            to = DateTime.now();
+        }
+        if (from == null) {
+            from = to.minusHours(DEFAULT_CURVE_HOURS);
+        }
+
+        log.debug("REST request to get the battery curve of pedelec {} from {} to {}", manufacturerId, from, to);
+        return batteryTelemetryStore.getBatteryCurve(manufacturerId, from, to);
+    }
+}
@@ -2,6 +2,7 @@ package de.rwth.idsg.bikeman.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
 import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationCache;
 import de.rwth.idsg.bikeman.repository.CardAccountRepository;
 import de.rwth.idsg.bikeman.service.CardAccountService;
 import de.rwth.idsg.bikeman.web.rest.dto.modify.CreateCardAccountBatchDTO;
@@ -31,6 +32,9 @@ public class CardAccountResource {
     @Inject
     private CardAccountService cardAccountService;
 
+    @Inject
+    private CardAuthorizationCache cardAuthorizationCache;
+
     private static final String ENABLE_CARDACCOUNT = "/cardaccounts/{cardId}/enable";
     private static final String DISABLE_CARDACCOUNT = "/cardaccounts/{cardId}/disable";
     private static final String BASE_CARDACCOUNTS = "/cardaccounts";
@@ -43,6 +47,7 @@ public class CardAccountResource {
         log.debug("REST request to enable CardAccount with cardID: {}", cardId);
         cardAccountRepository.setOperationStateForCardId(OperationState.OPERATIVE, cardId);
         cardAccountRepository.resetAuthenticationTrialCount(cardId);
+        cardAuthorizationCache.invalidate(cardId);
     }
 
     @Timed
@@ -50,6 +55,7 @@ public class CardAccountResource {
     public void disableCardAccount(@PathVariable String cardId) throws DatabaseException {
         log.debug("REST request to disable CardAccount with cardID: {}", cardId);
         cardAccountRepository.setOperationStateForCardId(OperationState.INOPERATIVE, cardId);
+        cardAuthorizationCache.invalidate(cardId);
     }
 
     @Timed
@@ -1,13 +1,44 @@
 package de.rwth.idsg.bikeman.web.rest;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
 import com.google.common.base.Optional;
+import de.rwth.idsg.bikeman.event.DomainEventBus;
+import de.rwth.idsg.bikeman.fleet.FleetState;
+import de.rwth.idsg.bikeman.ixsi.endpoint.OutboundQueueManager;
+import de.rwth.idsg.bikeman.ixsi.endpoint.OutboundQueueSession;
+import de.rwth.idsg.bikeman.ixsi.endpoint.PushFailureReason;
+import de.rwth.idsg.bikeman.ixsi.endpoint.PushTelemetry;
+import de.rwth.idsg.bikeman.ixsi.service.CoalescingPushScheduler;
+import de.rwth.idsg.bikeman.ixsi.service.FreeSlotCounter;
+import de.rwth.idsg.bikeman.ixsi.store.AbstractSubscriptionStore;
 import de.rwth.idsg.bikeman.ixsi.store.WebSocketSessionStore;
 import de.rwth.idsg.bikeman.ixsi.store.AvailabilityStore;
 import de.rwth.idsg.bikeman.ixsi.store.BookingAlertStore;
 import de.rwth.idsg.bikeman.ixsi.store.ConsumptionStore;
 import de.rwth.idsg.bikeman.ixsi.store.ExternalBookingStore;
 import de.rwth.idsg.bikeman.ixsi.store.PlaceAvailabilityStore;
+import de.rwth.idsg.bikeman.ixsi.store.SessionSelectionStats;
+import de.rwth.idsg.bikeman.ixsi.store.SubscriptionPage;
+import de.rwth.idsg.bikeman.psinterface.mailbox.StationMailbox;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationCache;
+import de.rwth.idsg.bikeman.psinterface.mailbox.StationMailboxExecutor;
+import de.rwth.idsg.bikeman.psinterface.writebehind.StatusWriteBehind;
+import de.rwth.idsg.bikeman.service.OperationStateSnapshot;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.CardAuthorizationCacheDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.DomainEventBusDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.monitor.EndpointDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.FleetStateDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.FreeSlotCounterDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.OperationStateSnapshotDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.OutboundQueueDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.PushCoalescingDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.PushDeliveryDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.PushSizeDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.SessionSelectionDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.StationMailboxDTO;
+import de.rwth.idsg.bikeman.web.rest.dto.monitor.StatusWriteBehindDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.monitor.StoreDTO;
 import de.rwth.idsg.bikeman.web.rest.dto.monitor.StoreItem;
 import lombok.extern.slf4j.Slf4j;
@@ -16,6 +47,7 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.WebSocketSession;
@@ -24,10 +56,11 @@ import xjc.schema.ixsi.UserInfoType;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -44,6 +77,16 @@ public class MonitorResource {
     @Autowired private ExternalBookingStore externalBookingStore;
     @Autowired private PlaceAvailabilityStore placeAvailabilityStore;
     @Autowired private BookingAlertStore bookingAlertStore;
+    @Autowired private StationMailboxExecutor stationMailboxExecutor;
+    @Autowired private DomainEventBus domainEventBus;
+    @Autowired private CoalescingPushScheduler coalescingPushScheduler;
+    @Autowired private OutboundQueueManager outboundQueueManager;
+    @Autowired private OperationStateSnapshot operationStateSnapshot;
+    @Autowired private FreeSlotCounter freeSlotCounter;
+    @Autowired private PushTelemetry pushTelemetry;
+    @Autowired private StatusWriteBehind statusWriteBehind;
+    @Autowired private CardAuthorizationCache cardAuthorizationCache;
+    @Autowired private FleetState fleetState;
 
     private static final String BASE_PATH                   = "monitor/";
     private static final String IXSI_SESSION_STATUS         = "monitor/session-status";
@@ -54,6 +97,21 @@ public class MonitorResource {
     private static final String IXSI_STORE_CONSUMPTION      = "monitor/store/consumption";
     private static final String IXSI_STORE_EX_BOOK          = "monitor/store/external-book";
     private static final String IXSI_STORE_BOOKING_ALERT    = "monitor/store/booking-alert";
+    private static final String PSI_STATION_MAILBOXES       = "monitor/psi/mailboxes";
+    private static final String DOMAIN_EVENTS               = "monitor/events";
+    private static final String IXSI_PUSH_COALESCING        = "monitor/push-coalescing";
+    private static final String IXSI_OUTBOUND_QUEUES        = "monitor/outbound-queues";
+    private static final String PSI_OPERATION_STATE         = "monitor/operation-state";
+    private static final String PSI_WRITE_BEHIND            = "monitor/psi/write-behind";
+    private static final String PSI_AUTHORIZATION_CACHE     = "monitor/psi/authorization-cache";
+    private static final String IXSI_FREE_SLOT_COUNTERS     = "monitor/free-slot-counters";
+    private static final String FLEET_STATE                 = "monitor/fleet-state";
+    private static final String IXSI_SESSION_SELECTION      = "monitor/session-selection";
+    private static final String IXSI_PUSH_DELIVERIES        = "monitor/push-deliveries";
+    private static final String IXSI_PUSH_SIZES             = "monitor/push-sizes";
+
+    private static final String DEFAULT_PAGE_SIZE = "100";
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private static final String AVAILABILITY_STORE = "Availability Store";
     private static final String PLACE_AVAILABILITY_STORE = "Place Availability Store";
@@ -71,8 +129,8 @@ public class MonitorResource {
         log.debug("REST request for {} data", IXSI_SESSION_STATUS);
         List<EndpointDTO> endPoints = new ArrayList<>();
 
-        Map<String, Deque<WebSocketSession>> sessionMap = webSocketSessionStore.getLookupTable();
-        for (Map.Entry<String, Deque<WebSocketSession>> entry : sessionMap.entrySet()) {
+        Map<String, List<WebSocketSession>> sessionMap = webSocketSessionStore.getLookupTable();
+        for (Map.Entry<String, List<WebSocketSession>> entry : sessionMap.entrySet()) {
             for (WebSocketSession sess : entry.getValue()) {
                 EndpointDTO endPoint = new EndpointDTO();
                 endPoint.setSystemId(entry.getKey());
@@ -118,63 +176,51 @@ public class MonitorResource {
     }
 
     @RequestMapping(value = IXSI_STORE_AVAIL, method = RequestMethod.GET)
-    public StoreDTO<BookingTargetIDType> getAvailabilityStore() {
+    public StoreDTO<BookingTargetIDType> getAvailabilityStore(@RequestParam(required = false) String systemId,
+                                                              @RequestParam(required = false) String item,
+                                                              @RequestParam(defaultValue = "0") int page,
+                                                              @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
         log.debug("REST request for {} data", IXSI_STORE_AVAIL);
-        StoreDTO<BookingTargetIDType> avail = new StoreDTO<>();
-        avail.setName(AVAILABILITY_STORE);
-        avail.setItemDescription(BookingTargetIDType.class.getSimpleName());
-        avail.setItems(itemMapToList(availabilityStore.getLookupTable()));
-        avail.setSize(avail.getItems().size());
-
-        return avail;
+        return toStoreDTO(AVAILABILITY_STORE, BookingTargetIDType.class.getSimpleName(), availabilityStore,
+                systemId, item, page, size);
     }
 
     @RequestMapping(value = IXSI_STORE_PLACE_AVAIL, method = RequestMethod.GET)
-    public StoreDTO<String> getPlaceAvailabilityStore() {
+    public StoreDTO<String> getPlaceAvailabilityStore(@RequestParam(required = false) String systemId,
+                                                      @RequestParam(required = false) String item,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
         log.debug("REST request for {} data", IXSI_STORE_PLACE_AVAIL);
-        StoreDTO<String> pAvail = new StoreDTO<>();
-        pAvail.setName(PLACE_AVAILABILITY_STORE);
-        pAvail.setItemDescription(PLACE_AVAILABILITY_DESCR);
-        pAvail.setItems(itemMapToList(placeAvailabilityStore.getLookupTable()));
-        pAvail.setSize(pAvail.getItems().size());
-
-        return pAvail;
+        return toStoreDTO(PLACE_AVAILABILITY_STORE, PLACE_AVAILABILITY_DESCR, placeAvailabilityStore,
+                systemId, item, page, size);
     }
 
     @RequestMapping(value = IXSI_STORE_CONSUMPTION, method = RequestMethod.GET)
-    public StoreDTO<String> getConsumptionStore() {
+    public StoreDTO<String> getConsumptionStore(@RequestParam(required = false) String systemId,
+                                                @RequestParam(required = false) String item,
+                                                @RequestParam(defaultValue = "0") int page,
+                                                @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
         log.debug("REST request for {} data", IXSI_STORE_CONSUMPTION);
-        StoreDTO<String> cons = new StoreDTO<>();
-        cons.setName(CONSUMPTION_STORE);
-        cons.setItemDescription(CONSUMPTION_DESCR);
-        cons.setItems(itemMapToList(consumptionStore.getLookupTable()));
-        cons.setSize(cons.getItems().size());
-
-        return cons;
+        return toStoreDTO(CONSUMPTION_STORE, CONSUMPTION_DESCR, consumptionStore, systemId, item, page, size);
     }
 
     @RequestMapping(value = IXSI_STORE_EX_BOOK, method = RequestMethod.GET)
-    public StoreDTO<UserInfoType> getExternalBookingStore() {
+    public StoreDTO<UserInfoType> getExternalBookingStore(@RequestParam(required = false) String systemId,
+                                                          @RequestParam(required = false) String item,
+                                                          @RequestParam(defaultValue = "0") int page,
+                                                          @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
         log.debug("REST request for {} data", IXSI_STORE_EX_BOOK);
-        StoreDTO<UserInfoType> exBook = new StoreDTO<>();
-        exBook.setName(EXTERNAL_BOOKING_STORE);
-        exBook.setItemDescription(UserInfoType.class.getSimpleName());
-        exBook.setItems(itemMapToList(externalBookingStore.getLookupTable()));
-        exBook.setSize(exBook.getItems().size());
-
-        return exBook;
+        return toStoreDTO(EXTERNAL_BOOKING_STORE, UserInfoType.class.getSimpleName(), externalBookingStore,
+                systemId, item, page, size);
     }
 
     @RequestMapping(value = IXSI_STORE_BOOKING_ALERT, method = RequestMethod.GET)
-    public StoreDTO<String> getBookingAlertStore() {
+    public StoreDTO<String> getBookingAlertStore(@RequestParam(required = false) String systemId,
+                                                 @RequestParam(required = false) String item,
+                                                 @RequestParam(defaultValue = "0") int page,
+                                                 @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
         log.debug("REST request for {} data", IXSI_STORE_BOOKING_ALERT);
-        StoreDTO<String> alertStore = new StoreDTO<>();
-        alertStore.setName(BOOKING_ALERT_STORE);
-        alertStore.setItemDescription(BOOKING_ALERT_DESCR);
-        alertStore.setItems(itemMapToList(bookingAlertStore.getLookupTable()));
-        alertStore.setSize(alertStore.getItems().size());
-
-        return alertStore;
+        return toStoreDTO(BOOKING_ALERT_STORE, BOOKING_ALERT_DESCR, bookingAlertStore, systemId, item, page, size);
     }
 
     @RequestMapping(value = IXSI_SESSION_KILL, method = RequestMethod.PUT)
@@ -193,15 +239,253 @@ public class MonitorResource {
         }
     }
 
-    private <T> List<StoreItem<T>> itemMapToList(Map<T, Set<String>> map) {
-        List<StoreItem<T>> items = new ArrayList<>();
-        for (Map.Entry<T, Set<String>> entry : map.entrySet()) {
-            items.addAll(entry.getValue()
-                .stream()
-                .map(system -> new StoreItem<>(system, entry.getKey()))
-                .collect(Collectors.toList()));
+    /**
+     * Sorted by mailbox depth, so that the hot stations are on top
+     */
+    @RequestMapping(value = PSI_STATION_MAILBOXES, method = RequestMethod.GET)
+    public List<StationMailboxDTO> getStationMailboxes() {
+        log.debug("REST request for {} data", PSI_STATION_MAILBOXES);
+        return stationMailboxExecutor.getMailboxes()
+                                     .stream()
+                                     .map(this::toDTO)
+                                     .sorted(Comparator.comparingInt(StationMailboxDTO::getDepth).reversed())
+                                     .collect(Collectors.toList());
+    }
+
+    @RequestMapping(value = DOMAIN_EVENTS, method = RequestMethod.GET)
+    public DomainEventBusDTO getDomainEvents() {
+        log.debug("REST request for {} data", DOMAIN_EVENTS);
+
+        DomainEventBusDTO dto = new DomainEventBusDTO();
+        dto.setQueueSize(domainEventBus.getQueueSize());
+        dto.setProcessedCount(domainEventBus.getProcessedCount());
+        dto.setFailedCount(domainEventBus.getFailedCount());
+        dto.setDroppedCount(domainEventBus.getDroppedCount());
+        dto.setAverageLatencyInMillis(domainEventBus.getAverageLatencyInMillis());
+        dto.setMaxLatencyInMillis(domainEventBus.getMaxLatencyInMillis());
+        return dto;
+    }
+
+    @RequestMapping(value = IXSI_PUSH_COALESCING, method = RequestMethod.GET)
+    public PushCoalescingDTO getPushCoalescing() {
+        log.debug("REST request for {} data", IXSI_PUSH_COALESCING);
+
+        PushCoalescingDTO dto = new PushCoalescingDTO();
+        dto.setWindowInMillis(coalescingPushScheduler.getWindowInMillis());
+        dto.setChangeCount(coalescingPushScheduler.getChangeCount());
+        dto.setSentMessageCount(coalescingPushScheduler.getSentMessageCount());
+        dto.setSavedMessageCount(coalescingPushScheduler.getSavedMessageCount());
+        return dto;
+    }
+
+    @RequestMapping(value = PSI_OPERATION_STATE, method = RequestMethod.GET)
+    public OperationStateSnapshotDTO getOperationState() {
+        log.debug("REST request for {} data", PSI_OPERATION_STATE);
+
+        OperationStateSnapshotDTO dto = new OperationStateSnapshotDTO();
+        dto.setStationCount(operationStateSnapshot.getStationCount());
+        dto.setPedelecCount(operationStateSnapshot.getPedelecCount());
+        dto.setEmittedCount(operationStateSnapshot.getEmittedCount());
+        dto.setSuppressedCount(operationStateSnapshot.getSuppressedCount());
+        return dto;
+    }
+
+    @RequestMapping(value = PSI_WRITE_BEHIND, method = RequestMethod.GET)
+    public StatusWriteBehindDTO getStatusWriteBehind() {
+        log.debug("REST request for {} data", PSI_WRITE_BEHIND);
+
+        StatusWriteBehindDTO dto = new StatusWriteBehindDTO();
+        dto.setEnabled(statusWriteBehind.isEnabled());
+        dto.setFlushIntervalInSeconds(statusWriteBehind.getFlushIntervalInSeconds());
+        dto.setReceivedCount(statusWriteBehind.getReceivedCount());
+        dto.setWrittenCount(statusWriteBehind.getWrittenCount());
+        dto.setImmediateCount(statusWriteBehind.getImmediateCount());
+        dto.setAvoidedLastMinute(statusWriteBehind.getAvoidedLastMinute());
+        return dto;
+    }
+
+    @RequestMapping(value = PSI_AUTHORIZATION_CACHE, method = RequestMethod.GET)
+    public CardAuthorizationCacheDTO getCardAuthorizationCache() {
+        log.debug("REST request for {} data", PSI_AUTHORIZATION_CACHE);
+
+        CardAuthorizationCacheDTO dto = new CardAuthorizationCacheDTO();
+        dto.setEnabled(cardAuthorizationCache.isEnabled());
+        dto.setSize(cardAuthorizationCache.getSize());
+        dto.setUnknownSize(cardAuthorizationCache.getUnknownSize());
+        dto.setHitCount(cardAuthorizationCache.getHitCount());
+        dto.setUnknownHitCount(cardAuthorizationCache.getUnknownHitCount());
+        dto.setMissCount(cardAuthorizationCache.getMissCount());
+        return dto;
+    }
+
+    @RequestMapping(value = IXSI_FREE_SLOT_COUNTERS, method = RequestMethod.GET)
+    public FreeSlotCounterDTO getFreeSlotCounters() {
+        log.debug("REST request for {} data", IXSI_FREE_SLOT_COUNTERS);
+
+        FreeSlotCounterDTO dto = new FreeSlotCounterDTO();
+        dto.setStationCount(freeSlotCounter.getStationCount());
+        dto.setMissCount(freeSlotCounter.getMissCount());
+        dto.setCorrectionCount(freeSlotCounter.getCorrectionCount());
+        return dto;
+    }
+
+    @RequestMapping(value = FLEET_STATE, method = RequestMethod.GET)
+    public FleetStateDTO getFleetState() {
+        log.debug("REST request for {} data", FLEET_STATE);
+
+        FleetStateDTO dto = new FleetStateDTO();
+        dto.setStationCount(fleetState.getStationCount());
+        dto.setPedelecCount(fleetState.getPedelecCount());
+        dto.setReservationCount(fleetState.getReservationCount());
+        dto.setCorrectionCount(fleetState.getCorrectionCount());
+        return dto;
+    }
+
+    @RequestMapping(value = IXSI_OUTBOUND_QUEUES, method = RequestMethod.GET)
+    public List<OutboundQueueDTO> getOutboundQueues() {
+        log.debug("REST request for {} data", IXSI_OUTBOUND_QUEUES);
+        return outboundQueueManager.getSessions()
+                                   .stream()
+                                   .map(this::toDTO)
+                                   .sorted(Comparator.comparingInt(OutboundQueueDTO::getDepth).reversed())
+                                   .collect(Collectors.toList());
+    }
+
+    @RequestMapping(value = IXSI_SESSION_SELECTION, method = RequestMethod.GET)
+    public List<SessionSelectionDTO> getSessionSelection() {
+        log.debug("REST request for {} data", IXSI_SESSION_SELECTION);
+        return webSocketSessionStore.getSelectionStats()
+                                    .stream()
+                                    .map(this::toDTO)
+                                    .collect(Collectors.toList());
+    }
+
+    /**
+     * Sorted by failures, so that the systems with problems are on top
+     *
+     * @param systemId null for all systems
+     */
+    @RequestMapping(value = IXSI_PUSH_DELIVERIES, method = RequestMethod.GET)
+    public List<PushDeliveryDTO> getPushDeliveries(@RequestParam(required = false) String systemId) {
+        log.debug("REST request for {} data", IXSI_PUSH_DELIVERIES);
+        return pushTelemetry.getMetrics(systemId)
+                            .stream()
+                            .map(this::toDTO)
+                            .sorted(Comparator.comparingLong(PushDeliveryDTO::getFailedCount).reversed())
+                            .collect(Collectors.toList());
+    }
+
+    @RequestMapping(value = IXSI_PUSH_SIZES, method = RequestMethod.GET)
+    public List<PushSizeDTO> getPushSizes() {
+        log.debug("REST request for {} data", IXSI_PUSH_SIZES);
+        return pushTelemetry.getSizeHistograms()
+                            .entrySet()
+                            .stream()
+                            .map(entry -> toDTO(entry.getKey(), entry.getValue()))
+                            .collect(Collectors.toList());
+    }
+
+    private <T> StoreDTO<T> toStoreDTO(String name, String itemDescription, AbstractSubscriptionStore<T> store,
+                                       String systemId, String item, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+
+        SubscriptionPage<T> subscriptions = store.getPage(systemId, item, pageNumber * pageSize, pageSize);
+
+        StoreDTO<T> dto = new StoreDTO<>();
+        dto.setName(name);
+        dto.setItemDescription(itemDescription);
+        dto.setItems(subscriptions.getEntries()
+                                  .stream()
+                                  .map(entry -> new StoreItem<>(entry.getSystemId(), entry.getItem()))
+                                  .collect(Collectors.toList()));
+        dto.setSize(subscriptions.getTotalCount());
+        dto.setPage(pageNumber);
+        dto.setPageSize(pageSize);
+        dto.setPendingExpirations(store.getPendingExpirationCount());
+        return dto;
+    }
+
+    private PushDeliveryDTO toDTO(PushTelemetry.PushMetrics metrics) {
+        Map<String, Long> failureReasons = new TreeMap<>();
+        for (Map.Entry<PushFailureReason, Meter> entry : metrics.getFailures().entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                failureReasons.put(entry.getKey().name(), entry.getValue().getCount());
+            }
         }
-        return items;
+
+        Snapshot latency = metrics.getLatency().getSnapshot();
+
+        PushDeliveryDTO dto = new PushDeliveryDTO();
+        dto.setSystemId(metrics.getSystemId());
+        dto.setPushType(metrics.getPushType());
+        dto.setSentCount(metrics.getSent().getCount());
+        dto.setRoutedCount(metrics.getRouted().getCount());
+        dto.setFailedCount(metrics.getFailed().getCount());
+        dto.setFailureReasons(failureReasons);
+        dto.setSentPerSecondLastMinute(metrics.getSent().getOneMinuteRate());
+        dto.setMeanLatencyInMillis(toMillis(latency.getMean()));
+        dto.setMedianLatencyInMillis(toMillis(latency.getMedian()));
+        dto.setP99LatencyInMillis(toMillis(latency.get99thPercentile()));
+        dto.setMaxLatencyInMillis(toMillis(latency.getMax()));
+        return dto;
+    }
+
+    private PushSizeDTO toDTO(String pushType, Histogram histogram) {
+        Snapshot snapshot = histogram.getSnapshot();
+
+        PushSizeDTO dto = new PushSizeDTO();
+        dto.setPushType(pushType);
+        dto.setCount(histogram.getCount());
+        dto.setMeanInBytes(snapshot.getMean());
+        dto.setP99InBytes(snapshot.get99thPercentile());
+        dto.setMaxInBytes(snapshot.getMax());
+        return dto;
+    }
+
+    /**
+     * The timers record nanoseconds
+     */
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private OutboundQueueDTO toDTO(OutboundQueueSession session) {
+        OutboundQueueDTO dto = new OutboundQueueDTO();
+        dto.setSystemId(session.getSystemId());
+        dto.setSessionId(session.getId());
+        dto.setPolicy(session.getPolicy());
+        dto.setCapacity(session.getCapacity());
+        dto.setDepth(session.getDepth());
+        dto.setSentCount(session.getSentCount());
+        dto.setFailedCount(session.getFailedCount());
+        dto.setDroppedCount(session.getDroppedCount());
+        dto.setCoalescedCount(session.getCoalescedCount());
+        dto.setAverageLatencyInMillis(session.getAverageLatencyInMillis());
+        dto.setMaxLatencyInMillis(session.getMaxLatencyInMillis());
+        return dto;
+    }
+
+    private SessionSelectionDTO toDTO(SessionSelectionStats stats) {
+        SessionSelectionDTO dto = new SessionSelectionDTO();
+        dto.setSystemId(stats.getSystemId());
+        dto.setSessionCount(stats.getSessionCount());
+        dto.setSelectedCount(stats.getSelectedCount());
+        dto.setRebalancedCount(stats.getRebalancedCount());
+        dto.setMissCount(stats.getMissCount());
+        dto.setRetryCount(stats.getRetryCount());
+        return dto;
+    }
+
+    private StationMailboxDTO toDTO(StationMailbox mailbox) {
+        StationMailboxDTO dto = new StationMailboxDTO();
+        dto.setStationId(mailbox.getStationId());
+        dto.setDepth(mailbox.getDepth());
+        dto.setProcessedCount(mailbox.getProcessedCount());
+        dto.setAverageWaitInMillis(mailbox.getAverageWaitInMillis());
+        dto.setMaxWaitInMillis(mailbox.getMaxWaitInMillis());
+        dto.setAverageServiceInMillis(mailbox.getAverageServiceInMillis());
+        return dto;
     }
 
 
@@ -0,0 +1,18 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class CardAuthorizationCacheDTO {
+    private boolean enabled;
+    private int size;
+    private int unknownSize;
+    private long hitCount;
+    private long unknownHitCount;
+    private long missCount;
+}
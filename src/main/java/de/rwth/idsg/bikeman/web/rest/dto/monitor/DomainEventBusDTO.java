@@ -0,0 +1,18 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class DomainEventBusDTO {
+    private int queueSize;
+    private long processedCount;
+    private long failedCount;
+    private long droppedCount;
+    private double averageLatencyInMillis;
+    private long maxLatencyInMillis;
+}
@@ -0,0 +1,16 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class FleetStateDTO {
+    private int stationCount;
+    private int pedelecCount;
+    private int reservationCount;
+    private long correctionCount;
+}
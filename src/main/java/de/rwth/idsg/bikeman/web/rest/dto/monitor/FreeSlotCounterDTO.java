@@ -0,0 +1,15 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class FreeSlotCounterDTO {
+    private int stationCount;
+    private long missCount;
+    private long correctionCount;
+}
@@ -0,0 +1,24 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import de.rwth.idsg.bikeman.ixsi.endpoint.OverflowPolicy;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class OutboundQueueDTO {
+    private String systemId;
+    private String sessionId;
+    private OverflowPolicy policy;
+    private int capacity;
+    private int depth;
+    private long sentCount;
+    private long failedCount;
+    private long droppedCount;
+    private long coalescedCount;
+    private double averageLatencyInMillis;
+    private long maxLatencyInMillis;
+}
@@ -0,0 +1,25 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class PushDeliveryDTO {
+    private String systemId;
+    private String pushType;
+    private long sentCount;
+    private long routedCount;
+    private long failedCount;
+    private Map<String, Long> failureReasons;
+    private double sentPerSecondLastMinute;
+    private double meanLatencyInMillis;
+    private double medianLatencyInMillis;
+    private double p99LatencyInMillis;
+    private double maxLatencyInMillis;
+}
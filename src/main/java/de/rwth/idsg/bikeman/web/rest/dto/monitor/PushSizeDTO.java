@@ -0,0 +1,17 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class PushSizeDTO {
+    private String pushType;
+    private long count;
+    private double meanInBytes;
+    private double p99InBytes;
+    private long maxInBytes;
+}
@@ -0,0 +1,18 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class SessionSelectionDTO {
+    private String systemId;
+    private int sessionCount;
+    private long selectedCount;
+    private long rebalancedCount;
+    private long missCount;
+    private long retryCount;
+}
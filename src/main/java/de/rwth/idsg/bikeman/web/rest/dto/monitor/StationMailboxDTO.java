@@ -0,0 +1,18 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class StationMailboxDTO {
+    private String stationId;
+    private int depth;
+    private long processedCount;
+    private double averageWaitInMillis;
+    private long maxWaitInMillis;
+    private double averageServiceInMillis;
+}
@@ -0,0 +1,18 @@
+package de.rwth.idsg.bikeman.web.rest.dto.monitor;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @since 18.10.2016
+ */
+@Getter
+@Setter
+public class StatusWriteBehindDTO {
+    private boolean enabled;
+    private int flushIntervalInSeconds;
+    private long receivedCount;
+    private long writtenCount;
+    private long immediateCount;
+    private long avoidedLastMinute;
+}
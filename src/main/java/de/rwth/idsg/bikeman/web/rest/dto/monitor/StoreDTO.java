@@ -16,5 +16,8 @@ public class StoreDTO<T> {
     private String itemDescription;
     private String linkName;
     private int size;
+    private int page;
+    private int pageSize;
+    private long pendingExpirations;
     private List<StoreItem<T>> items;
 }
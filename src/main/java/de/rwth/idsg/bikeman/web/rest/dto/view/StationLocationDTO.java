@@ -0,0 +1,36 @@
+package de.rwth.idsg.bikeman.web.rest.dto.view;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+/**
+ * Entry of the station spatial index. Stations without coordinates cannot be indexed,
+ * therefore the coordinates are primitives.
+ *
+ * @since 18.10.2016
+ */
+@ToString
+@EqualsAndHashCode
+@Getter
+public class StationLocationDTO {
+    private final Long stationId;
+    private final String manufacturerId;
+    private final double latitude;
+    private final double longitude;
+
+    public StationLocationDTO(Long stationId, String manufacturerId, double latitude, double longitude) {
+        this.stationId = stationId;
+        this.manufacturerId = manufacturerId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    // For the JPQL constructor expression
+    public StationLocationDTO(Long stationId, String manufacturerId,
+                              BigDecimal locationLatitude, BigDecimal locationLongitude) {
+        this(stationId, manufacturerId, locationLatitude.doubleValue(), locationLongitude.doubleValue());
+    }
+}
@@ -18,13 +18,27 @@ bikeManApp.controller('MonitorController', ['$scope', 'Monitor', 'resolvedSessio
 
     }]);
 
-bikeManApp.controller('MonitorDetailController', ['$scope', 'Monitor', 'resolvedStore',
-    function ($scope, Monitor, resolvedStore) {
+bikeManApp.controller('MonitorDetailController', ['$scope', '$stateParams', 'Monitor', 'resolvedStore',
+    function ($scope, $stateParams, Monitor, resolvedStore) {
 
         $scope.targetStore = resolvedStore;
+        $scope.filter = {systemId: null, item: null};
+
+        $scope.load = function (page) {
+            $scope.targetStore = Monitor.storeDetail({
+                storeName: $stateParams.storeName,
+                systemId: $scope.filter.systemId || null,
+                item: $scope.filter.item || null,
+                page: page
+            });
+        };
 
         $scope.refresh = function () {
-            $scope.store = Monitor.storeDetail({id: $scope.store.linkName})
-        }
+            $scope.load(0);
+        };
+
+        $scope.pageCount = function () {
+            return Math.max(1, Math.ceil($scope.targetStore.size / $scope.targetStore.pageSize));
+        };
 
     }]);
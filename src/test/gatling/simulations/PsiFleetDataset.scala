@@ -0,0 +1,139 @@
+import java.io.{InputStream, OutputStreamWriter}
+import java.net.{HttpURLConnection, URL, URLEncoder}
+import java.nio.charset.StandardCharsets
+
+import scala.collection.JavaConverters._
+import scala.util.Random
+
+case class FleetSlot(slotId: String, position: Int, pedelecId: Option[String])
+
+case class FleetStation(stationId: String, latitude: Double, longitude: Double, slots: Seq[FleetSlot]) {
+
+  def pedelecIds: Seq[String] = slots.flatMap(_.pedelecId)
+
+  def slotOf(pedelecId: String): Option[FleetSlot] = slots.find(_.pedelecId.contains(pedelecId))
+}
+
+case class FleetCustomer(index: Int, cardId: String, cardPin: String)
+
+/**
+ * Generated dataset of the station fleet: stations with slots, one pedelec in every slot but the last one of a
+ * station, and customers with cards. The ids are deterministic, so that repeated runs against the same database
+ * reuse the data.
+ *
+ * @since 18.10.2016
+ */
+class PsiFleetDataset(stationCount: Int, slotsPerStation: Int, customerCount: Int) {
+
+  val stations: IndexedSeq[FleetStation] = (0 until stationCount).map { i =>
+    val stationId = f"gatling-station-$i%04d"
+    val slots = (1 to slotsPerStation).map { position =>
+      val pedelecId =
+        if (position < slotsPerStation) Some(f"gatling-pedelec-${i * slotsPerStation + position}%06d")
+        else None
+      FleetSlot(f"$stationId-slot-$position%02d", position, pedelecId)
+    }
+    FleetStation(stationId, 50.75 + (i / 20) * 0.004, 6.05 + (i % 20) * 0.004, slots)
+  }
+
+  val customers: IndexedSeq[FleetCustomer] = (0 until customerCount).map { i =>
+    FleetCustomer(i, f"gatling-card-$i%06d", "1234")
+  }
+
+  private val stationsById: Map[String, FleetStation] = stations.map(s => s.stationId -> s).toMap
+
+  def station(stationId: String): FleetStation = stationsById(stationId)
+
+  def randomStation(): FleetStation = stations(Random.nextInt(stations.size))
+
+  def stationFeeder: Array[Map[String, Any]] = stations.map(s => Map[String, Any]("stationId" -> s.stationId)).toArray
+
+  def customerFeeder: Array[Map[String, Any]] =
+    customers.map(c => Map[String, Any]("cardId" -> c.cardId, "cardPin" -> c.cardPin)).toArray
+
+  /**
+   * Creates the stations, pedelecs and customers via the management REST API as an administrator. Entities that
+   * exist already are rejected by the API, which is fine for repeated runs.
+   */
+  def provision(baseUrl: String, login: String, password: String): Unit = {
+    val cookie = authenticate(baseUrl, login, password)
+
+    val pedelecs = stations.flatMap(_.pedelecIds).map { id =>
+      post(baseUrl, "/api/pedelecs", cookie, s"""{"manufacturerId":"$id","state":"OPERATIVE"}""")
+    }
+
+    val createdStations = stations.map { s =>
+      post(baseUrl, "/api/stations", cookie,
+        s"""{"manufacturerId":"${s.stationId}","name":"${s.stationId}",""" +
+        s""""locationLatitude":${s.latitude},"locationLongitude":${s.longitude},"state":"OPERATIVE",""" +
+        s""""address":{"streetAndHousenumber":"Ahornstr. 55","zip":"52074","city":"Aachen","country":"DE"}}""")
+    }
+
+    val createdCustomers = customers.map { c =>
+      post(baseUrl, "/api/customers", cookie,
+        s"""{"login":"gatling-${c.index}@bikeman.de","customerId":"GATLING-${c.index}",""" +
+        s""""cardId":"${c.cardId}","cardPin":"${c.cardPin}","cardOperationState":"OPERATIVE",""" +
+        s""""tariff":"Ticket2000","firstname":"Gatling","lastname":"Customer ${c.index}","isActivated":true,""" +
+        s""""address":{"streetAndHousenumber":"Ahornstr. 55","zip":"52074","city":"Aachen","country":"DE"}}""")
+    }
+
+    println(s"Provisioned ${pedelecs.count(ok)} of ${pedelecs.size} pedelecs, " +
+      s"${createdStations.count(ok)} of ${createdStations.size} stations and " +
+      s"${createdCustomers.count(ok)} of ${createdCustomers.size} customers (the others existed already or failed)")
+  }
+
+  // ---------------------------------------------------------------------------
+  // Plain HTTP, since this runs before the simulation
+  // ---------------------------------------------------------------------------
+
+  private def ok(status: Int): Boolean = status >= 200 && status < 300
+
+  private def authenticate(baseUrl: String, login: String, password: String): String = {
+    val form = "j_username=" + URLEncoder.encode(login, "UTF-8") +
+      "&j_password=" + URLEncoder.encode(password, "UTF-8") +
+      "&remember-me=false&submit=Login"
+
+    val connection = open(baseUrl + "/api/authentication", "application/x-www-form-urlencoded", None)
+    write(connection, form)
+
+    val status = connection.getResponseCode
+    if (!ok(status)) {
+      throw new IllegalStateException(s"Login as '$login' failed with status $status")
+    }
+
+    val cookies = Option(connection.getHeaderFields.get("Set-Cookie")).map(_.asScala).getOrElse(Nil)
+    drain(connection)
+    cookies.map(_.split(";")(0)).mkString("; ")
+  }
+
+  private def post(baseUrl: String, path: String, cookie: String, json: String): Int = {
+    val connection = open(baseUrl + path, "application/json", Some(cookie))
+    write(connection, json)
+    val status = connection.getResponseCode
+    drain(connection)
+    status
+  }
+
+  private def open(url: String, contentType: String, cookie: Option[String]): HttpURLConnection = {
+    val connection = new URL(url).openConnection().asInstanceOf[HttpURLConnection]
+    connection.setRequestMethod("POST")
+    connection.setDoOutput(true)
+    connection.setRequestProperty("Content-Type", contentType)
+    connection.setRequestProperty("Accept", "application/json")
+    cookie.foreach(connection.setRequestProperty("Cookie", _))
+    connection
+  }
+
+  private def write(connection: HttpURLConnection, body: String): Unit = {
+    val writer = new OutputStreamWriter(connection.getOutputStream, StandardCharsets.UTF_8)
+    try writer.write(body) finally writer.close()
+  }
+
+  private def drain(connection: HttpURLConnection): Unit = {
+    val in: InputStream = Option(connection.getErrorStream).getOrElse(
+      try connection.getInputStream catch { case _: java.io.IOException => null })
+    if (in != null) {
+      try { while (in.read() != -1) {} } finally in.close()
+    }
+  }
+}
@@ -0,0 +1,262 @@
+import java.io.File
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.gatling.core.Predef._
+import io.gatling.core.structure.{ChainBuilder, PopulationBuilder}
+import io.gatling.http.Predef._
+
+import scala.concurrent.duration._
+import scala.util.Random
+
+/**
+ * A station fleet against the PSI REST interface (PsiResource).
+ *
+ * Every station of the generated dataset is one virtual user: it boots (all stations within "bootRampInSeconds",
+ * i.e. the boot storm after a restart of the backend), then sends a heartbeat every "heartbeatIntervalInSeconds"
+ * together with a station, pedelec or charging status notification. The rentals are virtual users as well: a
+ * customer walks up to a random station, asks for the available pedelecs, authorizes with card and pin, takes a
+ * pedelec, rides for a while and returns it into the same slot. Their arrival rate follows the rental profile:
+ *
+ *   flat       constant "rentalsPerSecond"
+ *   rushHour   ramp up to "peakRentalsPerSecond", hold, ramp down, back to "rentalsPerSecond"
+ *   doublePeak a morning and an evening peak with a quiet period in between
+ *
+ * The stations, pedelecs and customers are created via the management API as an administrator before the run
+ * (set -Dprovision=false if they exist already). Run against a started application with e.g.
+ *
+ *   mvn gatling:execute -Dgatling.simulationClass=PsiStationFleetSimulation -Dstations=200 -Dprofile=rushHour
+ *
+ * @since 18.10.2016
+ */
+class PsiStationFleetSimulation extends Simulation {
+
+  // ---------------------------------------------------------------------------
+  // Configuration
+  // ---------------------------------------------------------------------------
+
+  private def prop(name: String, default: String): String = System.getProperty(name, default)
+
+  private def intProp(name: String, default: Int): Int = prop(name, default.toString).toInt
+
+  private def doubleProp(name: String, default: Double): Double = prop(name, default.toString).toDouble
+
+  val baseUrl = prop("baseUrl", "http://localhost:8080")
+  val stationUrl = prop("stationUrl", "http://localhost:9999/station")
+
+  val stationCount = intProp("stations", 100)
+  val slotsPerStation = intProp("slotsPerStation", 10)
+  val customerCount = intProp("customers", 1000)
+
+  val bootRamp = intProp("bootRampInSeconds", 30).seconds
+  val heartbeatInterval = intProp("heartbeatIntervalInSeconds", 10).seconds
+  val rentalDuration = intProp("durationInSeconds", 600).seconds
+  val minRide = intProp("minRideInSeconds", 10).seconds
+  val maxRide = intProp("maxRideInSeconds", 60).seconds
+
+  val profile = prop("profile", "rushHour")
+  val rentalsPerSecond = doubleProp("rentalsPerSecond", 1)
+  val peakRentalsPerSecond = doubleProp("peakRentalsPerSecond", 10)
+
+  // Regression gate. The default limit is the 95th percentile of a reference run (the js/global_stats.json of its
+  // report, copied to "baseline") plus "baselineTolerancePercent". Without a reference run it is 500 ms
+  val baseline = new File(prop("baseline", "src/test/gatling/baseline/global_stats.json"))
+  val baselineTolerancePercent = doubleProp("baselineTolerancePercent", 20)
+
+  val baselineP95InMillis: Option[Int] =
+    if (baseline.isFile) Some(new ObjectMapper().readTree(baseline).path("percentiles1").path("ok").asInt)
+    else None
+
+  val maxP95InMillis = intProp("maxP95InMillis", baselineP95InMillis
+    .map(p95 => math.ceil(p95 * (1 + baselineTolerancePercent / 100)).toInt)
+    .getOrElse(500))
+  val minSuccessPercent = doubleProp("minSuccessPercent", 99)
+
+  val dataset = new PsiFleetDataset(stationCount, slotsPerStation, customerCount)
+
+  before {
+    baselineP95InMillis match {
+      case Some(p95) => println(s"95th percentile of the reference run is $p95 ms, the limit is $maxP95InMillis ms")
+      case None => println(s"No reference run in $baseline, the limit is $maxP95InMillis ms")
+    }
+
+    if (prop("provision", "true").toBoolean) {
+      dataset.provision(baseUrl, prop("adminLogin", "admin@bikeman.com"), prop("adminPassword", "admin"))
+    }
+  }
+
+  val httpConf = http
+    .baseURL(baseUrl)
+    .acceptHeader("application/json")
+    .contentTypeHeader("application/json")
+
+  // ---------------------------------------------------------------------------
+  // Request bodies. The PSI timestamps are Unix timestamps in seconds.
+  // ---------------------------------------------------------------------------
+
+  private def now: Long = System.currentTimeMillis() / 1000
+
+  private def station(session: Session): FleetStation = dataset.station(session("stationId").as[String])
+
+  private def randomPedelec(s: FleetStation): String = s.pedelecIds(Random.nextInt(s.pedelecIds.size))
+
+  private def bootBody(s: FleetStation): String = {
+    val slots = s.slots.map { slot =>
+      val pedelec = slot.pedelecId.map(id => s""""$id"""").getOrElse("null")
+      s"""{"slotManufacturerId":"${slot.slotId}","slotPosition":${slot.position},"pedelecManufacturerId":$pedelec}"""
+    }
+    s"""{"stationManufacturerId":"${s.stationId}","firmwareVersion":"gatling-1.0",""" +
+    s""""stationURL":"$stationUrl/${s.stationId}","slots":[${slots.mkString(",")}]}"""
+  }
+
+  private def stationStatusBody(s: FleetStation): String = {
+    val slots = s.slots.map { slot =>
+      s"""{"slotManufacturerId":"${slot.slotId}","slotErrorCode":"","slotErrorInfo":"","slotState":"OPERATIVE"}"""
+    }
+    s"""{"stationManufacturerId":"${s.stationId}","stationErrorCode":"","stationErrorInfo":"",""" +
+    s""""stationState":"OPERATIVE","timestamp":$now,"slots":[${slots.mkString(",")}]}"""
+  }
+
+  private def pedelecStatusBody(s: FleetStation): String =
+    s"""{"pedelecManufacturerId":"${randomPedelec(s)}","pedelecErrorCode":"","pedelecErrorInfo":"",""" +
+    s""""pedelecState":"OPERATIVE","timestamp":$now}"""
+
+  private def chargingStatusBody(s: FleetStation): String = {
+    val statuses = s.pedelecIds.map { id =>
+      val soc = BigDecimal(0.2 + Random.nextDouble() * 0.8).setScale(2, BigDecimal.RoundingMode.HALF_UP)
+      val state = if (soc > 0.95) "COMPLETED" else "CHARGING"
+      s"""{"pedelecManufacturerId":"$id","timestamp":$now,"chargingState":"$state","meterValue":${Random.nextInt(5000)},""" +
+      s""""battery":{"soc":$soc,"temperature":24.5,"cycleCount":${Random.nextInt(500)},"voltage":36.2,"current":1.8}}"""
+    }
+    statuses.mkString("[", ",", "]")
+  }
+
+  private def transactionBody(session: Session): String = {
+    val base = s""""pedelecManufacturerId":"${session("pedelecId").as[String]}",""" +
+      s""""stationManufacturerId":"${session("stationId").as[String]}",""" +
+      s""""slotManufacturerId":"${session("slotId").as[String]}","timestamp":$now"""
+    if (session.contains("rented")) s"{$base}"
+    else s"""{"cardId":"${session("cardId").as[String]}",$base}"""
+  }
+
+  // ---------------------------------------------------------------------------
+  // Station fleet
+  // ---------------------------------------------------------------------------
+
+  private def psi(name: String, path: String, body: Session => String): ChainBuilder =
+    exec(http(name)
+      .post("/psi" + path)
+      .header("STATION-ID", "${stationId}")
+      .body(StringBody(session => body(session)))
+      .check(status.is(200)))
+
+  val boot = exec(http("boot")
+    .post("/psi/boot")
+    .header("STATION-ID", "${stationId}")
+    .body(StringBody(session => bootBody(station(session))))
+    .check(status.is(200), jsonPath("$.heartbeatInterval").exists))
+
+  val heartbeat = exec(http("heartbeat")
+    .get("/psi/heartbeat")
+    .header("STATION-ID", "${stationId}")
+    .check(status.is(200)))
+
+  val notification = randomSwitch(
+    40.0 -> psi("station status", "/status/station", session => stationStatusBody(station(session))),
+    20.0 -> psi("pedelec status", "/status/pedelec", session => pedelecStatusBody(station(session))),
+    40.0 -> psi("charging status", "/status/charging", session => chargingStatusBody(station(session)))
+  )
+
+  val stationScenario = scenario("Station")
+    .feed(dataset.stationFeeder.queue)
+    .exec(boot)
+    .exitHereIfFailed
+    .during(bootRamp + rentalDuration + maxRide) {
+      pace(heartbeatInterval)
+        .exec(heartbeat)
+        .exec(notification)
+    }
+
+  // ---------------------------------------------------------------------------
+  // Rentals
+  // ---------------------------------------------------------------------------
+
+  val pickPedelec = exec { session =>
+    val offered = session("pedelecs").as[Seq[String]]
+    val s = station(session)
+    val candidates = offered.flatMap(id => s.slotOf(id).map(slot => id -> slot.slotId))
+    if (candidates.isEmpty) {
+      session.markAsFailed
+    } else {
+      val (pedelecId, slotId) = candidates(Random.nextInt(candidates.size))
+      session.set("pedelecId", pedelecId).set("slotId", slotId)
+    }
+  }
+
+  val rentalScenario = scenario("Rental")
+    .feed(dataset.customerFeeder.circular)
+    .exec(session => session.set("stationId", dataset.randomStation().stationId))
+    .exec(http("available pedelecs")
+      .get("/psi/available-pedelecs")
+      .queryParam("cardId", "${cardId}")
+      .header("STATION-ID", "${stationId}")
+      .check(status.is(200), jsonPath("$[*]").findAll.optional.saveAs("pedelecs")))
+    .doIf(session => session.contains("pedelecs")) {
+      exec(pickPedelec)
+        .exitHereIfFailed
+        .exec(http("authorize")
+          .post("/psi/authorize")
+          .header("STATION-ID", "${stationId}")
+          .body(StringBody("""{"cardId":"${cardId}","cardPin":"${cardPin}"}"""))
+          .check(status.is(200), jsonPath("$.canRentCount").ofType[Int].not(0)))
+        .exitHereIfFailed
+        .exec(psi("start transaction", "/transaction/start", transactionBody))
+        .exitHereIfFailed
+        .exec(session => session.set("rented", true))
+        .pause(minRide, maxRide)
+        // Back into the same slot, so that the slots of the dataset stay valid
+        .exec(psi("stop transaction", "/transaction/stop", transactionBody))
+    }
+
+  private def rentalInjection: PopulationBuilder = {
+    val quarter = rentalDuration / 4
+    val base = rentalsPerSecond
+    val peak = peakRentalsPerSecond
+
+    val steps = profile match {
+      case "flat" => Seq(
+        constantUsersPerSec(base) during rentalDuration)
+
+      case "rushHour" => Seq(
+        rampUsersPerSec(base) to peak during quarter,
+        constantUsersPerSec(peak) during quarter,
+        rampUsersPerSec(peak) to base during quarter,
+        constantUsersPerSec(base) during quarter)
+
+      case "doublePeak" =>
+        val eighth = rentalDuration / 8
+        Seq(
+          rampUsersPerSec(base) to peak during eighth,
+          constantUsersPerSec(peak) during eighth,
+          rampUsersPerSec(peak) to base during eighth,
+          constantUsersPerSec(base) during quarter,
+          rampUsersPerSec(base) to peak during eighth,
+          constantUsersPerSec(peak) during eighth,
+          rampUsersPerSec(peak) to base during eighth)
+
+      case other =>
+        throw new IllegalArgumentException(s"Unknown rental profile '$other' (flat, rushHour, doublePeak)")
+    }
+
+    rentalScenario.inject(nothingFor(bootRamp) +: steps: _*)
+  }
+
+  setUp(
+    stationScenario.inject(rampUsers(stationCount) over bootRamp),
+    rentalInjection
+  ).protocols(httpConf)
+    .assertions(
+      global.responseTime.percentile1.lessThan(maxP95InMillis),
+      global.successfulRequests.percent.greaterThan(minSuccessPercent),
+      details("boot").failedRequests.count.is(0)
+    )
+}
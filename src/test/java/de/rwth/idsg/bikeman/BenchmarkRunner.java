@@ -0,0 +1,39 @@
+package de.rwth.idsg.bikeman;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the JMH benchmarks of the test sources and writes the results as JSON, so that they can be compared
+ * across commits (e.g. with a JMH result visualizer). Used by the "benchmark" Maven profile:
+ *
+ * mvn -Pdev,benchmark test
+ * mvn -Pdev,benchmark test -Djmh.include=PsiJsonBenchmark -Djmh.result=target/jmh/psi-json.json
+ *
+ * The default result file is named after the abbreviated commit id: target/jmh/{commit}.json
+ *
+ * @since 18.10.2016
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() { }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("jmh.include", ".*Benchmark.*");
+        String result = System.getProperty("jmh.result", "target/jmh/result.json");
+
+        File parent = new File(result).getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IllegalStateException("Could not create the result directory " + parent);
+        }
+
+        new Runner(new OptionsBuilder().include(include)
+                                       .resultFormat(ResultFormatType.JSON)
+                                       .result(result)
+                                       .build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the FleetSnapshot.
+ *
+ * @see FleetSnapshot
+ */
+public class FleetSnapshotTest {
+
+    private static final String STATION = "station-1";
+    private static final String OTHER_STATION = "station-2";
+
+    private FleetSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        List<FleetSlot> slots = Arrays.asList(
+                slot(1, STATION, "slot-1", OperationState.OPERATIVE, "pedelec-1"),
+                slot(2, STATION, "slot-2", OperationState.OPERATIVE, "pedelec-2"),
+                slot(3, STATION, "slot-3", OperationState.OPERATIVE, "pedelec-3"),
+                slot(4, STATION, "slot-4", OperationState.INOPERATIVE, "pedelec-4"),
+                slot(5, STATION, "slot-5", OperationState.OPERATIVE, null),
+                slot(6, OTHER_STATION, "slot-6", OperationState.OPERATIVE, "pedelec-6"));
+
+        List<FleetPedelec> pedelecs = Arrays.asList(
+                new FleetPedelec(1, "pedelec-1", OperationState.OPERATIVE, 0.4),
+                new FleetPedelec(2, "pedelec-2", OperationState.OPERATIVE, null),
+                new FleetPedelec(3, "pedelec-3", OperationState.OPERATIVE, 0.9),
+                new FleetPedelec(4, "pedelec-4", OperationState.OPERATIVE, 1.0),
+                new FleetPedelec(6, "pedelec-6", OperationState.OPERATIVE, 0.5));
+
+        snapshot = new FleetSnapshot(slots, pedelecs, Collections.<FleetReservation>emptyList());
+    }
+
+    @Test
+    public void testAvailableOrderedBySoc() {
+        assertThat(snapshot.findAvailablePedelecs(STATION, 5))
+                .extracting("pedelecManufacturerId")
+                .containsExactly("pedelec-3", "pedelec-1", "pedelec-2");
+
+        assertThat(snapshot.findAvailablePedelecs(STATION, 1))
+                .extracting("pedelecManufacturerId")
+                .containsExactly("pedelec-3");
+
+        assertThat(snapshot.findAvailablePedelecs(1L, 5)).hasSize(3);
+        assertThat(snapshot.findAvailablePedelecs("unknown", 5)).isEmpty();
+    }
+
+    @Test
+    public void testReservedAndInoperativeNotAvailable() {
+        FleetSnapshot changed = snapshot.withReservation(activeReservation("booking-1", "card-1", "pedelec-3"))
+                                        .withPedelecState("pedelec-1", false);
+
+        assertThat(changed.findAvailablePedelecs(STATION, 5))
+                .extracting("pedelecManufacturerId")
+                .containsExactly("pedelec-2");
+
+        // The snapshot itself is not changed
+        assertThat(snapshot.findAvailablePedelecs(STATION, 5)).hasSize(3);
+    }
+
+    @Test
+    public void testReservedForCard() {
+        FleetSnapshot changed = snapshot.withReservation(activeReservation("booking-1", "card-1", "pedelec-1"));
+
+        assertThat(changed.findReservedPedelecs(STATION, "card-1", 1))
+                .extracting("pedelecManufacturerId")
+                .containsExactly("pedelec-1");
+
+        assertThat(changed.findReservedPedelecs(STATION, "card-2", 1)).isEmpty();
+        assertThat(changed.findReservedPedelecs(OTHER_STATION, "card-1", 1)).isEmpty();
+        assertThat(changed.withoutReservation("booking-1").findReservedPedelecs(STATION, "card-1", 1)).isEmpty();
+    }
+
+    @Test
+    public void testPedelecMovedToOtherStation() {
+        FleetSnapshot changed = snapshot.withPedelecInSlot(STATION, "slot-3", null)
+                                        .withPedelecInSlot(STATION, "slot-5", "pedelec-6");
+
+        assertThat(changed.findAvailablePedelecs(STATION, 5))
+                .extracting("pedelecManufacturerId")
+                .containsExactly("pedelec-6", "pedelec-1", "pedelec-2");
+
+        assertThat(changed.findAvailablePedelecs(OTHER_STATION, 5)).isEmpty();
+        assertThat(changed.countDifferences(snapshot)).isGreaterThan(0);
+    }
+
+    private static FleetSlot slot(long id, String stationMf, String slotMf, OperationState state, String pedelecMf) {
+        long stationId = STATION.equals(stationMf) ? 1 : 2;
+        return new FleetSlot(stationId, stationMf, id, slotMf, (int) id, state, pedelecMf);
+    }
+
+    private static FleetReservation activeReservation(String bookingId, String cardId, String pedelecMf) {
+        DateTime now = DateTime.now();
+        return new FleetReservation(bookingId, cardId, pedelecMf, now.minusMinutes(5), now.plusMinutes(10));
+    }
+}
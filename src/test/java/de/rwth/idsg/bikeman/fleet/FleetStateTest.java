@@ -0,0 +1,127 @@
+package de.rwth.idsg.bikeman.fleet;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.event.BookingCancelledEvent;
+import de.rwth.idsg.bikeman.event.BookingPlacedEvent;
+import de.rwth.idsg.bikeman.event.StationBootedEvent;
+import de.rwth.idsg.bikeman.event.TransactionStartedEvent;
+import de.rwth.idsg.bikeman.psinterface.writebehind.StatusWriteBehind;
+import de.rwth.idsg.bikeman.telemetry.BatteryTelemetryStore;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the FleetState.
+ *
+ * @see FleetState
+ */
+public class FleetStateTest {
+
+    private static final String STATION = "station-1";
+    private static final String CARD = "card-1";
+
+    private FleetState fleetState;
+    private FleetRepository fleetRepository;
+    private ScheduledExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        fleetRepository = mock(FleetRepository.class);
+        when(fleetRepository.findSlots()).thenReturn(Arrays.asList(
+                new FleetSlot(1, STATION, 1, "slot-1", 1, OperationState.OPERATIVE, "pedelec-1"),
+                new FleetSlot(1, STATION, 2, "slot-2", 2, OperationState.OPERATIVE, "pedelec-2")));
+        when(fleetRepository.findPedelecs()).thenReturn(Arrays.asList(
+                new FleetPedelec(1, "pedelec-1", OperationState.OPERATIVE, 0.9),
+                new FleetPedelec(2, "pedelec-2", OperationState.OPERATIVE, 0.5)));
+        when(fleetRepository.findReservations()).thenReturn(Collections.<FleetReservation>emptyList());
+
+        executorService = mock(ScheduledExecutorService.class);
+
+        fleetState = new FleetState();
+        ReflectionTestUtils.setField(fleetState, "fleetRepository", fleetRepository);
+        ReflectionTestUtils.setField(fleetState, "executorService", executorService);
+        ReflectionTestUtils.setField(fleetState, "statusWriteBehind", mock(StatusWriteBehind.class));
+        ReflectionTestUtils.setField(fleetState, "batteryTelemetryStore", mock(BatteryTelemetryStore.class));
+        fleetState.getSnapshot();
+    }
+
+    @Test
+    public void testReservationIsAppliedRightAway() {
+        fleetState.applyAfterCommit(placed("booking-1", "pedelec-1"));
+
+        FleetSnapshot snapshot = fleetState.getSnapshot();
+        assertThat(snapshot.findAvailablePedelecs(STATION, 5))
+                .extracting("pedelecManufacturerId")
+                .containsExactly("pedelec-2");
+        assertThat(snapshot.findReservedPedelecs(STATION, CARD, 1))
+                .extracting("pedelecManufacturerId")
+                .containsExactly("pedelec-1");
+    }
+
+    @Test
+    public void testReservationEventsOfTheBusAreIgnored() {
+        BookingPlacedEvent placed = placed("booking-1", "pedelec-1");
+        fleetState.applyAfterCommit(placed);
+        fleetState.applyAfterCommit(cancelled("booking-1", "pedelec-1"));
+
+        // Delivered late by the bus, after the cancellation
+        placed.dispatchTo(fleetState);
+
+        assertThat(fleetState.getReservationCount()).isZero();
+        assertThat(fleetState.getSnapshot().findAvailablePedelecs(STATION, 5)).hasSize(2);
+    }
+
+    @Test
+    public void testStationIsReloadedOnTheExecutor() {
+        when(fleetRepository.findSlots(STATION)).thenAnswer(invocation -> {
+            // A rental that is committed while the station is read
+            fleetState.applyAfterCommit(new TransactionStartedEvent(STATION, "slot-1", "pedelec-1", DateTime.now()));
+            return Arrays.asList(
+                    new FleetSlot(1, STATION, 1, "slot-1", 1, OperationState.OPERATIVE, "pedelec-1"),
+                    new FleetSlot(1, STATION, 2, "slot-2", 2, OperationState.OPERATIVE, "pedelec-2"));
+        });
+        when(fleetRepository.findPedelecs(STATION)).thenReturn(Arrays.asList(
+                new FleetPedelec(1, "pedelec-1", OperationState.OPERATIVE, 0.9),
+                new FleetPedelec(2, "pedelec-2", OperationState.OPERATIVE, 0.5)));
+
+        new StationBootedEvent(STATION).dispatchTo(fleetState);
+        verify(fleetRepository, never()).findSlots(STATION);
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executorService).execute(captor.capture());
+        captor.getValue().run();
+
+        // The reload does not revert the rental
+        verify(fleetRepository).findSlots(STATION);
+        assertThat(fleetState.getSnapshot().findAvailablePedelecs(STATION, 5))
+                .extracting("pedelecManufacturerId")
+                .containsExactly("pedelec-2");
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static BookingPlacedEvent placed(String bookingId, String pedelecMf) {
+        DateTime now = DateTime.now();
+        return new BookingPlacedEvent(bookingId, pedelecMf, CARD, STATION, now.minusMinutes(5), now.plusMinutes(10));
+    }
+
+    private static BookingCancelledEvent cancelled(String bookingId, String pedelecMf) {
+        DateTime now = DateTime.now();
+        return new BookingCancelledEvent(bookingId, pedelecMf, STATION, now.minusMinutes(5), now.plusMinutes(10));
+    }
+}
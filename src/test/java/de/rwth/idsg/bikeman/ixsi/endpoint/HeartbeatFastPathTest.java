@@ -0,0 +1,101 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import xjc.schema.ixsi.HeartBeatRequestType;
+import xjc.schema.ixsi.IxsiMessageType;
+import xjc.schema.ixsi.SubscriptionRequestType;
+import xjc.schema.ixsi.SubscriptionResponseType;
+import xjc.schema.ixsi.TransactionType;
+
+import javax.xml.bind.JAXBContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the heartbeat fast path.
+ *
+ * @see HeartbeatFastPath
+ */
+public class HeartbeatFastPathTest {
+
+    private ParserImpl parser;
+    private HeartbeatFastPath fastPath;
+
+    @Before
+    public void setUp() throws Exception {
+        parser = new ParserImpl();
+        ReflectionTestUtils.setField(parser, "jaxbContext", JAXBContext.newInstance(IxsiMessageType.class));
+        parser.init();
+
+        fastPath = create(true);
+    }
+
+    @Test
+    public void testHeartbeatIsAnsweredWithEchoedTransaction() {
+        DateTime timeStamp = new DateTime(2016, 10, 18, 12, 0);
+        String response = fastPath.answer(heartbeat("msg-42", timeStamp));
+
+        assertThat(response).isNotNull();
+
+        // The response has to pass the schema validation
+        SubscriptionResponseType subscriptionResponse = parser.unmarshal(response, true).getSubscriptionResponse();
+        assertThat(subscriptionResponse.isSetHeartBeat()).isTrue();
+        assertThat(subscriptionResponse.getTransaction().getMessageID()).isEqualTo("msg-42");
+        assertThat(subscriptionResponse.getTransaction().getTimeStamp().getMillis()).isEqualTo(timeStamp.getMillis());
+    }
+
+    @Test
+    public void testMessageIdIsEscaped() {
+        String response = fastPath.answer(heartbeat("a<&>b", DateTime.now()));
+
+        assertThat(response).isNotNull();
+        assertThat(parser.unmarshal(response, true).getSubscriptionResponse().getTransaction().getMessageID())
+                .isEqualTo("a<&>b");
+    }
+
+    @Test
+    public void testInvalidTimeStampGoesThroughFullPipeline() {
+        String payload = heartbeat("msg-1", new DateTime(2016, 10, 18, 12, 0))
+                .replaceFirst("(TimeStamp>)[^<]*<", "$1yesterday<");
+
+        assertThat(payload).contains("yesterday");
+        assertThat(fastPath.answer(payload)).isNull();
+    }
+
+    @Test
+    public void testOtherMessagesGoThroughFullPipeline() {
+        String heartbeat = heartbeat("msg-1", DateTime.now());
+
+        assertThat(fastPath.answer("HeartBeat, but no XML")).isNull();
+        assertThat(fastPath.answer(heartbeat.replace("HeartBeat/>", "HeartBeat>text</HeartBeat>"))).isNull();
+        assertThat(fastPath.answer(heartbeat.replace("SubscriptionRequest", "SubscriptionResponse"))).isNull();
+    }
+
+    @Test
+    public void testDisabled() {
+        HeartbeatFastPath disabled = create(false);
+
+        assertThat(disabled.answer(heartbeat("msg-1", DateTime.now()))).isNull();
+    }
+
+    private HeartbeatFastPath create(boolean enabled) {
+        HeartbeatFastPath hfp = new HeartbeatFastPath();
+        ReflectionTestUtils.setField(hfp, "parser", parser);
+        hfp.setEnvironment(new MockEnvironment().withProperty("ixsi.heartbeat.fastPath", String.valueOf(enabled)));
+        hfp.init();
+        return hfp;
+    }
+
+    private String heartbeat(String messageId, DateTime timeStamp) {
+        SubscriptionRequestType request = new SubscriptionRequestType()
+                .withTransaction(new TransactionType().withTimeStamp(timeStamp).withMessageID(messageId))
+                .withSystemID("system-1")
+                .withHeartBeat(new HeartBeatRequestType());
+
+        return parser.marshal(new IxsiMessageType().withSubscriptionRequest(request), true);
+    }
+}
@@ -0,0 +1,100 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the OutboundQueueSession.
+ *
+ * @see OutboundQueueSession
+ */
+public class OutboundQueueSessionTest {
+
+    private static final String SYSTEM = "system-1";
+
+    private ExecutorService executor;
+    private WebSocketSession delegate;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        delegate = mock(WebSocketSession.class);
+        when(delegate.getId()).thenReturn("s1");
+        when(delegate.isOpen()).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStalledSendClosesSession() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+
+        // The write blocks until the session is closed, like a write to a client that does not read
+        doAnswer(invocation -> {
+            sending.countDown();
+            closed.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(delegate).sendMessage(any(WebSocketMessage.class));
+
+        doAnswer(invocation -> {
+            closed.countDown();
+            return null;
+        }).when(delegate).close(any(CloseStatus.class));
+
+        OutboundQueueSession session =
+                new OutboundQueueSession(delegate, SYSTEM, 10, OverflowPolicy.DISCONNECT, 0, 50, executor);
+
+        session.sendMessage(new TextMessage("first"));
+        session.sendMessage(new TextMessage("second"));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(session.checkSendTimeout()).isFalse();
+        Thread.sleep(100);
+        assertThat(session.checkSendTimeout()).isTrue();
+
+        verify(delegate, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(session.getDroppedCount()).isEqualTo(1);
+        assertThat(session.getDepth()).isZero();
+    }
+
+    @Test
+    public void testDisconnectWhenFull() throws Exception {
+        // The writer never runs, so the messages stay in the queue
+        OutboundQueueSession session =
+                new OutboundQueueSession(delegate, SYSTEM, 1, OverflowPolicy.DISCONNECT, 0, 0, task -> { });
+
+        session.sendMessage(new TextMessage("first"));
+        try {
+            session.sendMessage(new TextMessage("second"));
+            throw new AssertionError("Expected a SessionLimitExceededException");
+        } catch (SessionLimitExceededException e) {
+            assertThat(e.getStatus()).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+
+        verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(session.getDroppedCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,218 @@
+package de.rwth.idsg.bikeman.ixsi.endpoint;
+
+import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import xjc.schema.ixsi.AddressType;
+import xjc.schema.ixsi.AvailabilityPushMessageType;
+import xjc.schema.ixsi.BookingTargetChangeAvailabilityType;
+import xjc.schema.ixsi.BookingTargetIDType;
+import xjc.schema.ixsi.BookingTargetType;
+import xjc.schema.ixsi.BookingTargetsInfoResponseType;
+import xjc.schema.ixsi.CoordType;
+import xjc.schema.ixsi.GeoPositionType;
+import xjc.schema.ixsi.IxsiMessageType;
+import xjc.schema.ixsi.ObjectFactory;
+import xjc.schema.ixsi.PlaceType;
+import xjc.schema.ixsi.ProviderType;
+import xjc.schema.ixsi.QueryResponseType;
+import xjc.schema.ixsi.SubscriptionMessageType;
+import xjc.schema.ixsi.TextType;
+import xjc.schema.ixsi.TimePeriodType;
+import xjc.schema.ixsi.TransactionType;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the pooled codec in its validation modes with the former implementation, which created
+ * (un)marshallers per message and always validated.
+ *
+ * Not a unit test. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.rwth.idsg.bikeman.ixsi.endpoint.ParserBenchmark
+ *
+ * @since 18.10.2016
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final String SYSTEM_ID = "benchmark-system";
+    private static final int PEDELEC_COUNT = 200;
+    private static final int STATION_COUNT = 40;
+
+    @Param({"STRICT", "INBOUND", "SAMPLED", "OFF"})
+    private String mode;
+
+    @Param({"bookingTargetsInfo", "availabilityPush"})
+    private String payload;
+
+    private JAXBContext jaxbContext;
+    private Schema schema;
+    private ParserImpl parser;
+    private SchemaValidationPolicy policy;
+
+    private IxsiMessageType message;
+    private String messageString;
+
+    @Setup
+    public void setUp() throws Exception {
+        jaxbContext = JAXBContext.newInstance(IxsiMessageType.class);
+        schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                              .newSchema(getClass().getClassLoader().getResource(IXSIConstants.XML_SCHEMA_FILE));
+
+        parser = new ParserImpl();
+        ReflectionTestUtils.setField(parser, "jaxbContext", jaxbContext);
+        parser.init();
+
+        policy = new SchemaValidationPolicy();
+        policy.setEnvironment(new MockEnvironment().withProperty("ixsi.validation.mode", mode)
+                                                   .withProperty("ixsi.validation.sampleRate", "100"));
+        policy.init();
+
+        message = "availabilityPush".equals(payload) ? buildAvailabilityPush() : buildBookingTargetsInfo();
+        messageString = parser.marshal(message, true);
+    }
+
+    @Benchmark
+    public String marshal() {
+        return parser.marshal(message, policy.validateOutgoing(SYSTEM_ID));
+    }
+
+    @Benchmark
+    public IxsiMessageType unmarshal() {
+        return parser.unmarshal(messageString, policy.validateIncoming(SYSTEM_ID));
+    }
+
+    /**
+     * The former implementation, independent of the mode
+     */
+    @Benchmark
+    public String legacyMarshal() throws Exception {
+        Marshaller m = jaxbContext.createMarshaller();
+        m.setSchema(schema);
+        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
+        m.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+
+        StringWriter stringWriter = new StringWriter();
+        m.marshal(new ObjectFactory().createIxsi(message), stringWriter);
+        return stringWriter.toString();
+    }
+
+    /**
+     * The former implementation, independent of the mode
+     */
+    @Benchmark
+    public IxsiMessageType legacyUnmarshal() throws Exception {
+        Unmarshaller um = jaxbContext.createUnmarshaller();
+        um.setSchema(schema);
+        StreamSource source = new StreamSource(new StringReader(messageString));
+        return um.unmarshal(source, IxsiMessageType.class).getValue();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParserBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // -------------------------------------------------------------------------
+    // Payloads, similar to the ones built by the processors and push services
+    // -------------------------------------------------------------------------
+
+    private static IxsiMessageType buildBookingTargetsInfo() {
+        List<BookingTargetType> bookees = new ArrayList<>();
+        for (int i = 0; i < PEDELEC_COUNT; i++) {
+            String id = "pedelec-" + i;
+            bookees.add(new BookingTargetType()
+                    .withID(buildBookingTargetID(id))
+                    .withName(new TextType().withText(id))
+                    .withPlaceGroupID(IXSIConstants.PlaceGroup.id)
+                    .withClazz(IXSIConstants.bookeeClassType)
+                    .withEngine(IXSIConstants.engineType));
+        }
+
+        List<PlaceType> places = new ArrayList<>();
+        for (int i = 0; i < STATION_COUNT; i++) {
+            AddressType address = new AddressType()
+                    .withCountry("DE")
+                    .withPostalCode("52074")
+                    .withCity("Aachen")
+                    .withStreetHouseNr("Ahornstr. " + i);
+
+            GeoPositionType geoPosition = new GeoPositionType()
+                    .withAddress(address)
+                    .withCoord(new CoordType().withLatitude(50.77 + i / 1000.0).withLongitude(6.06 + i / 1000.0));
+
+            places.add(new PlaceType()
+                    .withID("station-" + i)
+                    .withGeoPosition(geoPosition)
+                    .withCapacity(12)
+                    .withName(new TextType().withText("Station " + i).withLanguage(IXSIConstants.DEFAULT_LANGUAGE))
+                    .withProviderID(IXSIConstants.Provider.id));
+        }
+
+        ProviderType provider = new ProviderType()
+                .withID(IXSIConstants.Provider.id)
+                .withName(IXSIConstants.Provider.name)
+                .withShortName(IXSIConstants.Provider.shortName);
+
+        BookingTargetsInfoResponseType info = new BookingTargetsInfoResponseType()
+                .withTimestamp(DateTime.now())
+                .withBookee(bookees)
+                .withPlace(places)
+                .withProvider(provider);
+
+        QueryResponseType response = new QueryResponseType()
+                .withTransaction(new TransactionType().withTimeStamp(DateTime.now()).withMessageID("1"))
+                .withStaticDataResponseGroup(info);
+
+        return new IxsiMessageType().withResponse(response);
+    }
+
+    private static IxsiMessageType buildAvailabilityPush() {
+        DateTime now = DateTime.now();
+
+        BookingTargetChangeAvailabilityType targetChange = new BookingTargetChangeAvailabilityType()
+                .withID(buildBookingTargetID("pedelec-1"))
+                .withPlaceID("station-1")
+                .withInavailability(new TimePeriodType().withBegin(now).withEnd(now.plusHours(6)));
+
+        AvailabilityPushMessageType avail = new AvailabilityPushMessageType().withAvailabilityChange(targetChange);
+        SubscriptionMessageType sub = new SubscriptionMessageType().withPushMessageGroup(avail);
+        return new IxsiMessageType().withSubscriptionMessage(sub);
+    }
+
+    private static BookingTargetIDType buildBookingTargetID(String bookeeId) {
+        return new BookingTargetIDType()
+                .withBookeeID(bookeeId)
+                .withProviderID(IXSIConstants.Provider.id);
+    }
+}
@@ -0,0 +1,124 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import de.rwth.idsg.bikeman.Application;
+import de.rwth.idsg.bikeman.config.Constants;
+import de.rwth.idsg.bikeman.ixsi.endpoint.Parser;
+import de.rwth.idsg.bikeman.ixsi.load.LoadDataset.ClientSystem;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the IXSI WebSocket endpoint. Starts the application with the in-memory H2 database of the
+ * test configuration ("fast" profile, works offline), fills it with a generated dataset and lets N simulated
+ * client systems with multiple sessions each send a mix of query and subscription requests, while a simulated
+ * station fleet causes push storms. Prints the request latency percentiles per operation, the push latency and
+ * the message rates at the end.
+ *
+ * Every simulated system connects from its own loopback address (127.0.0.2, 127.0.0.3, ...), because the server
+ * identifies the systems by their IP address. Linux routes the whole 127.0.0.0/8 to the loopback interface,
+ * other systems might need aliases for these addresses.
+ *
+ * Not a unit test. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.rwth.idsg.bikeman.ixsi.load.IxsiLoadGenerator -Dload.systems=10 -Dload.durationInSeconds=60
+ * (see {@link LoadConfig} for all parameters)
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+public final class IxsiLoadGenerator {
+
+    private static final int SUBSCRIPTION_CHUNK_SIZE = 500;
+
+    private IxsiLoadGenerator() { }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = new LoadConfig();
+        LoadDataset dataset = new LoadDataset(config);
+        StationFleet fleet = new StationFleet(config, dataset.getStationIds());
+        LoadReport report = new LoadReport();
+
+        String stationEndpoint = fleet.startEndpoint();
+
+        SpringApplication app = new SpringApplication(Application.class);
+        app.setAdditionalProfiles(Constants.SPRING_PROFILE_FAST);
+        ConfigurableApplicationContext context = app.run(
+                "--spring.jpa.show-sql=false",
+                "--logging.level.de.rwth.idsg.bikeman.ixsi.endpoint=WARN",
+                "--logging.level.org.hibernate=WARN");
+
+        List<LoadSession> sessions = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        try {
+            dataset.insert(context, config, stationEndpoint);
+
+            String host = context.getEnvironment().getProperty("server.address", "localhost");
+            int port = context.getEnvironment().getProperty("server.port", Integer.class, 8080);
+            Parser parser = context.getBean(Parser.class);
+
+            connect(config, dataset, fleet, report, parser, host, port, sessions);
+
+            fleet.startStorms(context);
+
+            for (LoadSession session : sessions) {
+                Thread thread = new Thread(session::run, "load-" + threads.size());
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+
+            log.info("Warming up for {} seconds", config.getWarmUpInSeconds());
+            TimeUnit.SECONDS.sleep(config.getWarmUpInSeconds());
+            report.reset(fleet);
+
+            log.info("Measuring for {} seconds", config.getDurationInSeconds());
+            long start = System.currentTimeMillis();
+            TimeUnit.SECONDS.sleep(config.getDurationInSeconds());
+            report.stop(fleet);
+            long duration = System.currentTimeMillis() - start;
+
+            System.out.println(report.format(config, fleet, duration));
+
+        } finally {
+            sessions.forEach(LoadSession::stop);
+            fleet.stop();
+            for (Thread thread : threads) {
+                thread.join(config.getRequestTimeoutInMillis());
+            }
+            sessions.forEach(LoadSession::close);
+            context.close();
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * Opens the sessions of all systems and subscribes every system via its first session
+     */
+    private static void connect(LoadConfig config, LoadDataset dataset, StationFleet fleet, LoadReport report,
+                                Parser parser, String host, int port, List<LoadSession> sessions) throws Exception {
+        int sessionCount = config.getSystems() * config.getSessionsPerSystem();
+
+        for (ClientSystem system : dataset.getSystems()) {
+            for (int i = 0; i < config.getSessionsPerSystem(); i++) {
+                int index = sessions.size();
+                LoadSession session = new LoadSession(system.getSystemId(), i,
+                        dataset.getCardIds().get(index),
+                        dataset.getPedelecsOfSession(index, sessionCount),
+                        config, dataset, report, fleet, parser);
+
+                session.connect(system.getAddress(), host, port);
+                if (i == 0) {
+                    session.subscribe(SUBSCRIPTION_CHUNK_SIZE);
+                }
+                sessions.add(session);
+            }
+        }
+
+        log.info("Opened {} sessions of {} systems", sessions.size(), dataset.getSystems().size());
+    }
+}
@@ -0,0 +1,282 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import de.rwth.idsg.bikeman.config.IxsiConfiguration;
+import de.rwth.idsg.bikeman.journal.Direction;
+import de.rwth.idsg.bikeman.journal.JournalReader;
+import de.rwth.idsg.bikeman.journal.JournalRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Re-drives the inbound messages of a recorded window of the traffic journal (see TrafficJournal) against a test
+ * instance, with the original timing or accelerated. Every recorded IXSI session gets its own WebSocket connection,
+ * the PSI requests are sent with the recorded station id. At the end, it prints the latency percentiles per PSI
+ * endpoint and of the IXSI requests (matched by message id), and how far the replay fell behind the schedule.
+ *
+ * The test instance identifies the client systems by their IP address: -Dreplay.systemAddresses maps the system
+ * ids to local addresses, which have to be registered in the test instance (default 127.0.0.2, 127.0.0.3, ...
+ * in the order of appearance). The test instance should contain the same stations, pedelecs and customers.
+ *
+ * Not a unit test. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.rwth.idsg.bikeman.ixsi.load.JournalReplay -Dreplay.directory=journal
+ * -Dreplay.from=2016-10-18T07:00:00Z -Dreplay.to=2016-10-18T08:00:00Z -Dreplay.speed=4
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+public final class JournalReplay {
+
+    private static final Pattern MESSAGE_ID = Pattern.compile("MessageID>([^<]*)<");
+
+    private final String psiUrl = System.getProperty("replay.psiUrl", "http://localhost:8080");
+    private final String ixsiHost = System.getProperty("replay.ixsiHost", "localhost");
+    private final int ixsiPort = Integer.getInteger("replay.ixsiPort", 8080);
+    private final double speed = Double.parseDouble(System.getProperty("replay.speed", "1"));
+
+    private final Map<String, InetAddress> systemAddresses = new HashMap<>();
+    private final Map<String, LoadWebSocketClient> sessions = new HashMap<>();
+    private final ExecutorService psiExecutor = Executors.newFixedThreadPool(Integer.getInteger("replay.psiThreads", 32));
+
+    private final ConcurrentHashMap<String, LatencyRecorder> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> statusCodes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> pendingIxsi = new ConcurrentHashMap<>();
+    private final LongAdder ixsiReceived = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong maxLagInMillis = new AtomicLong();
+
+    private JournalReplay() { }
+
+    public static void main(String[] args) throws Exception {
+        long from = parseTime(System.getProperty("replay.from"), Long.MIN_VALUE);
+        long to = parseTime(System.getProperty("replay.to"), Long.MAX_VALUE);
+
+        List<JournalRecord> records = new ArrayList<>();
+        JournalReader.read(Paths.get(System.getProperty("replay.directory", "journal")), from, to, record -> {
+            if (record.getDirection().isInbound()) {
+                records.add(record);
+            }
+        });
+
+        if (records.isEmpty()) {
+            System.out.println("No inbound records in the window");
+            return;
+        }
+
+        JournalReplay replay = new JournalReplay();
+        try {
+            replay.mapSystems(System.getProperty("replay.systemAddresses", ""), records);
+            long duration = replay.run(records);
+            System.out.println(replay.report(records.size(), duration));
+        } finally {
+            replay.close();
+        }
+        System.exit(0);
+    }
+
+    // -------------------------------------------------------------------------
+    // Replay
+    // -------------------------------------------------------------------------
+
+    private long run(List<JournalRecord> records) throws InterruptedException {
+        long firstTimestamp = records.get(0).getTimestamp();
+        long start = System.nanoTime();
+
+        for (JournalRecord record : records) {
+            long dueInNanos = (long) (TimeUnit.MILLISECONDS.toNanos(record.getTimestamp() - firstTimestamp) / speed);
+            long waitInNanos = dueInNanos - (System.nanoTime() - start);
+            if (waitInNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitInNanos);
+            } else {
+                maxLagInMillis.accumulateAndGet(TimeUnit.NANOSECONDS.toMillis(-waitInNanos), Math::max);
+            }
+
+            switch (record.getDirection()) {
+                case IXSI_IN:
+                    sendIxsi(record);
+                    break;
+                case PSI_REQUEST:
+                    psiExecutor.execute(() -> sendPsi(record));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        psiExecutor.shutdown();
+        psiExecutor.awaitTermination(1, TimeUnit.MINUTES);
+
+        // The last IXSI responses
+        TimeUnit.SECONDS.sleep(2);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private void sendIxsi(JournalRecord record) {
+        try {
+            LoadWebSocketClient client = getSession(record.getChannelId(), record.getTarget());
+            String payload = record.getPayloadAsString();
+
+            Matcher matcher = MESSAGE_ID.matcher(payload);
+            if (matcher.find()) {
+                pendingIxsi.put(matcher.group(1), System.nanoTime());
+            }
+            client.sendText(payload);
+
+        } catch (IOException e) {
+            failures.increment();
+            log.warn("Could not send the IXSI message of system '{}': {}", record.getChannelId(), e.getMessage());
+        }
+    }
+
+    private void onIxsiText(String payload) {
+        long now = System.nanoTime();
+        ixsiReceived.increment();
+
+        Matcher matcher = MESSAGE_ID.matcher(payload);
+        if (matcher.find()) {
+            Long sentAt = pendingIxsi.remove(matcher.group(1));
+            if (sentAt != null) {
+                recorder("IXSI request").record(now - sentAt);
+            }
+        }
+    }
+
+    private void sendPsi(JournalRecord record) {
+        String target = record.getTarget();
+        int space = target.indexOf(' ');
+        String method = target.substring(0, space);
+        String uri = target.substring(space + 1);
+        int query = uri.indexOf('?');
+        String endpoint = method + " " + (query < 0 ? uri : uri.substring(0, query));
+
+        long start = System.nanoTime();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(psiUrl + uri).openConnection();
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("STATION-ID", record.getChannelId());
+            connection.setRequestProperty("Accept", "application/json");
+
+            byte[] payload = record.getPayload();
+            if (payload.length > 0) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(payload);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            drain(connection);
+
+            recorder(endpoint).record(System.nanoTime() - start);
+            statusCodes.computeIfAbsent(endpoint + " " + status, k -> new LongAdder()).increment();
+
+        } catch (IOException e) {
+            failures.increment();
+            log.warn("PSI request {} of station '{}' failed: {}", target, record.getChannelId(), e.getMessage());
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Explicit mapping "systemId=address,..." first, then the next free loopback address
+     */
+    private void mapSystems(String mapping, List<JournalRecord> records) throws IOException {
+        for (String entry : mapping.split(",")) {
+            String[] pair = entry.trim().split("=");
+            if (pair.length == 2) {
+                systemAddresses.put(pair[0], InetAddress.getByName(pair[1]));
+            }
+        }
+
+        int next = 2;
+        for (JournalRecord record : records) {
+            if (record.getDirection() == Direction.IXSI_IN && !systemAddresses.containsKey(record.getChannelId())) {
+                InetAddress address = InetAddress.getByName("127.0." + (next / 256) + "." + (next % 256));
+                next++;
+                systemAddresses.put(record.getChannelId(), address);
+                log.info("System '{}' connects from {}", record.getChannelId(), address.getHostAddress());
+            }
+        }
+    }
+
+    private LoadWebSocketClient getSession(String systemId, String sessionId) throws IOException {
+        String key = systemId + "/" + sessionId;
+        LoadWebSocketClient client = sessions.get(key);
+        if (client == null || !client.isOpen()) {
+            client = new LoadWebSocketClient(systemAddresses.get(systemId), ixsiHost, ixsiPort,
+                    IxsiConfiguration.WS_ENDPOINT, this::onIxsiText);
+            sessions.put(key, client);
+        }
+        return client;
+    }
+
+    private LatencyRecorder recorder(String name) {
+        return latencies.computeIfAbsent(name, LatencyRecorder::new);
+    }
+
+    private String report(int recordCount, long durationInMillis) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%nReplayed %d messages at %.1fx in %d ms, max. lag behind the schedule: %d ms%n%n",
+                recordCount, speed, durationInMillis, maxLagInMillis.get()));
+
+        sb.append(LatencyRecorder.header()).append("\n");
+        for (LatencyRecorder recorder : new TreeMap<>(latencies).values()) {
+            sb.append(recorder.summary(durationInMillis)).append("\n");
+        }
+
+        sb.append("\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(statusCodes).entrySet()) {
+            sb.append(String.format("%-40s %10d%n", entry.getKey(), entry.getValue().sum()));
+        }
+
+        sb.append(String.format("%nIXSI messages received: %d, IXSI requests without response: %d, failures: %d%n",
+                ixsiReceived.sum(), pendingIxsi.size(), failures.sum()));
+        return sb.toString();
+    }
+
+    private void close() {
+        sessions.values().forEach(LoadWebSocketClient::close);
+        psiExecutor.shutdownNow();
+    }
+
+    private static void drain(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getErrorStream();
+        if (in == null) {
+            in = connection.getInputStream();
+        }
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[4096];
+            while (stream.read(buffer) != -1) {
+                // Discard
+            }
+        }
+    }
+
+    private static long parseTime(String value, long defaultValue) {
+        return value == null ? defaultValue : DateTime.parse(value).getMillis();
+    }
+}
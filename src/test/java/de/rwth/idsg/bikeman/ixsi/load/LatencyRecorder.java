@@ -0,0 +1,89 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects latency samples in nanoseconds and computes the percentiles at the end of the run. The samples are
+ * kept as they are, which is fine for the number of messages a load run produces.
+ *
+ * @since 18.10.2016
+ */
+final class LatencyRecorder {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final String name;
+
+    private long[] samples = new long[1024];
+    private int count;
+    private boolean recording = true;
+
+    LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+        if (!recording) {
+            return;
+        }
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * Discards the samples of the warm-up
+     */
+    synchronized void reset() {
+        count = 0;
+    }
+
+    synchronized void stop() {
+        recording = false;
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the line of the report table
+     */
+    synchronized String summary(long durationInMillis) {
+        if (count == 0) {
+            return String.format("%-28s %10d", name, 0);
+        }
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        StringBuilder sb = new StringBuilder(String.format("%-28s %10d %10.1f", name, count,
+                count * 1000.0 / Math.max(1, durationInMillis)));
+        for (double p : PERCENTILES) {
+            sb.append(String.format(" %10.2f", toMillis(percentile(sorted, p))));
+        }
+        sb.append(String.format(" %10.2f", toMillis(sorted[count - 1])));
+        return sb.toString();
+    }
+
+    static String header() {
+        StringBuilder sb = new StringBuilder(String.format("%-28s %10s %10s", "", "count", "msg/s"));
+        for (double p : PERCENTILES) {
+            sb.append(String.format(" %10s", "p" + (p % 1 == 0 ? String.valueOf((int) p) : String.valueOf(p))));
+        }
+        sb.append(String.format(" %10s", "max"));
+        sb.append("   (latencies in ms)");
+        return sb.toString();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
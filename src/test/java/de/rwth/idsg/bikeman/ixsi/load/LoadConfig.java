@@ -0,0 +1,43 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Parameters of a load run. Every one can be overridden with a system property of the same name
+ * with the prefix "load.", e.g. -Dload.systems=20
+ *
+ * @since 18.10.2016
+ */
+@Getter
+@ToString
+final class LoadConfig {
+
+    private static final String PREFIX = "load.";
+
+    // Fleet
+    private final int stations = get("stations", 200);
+    private final int slotsPerStation = get("slotsPerStation", 10);
+
+    // Client systems
+    private final int systems = get("systems", 10);
+    private final int sessionsPerSystem = get("sessionsPerSystem", 2);
+    private final int thinkTimeInMillis = get("thinkTimeInMillis", 20);
+    private final int requestTimeoutInMillis = get("requestTimeoutInMillis", 10_000);
+
+    // Share of the workload in percent, the rest are availability queries
+    private final int heartbeatShare = get("heartbeatShare", 20);
+    private final int bookingShare = get("bookingShare", 30);
+    private final int completeShare = get("completeShare", 10);
+
+    // Push storms: every interval, this many stations change their state at once
+    private final int stormIntervalInMillis = get("stormIntervalInMillis", 1_000);
+    private final int stormSize = get("stormSize", 50);
+
+    private final int warmUpInSeconds = get("warmUpInSeconds", 10);
+    private final int durationInSeconds = get("durationInSeconds", 60);
+
+    private static int get(String name, int defaultValue) {
+        return Integer.getInteger(PREFIX + name, defaultValue);
+    }
+}
@@ -0,0 +1,204 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import de.rwth.idsg.bikeman.domain.CardAccount;
+import de.rwth.idsg.bikeman.domain.ChargingState;
+import de.rwth.idsg.bikeman.domain.CustomerType;
+import de.rwth.idsg.bikeman.domain.MajorCustomer;
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.domain.Pedelec;
+import de.rwth.idsg.bikeman.domain.PedelecChargingStatus;
+import de.rwth.idsg.bikeman.domain.Station;
+import de.rwth.idsg.bikeman.domain.StationSlot;
+import de.rwth.idsg.bikeman.domain.ixsi.IxsiClientSystem;
+import de.rwth.idsg.bikeman.event.DomainEventBus;
+import de.rwth.idsg.bikeman.event.StationSavedEvent;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Creates the stations, pedelecs, users and client systems of a load run in the (empty) database.
+ *
+ * The stations form a square grid around Aachen. Every slot but the last one of a station holds a pedelec.
+ * The users belong to the major customer that UserValidator accepts, and every session gets its own user,
+ * so that the bookings of different sessions do not interfere.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+@Getter
+final class LoadDataset {
+
+    private static final String MAJOR_CUSTOMER_NAME = "ASEAG";
+
+    private static final double ORIGIN_LATITUDE = 50.75;
+    private static final double ORIGIN_LONGITUDE = 6.05;
+    private static final double STATION_SPACING_IN_DEGREES = 0.004;
+
+    private final List<String> stationIds = new ArrayList<>();
+    private final List<String> pedelecIds = new ArrayList<>();
+    private final List<String> cardIds = new ArrayList<>();
+    private final List<ClientSystem> systems = new ArrayList<>();
+
+    private final double minLatitude = ORIGIN_LATITUDE;
+    private final double minLongitude = ORIGIN_LONGITUDE;
+    private double maxLatitude;
+    private double maxLongitude;
+
+    LoadDataset(LoadConfig config) throws UnknownHostException {
+        int columns = (int) Math.ceil(Math.sqrt(config.getStations()));
+        maxLatitude = ORIGIN_LATITUDE + columns * STATION_SPACING_IN_DEGREES;
+        maxLongitude = ORIGIN_LONGITUDE + columns * STATION_SPACING_IN_DEGREES;
+
+        for (int i = 0; i < config.getStations(); i++) {
+            stationIds.add("load-station-" + i);
+        }
+        for (int i = 0; i < config.getStations() * (config.getSlotsPerStation() - 1); i++) {
+            pedelecIds.add("load-pedelec-" + i);
+        }
+        for (int i = 0; i < config.getSystems() * config.getSessionsPerSystem(); i++) {
+            cardIds.add("load-card-" + i);
+        }
+        for (int i = 0; i < config.getSystems(); i++) {
+            // 127.0.0.1 is left for the server
+            int host = i + 2;
+            InetAddress address = InetAddress.getByName("127.0." + (host / 256) + "." + (host % 256));
+            systems.add(new ClientSystem("load-system-" + i, address));
+        }
+    }
+
+    /**
+     * @param stationEndpoint Base address of the simulated stations, see {@link StationFleet}
+     */
+    void insert(ApplicationContext context, LoadConfig config, String stationEndpoint) {
+        EntityManagerFactory emf = context.getBean(EntityManagerFactory.class);
+        EntityManager em = SharedEntityManagerCreator.createSharedEntityManager(emf);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        DomainEventBus domainEventBus = context.getBean(DomainEventBus.class);
+
+        int columns = (int) Math.ceil(Math.sqrt(config.getStations()));
+        int pedelecIndex = 0;
+
+        // One transaction per station keeps the persistence context small
+        for (int i = 0; i < stationIds.size(); i++) {
+            Station station = new Station();
+            station.setManufacturerId(stationIds.get(i));
+            station.setName("Load station " + i);
+            station.setEndpointAddress(stationEndpoint + "/" + stationIds.get(i));
+            station.setLocationLatitude(BigDecimal.valueOf(ORIGIN_LATITUDE + (i / columns) * STATION_SPACING_IN_DEGREES));
+            station.setLocationLongitude(BigDecimal.valueOf(ORIGIN_LONGITUDE + (i % columns) * STATION_SPACING_IN_DEGREES));
+            station.setState(OperationState.OPERATIVE);
+
+            Set<StationSlot> slots = new HashSet<>();
+            for (int position = 1; position <= config.getSlotsPerStation(); position++) {
+                StationSlot slot = new StationSlot();
+                slot.setManufacturerId(stationIds.get(i) + "-slot-" + position);
+                slot.setStationSlotPosition(position);
+                slot.setState(OperationState.OPERATIVE);
+                slot.setStation(station);
+
+                if (position < config.getSlotsPerStation()) {
+                    slot.setPedelec(buildPedelec(pedelecIds.get(pedelecIndex++)));
+                    slot.setIsOccupied(true);
+                }
+                slots.add(slot);
+            }
+            station.setStationSlots(slots);
+
+            tx.execute(status -> {
+                for (StationSlot slot : slots) {
+                    if (slot.getPedelec() != null) {
+                        em.persist(slot.getPedelec());
+                    }
+                }
+                em.persist(station);
+
+                // Updates the station spatial index, which was built on startup
+                domainEventBus.publish(new StationSavedEvent(station.getManufacturerId()));
+                return null;
+            });
+        }
+
+        tx.execute(status -> {
+            MajorCustomer customer = new MajorCustomer();
+            customer.setLogin("load-test@aseag.de");
+            customer.setName(MAJOR_CUSTOMER_NAME);
+
+            Set<CardAccount> cardAccounts = new HashSet<>();
+            for (String cardId : cardIds) {
+                CardAccount ca = new CardAccount();
+                ca.setCardId(cardId);
+                ca.setCardPin("1234");
+                ca.setOwnerType(CustomerType.MAJOR_CUSTOMER);
+                ca.setOperationState(OperationState.OPERATIVE);
+                ca.setAutoRenewTariff(false);
+                ca.setUser(customer);
+                cardAccounts.add(ca);
+            }
+            customer.setCardAccounts(cardAccounts);
+            em.persist(customer);
+
+            for (ClientSystem system : systems) {
+                IxsiClientSystem entity = new IxsiClientSystem();
+                entity.setSystemId(system.getSystemId());
+                entity.setIpAddress(system.getAddress().getHostAddress());
+                em.persist(entity);
+            }
+            return null;
+        });
+
+        log.info("Inserted {} stations, {} pedelecs, {} users and {} client systems",
+                stationIds.size(), pedelecIds.size(), cardIds.size(), systems.size());
+    }
+
+    /**
+     * @return the pedelecs that the session with the index may book. The sessions get disjoint sets.
+     */
+    List<String> getPedelecsOfSession(int sessionIndex, int sessionCount) {
+        if (pedelecIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>();
+        for (int i = sessionIndex % pedelecIds.size(); i < pedelecIds.size(); i += sessionCount) {
+            result.add(pedelecIds.get(i));
+        }
+        return result;
+    }
+
+    private static Pedelec buildPedelec(String manufacturerId) {
+        Pedelec pedelec = new Pedelec();
+        pedelec.setManufacturerId(manufacturerId);
+        pedelec.setState(OperationState.OPERATIVE);
+        pedelec.setInTransaction(false);
+
+        PedelecChargingStatus chargingStatus = new PedelecChargingStatus();
+        chargingStatus.setPedelec(pedelec);
+        chargingStatus.setState(ChargingState.NOT_CHARGING);
+        chargingStatus.setBatteryStateOfCharge(0.9);
+        pedelec.setChargingStatus(chargingStatus);
+        return pedelec;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static class ClientSystem {
+        private final String systemId;
+        private final InetAddress address;
+    }
+}
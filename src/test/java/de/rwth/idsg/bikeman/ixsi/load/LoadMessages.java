@@ -0,0 +1,177 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
+import de.rwth.idsg.ixsi.jaxb.RequestMessageGroup;
+import de.rwth.idsg.ixsi.jaxb.SubscriptionRequestGroup;
+import de.rwth.idsg.ixsi.jaxb.UserTriggeredRequestChoice;
+import org.joda.time.DateTime;
+import xjc.schema.ixsi.AuthType;
+import xjc.schema.ixsi.AvailabilityRequestType;
+import xjc.schema.ixsi.AvailabilitySubscriptionRequestType;
+import xjc.schema.ixsi.BookingRequestType;
+import xjc.schema.ixsi.BookingTargetIDType;
+import xjc.schema.ixsi.ChangeBookingRequestType;
+import xjc.schema.ixsi.CompleteAvailabilityRequestType;
+import xjc.schema.ixsi.CompletePlaceAvailabilityRequestType;
+import xjc.schema.ixsi.CoordType;
+import xjc.schema.ixsi.GeoRectangleType;
+import xjc.schema.ixsi.HeartBeatRequestType;
+import xjc.schema.ixsi.IxsiMessageType;
+import xjc.schema.ixsi.PlaceAvailabilitySubscriptionRequestType;
+import xjc.schema.ixsi.ProviderPlaceIDType;
+import xjc.schema.ixsi.QueryRequestType;
+import xjc.schema.ixsi.SubscriptionRequestType;
+import xjc.schema.ixsi.TimePeriodProposalType;
+import xjc.schema.ixsi.TransactionType;
+import xjc.schema.ixsi.UserInfoType;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the requests, which the simulated client systems send.
+ *
+ * @since 18.10.2016
+ */
+final class LoadMessages {
+
+    private LoadMessages() { }
+
+    // -------------------------------------------------------------------------
+    // Query requests
+    // -------------------------------------------------------------------------
+
+    static IxsiMessageType availability(String systemId, String messageId,
+                                        double lat1, double lon1, double lat2, double lon2) {
+        GeoRectangleType rectangle = new GeoRectangleType()
+                .withUpperLeft(new CoordType().withLatitude(Math.max(lat1, lat2)).withLongitude(Math.min(lon1, lon2)))
+                .withLowerRight(new CoordType().withLatitude(Math.min(lat1, lat2)).withLongitude(Math.max(lon1, lon2)));
+
+        AvailabilityRequestType request = new AvailabilityRequestType().withGeoRectangle(rectangle);
+        return query(systemId, messageId, new AuthType().withAnonymous(true), request);
+    }
+
+    static IxsiMessageType createBooking(String systemId, String messageId, String cardId, String pedelecId,
+                                         int minutes) {
+        BookingRequestType request = new BookingRequestType()
+                .withBookingTargetID(bookingTargetID(pedelecId))
+                .withTimePeriodProposal(proposal(minutes));
+
+        return query(systemId, messageId, userAuth(cardId), request);
+    }
+
+    static IxsiMessageType changeBooking(String systemId, String messageId, String cardId, String bookingId,
+                                         int minutes) {
+        ChangeBookingRequestType request = new ChangeBookingRequestType()
+                .withBookingID(bookingId)
+                .withNewTimePeriodProposal(proposal(minutes));
+
+        return query(systemId, messageId, userAuth(cardId), request);
+    }
+
+    static IxsiMessageType cancelBooking(String systemId, String messageId, String cardId, String bookingId) {
+        ChangeBookingRequestType request = new ChangeBookingRequestType()
+                .withBookingID(bookingId)
+                .withCancel(true);
+
+        return query(systemId, messageId, userAuth(cardId), request);
+    }
+
+    // -------------------------------------------------------------------------
+    // Subscription requests
+    // -------------------------------------------------------------------------
+
+    static IxsiMessageType heartbeat(String systemId, String messageId) {
+        SubscriptionRequestType request = subscription(systemId, messageId)
+                .withHeartBeat(new HeartBeatRequestType());
+
+        return new IxsiMessageType().withSubscriptionRequest(request);
+    }
+
+    static IxsiMessageType subscribeAvailability(String systemId, String messageId, List<String> pedelecIds) {
+        List<BookingTargetIDType> ids = pedelecIds.stream()
+                                                  .map(LoadMessages::bookingTargetID)
+                                                  .collect(Collectors.toList());
+
+        return subscription(systemId, messageId, new AvailabilitySubscriptionRequestType().withBookingTargetID(ids));
+    }
+
+    static IxsiMessageType subscribePlaceAvailability(String systemId, String messageId, List<String> stationIds) {
+        List<ProviderPlaceIDType> ids = stationIds.stream()
+                                                  .map(id -> new ProviderPlaceIDType()
+                                                          .withPlaceID(id)
+                                                          .withProviderID(IXSIConstants.Provider.id))
+                                                  .collect(Collectors.toList());
+
+        return subscription(systemId, messageId, new PlaceAvailabilitySubscriptionRequestType().withPlaceID(ids));
+    }
+
+    static IxsiMessageType completeAvailability(String systemId, String messageId) {
+        return complete(systemId, messageId, new CompleteAvailabilityRequestType());
+    }
+
+    static IxsiMessageType completePlaceAvailability(String systemId, String messageId) {
+        return complete(systemId, messageId, new CompletePlaceAvailabilityRequestType());
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static IxsiMessageType query(String systemId, String messageId, AuthType auth,
+                                         UserTriggeredRequestChoice choice) {
+        QueryRequestType request = new QueryRequestType()
+                .withTransaction(transaction(messageId))
+                .withSystemID(systemId)
+                .withAuth(auth)
+                .withUserTriggeredRequestChoice(choice);
+
+        return new IxsiMessageType().withRequest(request);
+    }
+
+    private static IxsiMessageType subscription(String systemId, String messageId, SubscriptionRequestGroup group) {
+        SubscriptionRequestType request = subscription(systemId, messageId)
+                .withSubscriptionRequestGroup(group);
+
+        return new IxsiMessageType().withSubscriptionRequest(request);
+    }
+
+    private static IxsiMessageType complete(String systemId, String messageId, RequestMessageGroup group) {
+        SubscriptionRequestType request = subscription(systemId, messageId)
+                .withRequestMessageGroup(group);
+
+        return new IxsiMessageType().withSubscriptionRequest(request);
+    }
+
+    private static SubscriptionRequestType subscription(String systemId, String messageId) {
+        return new SubscriptionRequestType()
+                .withTransaction(transaction(messageId))
+                .withSystemID(systemId);
+    }
+
+    private static TransactionType transaction(String messageId) {
+        return new TransactionType().withTimeStamp(DateTime.now()).withMessageID(messageId);
+    }
+
+    private static AuthType userAuth(String cardId) {
+        UserInfoType userInfo = new UserInfoType()
+                .withProviderID(IXSIConstants.Provider.id)
+                .withUserID(cardId);
+
+        return new AuthType().withUserInfo(userInfo);
+    }
+
+    private static BookingTargetIDType bookingTargetID(String pedelecId) {
+        return new BookingTargetIDType()
+                .withBookeeID(pedelecId)
+                .withProviderID(IXSIConstants.Provider.id);
+    }
+
+    /**
+     * The backend only looks at the duration, see BookingService
+     */
+    private static TimePeriodProposalType proposal(int minutes) {
+        DateTime now = DateTime.now();
+        return new TimePeriodProposalType().withBegin(now).withEnd(now.plusMinutes(minutes));
+    }
+}
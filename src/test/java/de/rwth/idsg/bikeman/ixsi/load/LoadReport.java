@@ -0,0 +1,98 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import de.rwth.idsg.bikeman.ixsi.load.LoadSession.Operation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the results of all sessions. Everything that happens during the warm-up is discarded.
+ *
+ * @since 18.10.2016
+ */
+final class LoadReport {
+
+    private final Map<Operation, LatencyRecorder> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> timeouts = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> rejections = new EnumMap<>(Operation.class);
+    private final ConcurrentHashMap<String, LongAdder> pushes = new ConcurrentHashMap<>();
+
+    LoadReport() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyRecorder(operation.name()));
+            timeouts.put(operation, new LongAdder());
+            rejections.put(operation, new LongAdder());
+        }
+    }
+
+    void recordRequest(Operation operation, long nanos) {
+        latencies.get(operation).record(nanos);
+    }
+
+    void recordTimeout(Operation operation) {
+        timeouts.get(operation).increment();
+    }
+
+    void recordRejected(Operation operation) {
+        rejections.get(operation).increment();
+    }
+
+    void recordPush(String type) {
+        pushes.computeIfAbsent(type, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Starts the measurement after the warm-up
+     */
+    void reset(StationFleet fleet) {
+        latencies.values().forEach(LatencyRecorder::reset);
+        timeouts.values().forEach(LongAdder::reset);
+        rejections.values().forEach(LongAdder::reset);
+        pushes.values().forEach(LongAdder::reset);
+        fleet.getPushLatency().reset();
+    }
+
+    void stop(StationFleet fleet) {
+        latencies.values().forEach(LatencyRecorder::stop);
+        fleet.getPushLatency().stop();
+    }
+
+    String format(LoadConfig config, StationFleet fleet, long durationInMillis) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n").append(config).append("\n\n");
+
+        sb.append(LatencyRecorder.header()).append("\n");
+        long requestCount = 0;
+        for (Operation operation : Operation.values()) {
+            LatencyRecorder recorder = latencies.get(operation);
+            if (recorder.getCount() > 0) {
+                sb.append(recorder.summary(durationInMillis)).append("\n");
+                requestCount += recorder.getCount();
+            }
+        }
+        sb.append(fleet.getPushLatency().summary(durationInMillis)).append("\n\n");
+
+        for (Operation operation : Operation.values()) {
+            long timeoutCount = timeouts.get(operation).sum();
+            long rejectedCount = rejections.get(operation).sum();
+            if (timeoutCount > 0 || rejectedCount > 0) {
+                sb.append(String.format("%-28s timed out: %d, rejected: %d%n", operation, timeoutCount, rejectedCount));
+            }
+        }
+
+        long pushCount = 0;
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(pushes).entrySet()) {
+            long count = entry.getValue().sum();
+            pushCount += count;
+            sb.append(String.format("%-28s %10d pushes%n", entry.getKey(), count));
+        }
+
+        double seconds = Math.max(1, durationInMillis) / 1000.0;
+        sb.append(String.format("%nRequests: %.1f msg/s, pushes: %.1f msg/s, station notifications: %d, station commands: %d%n",
+                requestCount / seconds, pushCount / seconds, fleet.getNotificationCount(), fleet.getCommandCount()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,289 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import de.rwth.idsg.bikeman.config.IxsiConfiguration;
+import de.rwth.idsg.bikeman.ixsi.endpoint.Parser;
+import de.rwth.idsg.ixsi.jaxb.UserTriggeredResponseChoice;
+import lombok.extern.slf4j.Slf4j;
+import xjc.schema.ixsi.AvailabilityPushMessageType;
+import xjc.schema.ixsi.BookingResponseType;
+import xjc.schema.ixsi.BookingTargetChangeAvailabilityType;
+import xjc.schema.ixsi.IxsiMessageType;
+import xjc.schema.ixsi.QueryResponseType;
+import xjc.schema.ixsi.SubscriptionMessageType;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * One WebSocket session of a simulated client system. The session sends one request at a time (closed loop),
+ * waits for the response and pauses for the think time. The pushes arrive in between.
+ *
+ * Every session books with its own user and its own pedelecs: a booking is created, then changed or cancelled,
+ * so that the number of open bookings stays small.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+final class LoadSession {
+
+    enum Operation {
+        HEARTBEAT, AVAILABILITY, BOOKING_CREATE, BOOKING_CHANGE, BOOKING_CANCEL,
+        COMPLETE_AVAILABILITY, COMPLETE_PLACE_AVAILABILITY, SUBSCRIBE
+    }
+
+    private final String systemId;
+    private final String sessionName;
+    private final String cardId;
+    private final List<String> pedelecIds;
+    private final LoadConfig config;
+    private final LoadDataset dataset;
+    private final LoadReport report;
+    private final StationFleet fleet;
+    private final Parser parser;
+
+    private final ConcurrentHashMap<String, CompletableFuture<IxsiMessageType>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong messageCounter = new AtomicLong();
+
+    private LoadWebSocketClient client;
+    private String bookingId;
+
+    private volatile boolean running = true;
+
+    LoadSession(String systemId, int index, String cardId, List<String> pedelecIds, LoadConfig config,
+                LoadDataset dataset, LoadReport report, StationFleet fleet, Parser parser) {
+        this.systemId = systemId;
+        this.sessionName = systemId + "-" + index;
+        this.cardId = cardId;
+        this.pedelecIds = pedelecIds;
+        this.config = config;
+        this.dataset = dataset;
+        this.report = report;
+        this.fleet = fleet;
+        this.parser = parser;
+    }
+
+    void connect(InetAddress localAddress, String host, int port) throws IOException {
+        client = new LoadWebSocketClient(localAddress, host, port, IxsiConfiguration.WS_ENDPOINT, this::onText);
+    }
+
+    /**
+     * Subscribes the system to the availability of all pedelecs and stations. The subscriptions belong to the
+     * system, therefore one session per system is enough.
+     */
+    void subscribe(int chunkSize) {
+        List<String> pedelecs = dataset.getPedelecIds();
+        for (int i = 0; i < pedelecs.size(); i += chunkSize) {
+            List<String> chunk = pedelecs.subList(i, Math.min(i + chunkSize, pedelecs.size()));
+            request(Operation.SUBSCRIBE, id -> LoadMessages.subscribeAvailability(systemId, id, chunk));
+        }
+
+        List<String> stations = dataset.getStationIds();
+        for (int i = 0; i < stations.size(); i += chunkSize) {
+            List<String> chunk = stations.subList(i, Math.min(i + chunkSize, stations.size()));
+            request(Operation.SUBSCRIBE, id -> LoadMessages.subscribePlaceAvailability(systemId, id, chunk));
+        }
+    }
+
+    /**
+     * Runs the workload until {@link #stop()} is called
+     */
+    void run() {
+        while (running && client.isOpen()) {
+            try {
+                next();
+                if (config.getThinkTimeInMillis() > 0) {
+                    TimeUnit.MILLISECONDS.sleep(config.getThinkTimeInMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("[{}] Request failed: {}", sessionName, e.getMessage());
+            }
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Workload
+    // -------------------------------------------------------------------------
+
+    private void next() {
+        int dice = ThreadLocalRandom.current().nextInt(100);
+
+        if (dice < config.getHeartbeatShare()) {
+            request(Operation.HEARTBEAT, id -> LoadMessages.heartbeat(systemId, id));
+            return;
+        }
+        dice -= config.getHeartbeatShare();
+
+        if (dice < config.getBookingShare()) {
+            nextBookingStep();
+            return;
+        }
+        dice -= config.getBookingShare();
+
+        if (dice < config.getCompleteShare()) {
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                request(Operation.COMPLETE_AVAILABILITY, id -> LoadMessages.completeAvailability(systemId, id));
+            } else {
+                request(Operation.COMPLETE_PLACE_AVAILABILITY, id -> LoadMessages.completePlaceAvailability(systemId, id));
+            }
+            return;
+        }
+
+        availability();
+    }
+
+    /**
+     * A rectangle of about 1 km around a random point of the area of the stations
+     */
+    private void availability() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double lat = random.nextDouble(dataset.getMinLatitude(), dataset.getMaxLatitude());
+        double lon = random.nextDouble(dataset.getMinLongitude(), dataset.getMaxLongitude());
+
+        request(Operation.AVAILABILITY, id -> LoadMessages.availability(systemId, id,
+                lat - 0.005, lon - 0.007, lat + 0.005, lon + 0.007));
+    }
+
+    private void nextBookingStep() {
+        if (bookingId == null) {
+            if (pedelecIds.isEmpty()) {
+                return;
+            }
+            String pedelecId = pedelecIds.get(ThreadLocalRandom.current().nextInt(pedelecIds.size()));
+            IxsiMessageType response = request(Operation.BOOKING_CREATE,
+                    id -> LoadMessages.createBooking(systemId, id, cardId, pedelecId, 30));
+            bookingId = getBookingId(response);
+            if (bookingId == null) {
+                // The latency is recorded anyway, but a rejected booking is cheaper than a created one
+                report.recordRejected(Operation.BOOKING_CREATE);
+            }
+
+        } else if (ThreadLocalRandom.current().nextBoolean()) {
+            String current = bookingId;
+            request(Operation.BOOKING_CHANGE, id -> LoadMessages.changeBooking(systemId, id, cardId, current, 45));
+
+        } else {
+            String current = bookingId;
+            bookingId = null;
+            request(Operation.BOOKING_CANCEL, id -> LoadMessages.cancelBooking(systemId, id, cardId, current));
+        }
+    }
+
+    /**
+     * @return the response, or null if the request timed out
+     */
+    private IxsiMessageType request(Operation operation, Function<String, IxsiMessageType> builder) {
+        String messageId = sessionName + "-" + messageCounter.incrementAndGet();
+        String payload = parser.marshal(builder.apply(messageId), false);
+
+        CompletableFuture<IxsiMessageType> future = new CompletableFuture<>();
+        pending.put(messageId, future);
+
+        long start = System.nanoTime();
+        try {
+            client.sendText(payload);
+            IxsiMessageType response = future.get(config.getRequestTimeoutInMillis(), TimeUnit.MILLISECONDS);
+            report.recordRequest(operation, System.nanoTime() - start);
+            return response;
+
+        } catch (TimeoutException e) {
+            report.recordTimeout(operation);
+            return null;
+
+        } catch (Exception e) {
+            report.recordTimeout(operation);
+            throw new IllegalStateException(e.getMessage(), e);
+
+        } finally {
+            pending.remove(messageId);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Incoming messages
+    // -------------------------------------------------------------------------
+
+    private void onText(String payload) {
+        long receivedAt = System.nanoTime();
+
+        IxsiMessageType message;
+        try {
+            message = parser.unmarshal(payload, false);
+        } catch (Exception e) {
+            // E.g. the plain error string, after which the server closes the session
+            log.warn("[{}] Received an unparsable message: {}", sessionName, abbreviate(payload));
+            return;
+        }
+
+        SubscriptionMessageType push = message.getSubscriptionMessage();
+        if (push != null) {
+            onPush(push, receivedAt);
+            return;
+        }
+
+        for (QueryResponseType response : message.getResponse()) {
+            complete(response.getTransaction().getMessageID(), message);
+        }
+
+        if (message.getSubscriptionResponse() != null) {
+            complete(message.getSubscriptionResponse().getTransaction().getMessageID(), message);
+        }
+    }
+
+    private void onPush(SubscriptionMessageType push, long receivedAt) {
+        Object group = push.getPushMessageGroup();
+        report.recordPush(group == null ? "Unknown" : group.getClass().getSimpleName());
+
+        if (group instanceof AvailabilityPushMessageType) {
+            for (BookingTargetChangeAvailabilityType change : ((AvailabilityPushMessageType) group).getAvailabilityChange()) {
+                fleet.onAvailabilityPush(systemId, change.getPlaceID(), receivedAt);
+            }
+        }
+    }
+
+    private void complete(String messageId, IxsiMessageType message) {
+        CompletableFuture<IxsiMessageType> future = pending.get(messageId);
+        if (future != null) {
+            future.complete(message);
+        }
+    }
+
+    private static String getBookingId(IxsiMessageType response) {
+        if (response == null || response.getResponse().isEmpty()) {
+            return null;
+        }
+
+        UserTriggeredResponseChoice choice = response.getResponse().get(0).getUserTriggeredResponseGroup();
+        if (choice instanceof BookingResponseType) {
+            BookingResponseType booking = (BookingResponseType) choice;
+            if (booking.getBooking() != null) {
+                return booking.getBooking().getID();
+            }
+        }
+        return null;
+    }
+
+    private static String abbreviate(String s) {
+        return s.length() > 200 ? s.substring(0, 200) + "..." : s;
+    }
+}
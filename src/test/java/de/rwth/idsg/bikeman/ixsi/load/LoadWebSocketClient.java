@@ -0,0 +1,256 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Minimal WebSocket client (RFC 6455) for text messages.
+ *
+ * The server maps the IP address of a client to its system id (see HandshakeInterceptor), so every simulated
+ * system needs its own source address. The WebSocket clients of Spring and Tomcat cannot bind the local address,
+ * therefore this one works on a plain socket.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+final class LoadWebSocketClient {
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final DataInputStream in;
+    private final Thread reader;
+
+    private volatile boolean closing;
+
+    /**
+     * Opens the connection and starts the thread that passes the incoming text messages to the handler
+     */
+    LoadWebSocketClient(InetAddress localAddress, String host, int port, String path,
+                        Consumer<String> textHandler) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.bind(new InetSocketAddress(localAddress, 0));
+        socket.connect(new InetSocketAddress(host, port), 10_000);
+
+        out = socket.getOutputStream();
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+        handshake(host, port, path);
+
+        reader = new Thread(() -> readLoop(textHandler), "ws-" + localAddress.getHostAddress() + "-" + socket.getLocalPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    synchronized void sendText(String text) throws IOException {
+        writeFrame(OP_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void close() {
+        closing = true;
+        try {
+            synchronized (this) {
+                writeFrame(OP_CLOSE, new byte[] {0x03, (byte) 0xE8}); // 1000: normal closure
+            }
+            reader.join(1_000);
+        } catch (IOException | InterruptedException e) {
+            // Closing anyway
+        } finally {
+            closeSocket();
+        }
+    }
+
+    boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void handshake(String host, int port, String path) throws IOException {
+        byte[] nonce = new byte[16];
+        ThreadLocalRandom.current().nextBytes(nonce);
+        String key = Base64.getEncoder().encodeToString(nonce);
+
+        String request = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + host + ":" + port + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "\r\n";
+
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        String statusLine = readLine(in);
+        if (!statusLine.startsWith("HTTP/1.1 101")) {
+            closeSocket();
+            throw new IOException("Handshake failed: " + statusLine);
+        }
+
+        String accept = null;
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && "Sec-WebSocket-Accept".equalsIgnoreCase(line.substring(0, colon).trim())) {
+                accept = line.substring(colon + 1).trim();
+            }
+        }
+
+        if (!expectedAccept(key).equals(accept)) {
+            closeSocket();
+            throw new IOException("Handshake failed: Unexpected Sec-WebSocket-Accept " + accept);
+        }
+    }
+
+    private void readLoop(Consumer<String> textHandler) {
+        ByteArrayOutputStream fragments = new ByteArrayOutputStream();
+        try {
+            while (true) {
+                int b0 = in.readUnsignedByte();
+                int b1 = in.readUnsignedByte();
+
+                boolean fin = (b0 & 0x80) != 0;
+                int opcode = b0 & 0x0F;
+
+                long length = b1 & 0x7F;
+                if (length == 126) {
+                    length = in.readUnsignedShort();
+                } else if (length == 127) {
+                    length = in.readLong();
+                }
+
+                // Frames from the server are not masked
+                byte[] payload = new byte[(int) length];
+                in.readFully(payload);
+
+                switch (opcode) {
+                    case OP_TEXT:
+                    case OP_CONTINUATION:
+                        fragments.write(payload);
+                        if (fin) {
+                            textHandler.accept(new String(fragments.toByteArray(), StandardCharsets.UTF_8));
+                            fragments.reset();
+                        }
+                        break;
+
+                    case OP_PING:
+                        synchronized (this) {
+                            writeFrame(OP_PONG, payload);
+                        }
+                        break;
+
+                    case OP_CLOSE:
+                        if (!closing) {
+                            log.warn("Connection {} was closed by the server", socket.getLocalSocketAddress());
+                            synchronized (this) {
+                                writeFrame(OP_CLOSE, payload);
+                            }
+                        }
+                        return;
+
+                    default:
+                        break;
+                }
+            }
+        } catch (EOFException e) {
+            if (!closing) {
+                log.warn("Connection {} was closed unexpectedly", socket.getLocalSocketAddress());
+            }
+        } catch (IOException e) {
+            if (!closing) {
+                log.warn("Connection {} failed: {}", socket.getLocalSocketAddress(), e.getMessage());
+            }
+        } finally {
+            closeSocket();
+        }
+    }
+
+    /**
+     * Frames from a client must be masked
+     */
+    private void writeFrame(int opcode, byte[] payload) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 14);
+        frame.write(0x80 | opcode);
+
+        if (payload.length < 126) {
+            frame.write(0x80 | payload.length);
+        } else if (payload.length <= 0xFFFF) {
+            frame.write(0x80 | 126);
+            frame.write(payload.length >>> 8);
+            frame.write(payload.length);
+        } else {
+            frame.write(0x80 | 127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                frame.write((int) ((long) payload.length >>> shift));
+            }
+        }
+
+        byte[] mask = new byte[4];
+        ThreadLocalRandom.current().nextBytes(mask);
+        frame.write(mask);
+
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ mask[i & 3]);
+        }
+
+        frame.writeTo(out);
+        out.flush();
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing to do
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c == -1) {
+                throw new EOFException("Connection closed during the handshake");
+            }
+            if (c != '\r') {
+                sb.append((char) c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String expectedAccept(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
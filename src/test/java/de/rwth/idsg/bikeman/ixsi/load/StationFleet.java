@@ -0,0 +1,184 @@
+package de.rwth.idsg.bikeman.ixsi.load;
+
+import com.sun.net.httpserver.HttpServer;
+import de.rwth.idsg.bikeman.psinterface.dto.OperationState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.mailbox.StationMailboxExecutor;
+import de.rwth.idsg.bikeman.psinterface.rest.PsiService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.context.ApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates the stations of the dataset in both directions:
+ *
+ * 1) Every storm interval, a random subset of the stations toggles its operation state. The status notifications
+ * go through the same mailboxes as the ones received by PsiResource, and make the backend push the (in)availability
+ * of the pedelecs to the subscribed systems.
+ *
+ * 2) The commands of the backend (e.g. reserve-now of a booking) are accepted by a stub HTTP endpoint.
+ *
+ * The push latency is the time from a status notification until a system receives the first availability push
+ * for the station. Later pushes for the same station are not attributed to the notification again.
+ *
+ * @since 18.10.2016
+ */
+@Slf4j
+final class StationFleet {
+
+    private final LoadConfig config;
+    private final List<String> stationIds;
+
+    private final ConcurrentHashMap<String, Boolean> operative = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Trigger> triggers = new ConcurrentHashMap<>();
+
+    /**
+     * Key   (String)                             = System id
+     * Value (ConcurrentHashMap<String, Long>)    = Station id -> sequence of the last trigger attributed to a push
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Long>> attributed = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong notificationCount = new AtomicLong();
+    private final AtomicLong commandCount = new AtomicLong();
+
+    private final LatencyRecorder pushLatency = new LatencyRecorder("push (station -> system)");
+
+    private HttpServer stationEndpoint;
+    private ScheduledExecutorService stormScheduler;
+
+    StationFleet(LoadConfig config, List<String> stationIds) {
+        this.config = config;
+        this.stationIds = stationIds;
+        stationIds.forEach(id -> operative.put(id, Boolean.TRUE));
+    }
+
+    /**
+     * @return the base address of the stub endpoint of the stations
+     */
+    String startEndpoint() throws IOException {
+        stationEndpoint = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stationEndpoint.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read() != -1) {
+                    // Discard the command
+                }
+            }
+            commandCount.incrementAndGet();
+
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        stationEndpoint.setExecutor(Executors.newFixedThreadPool(4));
+        stationEndpoint.start();
+
+        return "http://127.0.0.1:" + stationEndpoint.getAddress().getPort();
+    }
+
+    void startStorms(ApplicationContext context) {
+        StationMailboxExecutor mailboxExecutor = context.getBean(StationMailboxExecutor.class);
+        PsiService psiService = context.getBean(PsiService.class);
+
+        stormScheduler = Executors.newSingleThreadScheduledExecutor();
+        stormScheduler.scheduleAtFixedRate(() -> {
+            try {
+                storm(mailboxExecutor, psiService);
+            } catch (Exception e) {
+                log.error("Failed to trigger the push storm", e);
+            }
+        }, 0, config.getStormIntervalInMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (stormScheduler != null) {
+            stormScheduler.shutdownNow();
+        }
+        if (stationEndpoint != null) {
+            stationEndpoint.stop(0);
+        }
+    }
+
+    /**
+     * Called by the sessions for every station, which an incoming availability push refers to
+     */
+    void onAvailabilityPush(String systemId, String stationId, long receivedAt) {
+        Trigger trigger = triggers.get(stationId);
+        if (trigger == null) {
+            return;
+        }
+
+        ConcurrentHashMap<String, Long> lastAttributed = attributed.computeIfAbsent(systemId,
+                k -> new ConcurrentHashMap<>());
+
+        Long previous = lastAttributed.put(stationId, trigger.sequence);
+        if (previous == null || previous < trigger.sequence) {
+            pushLatency.record(receivedAt - trigger.sentAt);
+        }
+    }
+
+    LatencyRecorder getPushLatency() {
+        return pushLatency;
+    }
+
+    long getNotificationCount() {
+        return notificationCount.get();
+    }
+
+    long getCommandCount() {
+        return commandCount.get();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void storm(StationMailboxExecutor mailboxExecutor, PsiService psiService) {
+        List<String> shuffled = new ArrayList<>(stationIds);
+        Collections.shuffle(shuffled, ThreadLocalRandom.current());
+
+        for (String stationId : shuffled.subList(0, Math.min(config.getStormSize(), shuffled.size()))) {
+            boolean nowOperative = !operative.get(stationId);
+            operative.put(stationId, nowOperative);
+
+            StationStatusDTO dto = new StationStatusDTO();
+            dto.setStationManufacturerId(stationId);
+            dto.setStationState(nowOperative ? OperationState.OPERATIVE : OperationState.INOPERATIVE);
+            dto.setTimestamp(DateTime.now());
+            dto.setSlots(Collections.emptyList());
+
+            triggers.put(stationId, new Trigger(sequence.incrementAndGet(), System.nanoTime()));
+            notificationCount.incrementAndGet();
+
+            mailboxExecutor.submit(stationId, () -> {
+                psiService.handleStationStatusNotification(dto);
+                return null;
+            });
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Trigger {
+        private final long sequence;
+        private final long sentAt;
+    }
+}
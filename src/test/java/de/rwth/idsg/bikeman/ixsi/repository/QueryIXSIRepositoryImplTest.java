@@ -0,0 +1,156 @@
+package de.rwth.idsg.bikeman.ixsi.repository;
+
+import de.rwth.idsg.bikeman.Application;
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.domain.Pedelec;
+import de.rwth.idsg.bikeman.domain.PedelecChargingStatus;
+import de.rwth.idsg.bikeman.domain.Station;
+import de.rwth.idsg.bikeman.domain.StationSlot;
+import de.rwth.idsg.bikeman.ixsi.dto.AvailabilityResponseDTO;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.IntegrationTest;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the QueryIXSIRepositoryImpl. The availability at places is compared with the PostGIS queries it
+ * replaced. Their geo predicate is replaced with the place ids, since the spatial index selects the places now
+ * (see StationGridTest), and their state of charge column with the charging status, since it was moved there.
+ *
+ * @see QueryIXSIRepositoryImpl#availabilityAtPlaces(List)
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = Application.class)
+@WebAppConfiguration
+@IntegrationTest
+@Transactional
+public class QueryIXSIRepositoryImplTest {
+
+    private static final String REMOVED_QUERY =
+            "SELECT p.manufacturer_id, s.manufacturer_id, s.location_latitude, s.location_longitude, " +
+            "cs.battery_state_of_charge " +
+            "FROM t_pedelec p JOIN t_station_slot slot ON p.pedelec_id = slot.pedelec_id " +
+            "JOIN t_station s ON s.station_id = slot.station_id " +
+            "LEFT JOIN t_pedelec_charging_status cs ON cs.pedelec_id = p.pedelec_id " +
+            "WHERE s.manufacturer_id IN (:placeIds)";
+
+    @Inject
+    private QueryIXSIRepository queryIXSIRepository;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Before
+    public void setup() {
+        Station operative = station("test-station-1", OperationState.OPERATIVE);
+        slot(operative, "test-slot-1", OperationState.OPERATIVE, pedelec("test-pedelec-1", 0.5));
+        slot(operative, "test-slot-2", OperationState.INOPERATIVE, pedelec("test-pedelec-2", 0.7));
+        slot(operative, "test-slot-3", OperationState.OPERATIVE, pedelec("test-pedelec-3", null));
+        slot(operative, "test-slot-4", OperationState.OPERATIVE, null);
+
+        Station inoperative = station("test-station-2", OperationState.INOPERATIVE);
+        slot(inoperative, "test-slot-5", OperationState.OPERATIVE, pedelec("test-pedelec-4", 0.9));
+
+        Station other = station("test-station-3", OperationState.OPERATIVE);
+        slot(other, "test-slot-6", OperationState.OPERATIVE, pedelec("test-pedelec-5", 0.1));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void testAvailabilityAtPlacesMatchesRemovedQueries() {
+        List<String> placeIds = Arrays.asList("test-station-1", "test-station-2");
+
+        List<AvailabilityResponseDTO> expected = removedQuery(placeIds);
+        List<AvailabilityResponseDTO> result = queryIXSIRepository.availabilityAtPlaces(placeIds);
+
+        assertThat(expected).hasSize(4);
+        assertThat(result).containsOnlyElementsOf(expected)
+                          .hasSameSizeAs(expected);
+    }
+
+    @Test
+    public void testPedelecWithoutChargingStatusIsReturned() {
+        List<AvailabilityResponseDTO> result =
+                queryIXSIRepository.availabilityAtPlaces(Collections.singletonList("test-station-1"));
+
+        assertThat(result).extracting("manufacturerId")
+                          .containsOnly("test-pedelec-1", "test-pedelec-2", "test-pedelec-3");
+    }
+
+    @Test
+    public void testNoPlaces() {
+        assertThat(queryIXSIRepository.availabilityAtPlaces(Collections.emptyList())).isEmpty();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private List<AvailabilityResponseDTO> removedQuery(List<String> placeIds) {
+        List<Object[]> rows = em.createNativeQuery(REMOVED_QUERY)
+                                .setParameter("placeIds", placeIds)
+                                .getResultList();
+
+        List<AvailabilityResponseDTO> list = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            list.add(new AvailabilityResponseDTO((String) row[0], (String) row[1], (BigDecimal) row[2],
+                    (BigDecimal) row[3], row[4] == null ? null : ((Number) row[4]).doubleValue()));
+        }
+        return list;
+    }
+
+    private Station station(String manufacturerId, OperationState state) {
+        Station station = new Station();
+        station.setManufacturerId(manufacturerId);
+        station.setName(manufacturerId);
+        station.setLocationLatitude(new BigDecimal("50.775346"));
+        station.setLocationLongitude(new BigDecimal("6.083887"));
+        station.setState(state);
+        em.persist(station);
+        return station;
+    }
+
+    private void slot(Station station, String manufacturerId, OperationState state, Pedelec pedelec) {
+        StationSlot slot = new StationSlot();
+        slot.setStation(station);
+        slot.setManufacturerId(manufacturerId);
+        slot.setStationSlotPosition(0);
+        slot.setState(state);
+        slot.setIsOccupied(pedelec != null);
+        slot.setPedelec(pedelec);
+        em.persist(slot);
+    }
+
+    private Pedelec pedelec(String manufacturerId, Double stateOfCharge) {
+        Pedelec pedelec = new Pedelec();
+        pedelec.setManufacturerId(manufacturerId);
+        pedelec.setState(OperationState.OPERATIVE);
+        em.persist(pedelec);
+
+        if (stateOfCharge != null) {
+            PedelecChargingStatus status = new PedelecChargingStatus();
+            status.setPedelec(pedelec);
+            status.setBatteryStateOfCharge(stateOfCharge);
+            em.persist(status);
+        }
+        return pedelec;
+    }
+}
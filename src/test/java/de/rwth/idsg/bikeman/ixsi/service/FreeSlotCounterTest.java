@@ -0,0 +1,73 @@
+package de.rwth.idsg.bikeman.ixsi.service;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.event.TransactionStartedEvent;
+import de.rwth.idsg.bikeman.ixsi.dto.PlaceAvailabilityResponseDTO;
+import de.rwth.idsg.bikeman.ixsi.dto.SlotStateDTO;
+import de.rwth.idsg.bikeman.ixsi.repository.QueryIXSIRepository;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the FreeSlotCounter.
+ *
+ * @see FreeSlotCounter
+ */
+public class FreeSlotCounterTest {
+
+    private static final String STATION = "station-1";
+
+    private FreeSlotCounter counter;
+    private QueryIXSIRepository queryIXSIRepository;
+
+    @Before
+    public void setUp() {
+        queryIXSIRepository = mock(QueryIXSIRepository.class);
+
+        counter = new FreeSlotCounter();
+        ReflectionTestUtils.setField(counter, "queryIXSIRepository", queryIXSIRepository);
+        ReflectionTestUtils.setField(counter, "placeAvailabilityPushService", mock(PlaceAvailabilityPushService.class));
+    }
+
+    @Test
+    public void testEventDuringReconcileIsKept() {
+        // Both slots are occupied
+        List<SlotStateDTO> dbState = Arrays.asList(
+                new SlotStateDTO(STATION, "slot-1", OperationState.OPERATIVE, true),
+                new SlotStateDTO(STATION, "slot-2", OperationState.OPERATIVE, true));
+
+        when(queryIXSIRepository.slotStates()).thenReturn(dbState);
+        reconcile();
+        assertThat(freeCount()).isZero();
+
+        // The pedelec is taken while the reconciliation reads the DB, which still has the slot occupied
+        when(queryIXSIRepository.slotStates()).thenAnswer(invocation -> {
+            counter.onTransactionStarted(new TransactionStartedEvent(STATION, "slot-1", "pedelec-1", DateTime.now()));
+            return dbState;
+        });
+        reconcile();
+
+        assertThat(freeCount()).isEqualTo(1);
+        assertThat(counter.getCorrectionCount()).isZero();
+    }
+
+    private void reconcile() {
+        ReflectionTestUtils.invokeMethod(counter, "reconcile");
+    }
+
+    private int freeCount() {
+        List<PlaceAvailabilityResponseDTO> dtos = counter.placeAvailability(Collections.singletonList(STATION));
+        assertThat(dtos).hasSize(1);
+        return dtos.get(0).getAvailableSlots();
+    }
+}
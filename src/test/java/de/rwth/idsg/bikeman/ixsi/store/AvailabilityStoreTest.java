@@ -0,0 +1,145 @@
+package de.rwth.idsg.bikeman.ixsi.store;
+
+import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
+import org.junit.Before;
+import org.junit.Test;
+import xjc.schema.ixsi.BookingTargetIDType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the subscription index of the AvailabilityStore.
+ *
+ * @see AvailabilityStore
+ * @see AbstractSubscriptionStore
+ */
+public class AvailabilityStoreTest {
+
+    private AvailabilityStore store;
+
+    @Before
+    public void setUp() {
+        store = new AvailabilityStore();
+    }
+
+    @Test
+    public void testSubscribeAndLookupInBothDirections() {
+        store.subscribe("system-1", Arrays.asList(target("p1"), target("p2")));
+        store.subscribe("system-2", Collections.singletonList(target("p2")));
+
+        assertThat(store.getSubscribedSystems(target("p1"))).containsOnly("system-1");
+        assertThat(store.getSubscribedSystems(target("p2"))).containsOnly("system-1", "system-2");
+        assertThat(store.getSubscribedSystems(target("p3"))).isEmpty();
+
+        assertThat(store.getSubscriptions("system-1")).containsOnly(target("p1"), target("p2"));
+        assertThat(store.getSubscriptions("system-2")).containsOnly(target("p2"));
+    }
+
+    @Test
+    public void testForeignProviderIsKept() {
+        BookingTargetIDType foreign = new BookingTargetIDType().withBookeeID("p1").withProviderID("other");
+        store.subscribe("system-1", Arrays.asList(foreign, target("p1")));
+
+        assertThat(store.getSubscriptions("system-1")).containsOnly(foreign, target("p1"));
+        assertThat(store.getSubscribedSystems(foreign)).containsOnly("system-1");
+    }
+
+    @Test
+    public void testUnsubscribe() {
+        store.subscribe("system-1", Arrays.asList(target("p1"), target("p2")));
+        store.subscribe("system-2", Collections.singletonList(target("p1")));
+
+        store.unsubscribe("system-1", Collections.singletonList(target("p1")));
+
+        assertThat(store.getSubscribedSystems(target("p1"))).containsOnly("system-2");
+        assertThat(store.getSubscriptions("system-1")).containsOnly(target("p2"));
+    }
+
+    @Test
+    public void testUnsubscribeAll() {
+        store.subscribe("system-1", Arrays.asList(target("p1"), target("p2")));
+        store.subscribe("system-2", Collections.singletonList(target("p1")));
+
+        store.unsubscribeAll("system-1");
+
+        assertThat(store.getSubscriptions("system-1")).isEmpty();
+        assertThat(store.getSubscribedSystems(target("p1"))).containsOnly("system-2");
+        assertThat(store.getSubscribedSystems(target("p2"))).isEmpty();
+        assertThat(store.getLookupTable()).containsOnlyKeys(target("p1"));
+    }
+
+    @Test
+    public void testExpiry() {
+        store.subscribe("system-1", Arrays.asList(target("p1"), target("p2")), 1);
+        store.subscribe("system-2", Collections.singletonList(target("p1")));
+        assertThat(store.getPendingExpirationCount()).isEqualTo(2);
+
+        long now = System.currentTimeMillis();
+
+        store.expire(now);
+        assertThat(store.getSubscriptions("system-1")).hasSize(2);
+
+        store.expire(now + TimeUnit.MINUTES.toMillis(1) + AbstractSubscriptionStore.EXPIRY_TICK_IN_MILLIS);
+        assertThat(store.getSubscriptions("system-1")).isEmpty();
+        assertThat(store.getSubscribedSystems(target("p1"))).containsOnly("system-2");
+        assertThat(store.getPendingExpirationCount()).isZero();
+    }
+
+    @Test
+    public void testRenewalExtendsDeadline() {
+        store.subscribe("system-1", Collections.singletonList(target("p1")), 1);
+        store.subscribe("system-1", Collections.singletonList(target("p1")), 10);
+        assertThat(store.getPendingExpirationCount()).isEqualTo(1);
+
+        long now = System.currentTimeMillis();
+
+        store.expire(now + TimeUnit.MINUTES.toMillis(2));
+        assertThat(store.getSubscriptions("system-1")).containsOnly(target("p1"));
+
+        store.expire(now + TimeUnit.MINUTES.toMillis(10) + AbstractSubscriptionStore.EXPIRY_TICK_IN_MILLIS);
+        assertThat(store.getSubscriptions("system-1")).isEmpty();
+    }
+
+    @Test
+    public void testUnsubscribeBeforeExpiry() {
+        store.subscribe("system-1", Collections.singletonList(target("p1")), 1);
+        store.unsubscribe("system-1", Collections.singletonList(target("p1")));
+        assertThat(store.getPendingExpirationCount()).isZero();
+
+        store.subscribe("system-1", Collections.singletonList(target("p1")));
+        store.expire(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(2));
+        assertThat(store.getSubscriptions("system-1")).containsOnly(target("p1"));
+    }
+
+    @Test
+    public void testPage() {
+        store.subscribe("system-2", Arrays.asList(target("p3"), target("p1")));
+        store.subscribe("system-1", Arrays.asList(target("p2"), target("p1"), target("x1")));
+
+        SubscriptionPage<BookingTargetIDType> first = store.getPage(null, null, 0, 2);
+        assertThat(first.getTotalCount()).isEqualTo(5);
+        assertThat(first.getEntries()).extracting("systemId").containsExactly("system-1", "system-1");
+        assertThat(first.getEntries()).extracting("item").containsExactly(target("p1"), target("p2"));
+
+        SubscriptionPage<BookingTargetIDType> spanning = store.getPage(null, null, 2, 2);
+        assertThat(spanning.getEntries()).extracting("systemId").containsExactly("system-1", "system-2");
+        assertThat(spanning.getEntries()).extracting("item").containsExactly(target("x1"), target("p1"));
+
+        SubscriptionPage<BookingTargetIDType> last = store.getPage(null, null, 4, 2);
+        assertThat(last.getEntries()).extracting("item").containsExactly(target("p3"));
+
+        SubscriptionPage<BookingTargetIDType> filtered = store.getPage("system-1", "p", 0, 10);
+        assertThat(filtered.getTotalCount()).isEqualTo(2);
+        assertThat(filtered.getEntries()).extracting("item").containsExactly(target("p1"), target("p2"));
+    }
+
+    private static BookingTargetIDType target(String bookeeId) {
+        return new BookingTargetIDType()
+                .withBookeeID(bookeeId)
+                .withProviderID(IXSIConstants.Provider.id);
+    }
+}
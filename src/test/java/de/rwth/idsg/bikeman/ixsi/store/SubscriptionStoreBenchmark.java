@@ -0,0 +1,103 @@
+package de.rwth.idsg.bikeman.ixsi.store;
+
+import de.rwth.idsg.bikeman.ixsi.IXSIConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xjc.schema.ixsi.BookingTargetIDType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscribe, lookup and unsubscribe on an availability store with 100k subscriptions
+ * (10 systems, 10k pedelecs each).
+ *
+ * Not a unit test. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.rwth.idsg.bikeman.ixsi.store.SubscriptionStoreBenchmark
+ *
+ * @since 18.10.2016
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SubscriptionStoreBenchmark {
+
+    private static final int SYSTEM_COUNT = 10;
+    private static final int PEDELEC_COUNT = 10_000;
+
+    private AvailabilityStore store;
+    private List<BookingTargetIDType> targets;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        targets = new ArrayList<>(PEDELEC_COUNT);
+        for (int i = 0; i < PEDELEC_COUNT; i++) {
+            targets.add(new BookingTargetIDType()
+                    .withBookeeID("pedelec-" + i)
+                    .withProviderID(IXSIConstants.Provider.id));
+        }
+
+        store = new AvailabilityStore();
+        for (int i = 0; i < SYSTEM_COUNT; i++) {
+            store.subscribe(systemId(i), targets);
+        }
+    }
+
+    @Benchmark
+    public Set<String> getSubscribedSystems() {
+        return store.getSubscribedSystems(randomTarget());
+    }
+
+    @Benchmark
+    public List<BookingTargetIDType> getSubscriptions() {
+        return store.getSubscriptions(systemId(ThreadLocalRandom.current().nextInt(SYSTEM_COUNT)));
+    }
+
+    @Benchmark
+    public void subscribeAndUnsubscribe() {
+        List<BookingTargetIDType> items = Collections.singletonList(randomTarget());
+        store.subscribe("benchmark-system", items);
+        store.unsubscribe("benchmark-system", items);
+    }
+
+    /**
+     * Session close of a system with 10k subscriptions, which resubscribes afterwards to keep the size constant
+     */
+    @Benchmark
+    public void unsubscribeAllAndResubscribe() {
+        String systemId = systemId(ThreadLocalRandom.current().nextInt(SYSTEM_COUNT));
+        store.unsubscribeAll(systemId);
+        store.subscribe(systemId, targets);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SubscriptionStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private BookingTargetIDType randomTarget() {
+        return targets.get(ThreadLocalRandom.current().nextInt(PEDELEC_COUNT));
+    }
+
+    private static String systemId(int i) {
+        return "system-" + i;
+    }
+}
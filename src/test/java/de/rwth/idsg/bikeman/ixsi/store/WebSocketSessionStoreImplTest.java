@@ -0,0 +1,142 @@
+package de.rwth.idsg.bikeman.ixsi.store;
+
+import de.rwth.idsg.bikeman.ixsi.endpoint.OutboundQueueSession;
+import de.rwth.idsg.bikeman.ixsi.endpoint.OverflowPolicy;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the WebSocketSessionStoreImpl.
+ *
+ * @see WebSocketSessionStoreImpl
+ */
+public class WebSocketSessionStoreImplTest {
+
+    private static final String SYSTEM = "system-1";
+
+    private WebSocketSessionStoreImpl store;
+
+    @Before
+    public void setUp() {
+        store = new WebSocketSessionStoreImpl();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNoSession() {
+        store.getNext(SYSTEM);
+    }
+
+    @Test
+    public void testRoundRobin() {
+        WebSocketSession s1 = session("s1", true);
+        WebSocketSession s2 = session("s2", true);
+        WebSocketSession s3 = session("s3", true);
+        store.add(SYSTEM, s1);
+        store.add(SYSTEM, s2);
+        store.add(SYSTEM, s3);
+
+        List<WebSocketSession> selected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            selected.add(store.getNext(SYSTEM));
+        }
+
+        assertThat(selected).containsExactly(s1, s2, s3, s1, s2, s3);
+    }
+
+    @Test
+    public void testLeastLoaded() throws Exception {
+        // The writer never runs, so the messages stay in the queue
+        OutboundQueueSession busy = queueSession("busy");
+        OutboundQueueSession idle = queueSession("idle");
+        store.add(SYSTEM, busy);
+        store.add(SYSTEM, idle);
+
+        busy.sendMessage(new TextMessage("message"));
+
+        assertThat(store.getNext(SYSTEM)).isSameAs(idle);
+        assertThat(store.getNext(SYSTEM)).isSameAs(idle);
+
+        idle.sendMessage(new TextMessage("message"));
+        idle.sendMessage(new TextMessage("message"));
+
+        assertThat(store.getNext(SYSTEM)).isSameAs(busy);
+        assertThat(store.getSelectionStats().get(0).getRebalancedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testClosedSessionIsAvoided() {
+        WebSocketSession closed = session("closed", false);
+        WebSocketSession open = session("open", true);
+        store.add(SYSTEM, closed);
+        store.add(SYSTEM, open);
+
+        assertThat(store.getNext(SYSTEM)).isSameAs(open);
+        assertThat(store.getNext(SYSTEM)).isSameAs(open);
+    }
+
+    @Test
+    public void testRemove() {
+        WebSocketSession s1 = session("s1", true);
+        WebSocketSession s2 = session("s2", true);
+        store.add(SYSTEM, s1);
+        store.add(SYSTEM, s2);
+
+        store.remove(SYSTEM, s1);
+
+        assertThat(store.size(SYSTEM)).isEqualTo(1);
+        assertThat(store.get(SYSTEM, "s1").isPresent()).isFalse();
+        assertThat(store.get(SYSTEM, "s2").get()).isSameAs(s2);
+        assertThat(store.getNext(SYSTEM)).isSameAs(s2);
+
+        store.remove(SYSTEM, s2);
+
+        assertThat(store.size(SYSTEM)).isEqualTo(0);
+        assertThat(store.getLookupTable()).isEmpty();
+    }
+
+    @Test
+    public void testConcurrentAddAndRemove() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 1000;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    WebSocketSession session = session("s" + (offset + i), true);
+                    store.add(SYSTEM, session);
+                    store.getNext(SYSTEM);
+                    if (i % 2 == 0) {
+                        store.remove(SYSTEM, session);
+                    }
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(store.size(SYSTEM)).isEqualTo(2000);
+    }
+
+    private static WebSocketSession session(String id, boolean open) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(open);
+        return session;
+    }
+
+    private static OutboundQueueSession queueSession(String id) {
+        return new OutboundQueueSession(session(id, true), SYSTEM, 10, OverflowPolicy.DROP_OLDEST, 0, 0, task -> { });
+    }
+}
@@ -0,0 +1,105 @@
+package de.rwth.idsg.bikeman.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for writing and reading the journal segments.
+ *
+ * @see JournalSegmentWriter
+ * @see JournalReader
+ */
+public class JournalSegmentWriterTest {
+
+    private static final long START = 1476784800000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsAreReadBackInOrder() throws Exception {
+        Path directory = folder.getRoot().toPath();
+
+        try (JournalSegmentWriter writer = new JournalSegmentWriter(directory, 1024 * 1024, TimeUnit.HOURS.toMillis(1), 10)) {
+            writer.write(new JournalRecord(Direction.IXSI_IN, START, "system-1", "session-1", "<IXSI/>"));
+            writer.write(new JournalRecord(Direction.PSI_REQUEST, START + 1, "station-1", "GET /psi/heartbeat", new byte[0]));
+            writer.write(new JournalRecord(Direction.PSI_RESPONSE, START + 2, "station-1", "200",
+                    "{\"timestamp\":1}".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        List<JournalRecord> records = readAll(directory);
+
+        assertThat(records).hasSize(3);
+        assertThat(records.get(0).getDirection()).isEqualTo(Direction.IXSI_IN);
+        assertThat(records.get(0).getChannelId()).isEqualTo("system-1");
+        assertThat(records.get(0).getTarget()).isEqualTo("session-1");
+        assertThat(records.get(0).getPayloadAsString()).isEqualTo("<IXSI/>");
+        assertThat(records.get(1).getTarget()).isEqualTo("GET /psi/heartbeat");
+        assertThat(records.get(1).getPayload()).isEmpty();
+        assertThat(records.get(2).getTimestamp()).isEqualTo(START + 2);
+        assertThat(records.get(2).getPayloadAsString()).isEqualTo("{\"timestamp\":1}");
+    }
+
+    @Test
+    public void testRotationAndRetention() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        String payload = new String(new char[300]).replace('\0', 'x');
+
+        try (JournalSegmentWriter writer = new JournalSegmentWriter(directory, 1024, TimeUnit.HOURS.toMillis(1), 3)) {
+            for (int i = 0; i < 20; i++) {
+                writer.write(new JournalRecord(Direction.IXSI_OUT, START + i, "system-1", "session-1", payload));
+            }
+        }
+
+        // 3 records fit into a segment, and only the latest 3 segments are kept
+        assertThat(JournalReader.listSegments(directory)).hasSize(3);
+
+        List<JournalRecord> records = readAll(directory);
+        assertThat(records).hasSize(8);
+        assertThat(records.get(0).getTimestamp()).isEqualTo(START + 12);
+        assertThat(records.get(7).getTimestamp()).isEqualTo(START + 19);
+    }
+
+    @Test
+    public void testTimeWindow() throws Exception {
+        Path directory = folder.getRoot().toPath();
+
+        try (JournalSegmentWriter writer = new JournalSegmentWriter(directory, 1024 * 1024, TimeUnit.HOURS.toMillis(1), 10)) {
+            for (int i = 0; i < 10; i++) {
+                writer.write(new JournalRecord(Direction.IXSI_IN, START + i * 1000, "system-1", "session-1", "m" + i));
+            }
+        }
+
+        List<JournalRecord> records = new ArrayList<>();
+        JournalReader.read(directory, START + 2000, START + 5000, records::add);
+
+        assertThat(records).extracting("payloadAsString").containsExactly("m2", "m3", "m4");
+    }
+
+    @Test
+    public void testTooLargeRecordIsSkipped() throws Exception {
+        Path directory = folder.getRoot().toPath();
+
+        try (JournalSegmentWriter writer = new JournalSegmentWriter(directory, 256, TimeUnit.HOURS.toMillis(1), 10)) {
+            assertThat(writer.write(new JournalRecord(Direction.IXSI_IN, START, "s", "t", new byte[512]))).isFalse();
+            assertThat(writer.write(new JournalRecord(Direction.IXSI_IN, START, "s", "t", new byte[16]))).isTrue();
+        }
+
+        assertThat(readAll(directory)).hasSize(1);
+    }
+
+    private static List<JournalRecord> readAll(Path directory) throws Exception {
+        List<JournalRecord> records = new ArrayList<>();
+        JournalReader.read(directory, Long.MIN_VALUE, Long.MAX_VALUE, records::add);
+        return records;
+    }
+}
@@ -0,0 +1,152 @@
+package de.rwth.idsg.bikeman.psinterface;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.rwth.idsg.bikeman.config.JacksonConfiguration;
+import de.rwth.idsg.bikeman.psinterface.dto.request.BootNotificationDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.response.BootConfirmationDTO;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the PSI messages of a station with 10 slots, including the Unix timestamps
+ * (UnixTimestampDeserializer/-Serializer) and the decimal values (CustomDoubleDeserializer) of the charging
+ * status. The mapper is configured with the Joda module of the application.
+ *
+ * Not a unit test. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.rwth.idsg.bikeman.psinterface.PsiJsonBenchmark
+ *
+ * @since 18.10.2016
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PsiJsonBenchmark {
+
+    private static final int SLOT_COUNT = 10;
+    private static final long TIMESTAMP = 1476784800L;
+
+    private ObjectReader bootReader;
+    private ObjectReader stationStatusReader;
+    private ObjectReader chargingStatusReader;
+    private ObjectWriter bootConfirmationWriter;
+
+    private String bootJson;
+    private String stationStatusJson;
+    private String chargingStatusJson;
+    private BootConfirmationDTO bootConfirmation;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JacksonConfiguration().jacksonJodaModule());
+
+        bootReader = mapper.reader(BootNotificationDTO.class);
+        stationStatusReader = mapper.reader(StationStatusDTO.class);
+        chargingStatusReader = mapper.reader(new TypeReference<List<ChargingStatusDTO>>() { });
+        bootConfirmationWriter = mapper.writerWithType(BootConfirmationDTO.class);
+
+        bootJson = buildBootNotification();
+        stationStatusJson = buildStationStatus();
+        chargingStatusJson = buildChargingStatus();
+
+        bootConfirmation = new BootConfirmationDTO();
+        bootConfirmation.setTimestamp(new DateTime(TIMESTAMP * 1000));
+        bootConfirmation.setHeartbeatInterval(60);
+        bootConfirmation.setCardKeys(Collections.emptyList());
+    }
+
+    @Benchmark
+    public BootNotificationDTO readBootNotification() throws Exception {
+        return bootReader.readValue(bootJson);
+    }
+
+    @Benchmark
+    public StationStatusDTO readStationStatus() throws Exception {
+        return stationStatusReader.readValue(stationStatusJson);
+    }
+
+    @Benchmark
+    public List<ChargingStatusDTO> readChargingStatus() throws Exception {
+        return chargingStatusReader.readValue(chargingStatusJson);
+    }
+
+    @Benchmark
+    public String writeBootConfirmation() throws Exception {
+        return bootConfirmationWriter.writeValueAsString(bootConfirmation);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PsiJsonBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    // -------------------------------------------------------------------------
+    // Payloads as sent by the stations
+    // -------------------------------------------------------------------------
+
+    private static String buildBootNotification() {
+        StringBuilder sb = new StringBuilder("{\"stationManufacturerId\":\"station-1\",\"firmwareVersion\":\"1.0\",")
+                .append("\"stationURL\":\"http://10.10.0.1:8080\",\"slots\":[");
+        for (int i = 1; i <= SLOT_COUNT; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"slotManufacturerId\":\"station-1-slot-").append(i)
+              .append("\",\"slotPosition\":").append(i)
+              .append(",\"pedelecManufacturerId\":\"pedelec-").append(i).append("\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String buildStationStatus() {
+        StringBuilder sb = new StringBuilder("{\"stationManufacturerId\":\"station-1\",\"stationErrorCode\":\"\",")
+                .append("\"stationErrorInfo\":\"\",\"stationState\":\"OPERATIVE\",\"timestamp\":").append(TIMESTAMP)
+                .append(",\"slots\":[");
+        for (int i = 1; i <= SLOT_COUNT; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"slotManufacturerId\":\"station-1-slot-").append(i)
+              .append("\",\"slotErrorCode\":\"\",\"slotErrorInfo\":\"\",\"slotState\":\"OPERATIVE\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String buildChargingStatus() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 1; i <= SLOT_COUNT; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"pedelecManufacturerId\":\"pedelec-").append(i)
+              .append("\",\"timestamp\":").append(TIMESTAMP)
+              .append(",\"chargingState\":\"CHARGING\",\"meterValue\":1234.56789")
+              .append(",\"battery\":{\"soc\":0.8345,\"temperature\":24.5,\"cycleCount\":117,")
+              .append("\"voltage\":36.21,\"current\":1.875}}");
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,151 @@
+package de.rwth.idsg.bikeman.psinterface.authorization;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
+import de.rwth.idsg.bikeman.psinterface.exception.PsException;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiCustomerRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the CardAuthorizationCache.
+ *
+ * @see CardAuthorizationCache
+ */
+public class CardAuthorizationCacheTest {
+
+    private static final String CARD = "card-1";
+
+    private CardAuthorizationCache cache;
+    private PsiCustomerRepository customerRepository;
+
+    @Before
+    public void setUp() {
+        customerRepository = mock(PsiCustomerRepository.class);
+        when(customerRepository.findAuthorization(CARD))
+                .thenReturn(new CardAuthorization(CARD, OperationState.OPERATIVE, "1234", 0, 2, 1));
+        when(customerRepository.incrementAuthenticationTrialCount(CARD)).thenReturn(1);
+
+        cache = new CardAuthorizationCache();
+        cache.setEnvironment(new MockEnvironment());
+        cache.init();
+        ReflectionTestUtils.setField(cache, "customerRepository", customerRepository);
+    }
+
+    @After
+    public void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    public void testCardIsLoadedOnce() {
+        CardAuthorization first = cache.get(CARD);
+        CardAuthorization second = cache.get(CARD);
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.matchesPin("1234")).isTrue();
+        assertThat(second.matchesPin("4321")).isFalse();
+        assertThat(second.getMaxPedelecs()).isEqualTo(2);
+        assertThat(second.getOpenRentals()).isEqualTo(1);
+        verify(customerRepository, times(1)).findAuthorization(CARD);
+    }
+
+    @Test
+    public void testUnknownCardIsRemembered() {
+        for (int i = 0; i < 3; i++) {
+            try {
+                cache.get("foreign");
+                fail("Unknown card was authorized");
+            } catch (PsException e) {
+                assertThat(e.getErrorCode()).isEqualTo(PsErrorCode.NOT_REGISTERED);
+            }
+        }
+
+        verify(customerRepository, times(1)).findAuthorization("foreign");
+        assertThat(cache.getUnknownHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidationReloads() {
+        cache.get(CARD);
+        cache.invalidate(CARD);
+        cache.get(CARD);
+
+        verify(customerRepository, times(2)).findAuthorization(CARD);
+    }
+
+    @Test
+    public void testTrialsAreCountedInTheDb() {
+        when(customerRepository.incrementAuthenticationTrialCount(CARD)).thenReturn(1, 2);
+        CardAuthorization authorization = cache.get(CARD);
+
+        assertThat(cache.countFailedTrial(authorization)).isEqualTo(1);
+        assertThat(cache.countFailedTrial(authorization)).isEqualTo(2);
+        assertThat(cache.get(CARD).getTrialCount().get()).isEqualTo(2);
+        verify(customerRepository, times(2)).incrementAuthenticationTrialCount(CARD);
+
+        cache.resetTrialCount(authorization);
+        verify(customerRepository).updateAuthenticationTrialCount(CARD, 0);
+    }
+
+    @Test
+    public void testTrialCountSurvivesEviction() {
+        when(customerRepository.incrementAuthenticationTrialCount(CARD)).thenReturn(1, 2);
+        cache.countFailedTrial(cache.get(CARD));
+
+        // The count was written before, and is loaded again
+        when(customerRepository.findAuthorization(CARD))
+                .thenReturn(new CardAuthorization(CARD, OperationState.OPERATIVE, "1234", 1, 2, 1));
+        cache.invalidate(CARD);
+
+        CardAuthorization reloaded = cache.get(CARD);
+        assertThat(reloaded.getTrialCount().get()).isEqualTo(1);
+        assertThat(cache.countFailedTrial(reloaded)).isEqualTo(2);
+    }
+
+    @Test
+    public void testCacheIsBypassedInClusterMode() {
+        cache.destroy();
+        cache = new CardAuthorizationCache();
+        cache.setEnvironment(new MockEnvironment().withProperty("ixsi.cluster.enabled", "true"));
+        cache.init();
+        ReflectionTestUtils.setField(cache, "customerRepository", customerRepository);
+
+        cache.get(CARD);
+        cache.get(CARD);
+
+        assertThat(cache.isEnabled()).isFalse();
+        verify(customerRepository, times(2)).findAuthorization(CARD);
+    }
+
+    @Test
+    public void testCorrectPinDoesNotWrite() {
+        cache.resetTrialCount(cache.get(CARD));
+
+        verify(customerRepository, never()).updateAuthenticationTrialCount(anyString(), anyInt());
+    }
+
+    @Test
+    public void testDisableIsWrittenAndInvalidates() {
+        CardAuthorization authorization = cache.get(CARD);
+        cache.countFailedTrial(authorization);
+        cache.disable(authorization);
+
+        verify(customerRepository).disableAfterFailedTrials(CARD, 1);
+        cache.get(CARD);
+        verify(customerRepository, times(2)).findAuthorization(CARD);
+    }
+}
@@ -0,0 +1,93 @@
+package de.rwth.idsg.bikeman.psinterface.mailbox;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the StationMailbox.
+ *
+ * @see StationMailbox
+ */
+public class StationMailboxTest {
+
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testTasksAreProcessedInOrder() throws InterruptedException {
+        StationMailbox mailbox = new StationMailbox("station-1", executorService);
+
+        int count = 1000;
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(count);
+
+        for (int i = 0; i < count; i++) {
+            final int value = i;
+            mailbox.submit(() -> {
+                processed.add(value);
+                latch.countDown();
+            });
+        }
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < count; i++) {
+            assertThat(processed.get(i)).isEqualTo(i);
+        }
+        assertThat(mailbox.getDepth()).isEqualTo(0);
+        assertThat(mailbox.getProcessedCount()).isEqualTo(count);
+    }
+
+    @Test
+    public void testSlowStationDoesNotBlockOthers() throws InterruptedException {
+        StationMailbox slow = new StationMailbox("slow", executorService);
+        StationMailbox fast = new StationMailbox("fast", executorService);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+
+        slow.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        fast.submit(fastDone::countDown);
+
+        assertThat(fastDone.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopMailbox() throws InterruptedException {
+        StationMailbox mailbox = new StationMailbox("station-1", executorService);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        mailbox.submit(() -> {
+            throw new IllegalStateException("expected");
+        });
+        mailbox.submit(latch::countDown);
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,130 @@
+package de.rwth.idsg.bikeman.psinterface.repository;
+
+import de.rwth.idsg.bikeman.psinterface.dto.OperationState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the PsiStationRepositoryImpl. Counts the statements of a station status notification, from the
+ * JPA queries down to the JDBC batch.
+ *
+ * @see PsiStationRepositoryImpl#updateStationStatus(StationStatusDTO)
+ */
+public class PsiStationRepositoryImplTest {
+
+    private static final int SLOT_COUNT = 30;
+    private static final long STATION_ID = 42;
+    private static final String STATION = "station-1";
+
+    private PsiStationRepositoryImpl repository;
+    private EntityManager em;
+    private Query stationUpdate;
+    private TypedQuery<Long> stationIdQuery;
+    private Connection connection;
+    private PreparedStatement statement;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws SQLException {
+        em = mock(EntityManager.class);
+
+        stationUpdate = mock(Query.class);
+        when(em.createQuery(anyString())).thenReturn(stationUpdate);
+        when(stationUpdate.setParameter(anyString(), any())).thenReturn(stationUpdate);
+        when(stationUpdate.executeUpdate()).thenReturn(1);
+
+        stationIdQuery = mock(TypedQuery.class);
+        when(em.createQuery(anyString(), eq(Long.class))).thenReturn(stationIdQuery);
+        when(stationIdQuery.setParameter(anyString(), any())).thenReturn(stationIdQuery);
+        when(stationIdQuery.getResultList()).thenReturn(Collections.singletonList(STATION_ID));
+
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        int[] counts = new int[SLOT_COUNT];
+        Arrays.fill(counts, 1);
+        when(statement.executeBatch()).thenReturn(counts);
+
+        Session session = mock(Session.class);
+        when(em.unwrap(Session.class)).thenReturn(session);
+        doAnswer(invocation -> {
+            ((Work) invocation.getArguments()[0]).execute(connection);
+            return null;
+        }).when(session).doWork(any(Work.class));
+
+        EntityManagerFactory emf = mock(EntityManagerFactory.class);
+        when(em.getEntityManagerFactory()).thenReturn(emf);
+        when(emf.getCache()).thenReturn(mock(Cache.class));
+
+        repository = new PsiStationRepositoryImpl();
+        ReflectionTestUtils.setField(repository, "em", em);
+    }
+
+    @Test
+    public void testStatusNotificationIsThreeStatements() throws SQLException {
+        repository.updateStationStatus(stationStatus(SLOT_COUNT));
+
+        // The station update, the station id, and one batch for all slots
+        verify(stationUpdate, times(1)).executeUpdate();
+        verify(stationIdQuery, times(1)).getResultList();
+        verify(connection, times(1)).prepareStatement(anyString());
+        verify(statement, times(SLOT_COUNT)).addBatch();
+        verify(statement, times(1)).executeBatch();
+        verify(statement, never()).executeUpdate();
+    }
+
+    @Test
+    public void testStatusWithoutSlotsIsOneStatement() throws SQLException {
+        repository.updateStationStatus(stationStatus(0));
+
+        verify(stationUpdate, times(1)).executeUpdate();
+        verify(stationIdQuery, never()).getResultList();
+        verify(connection, never()).prepareStatement(anyString());
+    }
+
+    private static StationStatusDTO stationStatus(int slotCount) {
+        List<SlotDTO.StationStatus> slots = new ArrayList<>();
+        for (int i = 0; i < slotCount; i++) {
+            SlotDTO.StationStatus slot = new SlotDTO.StationStatus();
+            slot.setSlotManufacturerId("slot-" + i);
+            slot.setSlotState(OperationState.OPERATIVE);
+            slots.add(slot);
+        }
+
+        StationStatusDTO dto = new StationStatusDTO();
+        dto.setStationManufacturerId(STATION);
+        dto.setStationState(OperationState.OPERATIVE);
+        dto.setTimestamp(DateTime.now());
+        dto.setSlots(slots);
+        return dto;
+    }
+}
@@ -0,0 +1,97 @@
+package de.rwth.idsg.bikeman.psinterface.repository;
+
+import de.rwth.idsg.bikeman.psinterface.dto.OperationState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the StationSlotBatchUpdate. Counts the JDBC statements per notification.
+ *
+ * @see StationSlotBatchUpdate
+ */
+public class StationSlotBatchUpdateTest {
+
+    private static final int SLOT_COUNT = 30;
+    private static final long STATION_ID = 42;
+
+    private Connection connection;
+    private PreparedStatement statement;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+        int[] counts = new int[SLOT_COUNT];
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            counts[i] = 1;
+        }
+        when(statement.executeBatch()).thenReturn(counts);
+    }
+
+    @Test
+    public void testStatusOfAllSlotsIsOneStatement() throws SQLException {
+        List<SlotDTO.StationStatus> slots = new ArrayList<>();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            SlotDTO.StationStatus slot = new SlotDTO.StationStatus();
+            slot.setSlotManufacturerId("slot-" + i);
+            slot.setSlotState(OperationState.OPERATIVE);
+            slots.add(slot);
+        }
+
+        int[] counts = StationSlotBatchUpdate.updateStatus(connection, STATION_ID, slots);
+
+        assertThat(counts).hasSize(SLOT_COUNT);
+        verify(connection, times(1)).prepareStatement(anyString());
+        verify(statement, times(SLOT_COUNT)).addBatch();
+        verify(statement, times(1)).executeBatch();
+        verify(statement, never()).executeUpdate();
+        verify(statement, times(SLOT_COUNT)).setLong(4, STATION_ID);
+    }
+
+    @Test
+    public void testBootOfAllSlotsIsOneStatement() throws SQLException {
+        List<StationSlotBatchUpdate.BootSlot> slots = new ArrayList<>();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            boolean empty = (i == SLOT_COUNT - 1);
+            slots.add(new StationSlotBatchUpdate.BootSlot("slot-" + i, i + 1,
+                    empty ? null : "pedelec-" + i, empty ? null : (long) i));
+        }
+
+        StationSlotBatchUpdate.updateAfterBoot(connection, STATION_ID, slots);
+
+        verify(connection, times(1)).prepareStatement(anyString());
+        verify(statement, times(SLOT_COUNT)).addBatch();
+        verify(statement, times(1)).executeBatch();
+        verify(statement, never()).executeUpdate();
+        verify(statement, times(1)).setObject(4, null, Types.BIGINT);
+        verify(statement, times(1)).setBoolean(1, false);
+    }
+
+    @Test
+    public void testNoSlotsNoStatement() throws SQLException {
+        StationSlotBatchUpdate.updateStatus(connection, STATION_ID, Collections.emptyList());
+        StationSlotBatchUpdate.updateAfterBoot(connection, STATION_ID, Collections.emptyList());
+
+        verifyZeroInteractions(connection);
+    }
+}
@@ -0,0 +1,133 @@
+package de.rwth.idsg.bikeman.psinterface.rest;
+
+import de.rwth.idsg.bikeman.domain.OperationState;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorization;
+import de.rwth.idsg.bikeman.psinterface.authorization.CardAuthorizationCache;
+import de.rwth.idsg.bikeman.psinterface.dto.request.CustomerAuthorizeDTO;
+import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
+import de.rwth.idsg.bikeman.psinterface.exception.PsException;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiCustomerRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the authorize request of the PsiService, with the card authorization cache enabled.
+ *
+ * @see PsiService#handleAuthorize(CustomerAuthorizeDTO)
+ */
+public class PsiServiceAuthorizeTest {
+
+    private static final String CARD = "card-1";
+    private static final String PIN = "1234";
+
+    private PsiService psiService;
+    private PsiCustomerRepository customerRepository;
+    private CardAuthorizationCache cache;
+
+    /**
+     * The trial count in the DB
+     */
+    private AtomicInteger trialCount;
+
+    @Before
+    public void setUp() {
+        trialCount = new AtomicInteger();
+
+        customerRepository = mock(PsiCustomerRepository.class);
+        when(customerRepository.findAuthorization(CARD)).thenAnswer(invocation ->
+                new CardAuthorization(CARD, OperationState.OPERATIVE, PIN, trialCount.get(), 2, 0));
+        when(customerRepository.incrementAuthenticationTrialCount(CARD))
+                .thenAnswer(invocation -> trialCount.incrementAndGet());
+
+        cache = new CardAuthorizationCache();
+        cache.setEnvironment(new MockEnvironment());
+        cache.init();
+        ReflectionTestUtils.setField(cache, "customerRepository", customerRepository);
+
+        psiService = new PsiService();
+        ReflectionTestUtils.setField(psiService, "cardAuthorizationCache", cache);
+    }
+
+    @After
+    public void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    public void testThirdWrongPinDisablesTheCard() {
+        assertThat(cache.isEnabled()).isTrue();
+
+        assertAuthorizeFails("0000", PsErrorCode.CONSTRAINT_FAILED);
+        assertAuthorizeFails("0000", PsErrorCode.CONSTRAINT_FAILED);
+        verify(customerRepository, never()).disableAfterFailedTrials(anyString(), anyInt());
+
+        assertAuthorizeFails("0000", PsErrorCode.AUTH_ATTEMPTS_EXCEEDED);
+
+        verify(customerRepository, times(3)).incrementAuthenticationTrialCount(CARD);
+        verify(customerRepository).disableAfterFailedTrials(CARD, 3);
+
+        // Loaded again after the invalidation, the card is disabled in the DB by now
+        when(customerRepository.findAuthorization(CARD))
+                .thenReturn(new CardAuthorization(CARD, OperationState.INOPERATIVE, PIN, 3, 2, 0));
+        assertAuthorizeFails(PIN, PsErrorCode.CONSTRAINT_FAILED);
+    }
+
+    @Test
+    public void testTrialsAreNotResetByAnEviction() {
+        assertAuthorizeFails("0000", PsErrorCode.CONSTRAINT_FAILED);
+        cache.invalidateAll();
+        assertAuthorizeFails("0000", PsErrorCode.CONSTRAINT_FAILED);
+        cache.invalidateAll();
+        assertAuthorizeFails("0000", PsErrorCode.AUTH_ATTEMPTS_EXCEEDED);
+
+        verify(customerRepository).disableAfterFailedTrials(CARD, 3);
+    }
+
+    @Test
+    public void testCorrectPinResetsTheTrials() {
+        assertAuthorizeFails("0000", PsErrorCode.CONSTRAINT_FAILED);
+        assertAuthorizeFails("0000", PsErrorCode.CONSTRAINT_FAILED);
+
+        assertThat(psiService.handleAuthorize(authorize(PIN)).getCardId()).isEqualTo(CARD);
+        verify(customerRepository).updateAuthenticationTrialCount(CARD, 0);
+        trialCount.set(0);
+
+        assertAuthorizeFails("0000", PsErrorCode.CONSTRAINT_FAILED);
+        verify(customerRepository, never()).disableAfterFailedTrials(anyString(), anyInt());
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void assertAuthorizeFails(String pin, PsErrorCode errorCode) {
+        try {
+            psiService.handleAuthorize(authorize(pin));
+            fail("Card was authorized");
+        } catch (PsException e) {
+            assertThat(e.getErrorCode()).isEqualTo(errorCode);
+        }
+    }
+
+    private static CustomerAuthorizeDTO authorize(String pin) {
+        CustomerAuthorizeDTO dto = new CustomerAuthorizeDTO();
+        dto.setCardId(CARD);
+        dto.setCardPin(pin);
+        return dto;
+    }
+}
@@ -0,0 +1,208 @@
+package de.rwth.idsg.bikeman.psinterface.rest;
+
+import de.rwth.idsg.bikeman.domain.ChargingState;
+import de.rwth.idsg.bikeman.event.DomainEventBus;
+import de.rwth.idsg.bikeman.psinterface.dto.OperationState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.BatteryStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StatusBatchItemDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.response.StatusBatchResultDTO;
+import de.rwth.idsg.bikeman.psinterface.exception.PsErrorCode;
+import de.rwth.idsg.bikeman.psinterface.exception.PsException;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiPedelecRepository;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiStationRepository;
+import de.rwth.idsg.bikeman.psinterface.writebehind.StatusWriteBehind;
+import de.rwth.idsg.bikeman.service.OperationStateService;
+import de.rwth.idsg.bikeman.telemetry.BatteryTelemetryStore;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the status batches of the PsiService.
+ *
+ * @see PsiService#handleStatusBatch(String, List)
+ */
+public class PsiServiceStatusBatchTest {
+
+    private static final String STATION = "station-1";
+
+    private PsiService psiService;
+    private PsiStationRepository stationRepository;
+    private PsiPedelecRepository pedelecRepository;
+    private OperationStateService operationStateService;
+    private StatusWriteBehind statusWriteBehind;
+    private BatteryTelemetryStore batteryTelemetryStore;
+
+    @Before
+    public void setUp() {
+        stationRepository = mock(PsiStationRepository.class);
+        pedelecRepository = mock(PsiPedelecRepository.class);
+        operationStateService = mock(OperationStateService.class);
+        batteryTelemetryStore = mock(BatteryTelemetryStore.class);
+
+        // Long interval, so that nothing is flushed during the test
+        statusWriteBehind = new StatusWriteBehind();
+        statusWriteBehind.setEnvironment(new MockEnvironment().withProperty("psi.writeBehind.flushIntervalInSeconds", "3600"));
+        statusWriteBehind.init();
+        ReflectionTestUtils.setField(statusWriteBehind, "stationRepository", stationRepository);
+        ReflectionTestUtils.setField(statusWriteBehind, "pedelecRepository", pedelecRepository);
+
+        psiService = new PsiService();
+        ReflectionTestUtils.setField(psiService, "statusWriteBehind", statusWriteBehind);
+        ReflectionTestUtils.setField(psiService, "stationRepository", stationRepository);
+        ReflectionTestUtils.setField(psiService, "operationStateService", operationStateService);
+        ReflectionTestUtils.setField(psiService, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(psiService, "domainEventBus", mock(DomainEventBus.class));
+        ReflectionTestUtils.setField(psiService, "batteryTelemetryStore", batteryTelemetryStore);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        statusWriteBehind.destroy();
+    }
+
+    @Test
+    public void testEventsAreAppliedInOrder() {
+        StatusBatchItemDTO pedelec = pedelecItem("pedelec-1");
+        StatusBatchItemDTO charging = chargingItem("pedelec-1");
+        StatusBatchItemDTO station = stationItem(STATION);
+
+        List<StatusBatchResultDTO> results = psiService.handleStatusBatch(STATION,
+                Arrays.asList(pedelec, charging, station));
+
+        assertThat(results).extracting("status").containsExactly(
+                StatusBatchResultDTO.Status.ACCEPTED,
+                StatusBatchResultDTO.Status.ACCEPTED,
+                StatusBatchResultDTO.Status.ACCEPTED);
+
+        // The first status of an entity is written immediately, the charging status by the telemetry store
+        InOrder order = inOrder(pedelecRepository, batteryTelemetryStore, stationRepository);
+        order.verify(pedelecRepository).updatePedelecStatus(pedelec.getPedelec());
+        order.verify(batteryTelemetryStore).ingest(charging.getCharging());
+        order.verify(stationRepository).updateStationStatus(any(StationStatusDTO.class));
+        verify(pedelecRepository, never()).updatePedelecChargingStatus(any());
+
+        assertThat(statusWriteBehind.getPedelecStatus("pedelec-1")).isSameAs(pedelec.getPedelec());
+        assertThat(statusWriteBehind.getStationStatus(STATION)).isSameAs(station.getStation());
+    }
+
+    @Test
+    public void testMalformedEventsAreRejected() {
+        StatusBatchItemDTO noType = new StatusBatchItemDTO();
+        StatusBatchItemDTO otherStation = stationItem("station-2");
+        StatusBatchItemDTO pedelec = pedelecItem("pedelec-1");
+
+        List<StatusBatchResultDTO> results = psiService.handleStatusBatch(STATION,
+                Arrays.asList(noType, otherStation, pedelec));
+
+        assertThat(results).extracting("index").containsExactly(0, 1, 2);
+        assertThat(results).extracting("status").containsExactly(
+                StatusBatchResultDTO.Status.REJECTED,
+                StatusBatchResultDTO.Status.REJECTED,
+                StatusBatchResultDTO.Status.ACCEPTED);
+        assertThat(results.get(1).getErrorCode()).isEqualTo(PsErrorCode.CONSTRAINT_FAILED);
+
+        verify(stationRepository, never()).updateStationStatus(any(StationStatusDTO.class));
+        verify(pedelecRepository).updatePedelecStatus(pedelec.getPedelec());
+
+        assertThat(statusWriteBehind.getStationStatus(STATION)).isNull();
+        assertThat(statusWriteBehind.getPedelecStatus("pedelec-1")).isSameAs(pedelec.getPedelec());
+    }
+
+    @Test
+    public void testFailedPushDoesNotFailTheBatch() {
+        StatusBatchItemDTO station = stationItem(STATION);
+        StatusBatchItemDTO pedelec = pedelecItem("pedelec-1");
+
+        doThrow(new IllegalStateException("push failed"))
+                .when(operationStateService).pushCommittedChanges(any(StationStatusDTO.class));
+
+        List<StatusBatchResultDTO> results = psiService.handleStatusBatch(STATION, Arrays.asList(station, pedelec));
+
+        assertThat(results).extracting("status").containsExactly(
+                StatusBatchResultDTO.Status.ACCEPTED,
+                StatusBatchResultDTO.Status.ACCEPTED);
+
+        // The pushes are made after the batch is applied, and the failed one does not stop the others
+        InOrder order = inOrder(stationRepository, pedelecRepository, operationStateService);
+        order.verify(stationRepository).updateStationStatus(any(StationStatusDTO.class));
+        order.verify(pedelecRepository).updatePedelecStatus(pedelec.getPedelec());
+        order.verify(operationStateService).pushCommittedChanges(station.getStation());
+        order.verify(operationStateService).pushChanges(pedelec.getPedelec());
+
+        assertThat(statusWriteBehind.getStationStatus(STATION)).isSameAs(station.getStation());
+        assertThat(statusWriteBehind.getPedelecStatus("pedelec-1")).isSameAs(pedelec.getPedelec());
+    }
+
+    @Test(expected = PsException.class)
+    public void testOversizedBatchIsRefused() {
+        List<StatusBatchItemDTO> items = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            items.add(pedelecItem("pedelec-" + i));
+        }
+        psiService.handleStatusBatch(STATION, items);
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static StatusBatchItemDTO stationItem(String stationId) {
+        StationStatusDTO dto = new StationStatusDTO();
+        dto.setStationManufacturerId(stationId);
+        dto.setStationState(OperationState.OPERATIVE);
+        dto.setTimestamp(DateTime.now());
+        dto.setSlots(Collections.emptyList());
+
+        StatusBatchItemDTO item = new StatusBatchItemDTO();
+        item.setType(StatusBatchItemDTO.Type.STATION);
+        item.setStation(dto);
+        return item;
+    }
+
+    private static StatusBatchItemDTO pedelecItem(String pedelecId) {
+        PedelecStatusDTO dto = new PedelecStatusDTO();
+        dto.setPedelecManufacturerId(pedelecId);
+        dto.setPedelecState(OperationState.OPERATIVE);
+        dto.setTimestamp(DateTime.now());
+
+        StatusBatchItemDTO item = new StatusBatchItemDTO();
+        item.setType(StatusBatchItemDTO.Type.PEDELEC);
+        item.setPedelec(dto);
+        return item;
+    }
+
+    private static StatusBatchItemDTO chargingItem(String pedelecId) {
+        ChargingStatusDTO dto = new ChargingStatusDTO();
+        dto.setPedelecManufacturerId(pedelecId);
+        dto.setChargingState(ChargingState.CHARGING);
+        dto.setTimestamp(DateTime.now());
+        dto.setBattery(new BatteryStatusDTO());
+
+        StatusBatchItemDTO item = new StatusBatchItemDTO();
+        item.setType(StatusBatchItemDTO.Type.CHARGING);
+        item.setCharging(Collections.singletonList(dto));
+        return item;
+    }
+}
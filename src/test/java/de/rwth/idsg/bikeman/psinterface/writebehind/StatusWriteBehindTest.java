@@ -0,0 +1,173 @@
+package de.rwth.idsg.bikeman.psinterface.writebehind;
+
+import de.rwth.idsg.bikeman.psinterface.dto.OperationState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.PedelecStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.StationStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiPedelecRepository;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiStationRepository;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the StatusWriteBehind.
+ *
+ * @see StatusWriteBehind
+ */
+public class StatusWriteBehindTest {
+
+    private StatusWriteBehind writeBehind;
+    private PsiStationRepository stationRepository;
+    private PsiPedelecRepository pedelecRepository;
+
+    @Before
+    public void setUp() {
+        stationRepository = mock(PsiStationRepository.class);
+        pedelecRepository = mock(PsiPedelecRepository.class);
+
+        // Long interval, so that only the test flushes
+        writeBehind = new StatusWriteBehind();
+        writeBehind.setEnvironment(new MockEnvironment().withProperty("psi.writeBehind.flushIntervalInSeconds", "3600"));
+        writeBehind.init();
+        ReflectionTestUtils.setField(writeBehind, "stationRepository", stationRepository);
+        ReflectionTestUtils.setField(writeBehind, "pedelecRepository", pedelecRepository);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        writeBehind.destroy();
+    }
+
+    @Test
+    public void testPedelecStatusIsCoalesced() {
+        PedelecStatusDTO first = pedelec(OperationState.OPERATIVE, new DateTime(0));
+        writeBehind.updatePedelecStatus(first);
+        verify(pedelecRepository).updatePedelecStatus(first);
+
+        // Only the time stamp changed
+        writeBehind.updatePedelecStatus(pedelec(OperationState.OPERATIVE, new DateTime(1000)));
+        PedelecStatusDTO last = pedelec(OperationState.OPERATIVE, new DateTime(2000));
+        writeBehind.updatePedelecStatus(last);
+
+        verify(pedelecRepository, times(1)).updatePedelecStatus(any(PedelecStatusDTO.class));
+        assertThat(writeBehind.getPedelecStatus("pedelec-1")).isSameAs(last);
+
+        writeBehind.flush();
+        verify(pedelecRepository).updatePedelecStatus(last);
+
+        writeBehind.flush();
+        verify(pedelecRepository, times(2)).updatePedelecStatus(any(PedelecStatusDTO.class));
+    }
+
+    @Test
+    public void testStateChangeIsWrittenImmediately() {
+        writeBehind.updatePedelecStatus(pedelec(OperationState.OPERATIVE, new DateTime(0)));
+        writeBehind.updatePedelecStatus(pedelec(OperationState.INOPERATIVE, new DateTime(1000)));
+        writeBehind.updatePedelecStatus(pedelec(OperationState.OPERATIVE, new DateTime(2000)));
+
+        verify(pedelecRepository, times(3)).updatePedelecStatus(any(PedelecStatusDTO.class));
+        assertThat(writeBehind.getImmediateCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testFlushDoesNotOverwriteUncommittedWrite() {
+        writeBehind.updatePedelecStatus(pedelec(OperationState.OPERATIVE, new DateTime(0)));
+        PedelecStatusDTO older = pedelec(OperationState.OPERATIVE, new DateTime(1000));
+        writeBehind.updatePedelecStatus(older);
+
+        PedelecStatusDTO inoperative = pedelec(OperationState.INOPERATIVE, new DateTime(2000));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writeBehind.updatePedelecStatus(inoperative);
+            verify(pedelecRepository).updatePedelecStatus(inoperative);
+
+            // The older status is not written while the transaction is not committed
+            writeBehind.flush();
+            verify(pedelecRepository, never()).updatePedelecStatus(older);
+
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(writeBehind.getPedelecStatus("pedelec-1")).isSameAs(inoperative);
+
+        writeBehind.flush();
+        verify(pedelecRepository, never()).updatePedelecStatus(older);
+        verify(pedelecRepository, times(2)).updatePedelecStatus(any(PedelecStatusDTO.class));
+    }
+
+    @Test
+    public void testStationIsComparedByValue() {
+        writeBehind.updateStationStatus(station(slot("slot-1", OperationState.OPERATIVE)));
+        writeBehind.updateStationStatus(station(slot("slot-1", OperationState.OPERATIVE)));
+
+        verify(stationRepository, times(1)).updateStationStatus(any(StationStatusDTO.class));
+        assertThat(writeBehind.getSlotStatus("station-1", "slot-1").getSlotState()).isEqualTo(OperationState.OPERATIVE);
+    }
+
+    @Test
+    public void testOnlyChangedSlotsAreWritten() {
+        writeBehind.updateStationStatus(station(slot("slot-1", OperationState.OPERATIVE),
+                                                slot("slot-2", OperationState.OPERATIVE)));
+
+        writeBehind.updateStationStatus(station(slot("slot-1", OperationState.OPERATIVE),
+                                                slot("slot-2", OperationState.OPERATIVE)));
+        writeBehind.updateStationStatus(station(slot("slot-1", OperationState.OPERATIVE),
+                                                slot("slot-2", OperationState.INOPERATIVE)));
+
+        ArgumentCaptor<StationStatusDTO> captor = ArgumentCaptor.forClass(StationStatusDTO.class);
+        verify(stationRepository, times(2)).updateStationStatus(captor.capture());
+
+        assertThat(captor.getAllValues().get(0).getSlots()).hasSize(2);
+        assertThat(captor.getAllValues().get(1).getSlots())
+                .extracting("slotManufacturerId")
+                .containsExactly("slot-2");
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private static PedelecStatusDTO pedelec(OperationState state, DateTime timestamp) {
+        PedelecStatusDTO dto = new PedelecStatusDTO();
+        dto.setPedelecManufacturerId("pedelec-1");
+        dto.setPedelecState(state);
+        dto.setTimestamp(timestamp);
+        return dto;
+    }
+
+    private static StationStatusDTO station(SlotDTO.StationStatus... slots) {
+        StationStatusDTO dto = new StationStatusDTO();
+        dto.setStationManufacturerId("station-1");
+        dto.setStationState(OperationState.OPERATIVE);
+        dto.setTimestamp(new DateTime());
+        dto.setSlots(Arrays.asList(slots));
+        return dto;
+    }
+
+    private static SlotDTO.StationStatus slot(String id, OperationState state) {
+        SlotDTO.StationStatus slot = new SlotDTO.StationStatus();
+        slot.setSlotManufacturerId(id);
+        slot.setSlotState(state);
+        return slot;
+    }
+}
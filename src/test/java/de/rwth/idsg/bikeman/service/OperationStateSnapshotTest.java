@@ -0,0 +1,118 @@
+package de.rwth.idsg.bikeman.service;
+
+import de.rwth.idsg.bikeman.psinterface.dto.OperationState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.SlotDTO;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the OperationStateSnapshot.
+ *
+ * @see OperationStateSnapshot
+ */
+public class OperationStateSnapshotTest {
+
+    private OperationStateSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        snapshot = new OperationStateSnapshot();
+    }
+
+    @Test
+    public void testUnknownStationIsChanged() {
+        assertThat(snapshot.stationChanged("station-1", OperationState.OPERATIVE)).isTrue();
+        assertThat(snapshot.stationChanged("station-1", OperationState.OPERATIVE)).isFalse();
+        assertThat(snapshot.stationChanged("station-1", OperationState.INOPERATIVE)).isTrue();
+    }
+
+    @Test
+    public void testOnlyChangedSlotsAreReturned() {
+        List<SlotDTO.StationStatus> first = Arrays.asList(
+                slot("slot-1", OperationState.OPERATIVE),
+                slot("slot-2", OperationState.OPERATIVE));
+        assertThat(snapshot.changedSlots("station-1", first)).hasSize(2);
+
+        List<SlotDTO.StationStatus> second = Arrays.asList(
+                slot("slot-1", OperationState.OPERATIVE),
+                slot("slot-2", OperationState.INOPERATIVE));
+        List<SlotDTO.StationStatus> changed = snapshot.changedSlots("station-1", second);
+        assertThat(changed).hasSize(1);
+        assertThat(changed.get(0).getSlotManufacturerId()).isEqualTo("slot-2");
+
+        assertThat(snapshot.changedSlots("station-1", second)).isEmpty();
+    }
+
+    @Test
+    public void testForgetStation() {
+        snapshot.stationChanged("station-1", OperationState.OPERATIVE);
+        snapshot.changedSlots("station-1", Arrays.asList(slot("slot-1", OperationState.OPERATIVE)));
+
+        snapshot.forgetStation("station-1");
+
+        assertThat(snapshot.stationChanged("station-1", OperationState.OPERATIVE)).isTrue();
+        assertThat(snapshot.changedSlots("station-1", Arrays.asList(slot("slot-1", OperationState.OPERATIVE))))
+                .hasSize(1);
+    }
+
+    @Test
+    public void testPedelec() {
+        assertThat(snapshot.pedelecChanged("pedelec-1", OperationState.INOPERATIVE)).isTrue();
+        assertThat(snapshot.pedelecChanged("pedelec-1", OperationState.INOPERATIVE)).isFalse();
+
+        snapshot.forgetPedelec("pedelec-1");
+        assertThat(snapshot.pedelecChanged("pedelec-1", OperationState.INOPERATIVE)).isTrue();
+    }
+
+    @Test
+    public void testForgottenAfterRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(snapshot.stationChanged("station-1", OperationState.INOPERATIVE)).isTrue();
+            assertThat(snapshot.pedelecChanged("pedelec-1", OperationState.INOPERATIVE)).isTrue();
+
+            // Within the transaction, the change is known
+            assertThat(snapshot.stationChanged("station-1", OperationState.INOPERATIVE)).isFalse();
+
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(snapshot.stationChanged("station-1", OperationState.INOPERATIVE)).isTrue();
+        assertThat(snapshot.pedelecChanged("pedelec-1", OperationState.INOPERATIVE)).isTrue();
+    }
+
+    @Test
+    public void testKeptAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(snapshot.stationChanged("station-1", OperationState.INOPERATIVE)).isTrue();
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(snapshot.stationChanged("station-1", OperationState.INOPERATIVE)).isFalse();
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private static SlotDTO.StationStatus slot(String slotManufacturerId, OperationState state) {
+        SlotDTO.StationStatus slot = new SlotDTO.StationStatus();
+        slot.setSlotManufacturerId(slotManufacturerId);
+        slot.setSlotState(state);
+        return slot;
+    }
+}
@@ -0,0 +1,129 @@
+package de.rwth.idsg.bikeman.service;
+
+import de.rwth.idsg.bikeman.web.rest.dto.view.StationLocationDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Circle, rectangle and nearest queries on 5k stations spread over a city-sized area.
+ *
+ * The scan variants compute the distance to every station. This is what the former native PostGIS queries did
+ * as well, since they built the points from the coordinate columns per row and therefore could not use a spatial
+ * index (the DB round trip is not included).
+ *
+ * Not a unit test. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.rwth.idsg.bikeman.service.StationGridBenchmark
+ *
+ * @since 18.10.2016
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StationGridBenchmark {
+
+    private static final int STATION_COUNT = 5_000;
+    private static final double RADIUS_IN_METERS = 1_000;
+
+    // Around Aachen, about 22 km x 21 km
+    private static final double LAT = 50.77;
+    private static final double LON = 6.08;
+    private static final double LAT_RANGE = 0.2;
+    private static final double LON_RANGE = 0.3;
+
+    private List<StationLocationDTO> locations;
+    private StationGrid grid;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        locations = new ArrayList<>(STATION_COUNT);
+        for (long i = 0; i < STATION_COUNT; i++) {
+            locations.add(new StationLocationDTO(i, "station-" + i,
+                    LAT + (random.nextDouble() - 0.5) * LAT_RANGE,
+                    LON + (random.nextDouble() - 0.5) * LON_RANGE));
+        }
+        grid = new StationGrid(locations, 0.01);
+    }
+
+    @Benchmark
+    public List<StationLocationDTO> circleGrid() {
+        return grid.withinCircle(randomLat(), randomLon(), RADIUS_IN_METERS);
+    }
+
+    @Benchmark
+    public List<StationLocationDTO> circleScan() {
+        double lat = randomLat();
+        double lon = randomLon();
+        return locations.stream()
+                        .filter(l -> StationGrid.distanceInMeters(lat, lon, l.getLatitude(), l.getLongitude())
+                                <= RADIUS_IN_METERS)
+                        .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<StationLocationDTO> rectangleGrid() {
+        double lat = randomLat();
+        double lon = randomLon();
+        return grid.withinRectangle(lat + 0.01, lon - 0.015, lat - 0.01, lon + 0.015);
+    }
+
+    @Benchmark
+    public List<StationLocationDTO> rectangleScan() {
+        double lat = randomLat();
+        double lon = randomLon();
+        return locations.stream()
+                        .filter(l -> l.getLatitude() >= lat - 0.01 && l.getLatitude() <= lat + 0.01)
+                        .filter(l -> l.getLongitude() >= lon - 0.015 && l.getLongitude() <= lon + 0.015)
+                        .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<StationLocationDTO> nearestGrid() {
+        return grid.nearest(randomLat(), randomLon(), 10);
+    }
+
+    @Benchmark
+    public List<StationLocationDTO> nearestScan() {
+        double lat = randomLat();
+        double lon = randomLon();
+        return locations.stream()
+                        .sorted(Comparator.comparingDouble(l -> StationGrid.distanceInMeters(
+                                lat, lon, l.getLatitude(), l.getLongitude())))
+                        .limit(10)
+                        .collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StationGridBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static double randomLat() {
+        return LAT + (ThreadLocalRandom.current().nextDouble() - 0.5) * LAT_RANGE;
+    }
+
+    private static double randomLon() {
+        return LON + (ThreadLocalRandom.current().nextDouble() - 0.5) * LON_RANGE;
+    }
+}
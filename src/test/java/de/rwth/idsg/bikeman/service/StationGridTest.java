@@ -0,0 +1,128 @@
+package de.rwth.idsg.bikeman.service;
+
+import de.rwth.idsg.bikeman.web.rest.dto.view.StationLocationDTO;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the StationGrid. The results are compared with a scan over all stations.
+ *
+ * @see StationGrid
+ */
+public class StationGridTest {
+
+    private static final double CELL_SIZE = 0.01;
+
+    // Around Aachen
+    private static final double LAT = 50.77;
+    private static final double LON = 6.08;
+
+    private List<StationLocationDTO> locations;
+    private StationGrid grid;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(42);
+        locations = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            locations.add(location(i, LAT + random.nextDouble() * 0.2 - 0.1, LON + random.nextDouble() * 0.3 - 0.15));
+        }
+        grid = new StationGrid(locations, CELL_SIZE);
+    }
+
+    @Test
+    public void testWithinCircle() {
+        for (double radius : new double[] {0, 150, 1_000, 5_000, 50_000}) {
+            List<StationLocationDTO> expected = locations.stream()
+                    .filter(l -> distance(l) <= radius)
+                    .collect(Collectors.toList());
+
+            assertThat(grid.withinCircle(LAT, LON, radius)).containsOnlyElementsOf(expected)
+                                                           .hasSameSizeAs(expected);
+        }
+    }
+
+    @Test
+    public void testWithinRectangle() {
+        // Upper left and lower right corner
+        List<StationLocationDTO> result = grid.withinRectangle(LAT + 0.02, LON - 0.03, LAT - 0.01, LON + 0.04);
+
+        List<StationLocationDTO> expected = locations.stream()
+                .filter(l -> l.getLatitude() >= LAT - 0.01 && l.getLatitude() <= LAT + 0.02)
+                .filter(l -> l.getLongitude() >= LON - 0.03 && l.getLongitude() <= LON + 0.04)
+                .collect(Collectors.toList());
+
+        assertThat(expected).isNotEmpty();
+        assertThat(result).containsOnlyElementsOf(expected)
+                          .hasSameSizeAs(expected);
+    }
+
+    @Test
+    public void testNearest() {
+        List<StationLocationDTO> sorted = new ArrayList<>(locations);
+        sorted.sort(Comparator.comparingDouble(this::distance));
+
+        assertThat(grid.nearest(LAT, LON, 1)).containsExactlyElementsOf(sorted.subList(0, 1));
+        assertThat(grid.nearest(LAT, LON, 25)).containsExactlyElementsOf(sorted.subList(0, 25));
+        assertThat(grid.nearest(LAT, LON, 2000)).containsExactlyElementsOf(sorted);
+    }
+
+    @Test
+    public void testNearestFarAway() {
+        // Falls back to the scan over all stations
+        List<StationLocationDTO> result = grid.nearest(48.13, 11.57, 3);
+
+        List<StationLocationDTO> expected = locations.stream()
+                .sorted(Comparator.comparingDouble(l -> StationGrid.distanceInMeters(
+                        48.13, 11.57, l.getLatitude(), l.getLongitude())))
+                .limit(3)
+                .collect(Collectors.toList());
+
+        assertThat(result).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testEmpty() {
+        StationGrid empty = new StationGrid(new ArrayList<>(), CELL_SIZE);
+
+        assertThat(empty.withinCircle(LAT, LON, 1_000)).isEmpty();
+        assertThat(empty.withinRectangle(LAT + 1, LON - 1, LAT - 1, LON + 1)).isEmpty();
+        assertThat(empty.nearest(LAT, LON, 5)).isEmpty();
+    }
+
+    @Test
+    public void testWithAndWithout() {
+        StationLocationDTO moved = new StationLocationDTO(0L, "station-0", LAT, LON);
+        StationGrid updated = grid.with(moved);
+
+        assertThat(updated.size()).isEqualTo(grid.size());
+        assertThat(updated.nearest(LAT, LON, 1)).containsExactly(moved);
+
+        // Changed manufacturer id of the same station
+        StationLocationDTO renamed = new StationLocationDTO(0L, "station-renamed", LAT, LON);
+        updated = updated.with(renamed);
+
+        assertThat(updated.size()).isEqualTo(grid.size());
+        assertThat(updated.nearest(LAT, LON, 1)).containsExactly(renamed);
+
+        updated = updated.without("station-renamed");
+        assertThat(updated.size()).isEqualTo(grid.size() - 1);
+        assertThat(updated.withinCircle(LAT, LON, 0)).doesNotContain(renamed);
+    }
+
+    private double distance(StationLocationDTO location) {
+        return StationGrid.distanceInMeters(LAT, LON, location.getLatitude(), location.getLongitude());
+    }
+
+    private static StationLocationDTO location(long id, double lat, double lon) {
+        return new StationLocationDTO(id, "station-" + id, lat, lon);
+    }
+}
@@ -0,0 +1,78 @@
+package de.rwth.idsg.bikeman.service;
+
+import de.rwth.idsg.bikeman.domain.BookedTariff;
+import de.rwth.idsg.bikeman.domain.Tariff;
+import de.rwth.idsg.bikeman.domain.TariffType;
+import de.rwth.idsg.bikeman.domain.Transaction;
+import org.joda.time.LocalDateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price calculation of a finished transaction, which runs for every stop transaction and for the
+ * transaction lists of the customers.
+ *
+ * Not a unit test. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.rwth.idsg.bikeman.service.TariffServiceBenchmark
+ *
+ * @since 18.10.2016
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TariffServiceBenchmark {
+
+    @Param({"Ticket2000", "Ticket3000"})
+    private TariffType tariff;
+
+    @Param({"12", "95", "1500"})
+    private int rideInMinutes;
+
+    private TariffService tariffService;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        tariffService = new TariffService();
+        tariffService.init();
+
+        Tariff t = new Tariff();
+        t.setName(tariff);
+
+        BookedTariff bookedTariff = new BookedTariff();
+        bookedTariff.setTariff(t);
+
+        LocalDateTime start = new LocalDateTime(2016, 10, 18, 7, 45);
+        transaction = new Transaction();
+        transaction.setStartDateTime(start);
+        transaction.setEndDateTime(start.plusMinutes(rideInMinutes).plusSeconds(17));
+        transaction.setBookedTariff(bookedTariff);
+    }
+
+    @Benchmark
+    public BigDecimal calculatePrice() {
+        return tariffService.calculatePrice(transaction);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TariffServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,227 @@
+package de.rwth.idsg.bikeman.telemetry;
+
+import de.rwth.idsg.bikeman.domain.ChargingState;
+import de.rwth.idsg.bikeman.psinterface.dto.request.BatteryStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.dto.request.ChargingStatusDTO;
+import de.rwth.idsg.bikeman.psinterface.repository.PsiPedelecRepository;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the BatteryTelemetryStore and its block format.
+ *
+ * @see BatteryTelemetryStore
+ * @see TelemetryBlockCodec
+ */
+public class BatteryTelemetryStoreTest {
+
+    private static final DateTime START = new DateTime(2016, 10, 18, 7, 30, DateTimeZone.UTC);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PsiPedelecRepository pedelecRepository;
+    private BatteryTelemetryStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        pedelecRepository = mock(PsiPedelecRepository.class);
+        store = newStore();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.destroy();
+    }
+
+    @Test
+    public void testBlockRoundTrip() {
+        List<BatterySample> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            samples.add(new BatterySample("pedelec-" + (i % 10), START.getMillis() + i * 10_000L,
+                    ChargingState.CHARGING, 20 + i * 0.05, 36.123, 1.8, 24.5, 100 + i / 100, 1000.5 + i));
+        }
+        samples.add(new BatterySample("pedelec-x", START.getMillis(), null, null, null, null, null, null, null));
+
+        byte[] block = TelemetryBlockCodec.encode(samples);
+        ByteBuffer header = ByteBuffer.wrap(block);
+        int compressedLength = header.getInt();
+        int rawLength = header.getInt();
+        assertThat(header.getLong()).isEqualTo(START.getMillis());
+        assertThat(header.getLong()).isEqualTo(START.getMillis() + 999 * 10_000L);
+
+        // Far less than the 8 values * 8 bytes of a plain row
+        assertThat(block.length).isLessThan(samples.size() * 8);
+
+        byte[] compressed = Arrays.copyOfRange(block, TelemetryBlockCodec.HEADER_SIZE,
+                TelemetryBlockCodec.HEADER_SIZE + compressedLength);
+        List<BatterySample> decoded = TelemetryBlockCodec.decode(compressed, rawLength);
+
+        assertThat(decoded).hasSize(samples.size());
+        BatterySample first = decoded.get(0);
+        assertThat(first.getPedelecManufacturerId()).isEqualTo("pedelec-0");
+        assertThat(first.getTimestamp()).isEqualTo(START.getMillis());
+        assertThat(first.getChargingState()).isEqualTo(ChargingState.CHARGING);
+        assertThat(first.getSoc()).isEqualTo(20.0);
+        assertThat(first.getVoltage()).isEqualTo(36.123);
+        assertThat(first.getCycleCount()).isEqualTo(100);
+
+        BatterySample empty = decoded.get(decoded.size() - 1);
+        assertThat(empty.getPedelecManufacturerId()).isEqualTo("pedelec-x");
+        assertThat(empty.getChargingState()).isNull();
+        assertThat(empty.getSoc()).isNull();
+        assertThat(empty.getMeterValue()).isNull();
+    }
+
+    @Test
+    public void testBatteryCurveAcrossPartitions() throws Exception {
+        for (int i = 0; i < 120; i++) {
+            store.ingest(Arrays.asList(
+                    dto("pedelec-1", START.plusMinutes(i), 10 + i * 0.5),
+                    dto("pedelec-2", START.plusMinutes(i), 90)));
+        }
+        store.flush();
+
+        assertThat(folder.getRoot().list()).hasSize(3);
+        assertThat(store.getWrittenCount()).isEqualTo(240);
+
+        List<BatterySample> curve = store.getBatteryCurve("pedelec-1", START.plusMinutes(20), START.plusMinutes(79));
+        assertThat(curve).hasSize(60);
+        assertThat(curve.get(0).getTimestamp()).isEqualTo(START.plusMinutes(20).getMillis());
+        assertThat(curve.get(0).getSoc()).isEqualTo(20.0);
+        assertThat(curve.get(59).getTimestamp()).isEqualTo(START.plusMinutes(79).getMillis());
+    }
+
+    @Test
+    public void testSnapshotHasLatestSampleAndSurvivesRestart() throws Exception {
+        store.ingest(Arrays.asList(dto("pedelec-1", START.plusMinutes(5), 50), dto("pedelec-2", START, 70)));
+        store.ingest(Arrays.asList(dto("pedelec-1", START, 40)));
+
+        assertThat(store.getSocSnapshot()).extracting("soc").containsExactly(50.0, 70.0);
+
+        store.destroy();
+        store = newStore();
+
+        assertThat(store.getSocSnapshot()).extracting("pedelecManufacturerId").containsExactly("pedelec-1", "pedelec-2");
+        assertThat(store.getLatest("pedelec-1").getSoc()).isEqualTo(50.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLatestSampleIsProjectedWithFlush() throws Exception {
+        store.ingest(Arrays.asList(dto("pedelec-1", START.plusMinutes(5), 50), dto("pedelec-2", START, 70)));
+        store.ingest(Arrays.asList(dto("pedelec-1", START, 40)));
+        verify(pedelecRepository, never()).updatePedelecChargingStatus(any());
+
+        store.flush();
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(pedelecRepository).updatePedelecChargingStatus(captor.capture());
+        List<BatterySample> projected = captor.getValue();
+        assertThat(projected).extracting("pedelecManufacturerId").containsOnly("pedelec-1", "pedelec-2");
+        assertThat(projected).extracting("soc").containsOnly(50.0, 70.0);
+
+        // Nothing new to project
+        store.flush();
+        verify(pedelecRepository).updatePedelecChargingStatus(anyListOf(BatterySample.class));
+    }
+
+    @Test
+    public void testChargingStatusIsWrittenRightAwayWhenDisabled() throws Exception {
+        store.destroy();
+        store = newStore(false);
+
+        List<ChargingStatusDTO> dtoList = Arrays.asList(dto("pedelec-1", START, 40));
+        store.ingest(dtoList);
+
+        verify(pedelecRepository).updatePedelecChargingStatus(anyListOf(BatterySample.class));
+        assertThat(store.getLatest("pedelec-1")).isNull();
+        assertThat(folder.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    public void testTornBlockIsCutOffWhenReopened() throws Exception {
+        store.ingest(Arrays.asList(dto("pedelec-1", START, 40)));
+        store.flush();
+        store.destroy();
+
+        // A block that was only partially written before a crash
+        File[] files = folder.getRoot().listFiles();
+        assertThat(files).hasSize(1);
+        Path partition = files[0].toPath();
+        long size = Files.size(partition);
+
+        byte[] block = TelemetryBlockCodec.encode(Arrays.asList(
+                new BatterySample("pedelec-1", START.plusMinutes(1).getMillis(), null, 50.0, null, null, null, null, null)));
+        Files.write(partition, Arrays.copyOf(block, block.length / 2), StandardOpenOption.APPEND);
+
+        store = newStore();
+        assertThat(Files.size(partition)).isEqualTo(size);
+
+        store.ingest(Arrays.asList(dto("pedelec-1", START.plusMinutes(2), 60)));
+        store.flush();
+
+        List<BatterySample> curve = store.getBatteryCurve("pedelec-1", START, START.plusMinutes(10));
+        assertThat(curve).extracting("soc").containsExactly(40.0, 60.0);
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private BatteryTelemetryStore newStore() throws Exception {
+        return newStore(true);
+    }
+
+    private BatteryTelemetryStore newStore(boolean enabled) throws Exception {
+        BatteryTelemetryStore s = new BatteryTelemetryStore();
+        s.setEnvironment(new MockEnvironment()
+                .withProperty("telemetry.battery.enabled", String.valueOf(enabled))
+                .withProperty("telemetry.battery.directory", folder.getRoot().getAbsolutePath())
+                .withProperty("telemetry.battery.flushIntervalInSeconds", "3600"));
+        ReflectionTestUtils.setField(s, "pedelecRepository", pedelecRepository);
+        s.init();
+        return s;
+    }
+
+    private static ChargingStatusDTO dto(String pedelecId, DateTime timestamp, double soc) {
+        BatteryStatusDTO battery = new BatteryStatusDTO();
+        battery.setSoc(soc);
+        battery.setVoltage(36.2);
+        battery.setCurrent(1.8);
+        battery.setTemperature(24.5);
+        battery.setCycleCount(120);
+
+        ChargingStatusDTO dto = new ChargingStatusDTO();
+        dto.setPedelecManufacturerId(pedelecId);
+        dto.setTimestamp(timestamp);
+        dto.setChargingState(ChargingState.CHARGING);
+        dto.setMeterValue(1234.0);
+        dto.setBattery(battery);
+        return dto;
+    }
+}
@@ -0,0 +1,101 @@
+package de.rwth.idsg.bikeman.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The slot diff of a boot notification (see PsiStationRepositoryImpl.updateAfterBoot): the slots reported by
+ * the station against the slots in the database, where a few slots were replaced.
+ *
+ * Not a unit test. Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.rwth.idsg.bikeman.utils.ItemIdComparatorBenchmark
+ *
+ * @since 18.10.2016
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ItemIdComparatorBenchmark {
+
+    @Param({"10", "40", "200"})
+    private int slotCount;
+
+    /**
+     * Number of slots that were replaced since the last boot
+     */
+    @Param({"0", "2"})
+    private int replacedCount;
+
+    private List<String> newList;
+    private List<String> databaseList;
+
+    @Setup
+    public void setUp() {
+        databaseList = new ArrayList<>(slotCount);
+        newList = new ArrayList<>(slotCount);
+
+        for (int i = 0; i < slotCount; i++) {
+            String slotId = "station-1-slot-" + i;
+            databaseList.add(slotId);
+            newList.add(i < replacedCount ? slotId + "-new" : slotId);
+        }
+    }
+
+    @Benchmark
+    public void diff(Blackhole bh) {
+        ItemIdComparator<String> comparator = new ItemIdComparator<>();
+        comparator.setDatabaseList(databaseList);
+        comparator.setNewList(newList);
+
+        bh.consume(comparator.getForUpdate());
+        bh.consume(comparator.getForInsert());
+        bh.consume(comparator.getForDelete());
+    }
+
+    /**
+     * The diff plus the classification of every reported slot, as the boot notification does it
+     * with List.contains on the results
+     */
+    @Benchmark
+    public void diffAndClassify(Blackhole bh) {
+        ItemIdComparator<String> comparator = new ItemIdComparator<>();
+        comparator.setDatabaseList(databaseList);
+        comparator.setNewList(newList);
+
+        List<String> updateList = comparator.getForUpdate();
+        List<String> insertList = comparator.getForInsert();
+        bh.consume(comparator.getForDelete());
+
+        for (String slotId : newList) {
+            if (updateList.contains(slotId)) {
+                bh.consume(true);
+            } else if (insertList.contains(slotId)) {
+                bh.consume(false);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ItemIdComparatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
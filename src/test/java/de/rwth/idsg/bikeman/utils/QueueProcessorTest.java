@@ -0,0 +1,119 @@
+package de.rwth.idsg.bikeman.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the QueueProcessor.
+ *
+ * @see QueueProcessor
+ */
+public class QueueProcessorTest {
+
+    private ExecutorService executorService;
+    private CountDownLatch release;
+    private List<Integer> consumed;
+    private List<Integer> dropped;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newSingleThreadExecutor();
+        release = new CountDownLatch(1);
+        consumed = new CopyOnWriteArrayList<>();
+        dropped = new CopyOnWriteArrayList<>();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testProducerWaitsForFreeSpace() throws Exception {
+        QueueProcessor<Integer> processor = blockedProcessor(5000);
+
+        // The consumer releases the first item only after the producer started waiting
+        new Thread(() -> {
+            sleep(200);
+            release.countDown();
+        }).start();
+
+        processor.add(2);
+
+        waitUntilConsumed(3);
+        assertThat(consumed).containsExactly(0, 1, 2);
+        assertThat(dropped).isEmpty();
+        assertThat(processor.getDroppedCount()).isZero();
+    }
+
+    @Test
+    public void testItemIsDroppedAfterTimeout() throws Exception {
+        QueueProcessor<Integer> processor = blockedProcessor(50);
+
+        processor.add(2);
+
+        assertThat(dropped).containsExactly(2);
+        assertThat(processor.getDroppedCount()).isEqualTo(1);
+
+        release.countDown();
+        waitUntilConsumed(2);
+        assertThat(consumed).containsExactly(0, 1);
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * The consumer is blocked with item 0, and item 1 fills the queue of capacity 1
+     */
+    private QueueProcessor<Integer> blockedProcessor(long offerTimeoutInMillis) throws InterruptedException {
+        CountDownLatch taken = new CountDownLatch(1);
+
+        QueueProcessor<Integer> processor = new QueueProcessor<>(executorService, item -> {
+            taken.countDown();
+            await(release);
+            consumed.add(item);
+        }, "test", 1, offerTimeoutInMillis, dropped::add);
+        processor.start();
+
+        processor.add(0);
+        assertThat(taken.await(5, TimeUnit.SECONDS)).isTrue();
+        processor.add(1);
+        return processor;
+    }
+
+    private void waitUntilConsumed(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (consumed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}